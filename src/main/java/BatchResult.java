@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-item results of Library.checkoutAll or Library.returnAll.
+ * A batch is all-or-nothing: it is applied only if every item is OK. Otherwise nothing
+ * changes, and the outcomes show which items blocked it. Outcomes are listed in request order.
+ */
+public final class BatchResult {
+    public enum Outcome {
+        // The item can go through (and did, if the batch was applied)
+        OK,
+        UNKNOWN_MEMBER,
+        UNKNOWN_BOOK,
+        // The same book ID appears earlier in the batch
+        DUPLICATE,
+        // Checkout only: the book is lent to someone, possibly this member
+        UNAVAILABLE,
+        // Return only: the member does not have the book
+        NOT_BORROWED
+    }
+
+    private final boolean applied;
+    private final List<String> bookIds;
+    private final List<Outcome> outcomes;
+    private final List<Loan> loans;
+
+    BatchResult(boolean applied, List<String> bookIds, List<Outcome> outcomes, List<Loan> loans) {
+        this.applied = applied;
+        this.bookIds = Collections.unmodifiableList(bookIds);
+        this.outcomes = Collections.unmodifiableList(outcomes);
+        this.loans = Collections.unmodifiableList(loans);
+    }
+
+    // Returns true if every item went through
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public Outcome getOutcome(int index) {
+        return outcomes.get(index);
+    }
+
+    // Returns the loans a checkout batch created, in request order (empty for returns or if not applied)
+    public List<Loan> getLoans() {
+        return loans;
+    }
+
+    // Returns the book IDs whose outcome was not OK
+    public List<String> getFailedBookIds() {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (outcomes.get(i) != Outcome.OK) failed.add(bookIds.get(i));
+        }
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(applied ? "applied" : "rejected");
+        for (int i = 0; i < outcomes.size(); i++) {
+            text.append(i == 0 ? ": " : ", ").append(bookIds.get(i)).append('=').append(outcomes.get(i));
+        }
+        return text.toString();
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Represents a book in the library system.
@@ -11,8 +12,12 @@ public class Book {
     private int year;
     private String isbn;
     private String bookId;
-    private boolean isAvailable;
+    private final AtomicBoolean isAvailable = new AtomicBoolean(true);
     private String genre;
+    // Library this book is catalogued in, notified when the book's details or availability change
+    private volatile Library library;
+    // This book's IdRegistry handle in that library; written before 'library' so it is published with it
+    private int handle = -1;
 
     //Constructs a new Book instance with the given details.
     public Book(String name, String author, int year, String isbn, String bookId, String genre) {
@@ -22,33 +27,62 @@ public class Book {
         this.isbn = isbn;
         this.bookId = bookId;
         this.genre = genre;
-        this.isAvailable = true;
     }
 
 
     //Updates the book's fields.
+    //A catalogued book is updated by its library, under the book's lock.
     public void updateBookInfo(String name, String author, int year, String isbn, String genre) {
-        this.name = name;
-        this.author = author;
-        this.year = year;
-        this.isbn = isbn;
-        this.genre = genre;
+        Runnable update = () -> {
+            this.name = name;
+            this.author = author;
+            this.year = year;
+            this.isbn = isbn;
+            this.genre = genre;
+        };
+        Library owner = library;
+        if (owner != null) owner.updateBookInfo(this, update);
+        else update.run();
+    }
+
+    //Attaches the book to the library that catalogues it, under the given handle (null to detach).
+    void setLibrary(Library library, int handle) {
+        this.handle = library == null ? -1 : handle;
+        this.library = library;
+    }
+
+    //Returns this book's handle in the given library, or -1 if it is not catalogued there.
+    int handleIn(Library owner) {
+        return library == owner && owner != null ? handle : -1;
     }
 
     //Returns a formatted string with all the book's details.
     public String getBookInfo() {
-        return String.format("ID: %s | Name: %s | Author: %s | Year: %d | ISBN: %s | Genre: %s | Available: %b",
-                bookId, name, author, year, isbn, genre, isAvailable);
+        return RecordFormat.TEXT.formatBook(this);
     }
 
     //Sets the availability status of the book.
     public void setAvailable(boolean available) {
-        isAvailable = available;
+        if (isAvailable.getAndSet(available) != available) availabilityChanged(available);
+    }
+
+    //Atomically sets the availability if it currently equals the expected value.
+    //returns true if the update happened, so only one caller can claim a copy
+    public boolean compareAndSetAvailable(boolean expected, boolean available) {
+        if (!isAvailable.compareAndSet(expected, available)) return false;
+        if (expected != available) availabilityChanged(available);
+        return true;
+    }
+
+    //Tells the owning library that the availability flag flipped.
+    private void availabilityChanged(boolean available) {
+        Library owner = library;
+        if (owner != null) owner.availabilityChanged(this, available);
     }
 
     //Returns the availability status of the book.
     public boolean isAvailable() {
-        return isAvailable;
+        return isAvailable.get();
     }
 
     //Returns the ID of the book.
@@ -60,4 +94,24 @@ public class Book {
     public String getName() {
         return name;
     }
+
+    //Returns the author of the book.
+    public String getAuthor() {
+        return author;
+    }
+
+    //Returns the publication year of the book.
+    public int getYear() {
+        return year;
+    }
+
+    //Returns the ISBN of the book.
+    public String getIsbn() {
+        return isbn;
+    }
+
+    //Returns the genre of the book.
+    public String getGenre() {
+        return genre;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,460 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Secondary indexes over a library's books, keyed by each book's dense handle (see IdRegistry):
+ * sorted year and decade indexes, a hash index on genre, and an availability bitmap. Every
+ * index entry is a compressed RoaringBitmap of handles, and its cardinality is the statistic
+ * the query planner uses.
+ *
+ * A query names up to three conditions (genres, a year range, availability). The planner
+ * estimates how many books each condition matches and runs the most selective one as the
+ * driver, enumerating its rows from the index. Each driver row is then checked against the
+ * other conditions, most selective first, with O(1) bitmap and field lookups. The work is
+ * proportional to the driver's rows, not to the catalog.
+ *
+ * Facet counts ("Available (1,204) / Fantasy (8,310) / 2020s (3,002)") never visit books:
+ * the query's conditions are intersected as bitmaps, and each facet value is the size of
+ * that selection's overlap with the value's bitmap.
+ *
+ * All methods are thread-safe. Queries share a read lock, and adding or removing a book takes
+ * the write lock. Availability, which flips on every checkout and return, takes no lock: the
+ * availability bitmap is an immutable version (see RoaringBitmap.with), a flip swaps in a new
+ * version that shares all but one chunk with the old one, and each query reads one version
+ * when it starts. Whether a handle is indexed is read from a lock-free HandleTable. Circulation
+ * never waits behind a query.
+ */
+public class BookIndexes {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // handle -> catalogued book; read without the lock by availabilityChanged
+    private final HandleTable<Book> rows = new HandleTable<>();
+    private final RoaringBitmap present = new RoaringBitmap();
+    // Immutable versions, replaced by compare-and-set
+    private final AtomicReference<RoaringBitmap> available = new AtomicReference<>(new RoaringBitmap());
+    private int size;
+    // Folded genre -> handles of its books, and the spelling first seen for display
+    private final Map<String, RoaringBitmap> byGenre = new HashMap<>();
+    private final Map<String, String> genreNames = new HashMap<>();
+    // Year (and first year of the decade) -> handles of the books published then
+    private final NavigableMap<Integer, RoaringBitmap> byYear = new TreeMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> byDecade = new TreeMap<>();
+
+    // Indexes a catalogued book under its handle, using its current genre, year and availability
+    public void add(int handle, Book book) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            addLocked(handle, book);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    // Indexes many catalogued books under one hold of the write lock; handles[i] is books[i]'s.
+    // The availability set is copied once for the batch rather than once per book.
+    public void addAll(int[] handles, List<Book> books) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            int[] added = new int[handles.length];
+            int count = 0;
+            for (int i = 0; i < handles.length; i++) {
+                if (addRowLocked(handles[i], books.get(i))) added[count++] = i;
+            }
+            int addedCount = count;
+            // As in addLocked, the flags are read inside the update so a racing flip is never lost
+            available.updateAndGet(current -> {
+                RoaringBitmap next = current.copy();
+                for (int j = 0; j < addedCount; j++) {
+                    int i = added[j];
+                    if (books.get(i).isAvailable()) next.add(handles[i]);
+                    else next.remove(handles[i]);
+                }
+                return next;
+            });
+        } finally {
+            write.unlock();
+        }
+    }
+
+    private void addLocked(int handle, Book book) {
+        if (!addRowLocked(handle, book)) return;
+        // The flag is read inside the update, so a flip racing this add is never lost
+        available.updateAndGet(handles -> book.isAvailable() ? handles.with(handle) : handles.without(handle));
+    }
+
+    // Indexes a book everywhere but in the availability set.
+    // returns false if the handle was already indexed
+    private boolean addRowLocked(int handle, Book book) {
+        if (handle < 0 || present.contains(handle)) return false;
+        rows.put(handle, book);
+        present.add(handle);
+        size++;
+        if (book.getGenre() != null) {
+            String genre = foldGenre(book.getGenre());
+            byGenre.computeIfAbsent(genre, g -> new RoaringBitmap()).add(handle);
+            genreNames.putIfAbsent(genre, book.getGenre());
+        }
+        byYear.computeIfAbsent(book.getYear(), y -> new RoaringBitmap()).add(handle);
+        byDecade.computeIfAbsent(decadeOf(book.getYear()), d -> new RoaringBitmap()).add(handle);
+        return true;
+    }
+
+    // Drops a book from every index, using the genre and year it was indexed under
+    public void remove(int handle) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            removeLocked(handle);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    private void removeLocked(int handle) {
+        if (handle < 0 || !present.remove(handle)) return;
+        Book book = rows.remove(handle);
+        size--;
+        available.updateAndGet(handles -> handles.without(handle));
+        if (book.getGenre() != null) {
+            String genre = foldGenre(book.getGenre());
+            if (clear(byGenre, genre, handle)) genreNames.remove(genre);
+        }
+        clear(byYear, book.getYear(), handle);
+        clear(byDecade, decadeOf(book.getYear()), handle);
+    }
+
+    // Drops a handle from one index entry, discarding the entry once empty.
+    // returns true if the entry was discarded
+    private static <K> boolean clear(Map<K, RoaringBitmap> index, K key, int handle) {
+        RoaringBitmap handles = index.get(key);
+        if (handles == null || !handles.remove(handle) || !handles.isEmpty()) return false;
+        index.remove(key);
+        return true;
+    }
+
+    // Keeps the availability bitmap in step with a book's availability flag, without a lock.
+    // Presence is checked inside the update, so a flip racing the book's removal leaves no trace.
+    public void availabilityChanged(int handle, boolean isAvailable) {
+        if (handle < 0) return;
+        available.updateAndGet(handles -> rows.get(handle) == null ? handles
+                : isAvailable ? handles.with(handle) : handles.without(handle));
+    }
+
+    // Returns the number of indexed books
+    public int size() {
+        return read(() -> size);
+    }
+
+    // Returns the number of books of a genre, ignoring case
+    public int countGenre(String genre) {
+        return read(() -> {
+            RoaringBitmap handles = byGenre.get(foldGenre(genre));
+            return handles == null ? 0 : handles.cardinality();
+        });
+    }
+
+    // Returns the number of books published from 'from' to 'to' inclusive
+    public int countYears(int from, int to) {
+        return read(() -> countYearsLocked(from, to));
+    }
+
+    private int countYearsLocked(int from, int to) {
+        if (from > to) return 0;
+        int count = 0;
+        for (RoaringBitmap handles : byYear.subMap(from, true, to, true).values()) {
+            count += handles.cardinality();
+        }
+        return count;
+    }
+
+    // Returns the number of books that are available (or lent, if false)
+    public int countAvailable(boolean isAvailable) {
+        return read(() -> countAvailable(available.get(), isAvailable));
+    }
+
+    // Returns the indexed books that are not available, visiting only their handles
+    public List<Book> unavailableBooks() {
+        return read(() -> {
+            RoaringBitmap lent = present.andNot(available.get());
+            List<Book> books = new ArrayList<>(lent.cardinality());
+            for (int handle = lent.next(0); handle >= 0; handle = lent.next(handle + 1)) {
+                books.add(rows.get(handle));
+            }
+            return books;
+        });
+    }
+
+    // Counts from one availability version, which only ever holds present handles
+    private int countAvailable(RoaringBitmap available, boolean isAvailable) {
+        int count = available.cardinality();
+        return isAvailable ? count : size - count;
+    }
+
+    // Runs a query under the read lock
+    private <T> T read(Supplier<T> query) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return query.get();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // Plans and runs a query, collecting up to 'limit' matches.
+    // Matches come in the driver's order: by year when a year range drives, else by handle.
+    List<Book> select(BookQuery query, int limit) {
+        return read(() -> selectLocked(query, limit));
+    }
+
+    private List<Book> selectLocked(BookQuery query, int limit) {
+        List<Book> matches = new ArrayList<>();
+        if (limit <= 0) return matches;
+        List<Access> plan = plan(query, available.get());
+        Access driver = plan.get(0);
+        if (driver.estimate == 0) return matches;
+        List<Access> probes = plan.subList(1, plan.size());
+        for (int handle = driver.next(0); handle >= 0; handle = driver.next(handle + 1)) {
+            if (matchesAll(probes, handle)) {
+                matches.add(rows.get(handle));
+                if (matches.size() == limit) break;
+            }
+        }
+        return matches;
+    }
+
+    // Counts the matches of a query
+    int count(BookQuery query) {
+        return read(() -> countLocked(query));
+    }
+
+    private int countLocked(BookQuery query) {
+        List<Access> plan = plan(query, available.get());
+        Access driver = plan.get(0);
+        if (plan.size() == 1) return driver.estimate;
+        List<Access> probes = plan.subList(1, plan.size());
+        int count = 0;
+        for (int handle = driver.next(0); handle >= 0; handle = driver.next(handle + 1)) {
+            if (matchesAll(probes, handle)) count++;
+        }
+        return count;
+    }
+
+    // Describes the plan: the driver, then the probes in the order they are checked
+    String explain(BookQuery query) {
+        return read(() -> {
+            StringJoiner text = new StringJoiner(" -> ");
+            for (Access access : plan(query, available.get())) {
+                text.add(access.label + " (" + access.estimate + ")");
+            }
+            return text.toString();
+        });
+    }
+
+    private static boolean matchesAll(List<Access> probes, int handle) {
+        for (Access probe : probes) {
+            if (!probe.test(handle)) return false;
+        }
+        return true;
+    }
+
+    // Orders the query's conditions by estimated matches, smallest first; with no
+    // conditions the plan scans every book. The whole plan uses one availability version.
+    private List<Access> plan(BookQuery query, RoaringBitmap available) {
+        List<Access> plan = new ArrayList<>(3);
+        if (query.getGenres() != null) plan.add(genreAccess(query.getGenres()));
+        if (query.getYearFrom() > Integer.MIN_VALUE || query.getYearTo() < Integer.MAX_VALUE) {
+            plan.add(yearAccess(query.getYearFrom(), query.getYearTo()));
+        }
+        if (query.getAvailable() != null) plan.add(availabilityAccess(query.getAvailable(), available));
+        if (plan.isEmpty()) {
+            plan.add(new Access("all", size, present::contains) {
+                @Override
+                int next(int from) {
+                    return present.next(from);
+                }
+            });
+        }
+        plan.sort(Comparator.comparingInt(access -> access.estimate));
+        return plan;
+    }
+
+    private Access genreAccess(Set<String> genres) {
+        List<RoaringBitmap> sets = new ArrayList<>(genres.size());
+        int estimate = 0;
+        for (String genre : genres) {
+            RoaringBitmap handles = byGenre.get(genre);
+            if (handles == null) continue;
+            sets.add(handles);
+            estimate += handles.cardinality();
+        }
+        return new Access("genre in " + genres, estimate, handle -> {
+            for (RoaringBitmap handles : sets) {
+                if (handles.contains(handle)) return true;
+            }
+            return false;
+        }) {
+            @Override
+            int next(int from) {
+                int next = -1;
+                for (RoaringBitmap handles : sets) {
+                    int candidate = handles.next(from);
+                    if (candidate >= 0 && (next < 0 || candidate < next)) next = candidate;
+                }
+                return next;
+            }
+        };
+    }
+
+    private Access yearAccess(int from, int to) {
+        NavigableMap<Integer, RoaringBitmap> years = from > to ? Collections.emptyNavigableMap()
+                : byYear.subMap(from, true, to, true);
+        return new Access("year " + from + ".." + to, countYearsLocked(from, to),
+                handle -> {
+                    Book book = rows.get(handle);
+                    return book != null && book.getYear() >= from && book.getYear() <= to;
+                }) {
+            // Each year's handles in turn; rows come out grouped by year rather than by handle
+            private final Iterator<RoaringBitmap> remaining = years.values().iterator();
+            private RoaringBitmap current;
+
+            @Override
+            int next(int from) {
+                while (true) {
+                    int next = current == null ? -1 : current.next(from);
+                    if (next >= 0) return next;
+                    if (!remaining.hasNext()) return -1;
+                    current = remaining.next();
+                    from = 0;
+                }
+            }
+        };
+    }
+
+    private Access availabilityAccess(boolean isAvailable, RoaringBitmap available) {
+        String label = isAvailable ? "available" : "lent";
+        return new Access(label, countAvailable(available, isAvailable),
+                handle -> available.contains(handle) == isAvailable) {
+            @Override
+            int next(int from) {
+                if (isAvailable) return available.next(from);
+                // Lent books are present but not available
+                for (int handle = present.next(from); handle >= 0; handle = present.next(handle + 1)) {
+                    if (!available.contains(handle)) return handle;
+                }
+                return -1;
+            }
+        };
+    }
+
+    // Counts the query's matches per facet value, by intersecting bitmaps
+    FacetCounts facets(BookQuery query) {
+        return read(() -> facetsLocked(query));
+    }
+
+    private FacetCounts facetsLocked(BookQuery query) {
+        RoaringBitmap available = this.available.get();
+        RoaringBitmap selection = selection(query, available);
+        Map<String, Integer> genres = new HashMap<>();
+        for (Map.Entry<String, RoaringBitmap> genre : byGenre.entrySet()) {
+            int count = overlap(selection, genre.getValue());
+            if (count > 0) genres.put(genreNames.get(genre.getKey()), count);
+        }
+        Map<Integer, Integer> decades = new TreeMap<>();
+        for (Map.Entry<Integer, RoaringBitmap> decade : byDecade.entrySet()) {
+            int count = overlap(selection, decade.getValue());
+            if (count > 0) decades.put(decade.getKey(), count);
+        }
+        return new FacetCounts(selection.cardinality(), overlap(selection, available), genres, decades);
+    }
+
+    // Every indexed handle is in 'present', so an unfiltered selection needs no intersection
+    private int overlap(RoaringBitmap selection, RoaringBitmap facet) {
+        return selection == present ? facet.cardinality() : selection.andCardinality(facet);
+    }
+
+    // Returns the handles matching every condition of a query: one bitmap per condition,
+    // intersected smallest first so each intermediate result is as small as it can be
+    private RoaringBitmap selection(BookQuery query, RoaringBitmap available) {
+        List<RoaringBitmap> parts = new ArrayList<>(3);
+        if (query.getGenres() != null) {
+            RoaringBitmap genres = new RoaringBitmap();
+            for (String genre : query.getGenres()) {
+                RoaringBitmap handles = byGenre.get(genre);
+                if (handles != null) genres = genres.or(handles);
+            }
+            parts.add(genres);
+        }
+        if (query.getYearFrom() > Integer.MIN_VALUE || query.getYearTo() < Integer.MAX_VALUE) {
+            parts.add(yearSelection(query.getYearFrom(), query.getYearTo()));
+        }
+        if (query.getAvailable() != null) {
+            parts.add(query.getAvailable() ? available : present.andNot(available));
+        }
+        if (parts.isEmpty()) return present;
+        parts.sort(Comparator.comparingInt(RoaringBitmap::cardinality));
+        RoaringBitmap selection = parts.get(0);
+        for (int i = 1; i < parts.size() && !selection.isEmpty(); i++) {
+            selection = selection.and(parts.get(i));
+        }
+        return selection;
+    }
+
+    // Returns the handles published from 'from' to 'to', taking whole decades at once
+    private RoaringBitmap yearSelection(int from, int to) {
+        RoaringBitmap years = new RoaringBitmap();
+        if (byYear.isEmpty()) return years;
+        // Clamp to the years present, so open-ended ranges cannot overflow the decade arithmetic
+        from = Math.max(from, byYear.firstKey());
+        to = Math.min(to, byYear.lastKey());
+        if (from > to) return years;
+        for (Map.Entry<Integer, RoaringBitmap> decade : byDecade.subMap(decadeOf(from), true, to, true).entrySet()) {
+            int first = decade.getKey();
+            if (first >= from && first + 9 <= to) {
+                years = years.or(decade.getValue());
+            } else {
+                for (RoaringBitmap handles : byYear.subMap(Math.max(from, first), true,
+                        Math.min(to, first + 9), true).values()) {
+                    years = years.or(handles);
+                }
+            }
+        }
+        return years;
+    }
+
+    // Returns the first year of a year's decade, e.g. 1990 for 1997
+    static int decadeOf(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    static String foldGenre(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+
+    // One condition of a plan: how many rows it is expected to match, how to enumerate them
+    // when it drives the plan, and how to check a row when it does not
+    private abstract static class Access {
+        private final String label;
+        private final int estimate;
+        private final IntPredicate test;
+
+        private Access(String label, int estimate, IntPredicate test) {
+            this.label = label;
+            this.estimate = estimate;
+            this.test = test;
+        }
+
+        private boolean test(int handle) {
+            return test.test(handle);
+        }
+
+        // Returns the first matching handle at or after 'from', or -1
+        abstract int next(int from);
+    }
+}
@@ -0,0 +1,240 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test suite for the BookIndexes class and the Library.query API built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class BookIndexesTest {
+
+    private Library library;
+    private Member alice;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+        library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy"));
+        library.addBook(new Book("Good Omens", "Terry Pratchett", 1990, "978-0060853983", "B002", "Fantasy"));
+        library.addBook(new Book("The Golden Compass", "Philip Pullman", 1995, "978-0679879244", "B003", "Fantasy"));
+        library.addBook(new Book("Harry Potter", "J.K. Rowling", 1997, "978-0590353427", "B004", "Fantasy"));
+        library.addBook(new Book("Jurassic Park", "Michael Crichton", 1990, "978-0394588162", "B005", "Science Fiction"));
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B006", "Science Fiction"));
+        alice = new Member("Alice", "alice@example.com", "M001");
+        library.addMember(alice);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) ids.add(book.getBookId());
+        return ids;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testAvailableFantasyFromTheNineties() {
+        library.checkoutBook(alice, library.getBookById("B003"));
+        List<Book> books = library.query().genre("fantasy").yearBetween(1990, 2000).available(true).list();
+        assertEquals(List.of("B002", "B004"), ids(books));
+        assertEquals(2, library.query().genre("Fantasy").yearBetween(1990, 2000).available(true).count());
+        assertEquals(List.of("B003"), ids(library.query().available(false).list()));
+    }
+
+    @Test
+    public void testIndexesFollowCirculationAndEdits() {
+        library.checkoutBook(alice, library.getBookById("B002"));
+        assertEquals(3, library.query().genre("Fantasy").available(true).count());
+        library.returnBook(alice, library.getBookById("B002"));
+        assertEquals(4, library.query().genre("Fantasy").available(true).count());
+
+        library.getBookById("B006").updateBookInfo("Dune", "Frank Herbert", 1965, "978-0441013593", "Fantasy");
+        assertEquals(5, library.query().genre("Fantasy").count());
+        assertEquals(1, library.query().genre("Science Fiction").count());
+
+        library.removeBook("B001");
+        assertEquals(4, library.query().genre("Fantasy").count());
+        assertTrue(library.query().yearBetween(1900, 1940).list().isEmpty());
+    }
+
+    @Test
+    public void testConditionsNarrowEachOther() {
+        assertEquals(List.of("B005"), ids(library.query().genre("Fantasy", "Science Fiction")
+                .genre("science fiction").yearBetween(1980, 2000).list()));
+        assertEquals(2, library.query().yearBetween(1900, 1995).yearBetween(1990, 2100).genre("Fantasy").count());
+        assertEquals(0, library.query().available(true).available(false).count());
+        assertTrue(library.query().available(true).available(false).list().isEmpty());
+        assertEquals(0, library.query().genre("Romance").count());
+        assertEquals(6, library.query().count());
+    }
+
+    @Test
+    public void testPlannerDrivesWithTheMostSelectiveCondition() {
+        for (int i = 0; i < 50; i++) {
+            library.addBook(new Book("Extra " + i, "Author", 2010, "ISBN" + i, "X" + i, "Fantasy"));
+        }
+        library.checkoutBook(alice, library.getBookById("B004"));
+        assertEquals("lent (1) -> year 1990..2000 (4) -> genre in [fantasy] (54)",
+                library.query().genre("Fantasy").yearBetween(1990, 2000).available(false).explain());
+        assertEquals("year 1930..1940 (1) -> available (55)",
+                library.query().available(true).yearBetween(1930, 1940).explain());
+        assertEquals("all (56)", library.query().explain());
+    }
+
+    @Test
+    public void testFacetCountsFollowTheSelection() {
+        library.checkoutBook(alice, library.getBookById("B003"));
+        FacetCounts all = library.query().facets();
+        assertEquals(6, all.getTotal());
+        assertEquals(5, all.getAvailable());
+        assertEquals(1, all.getLent());
+        assertEquals(Map.of("Fantasy", 4, "Science Fiction", 2), all.getByGenre());
+        assertEquals(List.of(1930, 1960, 1990), new ArrayList<>(all.getByDecade().keySet()));
+        assertEquals(Integer.valueOf(4), all.getByDecade().get(1990));
+
+        FacetCounts nineties = library.query().yearBetween(1990, 1999).facets();
+        assertEquals(4, nineties.getTotal());
+        assertEquals("Available (3) / Fantasy (3) / Science Fiction (1) / 1990s (4)", nineties.toString());
+
+        library.returnBook(alice, library.getBookById("B003"));
+        library.removeBook("B005");
+        FacetCounts fantasy = library.query().genre("fantasy").yearBetween(1995, 2100).available(true).facets();
+        assertEquals(2, fantasy.getTotal());
+        assertEquals(Map.of("Fantasy", 2), fantasy.getByGenre());
+        assertEquals(0, library.query().available(true).available(false).facets().getTotal());
+        assertEquals(0, library.query().genre("Romance").facets().getTotal());
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testLimitStopsEarly() {
+        assertEquals(List.of("B001", "B002"), ids(library.query().genre("Fantasy").limit(2).list()));
+        assertTrue(library.query().limit(0).list().isEmpty());
+        assertEquals(6, library.query().limit(1).count(), "count ignores the limit");
+        assertThrows(IllegalArgumentException.class, () -> library.query().limit(-1));
+        assertThrows(IllegalArgumentException.class, () -> library.query().genre((String) null));
+    }
+
+    @Test
+    public void testYearDriverWalksYearsInOrder() {
+        assertEquals(List.of("B006", "B002", "B005", "B003"), ids(library.query().yearBetween(1960, 1996).list()));
+        assertTrue(library.query().yearBetween(2000, 1990).list().isEmpty());
+    }
+
+    @Test
+    public void testStatistics() {
+        BookIndexes indexes = new BookIndexes();
+        Book book = new Book("Emma", "Jane Austen", 1815, "978-0141439587", "E1", null);
+        indexes.add(3, book);
+        indexes.add(3, book);
+        assertEquals(1, indexes.size());
+        assertEquals(1, indexes.countYears(1800, 1820));
+        assertEquals(1, indexes.countAvailable(true));
+        indexes.availabilityChanged(3, false);
+        assertEquals(1, indexes.countAvailable(false));
+        indexes.remove(3);
+        indexes.remove(3);
+        assertEquals(0, indexes.size());
+        assertEquals(0, indexes.countAvailable(false));
+        assertEquals(0, indexes.countYears(1800, 1820));
+    }
+
+    @Test
+    public void testAvailabilityFlipsDoNotWaitForQueries() throws Exception {
+        CountDownLatch inQuery = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        boolean[] blocking = {false};
+        // A book whose year check stalls the query that probes it
+        Book slow = new Book("Slow", "Author", 1990, "I9", "S1", "Slow") {
+            @Override
+            public int getYear() {
+                if (blocking[0]) {
+                    inQuery.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getYear();
+            }
+        };
+        BookIndexes indexes = new BookIndexes();
+        indexes.add(0, slow);
+        indexes.add(1, new Book("A", "B", 1990, "I1", "A1", "Other"));
+        indexes.add(2, new Book("C", "D", 1991, "I2", "A2", "Other"));
+        blocking[0] = true;
+        BookQuery query = new BookQuery(indexes).genre("slow").yearBetween(1980, 2000);
+        assertEquals("genre in [slow] (1) -> year 1980..2000 (3)", indexes.explain(query));
+        Thread reader = new Thread(() -> indexes.select(query, 10));
+        reader.start();
+        try {
+            assertTrue(inQuery.await(10, TimeUnit.SECONDS));
+            indexes.availabilityChanged(1, false);
+            indexes.availabilityChanged(0, false);
+            assertEquals(2, indexes.countAvailable(false), "Counting shares the read lock with the stalled query");
+        } finally {
+            release.countDown();
+            reader.join();
+        }
+        indexes.availabilityChanged(0, true);
+        indexes.remove(0);
+        indexes.availabilityChanged(0, false);
+        assertEquals(1, indexes.countAvailable(true));
+        assertEquals(1, indexes.countAvailable(false));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyQueryMatchesAFullScan(
+            @ForAll @IntRange(min = 0, max = 200) int books,
+            @ForAll @IntRange(min = 1950, max = 2020) int from,
+            @ForAll @IntRange(min = 0, max = 40) int span,
+            @ForAll @IntRange(min = 0, max = 4) int genre,
+            @ForAll @IntRange(min = 0, max = 2) int availability,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        Library lib = new Library();
+        Member member = new Member("Reader", "reader@example.com", "R1");
+        lib.addMember(member);
+        String[] genres = {"Fantasy", "Romance", "History", "Poetry"};
+        for (int i = 0; i < books; i++) {
+            Book book = new Book("T" + i, "A", 1950 + random.nextInt(70), "I" + i, "B" + i, genres[random.nextInt(4)]);
+            lib.addBook(book);
+            if (random.nextInt(3) == 0) lib.checkoutBook(member, book);
+            if (random.nextInt(10) == 0) lib.removeBook(book.getBookId());
+        }
+        BookQuery query = lib.query().yearBetween(from, from + span);
+        if (genre < genres.length) query.genre(genres[genre]);
+        if (availability < 2) query.available(availability == 0);
+
+        Set<String> expected = new HashSet<>();
+        for (Book book : lib.getAllBooks()) {
+            if (book.getYear() < from || book.getYear() > from + span) continue;
+            if (genre < genres.length && !book.getGenre().equals(genres[genre])) continue;
+            if (availability < 2 && book.isAvailable() != (availability == 0)) continue;
+            expected.add(book.getBookId());
+        }
+        assertEquals(expected, new HashSet<>(ids(query.list())));
+        assertEquals(expected.size(), query.count());
+        FacetCounts facets = query.facets();
+        assertEquals(expected.size(), facets.getTotal());
+        int available = 0;
+        for (String bookId : expected) {
+            if (lib.getBookById(bookId).isAvailable()) available++;
+        }
+        assertEquals(available, facets.getAvailable());
+    }
+}
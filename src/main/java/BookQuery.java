@@ -0,0 +1,96 @@
+import java.util.*;
+
+/**
+ * A query over a library's secondary indexes, built by chaining conditions, e.g.
+ *
+ *   library.query().genre("Fantasy").yearBetween(1990, 2000).available(true).list()
+ *
+ * Every condition narrows the result, so calling one twice keeps what both allow. The query
+ * is planned each time it runs (see BookIndexes), so it may be kept and run again later.
+ */
+public final class BookQuery {
+    private final BookIndexes indexes;
+    // Folded genres a book may have, or null for any
+    private Set<String> genres;
+    private int yearFrom = Integer.MIN_VALUE;
+    private int yearTo = Integer.MAX_VALUE;
+    private Boolean available;
+    // Set when two conditions contradict, so nothing can match
+    private boolean impossible;
+    private int limit = Integer.MAX_VALUE;
+
+    BookQuery(BookIndexes indexes) {
+        this.indexes = indexes;
+    }
+
+    // Keeps books of any of the given genres, ignoring case
+    public BookQuery genre(String... names) {
+        Set<String> folded = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name == null) throw new IllegalArgumentException("null field!");
+            folded.add(BookIndexes.foldGenre(name));
+        }
+        if (genres != null) folded.retainAll(genres);
+        genres = folded;
+        return this;
+    }
+
+    // Keeps books published from 'from' to 'to' inclusive
+    public BookQuery yearBetween(int from, int to) {
+        yearFrom = Math.max(yearFrom, from);
+        yearTo = Math.min(yearTo, to);
+        return this;
+    }
+
+    // Keeps books that are available, or that are lent if false
+    public BookQuery available(boolean isAvailable) {
+        if (available != null && available != isAvailable) impossible = true;
+        available = isAvailable;
+        return this;
+    }
+
+    // Stops after this many matches
+    public BookQuery limit(int maxResults) {
+        if (maxResults < 0) throw new IllegalArgumentException("Limit must not be negative");
+        limit = maxResults;
+        return this;
+    }
+
+    // Returns the matching books
+    public List<Book> list() {
+        return impossible ? new ArrayList<>() : indexes.select(this, limit);
+    }
+
+    // Returns the number of matching books, ignoring the limit
+    public int count() {
+        return impossible ? 0 : indexes.count(this);
+    }
+
+    // Returns how many books match, in total and per availability, genre and decade.
+    // Each count is a bitmap intersection, so no book is visited.
+    public FacetCounts facets() {
+        return impossible ? FacetCounts.NONE : indexes.facets(this);
+    }
+
+    // Returns the plan the query would run: each condition with its estimated matches,
+    // the driving one first
+    public String explain() {
+        return impossible ? "nothing (contradictory conditions)" : indexes.explain(this);
+    }
+
+    Set<String> getGenres() {
+        return genres;
+    }
+
+    int getYearFrom() {
+        return yearFrom;
+    }
+
+    int getYearTo() {
+        return yearTo;
+    }
+
+    Boolean getAvailable() {
+        return available;
+    }
+}
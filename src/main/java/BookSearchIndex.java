@@ -0,0 +1,370 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Inverted index over book titles, authors and genres.
+ * Each case-folded token maps to the posting list of books containing it,
+ * so exact, prefix and multi-term queries only touch matching books.
+ * Posting lists are ordered by when each book was indexed, so every query returns its
+ * matches in a fixed order and findBookByName always picks the same book.
+ * Each list keeps its own size, so a query can pick its rarest term without counting, and
+ * walks that term's books in order while probing the others.
+ * In concurrent mode the maps and posting lists are lock-free concurrent collections;
+ * a posting list is created and discarded atomically with its key, so lists that become
+ * empty are dropped without losing a racing add.
+ */
+public class BookSearchIndex {
+    // token -> books whose name, author or genre contains that token, by indexing sequence
+    private final Map<String, PostingList> postings;
+    // the tokens of 'postings' in sorted order, for prefix queries
+    private final NavigableSet<String> tokens;
+    // full case-folded title -> books with exactly that title, by indexing sequence
+    private final Map<String, PostingList> titles;
+    // book -> the sequence number it is currently indexed under
+    private final Map<Book, Long> sequences;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final boolean concurrent;
+
+    // Creates a single-threaded index
+    public BookSearchIndex() {
+        this(false);
+    }
+
+    // Creates an index, backed by concurrent collections if requested
+    public BookSearchIndex(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.postings = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.tokens = concurrent ? new ConcurrentSkipListSet<>() : new TreeSet<>();
+        this.titles = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.sequences = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    // Splits text into lower-case alphanumeric tokens
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String folded = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Case-folds a full title for exact lookups
+    private static String foldTitle(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    // Collects the distinct tokens of a book's name, author and genre
+    private static Set<String> tokensOf(Book book) {
+        Set<String> tokens = new HashSet<>(tokenize(book.getName()));
+        tokens.addAll(tokenize(book.getAuthor()));
+        tokens.addAll(tokenize(book.getGenre()));
+        return tokens;
+    }
+
+    // The books under one key, by indexing sequence, with a count of them. The count is only
+    // changed inside the map's compute for that key, like the list itself, so it stays exact;
+    // ConcurrentSkipListMap.size() would walk the whole list instead.
+    private static final class PostingList {
+        private final NavigableMap<Long, Book> books;
+        private volatile int size;
+
+        private PostingList(NavigableMap<Long, Book> books) {
+            this.books = books;
+        }
+    }
+
+    // Creates an empty posting list of the right flavour
+    private PostingList newPostingList() {
+        return new PostingList(concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>());
+    }
+
+    // Indexes a book under its current name, author and genre
+    public void add(Book book) {
+        long sequence = sequences.computeIfAbsent(book, b -> nextSequence.getAndIncrement());
+        for (String token : tokensOf(book)) {
+            addPosting(postings, token, sequence, book);
+        }
+        addPosting(titles, foldTitle(book.getName()), sequence, book);
+    }
+
+    // Indexes many books at once, e.g. a whole import chunk or snapshot. Each key's new postings
+    // are gathered in order first; a key seen for the first time gets its list built from them
+    // in one linear pass, and an existing list takes them under one compute.
+    public void addAll(Collection<Book> books) {
+        Map<String, Run> byToken = new HashMap<>();
+        Map<String, Run> byTitle = new HashMap<>();
+        for (Book book : books) {
+            if (sequences.containsKey(book)) {
+                add(book);
+                continue;
+            }
+            long sequence = nextSequence.getAndIncrement();
+            sequences.put(book, sequence);
+            for (String token : tokensOf(book)) {
+                byToken.computeIfAbsent(token, t -> new Run()).append(sequence, book);
+            }
+            byTitle.computeIfAbsent(foldTitle(book.getName()), t -> new Run()).append(sequence, book);
+        }
+        byToken.forEach((token, run) -> addPostings(postings, token, run));
+        byTitle.forEach((title, run) -> addPostings(titles, title, run));
+    }
+
+    private void addPostings(Map<String, PostingList> map, String key, Run run) {
+        map.compute(key, (k, list) -> {
+            if (list == null) {
+                // Both map types build themselves from a sorted map without a search per posting
+                list = new PostingList(concurrent ? new ConcurrentSkipListMap<>(run) : new TreeMap<>(run));
+                list.size = run.size;
+                if (map == postings) tokens.add(k);
+                return list;
+            }
+            for (int i = 0; i < run.size; i++) {
+                if (list.books.put(run.sequences[i], run.books[i]) == null) list.size++;
+            }
+            return list;
+        });
+    }
+
+    // New postings of one key in ascending sequence order, read as a sorted map only to hand
+    // them to a posting list's constructor, which then copies them in a single pass
+    private static final class Run extends AbstractMap<Long, Book> implements SortedMap<Long, Book> {
+        private long[] sequences = new long[4];
+        private Book[] books = new Book[4];
+        private int size;
+
+        private void append(long sequence, Book book) {
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+                books = Arrays.copyOf(books, size * 2);
+            }
+            sequences[size] = sequence;
+            books[size++] = book;
+        }
+
+        @Override
+        public Set<Map.Entry<Long, Book>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<Long, Book>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Map.Entry<Long, Book> next() {
+                            if (next >= size) throw new NoSuchElementException();
+                            Map.Entry<Long, Book> entry = new SimpleImmutableEntry<>(sequences[next], books[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Comparator<? super Long> comparator() {
+            return null;
+        }
+
+        @Override
+        public Long firstKey() {
+            if (size == 0) throw new NoSuchElementException();
+            return sequences[0];
+        }
+
+        @Override
+        public Long lastKey() {
+            if (size == 0) throw new NoSuchElementException();
+            return sequences[size - 1];
+        }
+
+        @Override
+        public SortedMap<Long, Book> subMap(Long fromKey, Long toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Long, Book> headMap(Long toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Long, Book> tailMap(Long fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Removes a book using its current name, author and genre
+    public void remove(Book book) {
+        Long sequence = sequences.get(book);
+        if (sequence == null) return;
+        for (String token : tokensOf(book)) {
+            removePosting(postings, token, sequence);
+        }
+        removePosting(titles, foldTitle(book.getName()), sequence);
+        sequences.remove(book, sequence);
+    }
+
+    // Adds a book to one posting list, creating the list (and its sorted token) if needed.
+    // compute runs atomically per key, so this never races the removal of an emptied list.
+    private void addPosting(Map<String, PostingList> map, String key, long sequence, Book book) {
+        map.compute(key, (k, list) -> {
+            if (list == null) {
+                list = newPostingList();
+                if (map == postings) tokens.add(k);
+            }
+            if (list.books.put(sequence, book) == null) list.size++;
+            return list;
+        });
+    }
+
+    // Drops a book from one posting list, discarding the list (and its sorted token) once empty
+    private void removePosting(Map<String, PostingList> map, String key, long sequence) {
+        map.computeIfPresent(key, (k, list) -> {
+            if (list.books.remove(sequence) != null) list.size--;
+            if (list.size > 0) return list;
+            if (map == postings) tokens.remove(k);
+            return null;
+        });
+    }
+
+    // Returns every book whose title equals the given name, ignoring case, in indexing order
+    public List<Book> findByTitle(String name) {
+        PostingList list = titles.get(foldTitle(name));
+        return list == null ? new ArrayList<>() : new ArrayList<>(list.books.values());
+    }
+
+    // Returns books containing every term of the query (AND semantics), in indexing order
+    public List<Book> search(String query) {
+        List<List<PostingList>> terms = new ArrayList<>();
+        for (String term : new HashSet<>(tokenize(query))) {
+            PostingList list = postings.get(term);
+            if (list == null) return new ArrayList<>();
+            terms.add(Collections.singletonList(list));
+        }
+        return intersect(terms);
+    }
+
+    // Returns books where every query term prefix-matches some token, in indexing order
+    public List<Book> searchByPrefix(String prefix) {
+        List<List<PostingList>> terms = new ArrayList<>();
+        for (String term : new HashSet<>(tokenize(prefix))) {
+            List<PostingList> lists = listsByPrefix(term);
+            if (lists.isEmpty()) return new ArrayList<>();
+            terms.add(lists);
+        }
+        return intersect(terms);
+    }
+
+    // Each term matches the books of one or more posting lists. Walks the term with the fewest
+    // postings in indexing order and keeps the books every other term also matches.
+    private static List<Book> intersect(List<List<PostingList>> terms) {
+        List<Book> result = new ArrayList<>();
+        if (terms.isEmpty()) return result;
+        terms.sort(Comparator.comparingLong(BookSearchIndex::postingCount));
+        List<List<PostingList>> others = terms.subList(1, terms.size());
+        forEachInOrder(terms.get(0), (sequence, book) -> {
+            for (List<PostingList> other : others) {
+                if (!contains(other, sequence)) return;
+            }
+            result.add(book);
+        });
+        return result;
+    }
+
+    private static long postingCount(List<PostingList> lists) {
+        long count = 0;
+        for (PostingList list : lists) count += list.size;
+        return count;
+    }
+
+    private static boolean contains(List<PostingList> lists, long sequence) {
+        for (PostingList list : lists) {
+            if (list.books.containsKey(sequence)) return true;
+        }
+        return false;
+    }
+
+    // Visits the books of several posting lists once each, in indexing order, by merging the
+    // lists as it goes rather than copying them
+    private static void forEachInOrder(List<PostingList> lists, BiConsumer<Long, Book> visitor) {
+        if (lists.size() == 1) {
+            lists.get(0).books.forEach(visitor);
+            return;
+        }
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(lists.size(),
+                Comparator.comparingLong((Cursor cursor) -> cursor.head.getKey()));
+        for (PostingList list : lists) {
+            Cursor cursor = new Cursor(list.books.entrySet().iterator());
+            if (cursor.advance()) heads.add(cursor);
+        }
+        long last = -1;
+        Cursor cursor;
+        while ((cursor = heads.poll()) != null) {
+            long sequence = cursor.head.getKey();
+            // A book with several tokens under the prefix comes up once per token
+            if (sequence != last) visitor.accept(sequence, cursor.head.getValue());
+            last = sequence;
+            if (cursor.advance()) heads.add(cursor);
+        }
+    }
+
+    // The next unvisited posting of one list
+    private static final class Cursor {
+        private final Iterator<Map.Entry<Long, Book>> rest;
+        private Map.Entry<Long, Book> head;
+
+        private Cursor(Iterator<Map.Entry<Long, Book>> rest) {
+            this.rest = rest;
+        }
+
+        private boolean advance() {
+            head = rest.hasNext() ? rest.next() : null;
+            return head != null;
+        }
+    }
+
+    // Returns the posting lists of all tokens in [prefix, prefix + max char)
+    private List<PostingList> listsByPrefix(String prefix) {
+        List<PostingList> lists = new ArrayList<>();
+        for (String token : tokens.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            PostingList list = postings.get(token);
+            if (list != null) lists.add(list);
+        }
+        return lists;
+    }
+
+    // Returns how many books are indexed under a token, from the list's own count
+    int postingCount(String token) {
+        PostingList list = postings.get(token);
+        return list == null ? 0 : list.size;
+    }
+
+    // Returns the number of distinct tokens indexed
+    public int tokenCount() {
+        return postings.size();
+    }
+}
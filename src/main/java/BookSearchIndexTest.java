@@ -0,0 +1,175 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.StringLength;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for the BookSearchIndex class and the Library search methods built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class BookSearchIndexTest {
+
+    private Library library;
+    private Book hobbit;
+    private Book rings;
+    private Book dune;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+        hobbit = new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy");
+        rings = new Book("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0618640157", "B002", "Fantasy");
+        dune = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B003", "Science Fiction");
+        library.addBook(hobbit);
+        library.addBook(rings);
+        library.addBook(dune);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testTokenizeFoldsCaseAndSplitsPunctuation() {
+        assertEquals(List.of("j", "r", "r", "tolkien"), BookSearchIndex.tokenize("J.R.R. Tolkien"));
+        assertTrue(BookSearchIndex.tokenize(null).isEmpty(), "Null text should produce no tokens");
+    }
+
+    @Test
+    public void testFindBooksByNameReturnsEveryMatch() {
+        Book secondCopy = new Book("the hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B004", "Fantasy");
+        library.addBook(secondCopy);
+        List<Book> matches = library.findBooksByName("THE HOBBIT");
+        assertEquals(2, matches.size(), "Both copies should match the title");
+        assertTrue(matches.contains(hobbit) && matches.contains(secondCopy));
+    }
+
+    @Test
+    public void testSearchRequiresEveryTerm() {
+        List<Book> tolkien = library.searchBooks("tolkien fantasy");
+        assertEquals(2, tolkien.size(), "Both Tolkien fantasy books should match");
+        List<Book> rings = library.searchBooks("tolkien rings");
+        assertEquals(List.of(this.rings), rings, "Only one book has both terms");
+        assertTrue(library.searchBooks("tolkien dune").isEmpty(), "No book has both terms");
+        assertTrue(library.searchBooks("   ").isEmpty(), "A blank query matches nothing");
+    }
+
+    @Test
+    public void testSearchByPrefix() {
+        assertEquals(2, library.searchBooksByPrefix("tolk").size(), "Prefix should match author token");
+        assertEquals(List.of(dune), library.searchBooksByPrefix("sci fi"), "Each term should prefix-match");
+        assertTrue(library.searchBooksByPrefix("zzz").isEmpty(), "Unknown prefix matches nothing");
+        assertTrue(library.searchBooksByPrefix("").isEmpty(), "Empty prefix matches nothing");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testRemoveBookDropsPostings() {
+        library.removeBook("B003");
+        assertTrue(library.searchBooks("herbert").isEmpty(), "Removed book should not be found");
+        assertNull(library.findBookByName("Dune"), "Removed book should not be found by name");
+    }
+
+    @Test
+    public void testUpdateBookInfoReindexes() {
+        dune.updateBookInfo("Dune Messiah", "Frank Herbert", 1969, "978-0593098233", "Science Fiction");
+        assertNull(library.findBookByName("Dune"), "Old title should no longer match");
+        assertEquals(dune, library.findBookByName("dune messiah"), "New title should match");
+        assertEquals(List.of(dune), library.searchBooks("messiah"));
+    }
+
+    @Test
+    public void testUpdateAfterRemovalDoesNotReindex() {
+        library.removeBook("B003");
+        dune.updateBookInfo("Dune Messiah", "Frank Herbert", 1969, "978-0593098233", "Science Fiction");
+        assertTrue(library.searchBooks("messiah").isEmpty(), "Detached book should stay out of the index");
+    }
+
+    @Test
+    public void testEmptyPostingListsAreDiscarded() {
+        BookSearchIndex index = new BookSearchIndex();
+        index.add(dune);
+        int tokens = index.tokenCount();
+        assertTrue(tokens > 0);
+        index.remove(dune);
+        assertEquals(0, index.tokenCount(), "All tokens should be gone once the only book is removed");
+    }
+
+    @Test
+    public void testPostingCountsFollowAddsAndRemoves() {
+        BookSearchIndex index = new BookSearchIndex(true);
+        index.add(hobbit);
+        index.add(rings);
+        index.add(hobbit); // indexing a book twice does not count it twice
+        assertEquals(2, index.postingCount("tolkien"));
+        assertEquals(2, index.postingCount("the"));
+        index.remove(hobbit);
+        index.remove(hobbit);
+        assertEquals(1, index.postingCount("tolkien"));
+        assertEquals(0, index.postingCount("hobbit"));
+    }
+
+    @Test
+    public void testPrefixMergesListsWithoutRepeats() {
+        // "th" matches "the", "thirst" and "thriller"; a book with several of them comes back once
+        Book thirst = new Book("Thirst", "The Author", 2001, "111", "B004", "Thriller");
+        library.addBook(thirst);
+        assertEquals(List.of(hobbit, rings, thirst), library.searchBooksByPrefix("th"));
+        assertEquals(List.of(hobbit, rings), library.searchBooksByPrefix("th r"),
+                "Every term must still match some token of the book");
+        assertEquals(List.of(thirst), library.searchBooksByPrefix("thr the"));
+    }
+
+    @Test
+    public void testConcurrentIndexKeepsIndexingOrderAndDropsEmptyLists() throws InterruptedException {
+        BookSearchIndex index = new BookSearchIndex(true);
+        List<Book> copies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Book copy = new Book("Same Title", "Author " + i, 2000, "ISBN", "C" + i, "Misc");
+            copies.add(copy);
+            index.add(copy);
+        }
+        assertEquals(copies, index.findByTitle("same title"), "Matches come back in indexing order");
+        assertEquals(copies, index.search("same misc"));
+        assertEquals(copies, index.searchByPrefix("titl"));
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < copies.size(); i += threads.length) index.remove(copies.get(i));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, index.tokenCount(), "Emptied posting lists are discarded in concurrent mode too");
+        assertTrue(index.findByTitle("same title").isEmpty());
+
+        Library shared = new Library(true);
+        shared.addBook(copies.get(0));
+        shared.addBook(copies.get(1));
+        for (int i = 0; i < 20; i++) assertSame(copies.get(0), shared.findBookByName("Same Title"));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyAddedBookIsFoundByEachNameToken(
+            @ForAll @AlphaChars @StringLength(min = 1, max = 10) String first,
+            @ForAll @AlphaChars @StringLength(min = 1, max = 10) String second
+    ) {
+        Library lib = new Library();
+        Book book = new Book(first + " " + second, "Author", 2000, "ISBN", "ID", "Genre");
+        lib.addBook(book);
+        assertTrue(lib.searchBooks(first).contains(book), "First word should find the book");
+        assertTrue(lib.searchBooks(second.toUpperCase()).contains(book), "Search should ignore case");
+        assertEquals(book, lib.findBookByName(first + " " + second), "Exact title should find the book");
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Streams a CSV or TSV catalog file into a Library.
+ * Lines are read in chunks, chunks are parsed and validated in parallel, and the parsed
+ * books are inserted chunk by chunk in file order, so only a bounded number of chunks is
+ * ever held in memory. Expected columns: title, author, year, isbn, bookId, genre.
+ * Fields may be "quoted" (with "" for a literal quote) but may not span lines.
+ */
+public class CatalogImporter {
+    private static final int COLUMNS = 6;
+
+    private final Library library;
+    private final char delimiter;
+    private final int chunkSize;
+    private final int parallelism;
+
+    // Creates an importer for comma-separated files using every available core
+    public CatalogImporter(Library library) {
+        this(library, ',', 10_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Creates an importer with an explicit delimiter (',' or '\t'), chunk size and thread count
+    public CatalogImporter(Library library, char delimiter, int chunkSize, int parallelism) {
+        if (chunkSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Chunk size and parallelism must be positive");
+        }
+        this.library = library;
+        this.delimiter = delimiter;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    // Picks the delimiter from the file extension (.tsv means tab, anything else comma)
+    public static CatalogImporter forFile(Library library, Path file) {
+        char delimiter = file.toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        return new CatalogImporter(library, delimiter, 10_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Imports a file; if skipHeader is set the first line is ignored
+    public ImportReport importFile(Path file, boolean skipHeader) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, skipHeader);
+        }
+    }
+
+    // Imports from any reader; if skipHeader is set the first line is ignored
+    public ImportReport importFrom(BufferedReader reader, boolean skipHeader) throws IOException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        // Chunks in flight, oldest first; bounded so memory stays flat however big the file is
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try {
+            long lineNumber = 0;
+            if (skipHeader && reader.readLine() != null) lineNumber++;
+            while (true) {
+                long readStart = System.nanoTime();
+                List<String> lines = new ArrayList<>(chunkSize);
+                String line;
+                while (lines.size() < chunkSize && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                report.readNanos += System.nanoTime() - readStart;
+                if (lines.isEmpty()) break;
+                long firstLine = lineNumber + 1;
+                lineNumber += lines.size();
+                inFlight.add(pool.submit(() -> parseChunk(lines, firstLine)));
+                if (inFlight.size() >= parallelism * 2) {
+                    insert(inFlight.poll(), report);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                insert(inFlight.poll(), report);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report.totalNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    // Waits for a parsed chunk and batch-inserts its books
+    private void insert(Future<ParsedChunk> future, ImportReport report) throws IOException {
+        ParsedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse catalog chunk", e.getCause());
+        }
+        report.parseNanos += chunk.parseNanos;
+        report.rowsRead += chunk.rows;
+        report.rejected += chunk.rejects.size();
+        for (String reject : chunk.rejects) {
+            if (report.rejectSamples.size() < ImportReport.MAX_SAMPLES) report.rejectSamples.add(reject);
+        }
+        long insertStart = System.nanoTime();
+        int added = library.addBooks(chunk.books);
+        report.insertNanos += System.nanoTime() - insertStart;
+        report.imported += added;
+        report.duplicates += chunk.books.size() - added;
+    }
+
+    // Parses and validates one chunk of lines (runs on a pool thread)
+    private ParsedChunk parseChunk(List<String> lines, long firstLine) {
+        long start = System.nanoTime();
+        ParsedChunk chunk = new ParsedChunk();
+        List<String> fields = new ArrayList<>(COLUMNS);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) continue;
+            chunk.rows++;
+            long number = firstLine + i;
+            fields.clear();
+            if (!split(line, fields)) {
+                chunk.rejects.add("line " + number + ": unterminated quote");
+                continue;
+            }
+            if (fields.size() != COLUMNS) {
+                chunk.rejects.add("line " + number + ": expected " + COLUMNS + " fields, found " + fields.size());
+                continue;
+            }
+            String title = fields.get(0).trim();
+            String bookId = fields.get(4).trim();
+            if (title.isEmpty() || bookId.isEmpty()) {
+                chunk.rejects.add("line " + number + ": title and book ID are required");
+                continue;
+            }
+            int year;
+            try {
+                year = Integer.parseInt(fields.get(2).trim());
+            } catch (NumberFormatException e) {
+                chunk.rejects.add("line " + number + ": invalid year '" + fields.get(2) + "'");
+                continue;
+            }
+            chunk.books.add(new Book(title, fields.get(1).trim(), year, fields.get(3).trim(), bookId,
+                    fields.get(5).trim()));
+        }
+        chunk.parseNanos = System.nanoTime() - start;
+        return chunk;
+    }
+
+    // Splits one line on the delimiter, honouring "quoted, fields" with "" escapes.
+    // returns false if a quote is left open
+    boolean split(String line, List<String> out) {
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == delimiter) {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        out.add(field.toString());
+        return !quoted;
+    }
+
+    // Result of parsing one chunk
+    private static class ParsedChunk {
+        private final List<Book> books = new ArrayList<>();
+        private final List<String> rejects = new ArrayList<>();
+        private int rows;
+        private long parseNanos;
+    }
+
+    /**
+     * Counts and per-stage timings for one import run.
+     * Parse time is summed across worker threads, so it can exceed the wall-clock total.
+     */
+    public static class ImportReport {
+        static final int MAX_SAMPLES = 20;
+
+        private long rowsRead;
+        private long imported;
+        private long duplicates;
+        private long rejected;
+        private long readNanos;
+        private long parseNanos;
+        private long insertNanos;
+        private long totalNanos;
+        private final List<String> rejectSamples = new ArrayList<>();
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        // Returns up to the first 20 reject reasons
+        public List<String> getRejectSamples() {
+            return Collections.unmodifiableList(rejectSamples);
+        }
+
+        public long getReadNanos() {
+            return readNanos;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        public long getInsertNanos() {
+            return insertNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        // Returns rows processed per second of wall-clock time
+        public double getRowsPerSecond() {
+            return totalNanos == 0 ? 0 : rowsRead * 1_000_000_000.0 / totalNanos;
+        }
+
+        // Returns a one-line summary for the CLI or logs
+        public String summary() {
+            return String.format("Rows: %d | Imported: %d | Duplicates: %d | Rejected: %d | %.0f rows/sec"
+                            + " | read %d ms, parse %d ms, insert %d ms",
+                    rowsRead, imported, duplicates, rejected, getRowsPerSecond(),
+                    readNanos / 1_000_000, parseNanos / 1_000_000, insertNanos / 1_000_000);
+        }
+    }
+}
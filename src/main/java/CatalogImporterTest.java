@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.StringLength;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for the CatalogImporter class (streaming bulk CSV/TSV import).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class CatalogImporterTest {
+
+    private Library library;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+    }
+
+    // Runs an import over in-memory text with small chunks so several chunks are in flight
+    private CatalogImporter.ImportReport importText(String text, char delimiter, boolean header) throws IOException {
+        CatalogImporter importer = new CatalogImporter(library, delimiter, 2, 3);
+        return importer.importFrom(new BufferedReader(new StringReader(text)), header);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testImportsValidRows() throws IOException {
+        String csv = "title,author,year,isbn,bookId,genre\n"
+                + "The Hobbit,J.R.R. Tolkien,1937,978-0547928227,B001,Fantasy\n"
+                + "\"Dune, Deluxe\",Frank Herbert,1965,978-0441013593,B002,Science Fiction\n"
+                + "\"The \"\"Quoted\"\" Book\",Anon,2001,isbn,B003,Mystery\n";
+        CatalogImporter.ImportReport report = importText(csv, ',', true);
+        assertEquals(3, report.getRowsRead());
+        assertEquals(3, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals("Dune, Deluxe", library.getBookById("B002").getName(), "Quoted comma should stay in the field");
+        assertEquals("The \"Quoted\" Book", library.getBookById("B003").getName(), "Doubled quotes should unescape");
+        assertEquals(1937, library.getBookById("B001").getYear());
+        assertEquals(List.of(library.getBookById("B001")), library.searchBooks("hobbit"),
+                "Imported books should be searchable");
+    }
+
+    @Test
+    public void testRejectsInvalidRowsWithReasons() throws IOException {
+        String csv = "Good,Author,2000,isbn,B001,Genre\n"
+                + "Too,Few,Fields\n"
+                + "Bad Year,Author,nineteen,isbn,B002,Genre\n"
+                + ",Author,2000,isbn,B003,Genre\n"
+                + "\"Open quote,Author,2000,isbn,B004,Genre\n";
+        CatalogImporter.ImportReport report = importText(csv, ',', false);
+        assertEquals(5, report.getRowsRead());
+        assertEquals(1, report.getImported());
+        assertEquals(4, report.getRejected());
+        List<String> reasons = report.getRejectSamples();
+        assertTrue(reasons.get(0).startsWith("line 2:"), "Reject should name its line");
+        assertTrue(reasons.get(1).contains("invalid year"));
+        assertTrue(reasons.get(2).contains("required"));
+        assertTrue(reasons.get(3).contains("unterminated quote"));
+    }
+
+    @Test
+    public void testSkipsExistingAndRepeatedIds() throws IOException {
+        library.addBook(new Book("Existing", "Author", 1999, "isbn", "B001", "Genre"));
+        String csv = "New Title,Author,2000,isbn,B001,Genre\n"
+                + "Fresh,Author,2000,isbn,B002,Genre\n"
+                + "Fresh Again,Author,2000,isbn,B002,Genre\n";
+        CatalogImporter.ImportReport report = importText(csv, ',', false);
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getDuplicates());
+        assertEquals("Existing", library.getBookById("B001").getName(), "Existing book should not be replaced");
+        assertEquals("Fresh", library.getBookById("B002").getName(), "First occurrence in the file should win");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testTsvFileByExtension() throws IOException {
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.writeString(file, "Title, With Comma\tAuthor\t2010\tisbn\tT1\tGenre\n\n");
+            CatalogImporter.ImportReport report = CatalogImporter.forFile(library, file).importFile(file, false);
+            assertEquals(1, report.getImported(), "Blank lines should be ignored");
+            assertEquals("Title, With Comma", library.getBookById("T1").getName());
+            assertTrue(report.getTotalNanos() > 0);
+            assertTrue(report.summary().contains("Imported: 1"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLargeInputAcrossManyChunksKeepsOrderAndCounts() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            csv.append("Title ").append(i).append(",Author,2000,isbn,ID").append(i % 4_000).append(",Genre\n");
+        }
+        CatalogImporter importer = new CatalogImporter(library, ',', 64, 4);
+        CatalogImporter.ImportReport report = importer.importFrom(new BufferedReader(new StringReader(csv.toString())), false);
+        assertEquals(5_000, report.getRowsRead());
+        assertEquals(4_000, report.getImported());
+        assertEquals(1_000, report.getDuplicates());
+        assertEquals("Title 7", library.getBookById("ID7").getName(), "Earlier rows should win duplicates");
+        assertTrue(report.getRowsPerSecond() > 0);
+    }
+
+    @Test
+    public void testInvalidConfigurationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(library, ',', 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(library, ',', 1, 0));
+    }
+
+    @Test
+    public void testAddBooksCountsOnlyNewIds() {
+        List<Book> books = new ArrayList<>();
+        books.add(new Book("A", "Author", 2000, "isbn", "X1", "Genre"));
+        books.add(new Book("B", "Author", 2000, "isbn", "X1", "Genre"));
+        books.add(new Book("C", "Author", 2000, "isbn", "X2", "Genre"));
+        assertEquals(2, library.addBooks(books));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertySplitRoundTripsQuotedFields(
+            @ForAll @AlphaChars @StringLength(min = 0, max = 10) String left,
+            @ForAll @AlphaChars @StringLength(min = 0, max = 10) String right,
+            @ForAll @IntRange(min = 0, max = 3) int quotes
+    ) {
+        String field = left + ",\"".repeat(quotes) + right;
+        String encoded = "\"" + field.replace("\"", "\"\"") + "\",next";
+        List<String> out = new ArrayList<>();
+        assertTrue(new CatalogImporter(new Library()).split(encoded, out));
+        assertEquals(List.of(field, "next"), out);
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Collection;
+
+/**
+ * An immutable point-in-time view of a Library's books and members.
+ * The library swaps in a new version on every add or remove, sharing all unchanged structure
+ * with the previous one, so taking a version is a single reference read and iterating it
+ * never blocks writers or throws ConcurrentModificationException. The Book and Member
+ * objects themselves are live: availability and loans show their current state.
+ */
+public final class CatalogVersion {
+    static final CatalogVersion EMPTY = new CatalogVersion(0, PersistentHashMap.empty(), PersistentHashMap.empty());
+
+    private final long version;
+    private final PersistentHashMap<String, Book> books;
+    private final PersistentHashMap<String, Member> members;
+
+    private CatalogVersion(long version, PersistentHashMap<String, Book> books,
+                           PersistentHashMap<String, Member> members) {
+        this.version = version;
+        this.books = books;
+        this.members = members;
+    }
+
+    // Returns the version number, which grows by one with each catalog change
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection<Book> getBooks() {
+        return books.values();
+    }
+
+    public Collection<Member> getMembers() {
+        return members.values();
+    }
+
+    public Book getBook(String bookId) {
+        return books.get(bookId);
+    }
+
+    public Member getMember(String memberId) {
+        return members.get(memberId);
+    }
+
+    public int bookCount() {
+        return books.size();
+    }
+
+    public int memberCount() {
+        return members.size();
+    }
+
+    PersistentHashMap<String, Book> books() {
+        return books;
+    }
+
+    PersistentHashMap<String, Member> members() {
+        return members;
+    }
+
+    CatalogVersion withBooks(PersistentHashMap<String, Book> books) {
+        return new CatalogVersion(version + 1, books, members);
+    }
+
+    CatalogVersion withMembers(PersistentHashMap<String, Member> members) {
+        return new CatalogVersion(version + 1, books, members);
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.List;
+
+/**
+ * One slot of a CirculationEventBus ring. The bus allocates every slot up front and reuses
+ * it each time the ring wraps, so publishing never creates garbage. A handler therefore must
+ * not keep the event after it returns; copy out whatever fields it needs.
+ */
+public final class CirculationEvent {
+    public enum Type {
+        BOOK_ADDED,
+        BOOK_REMOVED,
+        MEMBER_ADDED,
+        MEMBERSHIP_REVOKED,
+        CHECKOUT,
+        RETURN,
+        // One event for a whole Library.checkoutAll or returnAll; see getBookIds
+        CHECKOUT_BATCH,
+        RETURN_BATCH,
+        HOLD_PLACED,
+        HOLD_CANCELLED,
+        BOOK_PURCHASE,
+        DONATION,
+        SALARY_WITHDRAWAL
+    }
+
+    private long sequence;
+    private Type type;
+    private String bookId;
+    private List<String> bookIds;
+    private String memberId;
+    private double amount;
+    private long timestamp;
+
+    CirculationEvent() {
+    }
+
+    // Overwrites the slot with a new event; called only by the publisher that claimed it
+    void set(long sequence, Type type, String bookId, List<String> bookIds, String memberId, double amount,
+             long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.bookId = bookId;
+        this.bookIds = bookIds;
+        this.memberId = memberId;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+
+    // Returns the event's position in the stream, starting at 0
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // Returns the book involved, or null for member and cash events
+    public String getBookId() {
+        return bookId;
+    }
+
+    // Returns the books of a batch event, or null for single-book events
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    // Returns the member involved, or null for catalog and cash events
+    public String getMemberId() {
+        return memberId;
+    }
+
+    // Returns the cash amount of a purchase, donation or salary withdrawal, otherwise 0
+    public double getAmount() {
+        return amount;
+    }
+
+    // Returns when the event was published, in epoch milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type
+                + (bookId != null ? " book=" + bookId : "")
+                + (bookIds != null ? " books=" + bookIds : "")
+                + (memberId != null ? " member=" + memberId : "")
+                + (amount != 0 ? " amount=" + amount : "");
+    }
+}
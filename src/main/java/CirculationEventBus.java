@@ -0,0 +1,339 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process pipeline that lets other components (metrics, audit, search indexing) react to
+ * circulation without editing Library or Interface.
+ *
+ * Events go into a bounded ring of slots that are all allocated up front. A publisher claims
+ * the next sequence number with one CAS, fills that slot in place and marks it published, so
+ * publishing creates no garbage and takes no lock. Each subscriber runs on its own daemon
+ * thread and tracks its own sequence. It takes every event published since its last pass as
+ * one batch and hands them to its handler in order, with the last one flagged as the end of
+ * the batch. A slot is reused only once every subscriber has moved past it.
+ *
+ * When the ring is full the Backpressure policy decides what a publisher does: DROP discards
+ * the event and counts it, while BLOCK waits for the slowest subscriber. Library publishes
+ * while holding its locks, so DROP is the right policy for the circulation hot path.
+ * The WaitStrategy decides how an idle subscriber waits, trading latency against CPU.
+ *
+ * Subscribe before calling start. A subscriber sees the events published after start.
+ */
+public class CirculationEventBus implements AutoCloseable {
+    // Receives events on a subscriber's thread; the event is reused once this returns
+    @FunctionalInterface
+    public interface Handler {
+        void onEvent(CirculationEvent event, boolean endOfBatch);
+    }
+
+    // How an idle subscriber waits for the next event
+    public enum WaitStrategy {
+        // Spin on the CPU: lowest latency, burns a core per subscriber
+        BUSY_SPIN,
+        // Spin briefly, then yield the core to other threads
+        YIELDING,
+        // Spin, yield, then sleep in short naps
+        SLEEPING,
+        // Sleep until a publisher signals; publishers pay for the signal only while someone sleeps
+        BLOCKING
+    }
+
+    // What a publisher does when the ring is full
+    public enum Backpressure {
+        // Discard the event and count it as dropped
+        DROP,
+        // Wait until the slowest subscriber frees a slot
+        BLOCK
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long SLEEP_NANOS = 100_000;
+
+    private final CirculationEvent[] ring;
+    private final int mask;
+    // published.get(i) is the sequence last published in slot i
+    private final AtomicLongArray published;
+    private final WaitStrategy waitStrategy;
+    private final Backpressure backpressure;
+    // Highest sequence claimed by a publisher
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong dropped = new AtomicLong();
+    // Last known position of the slowest subscriber, so publishers rarely scan all of them
+    private volatile long gatingCache = -1;
+
+    private final List<Subscriber> pending = new ArrayList<>();
+    private volatile Subscriber[] subscribers = new Subscriber[0];
+    private volatile boolean running;
+    private boolean started;
+
+    // Used by the BLOCKING wait strategy only
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition publishedCondition = lock.newCondition();
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    // Creates a bus of the default capacity whose subscribers sleep until signalled and
+    // whose publishers drop events when the ring is full
+    public CirculationEventBus() {
+        this(DEFAULT_CAPACITY, WaitStrategy.BLOCKING, Backpressure.DROP);
+    }
+
+    // Creates a bus; the capacity is rounded up to a power of two
+    public CirculationEventBus(int capacity, WaitStrategy waitStrategy, Backpressure backpressure) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        if (waitStrategy == null || backpressure == null) throw new IllegalArgumentException("null field!");
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new CirculationEvent[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            ring[i] = new CirculationEvent();
+            published.set(i, -1);
+        }
+        this.waitStrategy = waitStrategy;
+        this.backpressure = backpressure;
+    }
+
+    // Registers a handler that will run on its own thread once the bus starts
+    public synchronized void subscribe(String name, Handler handler) {
+        if (started) throw new IllegalStateException("Subscribe before starting the bus");
+        if (name == null || handler == null) throw new IllegalArgumentException("null field!");
+        pending.add(new Subscriber(name, handler));
+    }
+
+    // Starts one consumer thread per subscriber
+    public synchronized void start() {
+        if (started) throw new IllegalStateException("Event bus already started");
+        started = true;
+        long from = cursor.get();
+        Subscriber[] all = pending.toArray(new Subscriber[0]);
+        for (Subscriber subscriber : all) {
+            subscriber.sequence.set(from);
+        }
+        gatingCache = from;
+        subscribers = all;
+        running = true;
+        for (Subscriber subscriber : all) {
+            subscriber.thread.start();
+        }
+    }
+
+    // Publishes an event without allocating. Never blocks under the DROP policy.
+    // returns true if the event was queued, false if it was dropped or the bus is not running
+    public boolean publish(CirculationEvent.Type type, String bookId, String memberId, double amount) {
+        return publish(type, bookId, null, memberId, amount);
+    }
+
+    // Publishes one event covering several books; the list must not change afterwards
+    public boolean publishBatch(CirculationEvent.Type type, List<String> bookIds, String memberId) {
+        return publish(type, null, bookIds, memberId, 0);
+    }
+
+    private boolean publish(CirculationEvent.Type type, String bookId, List<String> bookIds, String memberId,
+                            double amount) {
+        if (!running) return false;
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        ring[(int) sequence & mask].set(sequence, type, bookId, bookIds, memberId, amount,
+                System.currentTimeMillis());
+        published.set((int) sequence & mask, sequence);
+        if (sleepers.get() > 0) wakeSubscribers();
+        return true;
+    }
+
+    // Claims the next sequence, or returns -1 if the ring is full and the event must be dropped
+    private long claim() {
+        int tries = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - ring.length;
+            if (wrapPoint > gatingCache) {
+                long slowest = slowestSequence(current);
+                gatingCache = slowest;
+                if (wrapPoint > slowest) {
+                    if (backpressure == Backpressure.DROP || !running) return -1;
+                    tries = backOff(tries);
+                    continue;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) return next;
+        }
+    }
+
+    private long slowestSequence(long ifNone) {
+        long slowest = ifNone;
+        for (Subscriber subscriber : subscribers) {
+            slowest = Math.min(slowest, subscriber.sequence.get());
+        }
+        return slowest;
+    }
+
+    // Returns the highest sequence from 'from' up to 'to' such that it and all before it are published
+    private long highestPublished(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            if (published.get((int) sequence & mask) != sequence) return sequence - 1;
+        }
+        return to;
+    }
+
+    private void wakeSubscribers() {
+        lock.lock();
+        try {
+            publishedCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Spins, then yields, then naps; returns the updated try count
+    private static int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(SLEEP_NANOS);
+            return tries;
+        }
+        return tries + 1;
+    }
+
+    // Waits a little for sequence 'next' to be published, as the wait strategy prescribes
+    private int idle(long next, int tries) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                return tries;
+            case YIELDING:
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                    return tries + 1;
+                }
+                Thread.yield();
+                return tries;
+            case SLEEPING:
+                return backOff(tries);
+            default:
+                lock.lock();
+                try {
+                    sleepers.incrementAndGet();
+                    // Re-check after announcing ourselves so a publish in between is not missed
+                    if (running && published.get((int) next & mask) != next) {
+                        publishedCondition.await(10, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    sleepers.decrementAndGet();
+                    lock.unlock();
+                }
+                return tries;
+        }
+    }
+
+    // Stops accepting events, lets every subscriber finish what was published, and waits for them
+    @Override
+    public void close() {
+        Subscriber[] all;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            all = subscribers;
+        }
+        wakeSubscribers();
+        for (Subscriber subscriber : all) {
+            try {
+                subscriber.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Returns the number of slots in the ring
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    // Returns the number of events accepted since the bus was created
+    public long getPublishedCount() {
+        return cursor.get() + 1;
+    }
+
+    // Returns the number of events discarded because the ring was full
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Returns the number of accepted events the slowest subscriber has not finished yet
+    public long getBacklog() {
+        long current = cursor.get();
+        return current - slowestSequence(current);
+    }
+
+    // Returns the number of events whose handler threw, across all subscribers
+    public long getFailureCount() {
+        long failures = 0;
+        for (Subscriber subscriber : subscribers) {
+            failures += subscriber.failures.get();
+        }
+        return failures;
+    }
+
+    // A handler with its own thread and its own position in the ring
+    private final class Subscriber implements Runnable {
+        private final Handler handler;
+        private final Thread thread;
+        // Last sequence this subscriber has finished with; slots up to here may be reused
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final AtomicLong failures = new AtomicLong();
+
+        private Subscriber(String name, Handler handler) {
+            this.handler = handler;
+            this.thread = new Thread(this, "event-bus-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            int tries = 0;
+            while (true) {
+                long available = highestPublished(next, cursor.get());
+                if (available < next) {
+                    if (!running && next > cursor.get()) return;
+                    tries = idle(next, tries);
+                    continue;
+                }
+                tries = 0;
+                for (long s = next; s <= available; s++) {
+                    try {
+                        handler.onEvent(ring[(int) s & mask], s == available);
+                    } catch (RuntimeException e) {
+                        // One bad event must not stop the subscriber
+                        failures.incrementAndGet();
+                    }
+                }
+                sequence.set(available);
+                next = available + 1;
+            }
+        }
+    }
+}
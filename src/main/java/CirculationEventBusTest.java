@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test suite for the CirculationEventBus class (ring-buffer event pipeline with batching subscribers).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class CirculationEventBusTest {
+
+    private CirculationEventBus bus;
+
+    @AfterEach
+    public void tearDown() {
+        if (bus != null) bus.close();
+    }
+
+    // Subscribes a handler that copies each event into a queue as "TYPE book member"
+    private BlockingQueue<String> record(CirculationEventBus target) {
+        BlockingQueue<String> seen = new LinkedBlockingQueue<>();
+        target.subscribe("recorder", (event, endOfBatch) ->
+                seen.add(event.getType() + " " + event.getBookId() + " " + event.getMemberId()));
+        return seen;
+    }
+
+    private static String take(BlockingQueue<String> queue) throws InterruptedException {
+        String value = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(value, "Timed out waiting for an event");
+        return value;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testLibraryPublishesCirculationEvents() throws Exception {
+        bus = new CirculationEventBus();
+        BlockingQueue<String> seen = record(bus);
+        bus.start();
+        Library library = new Library(true);
+        library.setEventBus(bus);
+        Book book = new Book("Dune", "Frank Herbert", 1965, "ISBN1", "B1", "Science Fiction");
+        Member member = new Member("Alice", "alice@example.com", "M1");
+        Member waiter = new Member("Bob", "bob@example.com", "M2");
+        library.addBook(book);
+        library.addMember(member);
+        library.addMember(waiter);
+        library.checkoutBook(member, book);
+        library.placeHold(waiter, book);
+        library.returnBook(member, book);
+
+        assertEquals("BOOK_ADDED B1 null", take(seen));
+        assertEquals("MEMBER_ADDED null M1", take(seen));
+        assertEquals("MEMBER_ADDED null M2", take(seen));
+        assertEquals("CHECKOUT B1 M1", take(seen));
+        assertEquals("HOLD_PLACED B1 M2", take(seen));
+        assertEquals("RETURN B1 M1", take(seen));
+        assertEquals("CHECKOUT B1 M2", take(seen));
+    }
+
+    @Test
+    public void testAccountsPublishCashMovements() throws Exception {
+        bus = new CirculationEventBus();
+        BlockingQueue<Double> amounts = new LinkedBlockingQueue<>();
+        bus.subscribe("cash", (event, endOfBatch) -> amounts.add(event.getAmount()));
+        bus.start();
+        LibraryAccounts accounts = new LibraryAccounts();
+        accounts.setEventBus(bus);
+        accounts.addDonation(100);
+        accounts.withdrawSalary(40);
+        accounts.orderBook(25);
+        assertEquals(Double.valueOf(100.0), amounts.poll(5, TimeUnit.SECONDS));
+        assertEquals(Double.valueOf(40.0), amounts.poll(5, TimeUnit.SECONDS));
+        assertEquals(Double.valueOf(25.0), amounts.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDropPolicyDiscardsWhenRingIsFull() throws Exception {
+        bus = new CirculationEventBus(4, CirculationEventBus.WaitStrategy.SLEEPING,
+                CirculationEventBus.Backpressure.DROP);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("slow", (event, endOfBatch) -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sequences.add(event.getSequence());
+        });
+        bus.start();
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (bus.publish(CirculationEvent.Type.CHECKOUT, "B" + i, "M1", 0)) accepted++;
+        }
+        // The subscriber is stuck on its first batch and frees nothing, so only four fit
+        assertEquals(4, accepted);
+        assertEquals(20 - accepted, bus.getDroppedCount());
+        gate.countDown();
+        bus.close();
+        assertEquals(accepted, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(Long.valueOf(i), sequences.get(i));
+        }
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForSubscribers() throws Exception {
+        bus = new CirculationEventBus(2, CirculationEventBus.WaitStrategy.YIELDING,
+                CirculationEventBus.Backpressure.BLOCK);
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("slow", (event, endOfBatch) -> {
+            LockSupport.parkNanos(100_000);
+            seen.add(event.getBookId());
+        });
+        bus.start();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(bus.publish(CirculationEvent.Type.RETURN, "B" + i, "M1", 0));
+        }
+        bus.close();
+        assertEquals(0, bus.getDroppedCount());
+        assertEquals(50, seen.size());
+        assertEquals("B49", seen.get(49));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testConcurrentPublishersReachEverySubscriberOnce() throws Exception {
+        bus = new CirculationEventBus(64, CirculationEventBus.WaitStrategy.BUSY_SPIN,
+                CirculationEventBus.Backpressure.BLOCK);
+        Map<String, Set<String>> received = new ConcurrentHashMap<>();
+        for (String name : new String[]{"audit", "metrics"}) {
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            received.put(name, ids);
+            bus.subscribe(name, (event, endOfBatch) -> assertTrue(ids.add(event.getBookId())));
+        }
+        bus.start();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(threads.submit(() -> {
+                    for (int i = 0; i < 2500; i++) {
+                        bus.publish(CirculationEvent.Type.CHECKOUT, thread + ":" + i, "M", 0);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        bus.close();
+        assertEquals(10_000, bus.getPublishedCount());
+        assertEquals(0, bus.getFailureCount());
+        assertEquals(0, bus.getBacklog());
+        assertEquals(10_000, received.get("audit").size());
+        assertEquals(10_000, received.get("metrics").size());
+    }
+
+    @Test
+    public void testBatchesEndWithFlag() throws Exception {
+        bus = new CirculationEventBus(16, CirculationEventBus.WaitStrategy.BLOCKING,
+                CirculationEventBus.Backpressure.BLOCK);
+        List<Boolean> flags = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("batcher", (event, endOfBatch) -> flags.add(endOfBatch));
+        bus.start();
+        for (int i = 0; i < 100; i++) {
+            bus.publish(CirculationEvent.Type.BOOK_ADDED, "B" + i, null, 0);
+        }
+        bus.close();
+        assertEquals(100, flags.size());
+        assertTrue(flags.get(99), "The final event always closes a batch");
+    }
+
+    @Test
+    public void testFailingHandlerDoesNotStopSubscriber() throws Exception {
+        bus = new CirculationEventBus(8, CirculationEventBus.WaitStrategy.SLEEPING,
+                CirculationEventBus.Backpressure.BLOCK);
+        BlockingQueue<String> seen = new LinkedBlockingQueue<>();
+        bus.subscribe("flaky", (event, endOfBatch) -> {
+            if (event.getBookId().equals("bad")) throw new IllegalStateException("boom");
+            seen.add(event.getBookId());
+        });
+        bus.start();
+        bus.publish(CirculationEvent.Type.CHECKOUT, "bad", "M1", 0);
+        bus.publish(CirculationEvent.Type.CHECKOUT, "good", "M1", 0);
+        assertEquals("good", take(seen));
+        assertEquals(1, bus.getFailureCount());
+    }
+
+    @Test
+    public void testLifecycle() {
+        bus = new CirculationEventBus(5, CirculationEventBus.WaitStrategy.BLOCKING,
+                CirculationEventBus.Backpressure.DROP);
+        assertEquals(8, bus.getCapacity());
+        assertFalse(bus.publish(CirculationEvent.Type.DONATION, null, null, 1), "Not started yet");
+        bus.start();
+        assertTrue(bus.isRunning());
+        assertThrows(IllegalStateException.class, bus::start);
+        assertThrows(IllegalStateException.class, () -> bus.subscribe("late", (event, endOfBatch) -> { }));
+        bus.close();
+        assertFalse(bus.isRunning());
+        assertFalse(bus.publish(CirculationEvent.Type.DONATION, null, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CirculationEventBus(0,
+                CirculationEventBus.WaitStrategy.BLOCKING, CirculationEventBus.Backpressure.DROP));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertySubscriberSeesEveryEventInOrder(
+            @ForAll @IntRange(min = 1, max = 64) int capacity,
+            @ForAll @IntRange(min = 0, max = 300) int count
+    ) {
+        CirculationEventBus local = new CirculationEventBus(capacity, CirculationEventBus.WaitStrategy.YIELDING,
+                CirculationEventBus.Backpressure.BLOCK);
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        local.subscribe("order", (event, endOfBatch) -> sequences.add(event.getSequence()));
+        local.start();
+        for (int i = 0; i < count; i++) {
+            local.publish(CirculationEvent.Type.RETURN, "B", "M", 0);
+        }
+        local.close();
+        assertEquals(count, sequences.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Long.valueOf(i), sequences.get(i));
+        }
+    }
+}
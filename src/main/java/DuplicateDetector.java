@@ -0,0 +1,381 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Finds catalog records that probably describe the same book: bulk purchases and manual
+ * entries often add the same title again with a slightly different spelling or ISBN format.
+ *
+ * Two records are linked when their ISBNs agree once normalized (hyphens and spaces dropped,
+ * ISBN-10 turned into ISBN-13), or when their titles and authors are similar. Similarity is
+ * the share of character trigrams the two have in common (Jaccard), estimated by MinHash:
+ * every record gets a signature of SIGNATURE_SIZE minimum hashes of its trigrams, and two
+ * signatures agree in about that share of positions. Locality-sensitive hashing avoids
+ * comparing every pair: the signature is cut into BANDS bands, records whose band matches
+ * share a bucket, and a new record is only compared with the last few records of its buckets.
+ * Similar records nearly always share a bucket (a pair with similarity 0.8 does so with
+ * probability 0.98, one with 0.3 with probability 0.06). Linked records form clusters,
+ * transitively, using union-find.
+ *
+ * addAll computes signatures in parallel and fills every band's buckets as a separate task.
+ * add handles one new record, and as a CirculationEventBus handler the detector follows
+ * books being added and removed, so only new additions cost anything. Removed records
+ * leave clusters at once. A record edited in place keeps the signature it was added with
+ * until it is removed and added again.
+ */
+public class DuplicateDetector implements CirculationEventBus.Handler {
+    public static final int SIGNATURE_SIZE = 32;
+    public static final int BANDS = 8;
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+    public static final double DEFAULT_THRESHOLD = 0.6;
+    // A new record is compared with at most this many live records per bucket
+    private static final int COMPARISONS = 4;
+    // ... found within this many steps along the bucket
+    private static final int BUCKET_STEPS = 16;
+    private static final int CHUNK = 4096;
+    // Minimum hash h of a trigram t is the least (t * MULTIPLIERS[h] + OFFSETS[h]) over the
+    // record's trigrams; t itself is already well mixed, so a multiply-add per hash suffices
+    private static final int[] MULTIPLIERS = new int[SIGNATURE_SIZE];
+    private static final int[] OFFSETS = new int[SIGNATURE_SIZE];
+
+    static {
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            MULTIPLIERS[i] = mix(2 * i + 1) | 1;
+            OFFSETS[i] = mix(2 * i + 2);
+        }
+    }
+
+    private final double threshold;
+    private final ForkJoinPool pool;
+    private final Function<String, Book> bookById;
+    // Record number -> book, or null once removed
+    private final List<Book> records = new ArrayList<>();
+    private final Map<String, Integer> recordIds = new HashMap<>();
+    // Record r's signature is signatures[r * SIGNATURE_SIZE ...], 16 bits per minimum hash
+    private char[] signatures = new char[0];
+    private final Band[] bands = new Band[BANDS];
+    // Normalized ISBN -> records with that ISBN
+    private final Map<String, List<Integer>> byIsbn = new HashMap<>();
+    // Linked record pairs, packed as (a << 32) | b
+    private long[] links = new long[16];
+    private int linkCount;
+
+    // Creates a detector that follows a library's additions when subscribed to its events
+    public DuplicateDetector(Library library) {
+        this(DEFAULT_THRESHOLD, ForkJoinPool.commonPool(), library::getBookById);
+    }
+
+    // Creates a detector linking records at least 'threshold' similar, working on 'pool';
+    // bookById resolves the book IDs of bus events
+    public DuplicateDetector(double threshold, ForkJoinPool pool, Function<String, Book> bookById) {
+        if (!(threshold > 0 && threshold <= 1)) throw new IllegalArgumentException("Threshold must be in (0, 1]");
+        this.threshold = threshold;
+        this.pool = pool;
+        this.bookById = bookById;
+        for (int b = 0; b < BANDS; b++) {
+            bands[b] = new Band(b);
+        }
+    }
+
+    // A group of records that probably describe the same book
+    public static final class Cluster {
+        private final List<Book> books;
+
+        private Cluster(List<Book> books) {
+            this.books = books;
+        }
+
+        // Returns the records, in the order they were added
+        public List<Book> getBooks() {
+            return books;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Book book : books) {
+                if (text.length() > 0) text.append(", ");
+                text.append(book.getBookId());
+            }
+            return text.toString();
+        }
+    }
+
+    @Override
+    public void onEvent(CirculationEvent event, boolean endOfBatch) {
+        if (event.getType() == CirculationEvent.Type.BOOK_ADDED) {
+            Book book = bookById.apply(event.getBookId());
+            if (book != null) add(book);
+        } else if (event.getType() == CirculationEvent.Type.BOOK_REMOVED) {
+            remove(event.getBookId());
+        }
+    }
+
+    // Adds one record, linking it to the records it duplicates
+    public void add(Book book) {
+        addAll(Collections.singletonList(book));
+    }
+
+    // Adds many records, computing signatures and filling buckets in parallel.
+    // A book whose ID is already present is skipped.
+    public synchronized void addAll(Collection<Book> books) {
+        int from = records.size();
+        for (Book book : books) {
+            if (recordIds.putIfAbsent(book.getBookId(), records.size()) == null) records.add(book);
+        }
+        int to = records.size();
+        if (from == to) return;
+        if (signatures.length < to * SIGNATURE_SIZE) {
+            signatures = Arrays.copyOf(signatures, Math.max(to, signatures.length / SIGNATURE_SIZE * 2) * SIGNATURE_SIZE);
+        }
+        if (to - from <= CHUNK) {
+            sign(from, to);
+            for (Band band : bands) {
+                addLinks(band.insert(from, to));
+            }
+        } else {
+            List<ForkJoinTask<?>> signing = new ArrayList<>();
+            for (int start = from; start < to; start += CHUNK) {
+                int first = start;
+                int end = Math.min(to, start + CHUNK);
+                signing.add(pool.submit(() -> sign(first, end)));
+            }
+            for (ForkJoinTask<?> task : signing) {
+                task.join();
+            }
+            List<ForkJoinTask<long[]>> banding = new ArrayList<>(BANDS);
+            for (Band band : bands) {
+                banding.add(pool.submit(() -> band.insert(from, to)));
+            }
+            for (ForkJoinTask<long[]> task : banding) {
+                addLinks(task.join());
+            }
+        }
+        for (int record = from; record < to; record++) {
+            String isbn = normalizeIsbn(records.get(record).getIsbn());
+            if (isbn == null) continue;
+            List<Integer> same = byIsbn.computeIfAbsent(isbn, k -> new ArrayList<>());
+            for (int other : same) {
+                if (records.get(other) != null) {
+                    addLinks(new long[]{pair(record, other)});
+                    break;
+                }
+            }
+            same.add(record);
+        }
+    }
+
+    // Removes a record by book ID; returns false if it was not there
+    public synchronized boolean remove(String bookId) {
+        Integer record = recordIds.remove(bookId);
+        if (record == null) return false;
+        records.set(record, null);
+        return true;
+    }
+
+    // Returns the number of records
+    public synchronized int size() {
+        return recordIds.size();
+    }
+
+    // Returns the clusters of likely duplicates, largest first. Groups that are only copies
+    // of one record (same ISBN, title and author) are left out, as those are kept on purpose.
+    public synchronized List<Cluster> clusters() {
+        int[] parent = new int[records.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        for (int i = 0; i < linkCount; i++) {
+            int a = (int) (links[i] >>> 32);
+            int b = (int) links[i];
+            if (records.get(a) == null || records.get(b) == null) continue;
+            int rootA = find(parent, a);
+            int rootB = find(parent, b);
+            // The smaller number becomes the root, so each cluster is listed by its oldest record
+            if (rootA != rootB) parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+        Map<Integer, List<Book>> groups = new LinkedHashMap<>();
+        for (int record = 0; record < parent.length; record++) {
+            Book book = records.get(record);
+            if (book != null && find(parent, record) != record) {
+                groups.computeIfAbsent(find(parent, record), root -> new ArrayList<>(List.of(records.get(root)))).add(book);
+            }
+        }
+        List<Cluster> clusters = new ArrayList<>();
+        for (List<Book> group : groups.values()) {
+            if (!copiesOnly(group)) clusters.add(new Cluster(group));
+        }
+        clusters.sort((a, b) -> Integer.compare(b.books.size(), a.books.size()));
+        return clusters;
+    }
+
+    private static int find(int[] parent, int record) {
+        while (parent[record] != record) {
+            parent[record] = parent[parent[record]];
+            record = parent[record];
+        }
+        return record;
+    }
+
+    private static boolean copiesOnly(List<Book> group) {
+        Book first = group.get(0);
+        for (Book book : group) {
+            if (!Objects.equals(book.getIsbn(), first.getIsbn()) || !Objects.equals(book.getName(), first.getName())
+                    || !Objects.equals(book.getAuthor(), first.getAuthor())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the estimated similarity of two records' titles and authors, from 0 to 1
+    public synchronized double similarity(String bookId, String otherBookId) {
+        Integer a = recordIds.get(bookId);
+        Integer b = recordIds.get(otherBookId);
+        if (a == null || b == null) throw new IllegalArgumentException("Book not found");
+        return agreement(a, b);
+    }
+
+    private double agreement(int a, int b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (signatures[a * SIGNATURE_SIZE + i] == signatures[b * SIGNATURE_SIZE + i]) same++;
+        }
+        return (double) same / SIGNATURE_SIZE;
+    }
+
+    private void addLinks(long[] pairs) {
+        if (linkCount + pairs.length > links.length) {
+            links = Arrays.copyOf(links, Math.max(linkCount + pairs.length, links.length * 2));
+        }
+        System.arraycopy(pairs, 0, links, linkCount, pairs.length);
+        linkCount += pairs.length;
+    }
+
+    private static long pair(int a, int b) {
+        return (long) a << 32 | b;
+    }
+
+    // Computes the signatures of records from..to-1
+    private void sign(int from, int to) {
+        int[] minimums = new int[SIGNATURE_SIZE];
+        for (int record = from; record < to; record++) {
+            Book book = records.get(record);
+            String text = String.join(" ", BookSearchIndex.tokenize(book.getName())) + "|"
+                    + String.join(" ", BookSearchIndex.tokenize(book.getAuthor()));
+            Arrays.fill(minimums, Integer.MAX_VALUE);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                int shingle = mix(text.charAt(i) * 961 + text.charAt(i + 1) * 31 + text.charAt(i + 2));
+                for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                    minimums[h] = Math.min(minimums[h], shingle * MULTIPLIERS[h] + OFFSETS[h]);
+                }
+            }
+            for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                // A minimum is a small number, so keep 16 bits of its hash rather than of itself
+                signatures[record * SIGNATURE_SIZE + h] = (char) mix(minimums[h]);
+            }
+        }
+    }
+
+    // One band of the signatures: records with equal rows share a bucket, kept as a chain
+    // from the newest record back through 'previous'
+    private final class Band {
+        private final int offset;
+        // Open-addressing table holding, per bucket, its newest record plus 1 (0 marks a free slot)
+        private int[] newest = new int[16];
+        private int buckets;
+        private int[] previous = new int[16];
+
+        private Band(int band) {
+            this.offset = band * ROWS;
+        }
+
+        // Files records from..to-1 and returns the links found for them
+        private long[] insert(int from, int to) {
+            if (previous.length < to) previous = Arrays.copyOf(previous, Math.max(to, previous.length * 2));
+            long[] found = new long[to - from];
+            int count = 0;
+            for (int record = from; record < to; record++) {
+                if ((buckets + 1) * 2 > newest.length) grow();
+                int slot = slot(record);
+                int next = newest[slot] - 1;
+                previous[record] = next;
+                if (next < 0) buckets++;
+                newest[slot] = record + 1;
+                int compared = 0;
+                for (int steps = 0; next >= 0 && steps < BUCKET_STEPS && compared < COMPARISONS; steps++) {
+                    if (records.get(next) != null) {
+                        if (agreement(record, next) >= threshold) {
+                            found[count++] = pair(record, next);
+                            break;
+                        }
+                        compared++;
+                    }
+                    next = previous[next];
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        // Returns the slot of the record's bucket, or the empty slot where it belongs
+        private int slot(int record) {
+            int mask = newest.length - 1;
+            int i = (int) mixLong(key(record)) & mask;
+            while (newest[i] != 0 && key(newest[i] - 1) != key(record)) i = (i + 1) & mask;
+            return i;
+        }
+
+        private long key(int record) {
+            long key = 0;
+            for (int row = 0; row < ROWS; row++) {
+                key = key << 16 | signatures[record * SIGNATURE_SIZE + offset + row];
+            }
+            return key;
+        }
+
+        private void grow() {
+            int[] old = newest;
+            newest = new int[old.length * 2];
+            for (int head : old) {
+                if (head != 0) newest[slot(head - 1)] = head;
+            }
+        }
+    }
+
+    // Returns an ISBN with only its digits (and a final X), as ISBN-13, or null if it is not
+    // 10 or 13 characters long then
+    public static String normalizeIsbn(String isbn) {
+        if (isbn == null) return null;
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+            else if ((c == 'X' || c == 'x') && digits.length() == 9) digits.append('X');
+        }
+        if (digits.length() == 13 && digits.indexOf("X") < 0) return digits.toString();
+        if (digits.length() != 10) return null;
+        // ISBN-10 to ISBN-13: prefix 978 and recompute the check digit over the first 12
+        String body = "978" + digits.substring(0, 9);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (body.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    // MurmurHash3's finalizer: spreads every input bit over the whole result
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static long mixLong(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
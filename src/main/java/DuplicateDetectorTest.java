@@ -0,0 +1,161 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test suite for the DuplicateDetector class (MinHash/LSH near-duplicate catalog records).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class DuplicateDetectorTest {
+
+    private DuplicateDetector detector;
+
+    @BeforeEach
+    public void setUp() {
+        detector = new DuplicateDetector(DuplicateDetector.DEFAULT_THRESHOLD, ForkJoinPool.commonPool(), id -> null);
+    }
+
+    private static List<String> ids(DuplicateDetector.Cluster cluster) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : cluster.getBooks()) ids.add(book.getBookId());
+        return ids;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testNearDuplicateTitlesAndIsbnFormatsFormOneCluster() {
+        detector.add(new Book("Harry Potter and the Philosopher's Stone", "J.K. Rowling", 1997, "978-0747532699", "B1", "Fantasy"));
+        detector.add(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B2", "Science Fiction"));
+        detector.add(new Book("Harry Potter and the Philosophers Stone", "J. K. Rowling", 1997, "978 0747532699", "B3", "Fantasy"));
+        detector.add(new Book("Harry Potter & the Philosopher's Stone", "Rowling", 1997, "0-7475-3269-9", "B4", "Fantasy"));
+        detector.add(new Book("Emma", "Jane Austen", 1815, "978-0141439587", "B5", "Romance"));
+
+        List<DuplicateDetector.Cluster> clusters = detector.clusters();
+        assertEquals(1, clusters.size());
+        assertEquals(List.of("B1", "B3", "B4"), ids(clusters.get(0)));
+        assertEquals("B1, B3, B4", clusters.get(0).toString());
+        assertTrue(detector.similarity("B1", "B3") > 0.6);
+        assertTrue(detector.similarity("B1", "B5") < 0.3);
+    }
+
+    @Test
+    public void testCopiesOfOneRecordAreNotReported() {
+        detector.add(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B1", "Science Fiction"));
+        detector.add(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B2", "Science Fiction"));
+        assertTrue(detector.clusters().isEmpty(), "Several copies of one ISBN are kept on purpose");
+        detector.add(new Book("Dune.", "Frank  Herbert", 1965, "978 0441 013593", "B3", "Science Fiction"));
+        assertEquals(List.of("B1", "B2", "B3"), ids(detector.clusters().get(0)));
+    }
+
+    @Test
+    public void testNormalizeIsbn() {
+        assertEquals("9780747532699", DuplicateDetector.normalizeIsbn("0-7475-3269-9"));
+        assertEquals("9780747532699", DuplicateDetector.normalizeIsbn("978-0-7475-3269-9"));
+        assertEquals("9780080000008", DuplicateDetector.normalizeIsbn("ISBN 0 08 000000 X"), "X is a check digit");
+        assertNull(DuplicateDetector.normalizeIsbn("ISBN1"));
+        assertNull(DuplicateDetector.normalizeIsbn(null));
+    }
+
+    @Test
+    public void testFollowsTheLibraryThroughTheEventBus() {
+        Library library = new Library();
+        DuplicateDetector fed = new DuplicateDetector(library);
+        fed.addAll(library.getAllBooks());
+        CirculationEventBus events = new CirculationEventBus();
+        events.subscribe("duplicates", fed);
+        events.start();
+        library.setEventBus(events);
+
+        library.addBook(new Book("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0544003415", "B1", "Fantasy"));
+        library.addBook(new Book("Lord of the Rings", "JRR Tolkien", 1954, "0-544-00341-X", "B2", "Fantasy"));
+        library.addBook(new Book("The Lord of the Rings", "J.R.R. Tolkien", 1954, "9780544003415", "B3", "Fantasy"));
+        library.removeBook("B3");
+        events.close();
+
+        assertEquals(2, fed.size());
+        assertEquals(List.of("B1", "B2"), ids(fed.clusters().get(0)));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testRemovedRecordsLeaveTheirClusters() {
+        detector.add(new Book("Pride and Prejudice", "Jane Austen", 1813, "978-0141439518", "B1", "Romance"));
+        detector.add(new Book("Pride & Prejudice", "Jane Austen", 1813, "978-0141439518", "B2", "Romance"));
+        detector.add(new Book("Pride and Prejudice", "Jane Austen", 1813, "978-0141439518", "B1", "Romance"));
+        assertEquals(2, detector.size(), "A book ID already present is skipped");
+        assertEquals(1, detector.clusters().size());
+        assertTrue(detector.remove("B2"));
+        assertFalse(detector.remove("B2"));
+        assertTrue(detector.clusters().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> detector.similarity("B1", "B2"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateDetector(0, ForkJoinPool.commonPool(), id -> null));
+    }
+
+    @Test
+    public void testBulkLoadRunsInParallelChunks() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            books.add(new Book("Collected Works Volume " + i, "Author " + (i % 50), 2000, "ISBN" + i, "B" + i, null));
+        }
+        books.add(new Book("Collected Works Volume 42", "Author 42", 2000, "ISBN-X", "DUP", null));
+        detector.addAll(books);
+        assertEquals(10_001, detector.size());
+        boolean found = false;
+        for (DuplicateDetector.Cluster cluster : detector.clusters()) {
+            found |= ids(cluster).containsAll(List.of("B42", "DUP"));
+        }
+        assertTrue(found);
+
+        DuplicateDetector oneByOne = new DuplicateDetector(DuplicateDetector.DEFAULT_THRESHOLD, ForkJoinPool.commonPool(), id -> null);
+        for (Book book : books) oneByOne.add(book);
+        assertEquals(detector.clusters().toString(), oneByOne.clusters().toString());
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyBulkAndIncrementalAgreeAndIsbnsAlwaysLink(
+            @ForAll @IntRange(min = 1, max = 300) int count,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        String[] words = {"night", "garden", "river", "stone", "glass", "winter", "crown", "shadow"};
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String title = words[random.nextInt(8)] + " " + words[random.nextInt(8)] + " " + words[random.nextInt(8)];
+            String isbn = "978-" + (1000000000L + random.nextInt(count));
+            books.add(new Book(title, "Author " + random.nextInt(5), 2000, isbn, "B" + i, null));
+        }
+        DuplicateDetector bulk = new DuplicateDetector(0.6, ForkJoinPool.commonPool(), id -> null);
+        DuplicateDetector incremental = new DuplicateDetector(0.6, ForkJoinPool.commonPool(), id -> null);
+        bulk.addAll(books);
+        for (Book book : books) incremental.add(book);
+        assertEquals(bulk.clusters().toString(), incremental.clusters().toString());
+
+        Map<String, Integer> clusterOf = new HashMap<>();
+        List<DuplicateDetector.Cluster> clusters = bulk.clusters();
+        for (int c = 0; c < clusters.size(); c++) {
+            for (Book book : clusters.get(c).getBooks()) clusterOf.put(book.getBookId(), c);
+        }
+        Map<String, Book> firstWithIsbn = new HashMap<>();
+        for (Book book : books) {
+            Book first = firstWithIsbn.putIfAbsent(book.getIsbn(), book);
+            if (first == null || first.getName().equals(book.getName()) && first.getAuthor().equals(book.getAuthor())) {
+                continue;
+            }
+            assertNotNull(clusterOf.get(book.getBookId()));
+            assertEquals(clusterOf.get(first.getBookId()), clusterOf.get(book.getBookId()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.*;
+
+/**
+ * How many books match a BookQuery, in total and broken down by availability, genre and
+ * decade, e.g. "Available (1,204) / Fantasy (8,310) / 2020s (3,002)". Genres are listed most
+ * books first and decades oldest first; values with no matching books are left out.
+ */
+public final class FacetCounts {
+    static final FacetCounts NONE = new FacetCounts(0, 0, Collections.emptyMap(), Collections.emptyMap());
+
+    private final int total;
+    private final int available;
+    private final Map<String, Integer> byGenre;
+    private final Map<Integer, Integer> byDecade;
+
+    FacetCounts(int total, int available, Map<String, Integer> byGenre, Map<Integer, Integer> byDecade) {
+        this.total = total;
+        this.available = available;
+        List<Map.Entry<String, Integer>> genres = new ArrayList<>(byGenre.entrySet());
+        genres.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> genre : genres) {
+            sorted.put(genre.getKey(), genre.getValue());
+        }
+        this.byGenre = Collections.unmodifiableMap(sorted);
+        this.byDecade = Collections.unmodifiableMap(new TreeMap<>(byDecade));
+    }
+
+    // Returns the number of matching books
+    public int getTotal() {
+        return total;
+    }
+
+    // Returns how many of them are available
+    public int getAvailable() {
+        return available;
+    }
+
+    // Returns how many of them are lent
+    public int getLent() {
+        return total - available;
+    }
+
+    // Returns genre -> matching books, most first
+    public Map<String, Integer> getByGenre() {
+        return byGenre;
+    }
+
+    // Returns first year of the decade (e.g. 2020) -> matching books, oldest first
+    public Map<Integer, Integer> getByDecade() {
+        return byDecade;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner text = new StringJoiner(" / ");
+        text.add("Available (" + available + ")");
+        for (Map.Entry<String, Integer> genre : byGenre.entrySet()) {
+            text.add(genre.getKey() + " (" + genre.getValue() + ")");
+        }
+        for (Map.Entry<Integer, Integer> decade : byDecade.entrySet()) {
+            text.add(decade.getKey() + "s (" + decade.getValue() + ")");
+        }
+        return text.toString();
+    }
+}
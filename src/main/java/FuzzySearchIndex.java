@@ -0,0 +1,600 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant search over book titles and authors, so "Hobit" still finds "The Hobbit".
+ *
+ * Every distinct word of a title or author is kept once in a dictionary, and each word's
+ * padded trigrams ("$$h", "$ho", "hob", ..., "t$$") point back to it, filed by word length.
+ * A query word allows 0 edits up to 2 letters, 1 edit up to 5 and 2 edits beyond that. Its
+ * candidate words are those of a nearby length that share enough trigrams: each edit can
+ * spoil at most three of them. Only the candidates are checked with a Levenshtein distance
+ * that gives up as soon as the bound is exceeded.
+ *
+ * A book scores for every query word it matches, more for a closer match and for a title
+ * match than an author match, weighted so that rare words count more than common ones.
+ * Available copies get a small boost, read from each book as it is ranked, so checkouts and
+ * returns never touch the index. The best 'limit' books are kept in a bounded heap.
+ * Query words are taken rarest first, and each one's books closest match first. Once 'limit'
+ * books score at least what any book not reached yet still could, the rest of the postings
+ * are skipped and the remaining words only rescore the books found, so a common word like
+ * "the" never has all of its books visited when a rarer word or exact match decides.
+ * When no such point comes, for example two misspelt words that each appear in a tenth of
+ * the catalog, gathering stops at a fixed number of books anyway, so that latency does not
+ * grow with the catalog. The books gathered then are those with the closest matches of the
+ * rarest word, and the ranking among them stays exact.
+ *
+ * Books are indexed under small internal document numbers, given out in increasing order, so
+ * adding a book only appends to its words' postings, however common the words. Removing a
+ * book only marks its number dead; queries skip dead numbers in the postings. An edited book
+ * is removed and added again under a new number. Once the dead numbers outnumber the live
+ * ones (and MIN_DEAD_DOCUMENTS), the books are renumbered densely in their current order and
+ * the dead numbers dropped from every posting list, so each update costs O(1) per word
+ * amortized and the document table stays within twice the books indexed. Words stay in the
+ * dictionary once seen. Queries share a read lock and updates take the write lock.
+ */
+public class FuzzySearchIndex {
+    private static final float TITLE_WEIGHT = 2f;
+    private static final float AUTHOR_WEIGHT = 1f;
+    private static final float AVAILABLE_BOOST = 0.1f;
+
+    // Default number of books a query gathers before it only rescores what it has
+    static final int DEFAULT_CANDIDATE_LIMIT = 2048;
+    // Rescoring reads a word's postings when they are at most this many per book found
+    private static final int POSTINGS_PER_RESCORE = 32;
+    // Removed books are renumbered away only once there are at least this many, so small
+    // indexes are not renumbered on every other edit
+    static final int MIN_DEAD_DOCUMENTS = 1024;
+
+    private final int candidateLimit;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Dictionary: word <-> word number, with the books using each word in a title or as author
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final List<IntList> titlePostings = new ArrayList<>();
+    private final List<IntList> authorPostings = new ArrayList<>();
+    // Trigram + (char) word length -> word numbers
+    private final Map<String, IntList> grams = new HashMap<>();
+    // Document number -> indexed book, or null once removed
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<Book, Integer> docIds = new IdentityHashMap<>();
+
+    // A book as indexed: its title and author words as word numbers
+    private static final class Doc {
+        private final Book book;
+        private final int[] titleWords;
+        private final int[] authorWords;
+
+        private Doc(Book book, int[] titleWords, int[] authorWords) {
+            this.book = book;
+            this.titleWords = titleWords;
+            this.authorWords = authorWords;
+        }
+    }
+
+    public FuzzySearchIndex() {
+        this(DEFAULT_CANDIDATE_LIMIT);
+    }
+
+    // Creates an index whose queries gather at most 'candidateLimit' books
+    public FuzzySearchIndex(int candidateLimit) {
+        if (candidateLimit < 1) throw new IllegalArgumentException("Candidate limit must be positive");
+        this.candidateLimit = candidateLimit;
+    }
+
+    // Indexes a book under its current title and author
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexes many books under one hold of the write lock, e.g. a whole import chunk or snapshot
+    public void addAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            for (Book book : books) addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(Book book) {
+        if (docIds.containsKey(book)) return;
+        int[] titleWords = intern(BookSearchIndex.tokenize(book.getName()));
+        int[] authorWords = intern(BookSearchIndex.tokenize(book.getAuthor()));
+        int doc = docs.size();
+        docs.add(new Doc(book, titleWords, authorWords));
+        for (int word : titleWords) titlePostings.get(word).add(doc);
+        for (int word : authorWords) authorPostings.get(word).add(doc);
+        docIds.put(book, doc);
+    }
+
+    // Removes a book, using the title and author it was indexed under
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(book);
+            if (doc == null) return;
+            Doc indexed = docs.set(doc, null);
+            for (int word : indexed.titleWords) titlePostings.get(word).dead++;
+            for (int word : indexed.authorWords) authorPostings.get(word).dead++;
+            int dead = docs.size() - docIds.size();
+            if (dead >= Math.max(docIds.size(), MIN_DEAD_DOCUMENTS)) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Numbers the indexed books 0, 1, ... in their current order and drops the removed ones from
+    // the postings. The order is kept, so every posting list stays in ascending order.
+    private void compact() {
+        int[] renumbered = new int[docs.size()];
+        int live = 0;
+        for (int doc = 0; doc < docs.size(); doc++) {
+            Doc indexed = docs.get(doc);
+            if (indexed == null) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = live;
+            if (doc != live) {
+                docs.set(live, indexed);
+                docIds.put(indexed.book, live);
+            }
+            live++;
+        }
+        docs.subList(live, docs.size()).clear();
+        for (IntList postings : titlePostings) postings.renumber(renumbered);
+        for (IntList postings : authorPostings) postings.renumber(renumbered);
+    }
+
+    // Returns the number of indexed books
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the number of document numbers in use or dead and not yet renumbered away
+    int documentSlots() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the distinct word numbers of some tokens, adding new words to the dictionary
+    private int[] intern(List<String> tokens) {
+        IntList ids = new IntList();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            Integer id = wordIds.get(token);
+            if (id == null) {
+                id = words.size();
+                wordIds.put(token, id);
+                words.add(token);
+                titlePostings.add(new IntList());
+                authorPostings.add(new IntList());
+                for (String gram : trigrams(token)) {
+                    grams.computeIfAbsent(gram + (char) token.length(), g -> new IntList()).add(id);
+                }
+            }
+            ids.add(id);
+        }
+        return ids.toArray();
+    }
+
+    // Returns up to 'limit' books matching the query, best first
+    public List<Book> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(BookSearchIndex.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int books = Math.max(1, docIds.size());
+            // Match every query word against the dictionary, rarest first
+            List<TermMatch> matches = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                matches.add(match(term, books));
+            }
+            matches.sort(Comparator.comparingLong(match -> match.postings));
+            // rest[i]: the most a book can still gain from query word i onwards
+            float[] rest = new float[matches.size() + 1];
+            rest[matches.size()] = AVAILABLE_BOOST;
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                rest[i] = rest[i + 1] + matches.get(i).bound();
+            }
+            IntFloatMap scores = new IntFloatMap();
+            boolean complete = false;
+            for (int i = 0; i < matches.size(); i++) {
+                if (!complete && i > 0) complete = threshold(scores, null, 0, limit) >= rest[i];
+                if (complete) {
+                    rescore(scores, matches.get(i), null);
+                } else {
+                    complete = !gather(scores, matches.get(i), rest[i + 1], limit);
+                }
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The dictionary words a query word matched, with their closeness, and the word's weight
+    private static final class TermMatch {
+        private final IntFloatMap words = new IntFloatMap();
+        private float closest;
+        private long postings;
+        private float weight;
+
+        // The most a book can score for this query word
+        private float bound() {
+            return weight * TITLE_WEIGHT * closest;
+        }
+    }
+
+    private TermMatch match(String term, int books) {
+        TermMatch match = new TermMatch();
+        int edits = term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2;
+        List<String> termGrams = new ArrayList<>(new LinkedHashSet<>(trigrams(term)));
+        // Each word has one length, so one count per word serves all the lengths tried
+        IntFloatMap shared = new IntFloatMap();
+        for (int length = Math.max(1, term.length() - edits); length <= term.length() + edits; length++) {
+            for (String gram : termGrams) {
+                IntList ids = grams.get(gram + (char) length);
+                if (ids == null) continue;
+                for (int i = 0; i < ids.size; i++) shared.add(ids.values[i], 1);
+            }
+        }
+        int fewest = term.length() + 2 - 3 * edits;
+        for (int i = 0; i < shared.capacity(); i++) {
+            // Most words fail even the count needed by a word no longer than the term
+            if (!shared.used(i) || shared.valueAt(i) < fewest) continue;
+            String word = words.get(shared.keyAt(i));
+            // q-gram lemma: each edit spoils at most 3 of the max(length) + 2 trigrams
+            int needed = Math.max(1, Math.max(term.length(), word.length()) + 2 - 3 * edits);
+            if (shared.valueAt(i) < needed) continue;
+            int distance = distance(term, word, edits);
+            if (distance > edits) continue;
+            long postings = titlePostings.get(shared.keyAt(i)).live() + authorPostings.get(shared.keyAt(i)).live();
+            if (postings == 0) continue;
+            float closeness = 1f - (float) distance / (term.length() + 1);
+            match.words.put(shared.keyAt(i), closeness);
+            match.closest = Math.max(match.closest, closeness);
+            match.postings += postings;
+        }
+        // Rare words weigh more, as in tf-idf; a word in every book still counts a little
+        match.weight = (float) Math.log(1 + (double) books / Math.max(1, match.postings)) + 0.1f;
+        return match;
+    }
+
+    // Adds the score of the books containing one of the matched words, best words first.
+    // Stops early, returning false, once 'limit' books already score at least as much as any
+    // book not yet reached could, or once the candidate limit is reached.
+    private boolean gather(IntFloatMap scores, TermMatch match, float rest, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i < match.words.capacity(); i++) {
+            if (!match.words.used(i)) continue;
+            float closeness = match.words.valueAt(i);
+            lists.add(new Postings(TITLE_WEIGHT * closeness, titlePostings.get(match.words.keyAt(i))));
+            lists.add(new Postings(AUTHOR_WEIGHT * closeness, authorPostings.get(match.words.keyAt(i))));
+        }
+        lists.sort((a, b) -> Float.compare(b.contribution, a.contribution));
+        IntFloatMap best = new IntFloatMap();
+        int visited = 0;
+        int nextCheck = Math.max(limit, 1024);
+        boolean stopped = false;
+        for (Postings list : lists) {
+            float reachable = match.weight * list.contribution + rest;
+            for (int j = 0; j < list.docs.size && !stopped; j++) {
+                int doc = list.docs.values[j];
+                if (docs.get(doc) == null) continue;
+                best.max(doc, list.contribution);
+                // Checking costs a pass over the books found, so check at doubling intervals
+                if (++visited >= nextCheck) {
+                    nextCheck = visited <= Integer.MAX_VALUE / 2 ? visited * 2 : Integer.MAX_VALUE;
+                    stopped = threshold(scores, best, match.weight, limit) >= reachable;
+                }
+                stopped |= scores.size + best.size >= candidateLimit;
+            }
+            if (stopped) break;
+        }
+        // Lists were taken best first, so a book reached has its best score for this word already;
+        // books found by earlier words but not reached may still be in a list that was skipped
+        if (stopped) rescore(scores, match, best);
+        for (int i = 0; i < best.capacity(); i++) {
+            if (best.used(i)) scores.add(best.keyAt(i), match.weight * best.valueAt(i));
+        }
+        return !stopped;
+    }
+
+    // A posting list with what each of its books scores for the query word
+    private static final class Postings {
+        private final float contribution;
+        private final IntList docs;
+
+        private Postings(float contribution, IntList docs) {
+            this.contribution = contribution;
+            this.docs = docs;
+        }
+    }
+
+    // Adds a query word's score to the books already found, except for the books in 'skip'.
+    // Reading the word's postings in order is much cheaper per book than visiting the books,
+    // so that is done unless the postings are many times more than the books found.
+    private void rescore(IntFloatMap scores, TermMatch match, IntFloatMap skip) {
+        if (match.postings <= (long) POSTINGS_PER_RESCORE * scores.size) {
+            IntFloatMap best = new IntFloatMap();
+            for (int i = 0; i < match.words.capacity(); i++) {
+                if (!match.words.used(i)) continue;
+                float closeness = match.words.valueAt(i);
+                probe(scores, skip, best, titlePostings.get(match.words.keyAt(i)), TITLE_WEIGHT * closeness);
+                probe(scores, skip, best, authorPostings.get(match.words.keyAt(i)), AUTHOR_WEIGHT * closeness);
+            }
+            for (int i = 0; i < best.capacity(); i++) {
+                if (best.used(i)) scores.add(best.keyAt(i), match.weight * best.valueAt(i));
+            }
+            return;
+        }
+        for (int i = 0; i < scores.capacity(); i++) {
+            if (!scores.used(i) || skip != null && skip.contains(scores.keyAt(i))) continue;
+            Doc doc = docs.get(scores.keyAt(i));
+            float best = 0;
+            for (int word : doc.titleWords) best = Math.max(best, TITLE_WEIGHT * match.words.get(word));
+            for (int word : doc.authorWords) best = Math.max(best, AUTHOR_WEIGHT * match.words.get(word));
+            scores.addAt(i, match.weight * best);
+        }
+    }
+
+    private static void probe(IntFloatMap scores, IntFloatMap skip, IntFloatMap best, IntList docs, float contribution) {
+        for (int j = 0; j < docs.size; j++) {
+            int doc = docs.values[j];
+            if (scores.contains(doc) && (skip == null || !skip.contains(doc))) best.max(doc, contribution);
+        }
+    }
+
+    // Returns the 'limit'-th best score so far, counting the word being gathered and the
+    // availability boost, or -infinity while fewer books were found
+    private float threshold(IntFloatMap scores, IntFloatMap pending, float weight, int limit) {
+        int found = scores.size + (pending == null ? 0 : pending.size);
+        if (found < limit) return Float.NEGATIVE_INFINITY;
+        float[] values = new float[found];
+        int n = 0;
+        for (int i = 0; i < scores.capacity(); i++) {
+            if (!scores.used(i)) continue;
+            int doc = scores.keyAt(i);
+            float pendingScore = pending == null ? 0 : weight * pending.get(doc);
+            values[n++] = scores.valueAt(i) + pendingScore + boost(doc);
+        }
+        if (pending != null) {
+            for (int i = 0; i < pending.capacity(); i++) {
+                if (!pending.used(i) || scores.contains(pending.keyAt(i))) continue;
+                values[n++] = weight * pending.valueAt(i) + boost(pending.keyAt(i));
+            }
+        }
+        return n < limit ? Float.NEGATIVE_INFINITY : select(values, n, n - limit);
+    }
+
+    private float boost(int doc) {
+        return docs.get(doc).book.isAvailable() ? AVAILABLE_BOOST : 0;
+    }
+
+    // Returns the value that would be at index k if the first n values were sorted (quickselect)
+    private static float select(float[] values, int n, int k) {
+        int low = 0;
+        int high = n - 1;
+        while (low < high) {
+            float pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    float swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return values[k];
+        }
+        return values[k];
+    }
+
+    // Picks the best books with a min-heap that never holds more than 'limit' of them
+    private List<Book> top(IntFloatMap scores, int limit) {
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                (a, b) -> a.score != b.score ? Float.compare(a.score, b.score) : Integer.compare(b.doc, a.doc));
+        for (int i = 0; i < scores.capacity(); i++) {
+            if (!scores.used(i)) continue;
+            int doc = scores.keyAt(i);
+            float score = scores.valueAt(i) + boost(doc);
+            if (score <= 0 || heap.size() == limit && score <= heap.peek().score) continue;
+            heap.add(new Hit(score, doc));
+            if (heap.size() > limit) heap.poll();
+        }
+        List<Book> books = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            books.add(docs.get(heap.poll().doc).book);
+        }
+        Collections.reverse(books);
+        return books;
+    }
+
+    private static final class Hit {
+        private final float score;
+        private final int doc;
+
+        private Hit(float score, int doc) {
+            this.score = score;
+            this.doc = doc;
+        }
+    }
+
+    // Returns a word's trigrams, padded so the first and last letters get their own
+    static List<String> trigrams(String word) {
+        String padded = "$$" + word + "$$";
+        List<String> trigrams = new ArrayList<>(word.length() + 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // Returns the Levenshtein distance of two words, or bound + 1 if it is larger than bound.
+    // Only a band of 2 * bound + 1 cells per row can stay within the bound, so only that is filled.
+    static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) return bound + 1;
+        int outside = bound + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = Math.min(j, outside);
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(b.length(), i + bound);
+            current[0] = Math.min(i, outside);
+            if (from > 1) current[from - 1] = outside;
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length()) current[to + 1] = outside;
+            if (rowMin > bound) return outside;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], outside);
+    }
+
+    // Growable list of ints
+    private static final class IntList {
+        private int[] values = new int[2];
+        private int size;
+        // In a posting list, the values whose document was removed since the last renumbering
+        private int dead;
+
+        private void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        // Returns the values whose document is still indexed, for a posting list
+        private int live() {
+            return size - dead;
+        }
+
+        // Maps each value through 'numbers', dropping those mapped to -1, for a posting list
+        private void renumber(int[] numbers) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int value = numbers[values[i]];
+                if (value >= 0) values[kept++] = value;
+            }
+            size = kept;
+            dead = 0;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Open-addressing map from int to float, so scoring does not box
+    private static final class IntFloatMap {
+        private int[] keys = new int[16];
+        private float[] values = new float[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int i = (hash ^ hash >>> 16) & mask;
+            while (used[i] && keys[i] != key) i = (i + 1) & mask;
+            return i;
+        }
+
+        private int claim(int key) {
+            if ((size + 1) * 2 > keys.length) grow();
+            int i = slot(key);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                values[i] = 0;
+                size++;
+            }
+            return i;
+        }
+
+        // claim() may grow the arrays, so it must run before 'values' is read
+        private void add(int key, float value) {
+            int i = claim(key);
+            values[i] += value;
+        }
+
+        private void put(int key, float value) {
+            int i = claim(key);
+            values[i] = value;
+        }
+
+        private void max(int key, float value) {
+            int i = claim(key);
+            values[i] = Math.max(values[i], value);
+        }
+
+        private boolean contains(int key) {
+            return used[slot(key)];
+        }
+
+        private float get(int key) {
+            int i = slot(key);
+            return used[i] ? values[i] : 0;
+        }
+
+        private void addAt(int slot, float value) {
+            values[slot] += value;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        private boolean used(int slot) {
+            return used[slot];
+        }
+
+        private int keyAt(int slot) {
+            return keys[slot];
+        }
+
+        private float valueAt(int slot) {
+            return values[slot];
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
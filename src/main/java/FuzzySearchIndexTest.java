@@ -0,0 +1,228 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+
+/**
+ * Test suite for the FuzzySearchIndex class and Library.searchBooksFuzzy.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class FuzzySearchIndexTest {
+
+    private Library library;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+        library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy"));
+        library.addBook(new Book("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0544003415", "B002", "Fantasy"));
+        library.addBook(new Book("Hobbies for Beginners", "Ann Smith", 2001, "978-0000000001", "B003", "Hobbies"));
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B004", "Science Fiction"));
+        library.addBook(new Book("Pride and Prejudice", "Jane Austen", 1813, "978-0141439518", "B005", "Romance"));
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) ids.add(book.getBookId());
+        return ids;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testTyposStillFindTheBook() {
+        assertNull(library.findBookByName("Hobit"), "Exact lookup stays exact.");
+        assertEquals("B001", library.searchBooksFuzzy("Hobit", 5).get(0).getBookId());
+        assertEquals("B001", library.searchBooksFuzzy("the hobbitt", 5).get(0).getBookId());
+        assertEquals("B005", library.searchBooksFuzzy("prejudise", 5).get(0).getBookId());
+        assertEquals(List.of("B004"), ids(library.searchBooksFuzzy("Dunne", 5)));
+        assertTrue(library.searchBooksFuzzy("Dnue", 5).isEmpty(), "A swap is two edits, too many for a short word");
+    }
+
+    @Test
+    public void testRankingPrefersCloserTitleMatches() {
+        List<String> tolkien = ids(library.searchBooksFuzzy("tolkein hobbit", 5));
+        assertEquals("B001", tolkien.get(0), "Matches both words");
+        assertTrue(tolkien.contains("B002"), "Matches the author only");
+        List<String> hobbies = ids(library.searchBooksFuzzy("hobbies", 5));
+        assertEquals("B003", hobbies.get(0), "The exact word beats a close one");
+        assertTrue(library.searchBooksFuzzy("austen", 5).stream().allMatch(b -> b.getBookId().equals("B005")));
+        assertEquals(1, library.searchBooksFuzzy("tolkien", 1).size(), "limit caps the results");
+    }
+
+    @Test
+    public void testAvailableCopiesRankFirstOnATie() {
+        library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B006", "Fantasy"));
+        Member reader = new Member("Reader", "reader@example.com", "M1");
+        library.addMember(reader);
+        library.checkoutBook(reader, library.getBookById("B001"));
+        assertEquals(List.of("B006", "B001"), ids(library.searchBooksFuzzy("hobbit", 2)));
+    }
+
+    @Test
+    public void testIndexFollowsEditsAndRemovals() {
+        library.getBookById("B004").updateBookInfo("Children of Dune", "Frank Herbert", 1976, "978-0593098240", "Science Fiction");
+        assertEquals(List.of("B004"), ids(library.searchBooksFuzzy("childern", 5)));
+        library.removeBook("B001");
+        assertFalse(ids(library.searchBooksFuzzy("hobbit", 5)).contains("B001"));
+        assertTrue(library.searchBooksFuzzy("zzzzzz", 5).isEmpty());
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testBoundedDistance() {
+        assertEquals(0, FuzzySearchIndex.distance("hobbit", "hobbit", 2));
+        assertEquals(1, FuzzySearchIndex.distance("hobit", "hobbit", 2));
+        assertEquals(2, FuzzySearchIndex.distance("dnue", "dune", 2));
+        assertEquals(2, FuzzySearchIndex.distance("kitten", "sitting", 1), "Gives up past the bound");
+        assertEquals(3, FuzzySearchIndex.distance("a", "abcd", 2));
+        assertEquals(List.of("$$a", "$ab", "ab$", "b$$"), FuzzySearchIndex.trigrams("ab"));
+    }
+
+    @Test
+    public void testEdgeCases() {
+        FuzzySearchIndex index = new FuzzySearchIndex();
+        Book book = new Book("Emma", "Jane Austen", 1815, "978-0141439587", "E1", null);
+        index.add(book);
+        index.add(book);
+        assertEquals(1, index.size());
+        assertTrue(index.search("", 5).isEmpty());
+        assertTrue(index.search("emma", 0).isEmpty());
+        assertEquals(List.of(book), index.search("EMMA!", 5));
+        assertFalse(index.search("emm", 5).isEmpty(), "One edit allowed for short words");
+        assertTrue(index.search("em", 5).isEmpty(), "Two-letter words must match exactly");
+        index.remove(book);
+        index.remove(book);
+        assertEquals(0, index.size());
+        assertTrue(index.search("emma", 5).isEmpty());
+    }
+
+    @Test
+    public void testCommonWordsDoNotChangeTheRanking() {
+        for (int i = 0; i < 40; i++) {
+            library.addBook(new Book("The Book " + i, "Author", 2000, "ISBN" + i, "X" + i, "Misc"));
+        }
+        assertEquals(List.of("B001"), ids(library.searchBooksFuzzy("the hobbit", 1)));
+        List<String> found = ids(library.searchBooksFuzzy("the hobbit", 50));
+        assertEquals("B001", found.get(0));
+        assertEquals(43, found.size(), "Books matching 'the' only still follow");
+        assertEquals(10, library.searchBooksFuzzy("the", 10).size());
+        assertEquals(List.of("X7"), ids(library.searchBooksFuzzy("book 7", 1)));
+    }
+
+    @Test
+    public void testCandidateLimitBoundsTheWork() {
+        FuzzySearchIndex index = new FuzzySearchIndex(3);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book("Dune " + i, "Frank Herbert", 1965, "ISBN" + i, "D" + i, null);
+            books.add(book);
+            index.add(book);
+        }
+        assertEquals(3, index.search("dune", 10).size(), "Only three books are gathered");
+        books.get(9).setAvailable(false);
+        books.get(0).setAvailable(false);
+        assertEquals(List.of(books.get(1), books.get(2)), index.search("herbert", 2),
+                "Available books first, in catalog order on a tie");
+        assertThrows(IllegalArgumentException.class, () -> new FuzzySearchIndex(0));
+    }
+
+    @Test
+    public void testRemovedDocumentNumbersAreRenumberedAway() {
+        FuzzySearchIndex index = new FuzzySearchIndex();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book("Dune " + i, "Frank Herbert", 1965, "ISBN" + i, "D" + i, null);
+            books.add(book);
+            index.add(book);
+        }
+        int rounds = 5 * FuzzySearchIndex.MIN_DEAD_DOCUMENTS;
+        for (int round = 0; round < rounds; round++) {
+            Book book = books.get(round % 10);
+            index.remove(book);
+            book.updateBookInfo("Dune " + round, "Frank Herbert", 1965, book.getIsbn(), null);
+            index.add(book);
+        }
+        index.remove(books.get(3));
+        index.remove(books.get(7));
+        Book late = new Book("Dune Messiah", "Frank Herbert", 1969, "ISBN-M", "D-M", null);
+        index.add(late);
+        assertTrue(index.documentSlots() < index.size() + FuzzySearchIndex.MIN_DEAD_DOCUMENTS,
+                "Dead document numbers are dropped once they are many");
+        assertEquals(9, index.size());
+        assertEquals(List.of(late), index.search("mesiah", 5));
+        assertEquals(9, index.search("herbert", 20).size());
+        assertFalse(index.search("herbert", 20).contains(books.get(3)));
+        assertEquals(List.of(books.get(9)), index.search("dune " + (rounds - 1), 1));
+    }
+
+    @Test
+    public void testAvailabilityIsReadWhenRanking() {
+        FuzzySearchIndex index = new FuzzySearchIndex();
+        Book first = new Book("Dune", "Frank Herbert", 1965, "ISBN1", "D1", null);
+        Book second = new Book("Dune", "Frank Herbert", 1965, "ISBN2", "D2", null);
+        index.add(first);
+        index.add(second);
+        assertEquals(List.of(first, second), index.search("dune", 2));
+        first.setAvailable(false);
+        assertEquals(List.of(second, first), index.search("dune", 2), "A lent copy ranks after an available one");
+        first.setAvailable(true);
+        assertEquals(List.of(first, second), index.search("dune", 2));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyFindsEveryBookWithinTheEditBound(
+            @ForAll @IntRange(min = 1, max = 150) int books,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        FuzzySearchIndex index = new FuzzySearchIndex();
+        List<Book> all = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            Book book = new Book(word(random) + " " + word(random), word(random), 2000, "I" + i, "B" + i, null);
+            index.add(book);
+            all.add(book);
+            if (random.nextInt(8) == 0) index.remove(all.remove(random.nextInt(all.size())));
+        }
+        String query = word(random);
+        int edits = query.length() <= 2 ? 0 : query.length() <= 5 ? 1 : 2;
+        Set<Book> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Book book : all) {
+            for (String token : BookSearchIndex.tokenize(book.getName() + " " + book.getAuthor())) {
+                if (levenshtein(query, token) <= edits) expected.add(book);
+            }
+        }
+        Set<Book> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        found.addAll(index.search(query, Integer.MAX_VALUE - 1));
+        assertEquals(expected, found);
+    }
+
+    // Short words over a small alphabet, so near misses are common
+    private static String word(Random random) {
+        char[] letters = new char[1 + random.nextInt(8)];
+        for (int i = 0; i < letters.length; i++) letters[i] = (char) ('a' + random.nextInt(4));
+        return new String(letters);
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Map from dense int handles (see IdRegistry) to values, stored as an array of fixed-size
+ * pages so a lookup is two array loads with no hashing or boxing. Pages are allocated on
+ * first write and never move, so growing the table does not copy entries and readers never
+ * take a lock. Slots are updated atomically, so the table is safe for concurrent use.
+ */
+public class HandleTable<V> {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private volatile AtomicReferenceArray<V>[] pages;
+    private final AtomicInteger size = new AtomicInteger();
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // arrays of a generic type can only be created raw
+    public HandleTable() {
+        pages = new AtomicReferenceArray[1];
+    }
+
+    // Returns the value for a handle, or null if none (including negative handles)
+    public V get(int handle) {
+        AtomicReferenceArray<V> page = pageIfPresent(handle);
+        return page == null ? null : page.get(handle & PAGE_MASK);
+    }
+
+    // Sets the value for a handle.
+    // returns the previous value, or null
+    public V put(int handle, V value) {
+        V previous = page(handle).getAndSet(handle & PAGE_MASK, value);
+        count(previous, value);
+        return previous;
+    }
+
+    // Clears a handle.
+    // returns the previous value, or null
+    public V remove(int handle) {
+        AtomicReferenceArray<V> page = pageIfPresent(handle);
+        if (page == null) return null;
+        V previous = page.getAndSet(handle & PAGE_MASK, null);
+        count(previous, null);
+        return previous;
+    }
+
+    // Clears a handle only if it currently holds the given value.
+    // returns true if it did
+    public boolean remove(int handle, V expected) {
+        AtomicReferenceArray<V> page = pageIfPresent(handle);
+        if (page == null || expected == null) return false;
+        if (!page.compareAndSet(handle & PAGE_MASK, expected, null)) return false;
+        size.decrementAndGet();
+        return true;
+    }
+
+    // Returns the value for a handle, creating and storing one atomically if there is none
+    public V computeIfAbsent(int handle, IntFunction<V> create) {
+        AtomicReferenceArray<V> page = page(handle);
+        int slot = handle & PAGE_MASK;
+        V value = page.get(slot);
+        if (value != null) return value;
+        V created = create.apply(handle);
+        if (page.compareAndSet(slot, null, created)) {
+            size.incrementAndGet();
+            return created;
+        }
+        return page.get(slot);
+    }
+
+    // Returns the number of handles holding a value
+    public int size() {
+        return size.get();
+    }
+
+    // Visits every value with its handle, in handle order. A value stored or cleared meanwhile
+    // may or may not be seen.
+    public void forEach(ObjIntConsumer<V> action) {
+        AtomicReferenceArray<V>[] current = pages;
+        for (int index = 0; index < current.length; index++) {
+            AtomicReferenceArray<V> page = current[index];
+            if (page == null) continue;
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                V value = page.get(slot);
+                if (value != null) action.accept(value, index << PAGE_BITS | slot);
+            }
+        }
+    }
+
+    private void count(V previous, V value) {
+        if (previous == null && value != null) size.incrementAndGet();
+        else if (previous != null && value == null) size.decrementAndGet();
+    }
+
+    private AtomicReferenceArray<V> pageIfPresent(int handle) {
+        if (handle < 0) return null;
+        AtomicReferenceArray<V>[] current = pages;
+        int index = handle >>> PAGE_BITS;
+        return index < current.length ? current[index] : null;
+    }
+
+    // Returns the page for a handle, allocating it (and growing the directory) if needed
+    private AtomicReferenceArray<V> page(int handle) {
+        if (handle < 0) throw new IndexOutOfBoundsException("Negative handle " + handle);
+        AtomicReferenceArray<V> page = pageIfPresent(handle);
+        return page != null ? page : allocate(handle >>> PAGE_BITS);
+    }
+
+    private synchronized AtomicReferenceArray<V> allocate(int index) {
+        AtomicReferenceArray<V>[] current = pages;
+        if (index >= current.length) {
+            current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        }
+        if (current[index] == null) current[index] = new AtomicReferenceArray<>(PAGE_SIZE);
+        pages = current;
+        return current[index];
+    }
+}
@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test suite for the HandleTable class (paged int-keyed map) and the Library tables built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class HandleTableTest {
+
+    private HandleTable<String> table;
+
+    @BeforeEach
+    public void setUp() {
+        table = new HandleTable<>();
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testPutGetRemove() {
+        assertNull(table.put(3, "three"));
+        assertEquals("three", table.get(3));
+        assertEquals("three", table.put(3, "THREE"));
+        assertEquals(1, table.size());
+        assertEquals("THREE", table.remove(3));
+        assertNull(table.get(3));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testConditionalRemove() {
+        table.put(1, "a");
+        assertFalse(table.remove(1, "b"));
+        assertTrue(table.remove(1, "a"));
+        assertFalse(table.remove(1, "a"));
+    }
+
+    @Test
+    public void testMissingAndNegativeHandles() {
+        assertNull(table.get(-1));
+        assertNull(table.get(1_000_000));
+        assertNull(table.remove(1_000_000));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.put(-1, "x"));
+    }
+
+    @Test
+    public void testLibraryLoansSurviveBookReAdd() {
+        Library library = new Library();
+        Book book = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B001", "Science Fiction");
+        Member alice = new Member("Alice", "alice@example.com", "M001");
+        library.addBook(book);
+        library.addMember(alice);
+        library.checkoutBook(alice, book);
+        library.removeBook("B001");
+        assertNull(library.getLoan("B001"));
+        library.addBook(book);
+        assertNull(library.getLoan("B001"), "A re-added book should start without a loan");
+        book.setAvailable(true);
+        assertTrue(library.checkoutBook(alice, book));
+        assertEquals("M001", library.getLoan("B001").getMemberId());
+        assertEquals("Not checked out.", library.whoHasBook("B999"));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testSpansManyPages() {
+        for (int i = 0; i < 10_000; i += 7) {
+            table.put(i, "v" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 7 == 0 ? "v" + i : null, table.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentComputeIfAbsentCreatesOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    List<String> seen = new ArrayList<>();
+                    for (int i = 0; i < 5000; i++) {
+                        seen.add(table.computeIfAbsent(i, handle -> "thread" + thread));
+                    }
+                    return seen;
+                }));
+            }
+            List<String> first = results.get(0).get();
+            for (Future<List<String>> result : results) {
+                assertEquals(first, result.get(), "Every thread should see the single stored value");
+            }
+            assertEquals(5000, table.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyMatchesHashMap(
+            @ForAll @IntRange(min = 1, max = 500) int operations,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        HandleTable<Integer> fresh = new HandleTable<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < operations; i++) {
+            int handle = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(handle, i), fresh.put(handle, i));
+            } else {
+                assertEquals(expected.remove(handle), fresh.remove(handle));
+            }
+        }
+        assertEquals(expected.size(), fresh.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), fresh.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.*;
+
+/**
+ * FIFO queue of members waiting for one book.
+ * Every hold gets a ticket number in arrival order; a Fenwick (binary indexed) tree over the
+ * tickets counts the holds still active, so a member's position is found in O(log n) even
+ * after holds ahead of them are cancelled. Each queue has its own lock, so a burst of holds
+ * on one bestseller never blocks circulation of other books.
+ */
+public class HoldQueue {
+    // memberId per ticket slot (null once served or cancelled); slot 0 is ticket 'base'
+    private String[] members = new String[16];
+    // Fenwick tree over slots: 1 for an active hold, 0 otherwise (1-based internally)
+    private int[] tree = new int[17];
+    private long base;
+    private int head;
+    private int tail;
+    private final Map<String, Long> tickets = new HashMap<>();
+
+    // Adds a member to the back of the queue (no-op if already waiting).
+    // returns the member's 1-based position
+    public synchronized int enqueue(String memberId) {
+        if (memberId == null) throw new IllegalArgumentException("null field!");
+        if (!tickets.containsKey(memberId)) {
+            if (tail == members.length) grow();
+            members[tail] = memberId;
+            update(tail, 1);
+            tickets.put(memberId, base + tail);
+            tail++;
+        }
+        return position(memberId);
+    }
+
+    // Removes a member's hold wherever it is in the queue.
+    // returns true if the member was waiting
+    public synchronized boolean cancel(String memberId) {
+        Long ticket = tickets.remove(memberId);
+        if (ticket == null) return false;
+        int slot = (int) (ticket - base);
+        members[slot] = null;
+        update(slot, -1);
+        return true;
+    }
+
+    // Removes and returns the member at the front of the queue, or null if empty
+    public synchronized String poll() {
+        while (head < tail && members[head] == null) head++;
+        if (head == tail) return null;
+        String memberId = members[head];
+        members[head] = null;
+        update(head, -1);
+        tickets.remove(memberId);
+        head++;
+        return memberId;
+    }
+
+    // Returns the member at the front without removing them, or null if empty
+    public synchronized String peek() {
+        while (head < tail && members[head] == null) head++;
+        return head == tail ? null : members[head];
+    }
+
+    // Returns the member's 1-based position in the queue, or 0 if not waiting
+    public synchronized int position(String memberId) {
+        Long ticket = tickets.get(memberId);
+        if (ticket == null) return 0;
+        return prefixSum((int) (ticket - base));
+    }
+
+    // Returns the number of members waiting
+    public synchronized int size() {
+        return tickets.size();
+    }
+
+    // Returns the waiting members in queue order
+    public synchronized List<String> waitingMembers() {
+        List<String> waiting = new ArrayList<>(tickets.size());
+        for (int i = head; i < tail; i++) {
+            if (members[i] != null) waiting.add(members[i]);
+        }
+        return waiting;
+    }
+
+    // Makes room for more tickets: drops served slots if that frees enough, else doubles
+    private void grow() {
+        int live = tail - head;
+        int capacity = live * 2 >= members.length ? members.length * 2 : members.length;
+        String[] moved = new String[capacity];
+        System.arraycopy(members, head, moved, 0, live);
+        base += head;
+        members = moved;
+        head = 0;
+        tail = live;
+        // Rebuild the Fenwick tree in O(n): each node passes its total up to its parent
+        tree = new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            if (i <= live && members[i - 1] != null) tree[i]++;
+            int parent = i + (i & -i);
+            if (parent <= capacity) tree[parent] += tree[i];
+        }
+    }
+
+    // Adds delta at a slot
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Counts active holds in slots [0, slot]
+    private int prefixSum(int slot) {
+        int sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
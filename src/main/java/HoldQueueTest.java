@@ -0,0 +1,198 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test suite for the HoldQueue class and the Library hold operations built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class HoldQueueTest {
+
+    private Library library;
+    private Book book;
+    private Member alice;
+    private Member bob;
+    private Member carol;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+        book = new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy");
+        library.addBook(book);
+        alice = new Member("Alice", "alice@example.com", "M001");
+        bob = new Member("Bob", "bob@example.com", "M002");
+        carol = new Member("Carol", "carol@example.com", "M003");
+        library.addMember(alice);
+        library.addMember(bob);
+        library.addMember(carol);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testQueueIsFirstComeFirstServed() {
+        HoldQueue queue = new HoldQueue();
+        assertEquals(1, queue.enqueue("M001"));
+        assertEquals(2, queue.enqueue("M002"));
+        assertEquals(3, queue.enqueue("M003"));
+        assertEquals("M001", queue.peek());
+        assertEquals("M001", queue.poll());
+        assertEquals(1, queue.position("M002"));
+        assertEquals("M002", queue.poll());
+        assertEquals("M003", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testCancelMovesLaterMembersUp() {
+        HoldQueue queue = new HoldQueue();
+        queue.enqueue("M001");
+        queue.enqueue("M002");
+        queue.enqueue("M003");
+        assertTrue(queue.cancel("M002"));
+        assertFalse(queue.cancel("M002"), "Cancelling twice should report no hold");
+        assertEquals(0, queue.position("M002"));
+        assertEquals(2, queue.position("M003"));
+        assertEquals(List.of("M001", "M003"), queue.waitingMembers());
+    }
+
+    @Test
+    public void testEnqueueTwiceKeepsPlace() {
+        HoldQueue queue = new HoldQueue();
+        queue.enqueue("M001");
+        queue.enqueue("M002");
+        assertEquals(1, queue.enqueue("M001"));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testReturnHandsBookToFirstHolder() {
+        library.checkoutBook(alice, book);
+        assertEquals(1, library.placeHold(bob, book));
+        assertEquals(2, library.placeHold(carol, book));
+        library.returnBook(alice, book);
+
+        assertEquals("Bob", library.whoHasBook("B001"), "Book should go straight to the first holder");
+        assertFalse(book.isAvailable(), "Book should never show as available while members wait");
+        assertEquals(1, library.getHoldPosition("M003", "B001"));
+        assertEquals(1, library.getHoldCount("B001"));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testReturnWithoutHoldsShelvesBook() {
+        library.checkoutBook(alice, book);
+        library.placeHold(bob, book);
+        assertTrue(library.cancelHold("M002", "B001"));
+        library.returnBook(alice, book);
+        assertTrue(book.isAvailable());
+        assertEquals("Not checked out.", library.whoHasBook("B001"));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testRevokedHolderIsSkipped() {
+        library.checkoutBook(alice, book);
+        library.placeHold(bob, book);
+        library.placeHold(carol, book);
+        library.revokeMembership("M002");
+        library.returnBook(alice, book);
+        assertEquals("Carol", library.whoHasBook("B001"));
+        assertEquals(0, library.getHoldCount("B001"));
+    }
+
+    @Test
+    public void testRemovingBookDropsItsQueue() {
+        library.checkoutBook(alice, book);
+        library.placeHold(bob, book);
+        library.removeBook("B001");
+        assertEquals(0, library.getHoldCount("B001"));
+        assertFalse(library.cancelHold("M002", "B001"));
+    }
+
+    @Test
+    public void testQueueSurvivesGrowthAndCompaction() {
+        HoldQueue queue = new HoldQueue();
+        for (int i = 0; i < 100; i++) {
+            queue.enqueue("M" + i);
+            if (i % 3 == 0) assertEquals("M" + (i / 3), queue.poll());
+        }
+        int served = 34;
+        assertEquals(100 - served, queue.size());
+        assertEquals(1, queue.position("M" + served));
+        assertEquals(queue.size(), queue.position("M99"));
+    }
+
+    @Test
+    public void testHoldsAreJournaledAndSnapshotted() throws IOException {
+        Path dir = Files.createTempDirectory("holds");
+        Path journalFile = dir.resolve("library.journal");
+        Path snapshot = dir.resolve("library.snapshot");
+        try {
+            try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+                library.setJournal(journal);
+                library.checkoutBook(alice, book);
+                library.placeHold(bob, book);
+                LibrarySnapshot.write(snapshot, library, new LibraryAccounts(), journal.position());
+                library.placeHold(carol, book);
+                library.cancelHold("M002", "B001");
+            }
+
+            Library restored = new Library();
+            try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+                long offset = LibrarySnapshot.load(snapshot, restored, new LibraryAccounts());
+                assertEquals(List.of("M002"), restored.getHoldQueue("B001"), "Snapshot should carry the queue");
+                journal.recover(offset, restored, new LibraryAccounts());
+            }
+            assertEquals(List.of("M003"), restored.getHoldQueue("B001"));
+        } finally {
+            Files.deleteIfExists(journalFile);
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyPositionsMatchListOrder(
+            @ForAll @IntRange(min = 1, max = 200) int operations,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        HoldQueue queue = new HoldQueue();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            int choice = random.nextInt(3);
+            if (choice == 0 || expected.isEmpty()) {
+                String memberId = "M" + random.nextInt(50);
+                queue.enqueue(memberId);
+                if (!expected.contains(memberId)) expected.add(memberId);
+            } else if (choice == 1) {
+                assertEquals(expected.remove(0), queue.poll());
+            } else {
+                String memberId = expected.get(random.nextInt(expected.size()));
+                assertTrue(queue.cancel(memberId));
+                expected.remove(memberId);
+            }
+        }
+        assertEquals(expected, queue.waitingMembers());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, queue.position(expected.get(i)));
+        }
+    }
+}
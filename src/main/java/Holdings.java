@@ -0,0 +1,84 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups physical copies (Books) by ISBN.
+ * Each ISBN keeps an atomic available-copy counter and a queue of copies that were on the
+ * shelf when last seen, so "is any copy available" and "find a free copy" never scan the
+ * catalog. Queue entries are checked when taken, so copies that were lent or weeded in the
+ * meantime are simply skipped.
+ */
+public class Holdings {
+    private final Map<String, Holding> byIsbn = new ConcurrentHashMap<>();
+
+    // All copies of one ISBN
+    private static class Holding {
+        private final Set<Book> copies = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger available = new AtomicInteger();
+        private final Queue<Book> shelf = new ConcurrentLinkedQueue<>();
+        // Copies currently sitting in the shelf queue, so none is queued twice
+        private final Set<Book> queued = ConcurrentHashMap.newKeySet();
+
+        private void shelve(Book book) {
+            if (queued.add(book)) shelf.offer(book);
+        }
+    }
+
+    // Registers a copy under its current ISBN
+    public void add(Book book) {
+        if (book.getIsbn() == null) return;
+        Holding holding = byIsbn.computeIfAbsent(book.getIsbn(), isbn -> new Holding());
+        if (holding.copies.add(book) && book.isAvailable()) {
+            holding.available.incrementAndGet();
+            holding.shelve(book);
+        }
+    }
+
+    // Unregisters a copy from its current ISBN
+    public void remove(Book book) {
+        Holding holding = book.getIsbn() == null ? null : byIsbn.get(book.getIsbn());
+        if (holding != null && holding.copies.remove(book) && book.isAvailable()) {
+            holding.available.decrementAndGet();
+        }
+    }
+
+    // Keeps the counter and shelf in step with a copy's availability flag
+    public void availabilityChanged(Book book, boolean available) {
+        Holding holding = book.getIsbn() == null ? null : byIsbn.get(book.getIsbn());
+        if (holding == null || !holding.copies.contains(book)) return;
+        if (available) {
+            holding.available.incrementAndGet();
+            holding.shelve(book);
+        } else {
+            holding.available.decrementAndGet();
+        }
+    }
+
+    // Returns how many copies of the ISBN are currently available
+    public int availableCopies(String isbn) {
+        Holding holding = byIsbn.get(isbn);
+        return holding == null ? 0 : holding.available.get();
+    }
+
+    // Returns how many copies of the ISBN are catalogued
+    public int totalCopies(String isbn) {
+        Holding holding = byIsbn.get(isbn);
+        return holding == null ? 0 : holding.copies.size();
+    }
+
+    // Returns a copy that was available when taken off the shelf queue, or null if none is.
+    // The caller must still claim it atomically; another thread may win the race.
+    public Book nextAvailable(String isbn) {
+        Holding holding = byIsbn.get(isbn);
+        if (holding == null) return null;
+        while (holding.available.get() > 0) {
+            Book book = holding.shelf.poll();
+            if (book == null) return null;
+            holding.queued.remove(book);
+            if (book.isAvailable() && holding.copies.contains(book)) return book;
+        }
+        return null;
+    }
+}
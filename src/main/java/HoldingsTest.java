@@ -0,0 +1,179 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Test suite for the Holdings class and the ISBN-level Library operations built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class HoldingsTest {
+
+    private static final String ISBN = "978-0547928227";
+
+    private Library library;
+    private Member alice;
+    private Member bob;
+
+    @BeforeEach
+    public void setUp() {
+        library = new Library();
+        for (int i = 1; i <= 3; i++) {
+            library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", 1937, ISBN, "H" + i, "Fantasy"));
+        }
+        alice = new Member("Alice", "alice@example.com", "M001");
+        bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(alice);
+        library.addMember(bob);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testCountsCopiesPerIsbn() {
+        assertEquals(3, library.totalCopies(ISBN));
+        assertEquals(3, library.availableCopies(ISBN));
+        assertTrue(library.isAnyCopyAvailable(ISBN));
+        assertEquals(0, library.totalCopies("unknown"));
+        assertFalse(library.isAnyCopyAvailable("unknown"));
+    }
+
+    @Test
+    public void testCheckoutByIsbnLendsDistinctCopies() {
+        Book first = library.checkoutByIsbn(alice, ISBN);
+        Book second = library.checkoutByIsbn(bob, ISBN);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second, "Each checkout should take a different copy");
+        assertEquals(1, library.availableCopies(ISBN));
+        assertEquals("Alice", library.whoHasBook(first.getBookId()));
+        assertEquals("Bob", library.whoHasBook(second.getBookId()));
+    }
+
+    @Test
+    public void testCheckoutByIsbnWhenAllCopiesOut() {
+        for (int i = 0; i < 3; i++) assertNotNull(library.checkoutByIsbn(alice, ISBN));
+        assertEquals(0, library.availableCopies(ISBN));
+        assertNull(library.checkoutByIsbn(bob, ISBN), "No copy should be left");
+        library.returnBook(alice, library.getBookById("H2"));
+        assertEquals(1, library.availableCopies(ISBN));
+        assertEquals(library.getBookById("H2"), library.checkoutByIsbn(bob, ISBN), "Returned copy should be lent next");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testCountersFollowCheckoutByIdAndDirectFlags() {
+        library.checkoutBook(alice, library.getBookById("H1"));
+        assertEquals(2, library.availableCopies(ISBN));
+        library.getBookById("H3").setAvailable(false);
+        assertEquals(1, library.availableCopies(ISBN), "Direct flag changes should be counted");
+        library.getBookById("H3").setAvailable(false);
+        assertEquals(1, library.availableCopies(ISBN), "Setting the same value twice should not double count");
+        assertEquals(library.getBookById("H2"), library.checkoutByIsbn(bob, ISBN), "Only H2 is left on the shelf");
+    }
+
+    @Test
+    public void testRemoveAndUpdateMoveCopiesBetweenIsbns() {
+        library.removeBook("H1");
+        assertEquals(2, library.totalCopies(ISBN));
+        assertEquals(2, library.availableCopies(ISBN));
+        Book h2 = library.getBookById("H2");
+        h2.updateBookInfo("The Hobbit", "J.R.R. Tolkien", 1937, "NEW-ISBN", "Fantasy");
+        assertEquals(1, library.availableCopies(ISBN));
+        assertEquals(1, library.availableCopies("NEW-ISBN"));
+        assertEquals(library.getBookById("H3"), library.checkoutByIsbn(alice, ISBN),
+                "Removed and re-catalogued copies must not be lent under the old ISBN");
+        assertNull(library.checkoutByIsbn(alice, ISBN));
+    }
+
+    @Test
+    public void testConcurrentIsbnCheckoutNeverDoubleLends() throws InterruptedException {
+        Library shared = new Library(true);
+        int copies = 50;
+        for (int i = 0; i < copies; i++) {
+            shared.addBook(new Book("Bestseller", "Author", 2024, "BEST", "C" + i, "Fiction"));
+        }
+        Set<Book> lent = ConcurrentHashMap.newKeySet();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Member member = new Member("M" + t, "m" + t + "@example.com", "M" + t);
+            shared.addMember(member);
+            workers.add(new Thread(() -> {
+                Book book;
+                while ((book = shared.checkoutByIsbn(member, "BEST")) != null) {
+                    assertTrue(lent.add(book), "A copy was lent twice");
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(copies, lent.size(), "Every copy should be lent exactly once");
+        assertEquals(0, shared.availableCopies("BEST"));
+        assertTrue(shared.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testUpdatesRacingCirculationKeepCountersExact() throws InterruptedException {
+        // The race is narrow, so run it a few times
+        for (int round = 0; round < 10; round++) {
+            Library shared = new Library(true);
+            Book book = new Book("Bestseller", "Author", 2024, "OLD", "C0", "Fiction");
+            shared.addBook(book);
+            Member member = new Member("Reader", "reader@example.com", "M0");
+            shared.addMember(member);
+            Thread editor = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    book.updateBookInfo("Bestseller", "Author", 2024, i % 2 == 0 ? "NEW" : "OLD", "Fiction");
+                }
+            });
+            Thread desk = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    if (!shared.checkoutBook(member, book)) shared.returnBook(member, book);
+                }
+            });
+            editor.start();
+            desk.start();
+            editor.join();
+            desk.join();
+            shared.returnBook(member, book);
+            assertEquals("OLD", book.getIsbn());
+            assertEquals(1, shared.availableCopies("OLD"), "The shelf copy should be counted exactly once");
+            assertEquals(0, shared.availableCopies("NEW"));
+            assertEquals(1, shared.totalCopies("OLD"));
+        }
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyCounterMatchesAvailableCopies(
+            @ForAll @IntRange(min = 1, max = 20) int copies,
+            @ForAll @IntRange(min = 0, max = 30) int checkouts
+    ) {
+        Library lib = new Library();
+        Member member = new Member("Reader", "reader@example.com", "R1");
+        for (int i = 0; i < copies; i++) {
+            lib.addBook(new Book("Title", "Author", 2000, "ISBN", "ID" + i, "Genre"));
+        }
+        Set<Book> lent = new HashSet<>();
+        for (int i = 0; i < checkouts; i++) {
+            Book book = lib.checkoutByIsbn(member, "ISBN");
+            if (book != null) lent.add(book);
+        }
+        assertEquals(Math.min(copies, checkouts), lent.size());
+        int available = 0;
+        for (Book book : lib.getAllBooks()) if (book.isAvailable()) available++;
+        assertEquals(available, lib.availableCopies("ISBN"));
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load driver for LibraryHttpServer. A number of desks each look a book up, check it out and
+ * return it, over and over for a fixed time, and the driver reports the requests served per
+ * second and the latency percentiles of each kind of request.
+ *
+ *   java HttpLoadDriver [desks] [seconds] [books per desk] [base url]
+ *
+ * Without a base URL it starts a server over an empty concurrent library on a free port.
+ * Either way it first adds its own members (LOAD-M0, ...) and books (LOAD-B0, ...) through
+ * the API. Each desk has its own member and its own books, so no request ever places a hold
+ * and every checkout should succeed; any other status is counted as an error.
+ */
+public final class HttpLoadDriver {
+    private static final String[] KINDS = {"lookup", "checkout", "return"};
+
+    private HttpLoadDriver() {
+    }
+
+    // Latencies of one kind of request, in nanoseconds
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int count;
+
+        private void add(long value) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = value;
+        }
+
+        private void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) add(other.nanos[i]);
+        }
+    }
+
+    // What one run measured
+    public static final class Result {
+        private final long elapsedNanos;
+        private final int errors;
+        private final long[][] sorted = new long[KINDS.length][];
+
+        private Result(long elapsedNanos, int errors, Latencies[] latencies) {
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                sorted[kind] = Arrays.copyOf(latencies[kind].nanos, latencies[kind].count);
+                Arrays.sort(sorted[kind]);
+            }
+        }
+
+        // Returns the number of requests sent
+        public int getRequests() {
+            int requests = 0;
+            for (long[] kind : sorted) requests += kind.length;
+            return requests;
+        }
+
+        // Returns the number of requests answered with an unexpected status
+        public int getErrors() {
+            return errors;
+        }
+
+        // Returns the requests served per second
+        public double getThroughput() {
+            return getRequests() * 1e9 / elapsedNanos;
+        }
+
+        // Returns the given percentile (0-100) of one kind of request, in microseconds
+        public double percentileMicros(String kind, double percentile) {
+            long[] nanos = sorted[Arrays.asList(KINDS).indexOf(kind)];
+            if (nanos.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * nanos.length) - 1;
+            return nanos[Math.max(0, Math.min(nanos.length - 1, index))] / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                    "%d requests in %.1fs: %.0f req/s, %d errors", getRequests(), elapsedNanos / 1e9,
+                    getThroughput(), errors));
+            for (String kind : KINDS) {
+                report.append(String.format(Locale.ROOT, "%n  %-8s p50 %8.0f us  p99 %8.0f us  max %8.0f us", kind,
+                        percentileMicros(kind, 50), percentileMicros(kind, 99), percentileMicros(kind, 100)));
+            }
+            return report.toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int desks = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int books = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        if (args.length > 3) {
+            System.out.println(run(URI.create(args[3]), desks, Duration.ofSeconds(seconds), books));
+            return;
+        }
+        try (LibraryHttpServer server = new LibraryHttpServer(new Library(true), new LibraryAccounts())) {
+            server.start(0);
+            System.out.println("Serving on port " + server.getPort()
+                    + (server.usesVirtualThreads() ? " with virtual threads" : " with platform threads"));
+            System.out.println(run(URI.create("http://localhost:" + server.getPort()), desks,
+                    Duration.ofSeconds(seconds), books));
+        }
+    }
+
+    // Adds the desks' members and books, then drives the server at the given base URL for the given time
+    public static Result run(URI base, int desks, Duration duration, int booksPerDesk) throws Exception {
+        if (desks < 1 || booksPerDesk < 1) throw new IllegalArgumentException("Need at least one desk and book");
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int desk = 0; desk < desks; desk++) {
+            seed(client, base, "/members", "{\"name\":\"Desk " + desk + "\",\"email\":\"desk" + desk
+                    + "@example.com\",\"memberId\":\"LOAD-M" + desk + "\"}");
+            for (int i = 0; i < booksPerDesk; i++) {
+                seed(client, base, "/books", "{\"title\":\"Load " + i + "\",\"author\":\"Driver\",\"year\":2000,"
+                        + "\"isbn\":\"LOAD-" + desk + "-" + i + "\",\"bookId\":\"" + bookId(desk, i, desks)
+                        + "\",\"genre\":\"Load\"}");
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(desks);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try {
+            List<Future<Latencies[]>> futures = new ArrayList<>();
+            int[] errors = new int[desks];
+            for (int t = 0; t < desks; t++) {
+                int desk = t;
+                futures.add(pool.submit(() -> drive(client, base, desk, desks, booksPerDesk, deadline, errors)));
+            }
+            Latencies[] all = {new Latencies(), new Latencies(), new Latencies()};
+            for (Future<Latencies[]> future : futures) {
+                Latencies[] latencies = future.get();
+                for (int kind = 0; kind < KINDS.length; kind++) all[kind].addAll(latencies[kind]);
+            }
+            long elapsed = System.nanoTime() - start;
+            return new Result(elapsed, Arrays.stream(errors).sum(), all);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // One desk's loop: look a random one of its books up, check it out, return it
+    private static Latencies[] drive(HttpClient client, URI base, int desk, int desks, int booksPerDesk,
+                                     long deadline, int[] errors) throws IOException, InterruptedException {
+        Latencies[] latencies = {new Latencies(), new Latencies(), new Latencies()};
+        Random random = new Random(desk);
+        String member = "LOAD-M" + desk;
+        while (System.nanoTime() < deadline) {
+            String bookId = bookId(desk, random.nextInt(booksPerDesk), desks);
+            String body = "{\"memberId\":\"" + member + "\",\"bookId\":\"" + bookId + "\"}";
+            if (!timed(client, get(base, "/books/" + bookId), latencies[0])) errors[desk]++;
+            if (!timed(client, post(base, "/checkout", body), latencies[1])) {
+                errors[desk]++;
+                continue;
+            }
+            if (!timed(client, post(base, "/return", body), latencies[2])) errors[desk]++;
+        }
+        return latencies;
+    }
+
+    // Sends a request, records its latency and returns whether it came back 200
+    private static boolean timed(HttpClient client, HttpRequest request, Latencies latencies)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        latencies.add(System.nanoTime() - start);
+        return status == 200;
+    }
+
+    // Adds a member or book, accepting one left over from an earlier run
+    private static void seed(HttpClient client, URI base, String path, String json)
+            throws IOException, InterruptedException {
+        int status = client.send(post(base, path, json), HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 201 && status != 409) throw new IOException("POST " + path + " failed with " + status);
+    }
+
+    // Book i of a desk; desks never share books
+    private static String bookId(int desk, int i, int desks) {
+        return "LOAD-B" + (i * desks + desk);
+    }
+
+    private static HttpRequest get(URI base, String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    private static HttpRequest post(URI base, String path, String json) {
+        return HttpRequest.newBuilder(base.resolve(path)).POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps external string IDs to dense int handles (0, 1, 2, ...), assigned on first sight.
+ * The string is hashed once, at the boundary; everything behind it can index plain arrays
+ * by handle instead of hashing and comparing strings. A released ID's handle goes on a free
+ * list and is given to the next new ID, so handles stay dense however many IDs come and go;
+ * the owner must clear whatever it stores under a handle before releasing it. Lookups are
+ * lock-free; registering or releasing an ID takes a short lock.
+ * The registry keeps the instance of each ID it was first given (see idOf). A value that
+ * carries that instance can be matched to a lookup by reference, without comparing characters.
+ */
+public class IdRegistry {
+    private final Map<String, Registration> handles = new ConcurrentHashMap<>();
+    // handle -> ID, null once released; replaced by a larger copy when it grows
+    private volatile String[] ids = new String[64];
+    // Handles below this have been handed out at least once
+    private volatile int limit;
+    private volatile int size;
+    // Released handles, reused last-in first-out; guarded by 'this'
+    private int[] free = new int[16];
+    private int freeCount;
+
+    // A registered ID: the instance that was registered, and its handle
+    public static final class Registration {
+        private final String id;
+        private final int handle;
+
+        private Registration(String id, int handle) {
+            this.id = id;
+            this.handle = handle;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getHandle() {
+            return handle;
+        }
+    }
+
+    // Returns the handle of an ID, registering it if new
+    public int intern(String id) {
+        if (id == null) throw new IllegalArgumentException("null field!");
+        Registration registration = handles.get(id);
+        return registration != null ? registration.handle : register(id);
+    }
+
+    private synchronized int register(String id) {
+        Registration existing = handles.get(id);
+        if (existing != null) return existing.handle;
+        int handle = freeCount > 0 ? free[--freeCount] : limit;
+        if (handle == ids.length) ids = Arrays.copyOf(ids, handle * 2);
+        ids[handle] = id;
+        // Publish the ID before the handle can be seen by lock-free readers
+        if (handle == limit) limit = handle + 1;
+        size++;
+        handles.put(id, new Registration(id, handle));
+        return handle;
+    }
+
+    // Forgets an ID so its handle can be given to a new one.
+    // returns true if the ID was registered
+    public synchronized boolean release(String id) {
+        Registration registration = id == null ? null : handles.remove(id);
+        if (registration == null) return false;
+        int handle = registration.handle;
+        ids[handle] = null;
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = handle;
+        size--;
+        return true;
+    }
+
+    // Returns the handle of an ID, or -1 if it was never registered
+    public int find(String id) {
+        Registration registration = lookup(id);
+        return registration == null ? -1 : registration.handle;
+    }
+
+    // Returns the registration of an ID, or null if it was never registered
+    public Registration lookup(String id) {
+        return id == null ? null : handles.get(id);
+    }
+
+    // Returns the ID behind a handle, as the instance that was registered
+    public String idOf(int handle) {
+        String id = handle < 0 || handle >= limit ? null : ids[handle];
+        if (id == null) throw new IndexOutOfBoundsException("Unknown handle " + handle);
+        return id;
+    }
+
+    // Returns the number of IDs registered
+    public int size() {
+        return size;
+    }
+
+    // Returns one more than the highest handle ever handed out; every handle is below it
+    public int limit() {
+        return limit;
+    }
+}
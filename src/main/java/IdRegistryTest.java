@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.Size;
+import net.jqwik.api.constraints.StringLength;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test suite for the IdRegistry class (string IDs to dense int handles).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class IdRegistryTest {
+
+    private IdRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new IdRegistry();
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testHandlesAreDenseAndStable() {
+        assertEquals(0, registry.intern("B001"));
+        assertEquals(1, registry.intern("B002"));
+        assertEquals(0, registry.intern("B001"), "Interning again should return the same handle");
+        assertEquals(2, registry.size());
+        assertEquals("B002", registry.idOf(1));
+    }
+
+    @Test
+    public void testFindDoesNotRegister() {
+        assertEquals(-1, registry.find("B001"));
+        assertEquals(-1, registry.find(null));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testLookupReturnsTheRegisteredInstance() {
+        String registered = new String("B001");
+        int handle = registry.intern(registered);
+        IdRegistry.Registration registration = registry.lookup(new String("B001"));
+        assertSame(registered, registration.getId());
+        assertEquals(handle, registration.getHandle());
+        assertSame(registered, registry.idOf(handle));
+        assertNull(registry.lookup("B002"));
+        assertNull(registry.lookup(null));
+    }
+
+    @Test
+    public void testInvalidInputIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> registry.intern(null));
+        assertThrows(IndexOutOfBoundsException.class, () -> registry.idOf(0));
+    }
+
+    @Test
+    public void testReleasedHandlesAreReused() {
+        registry.intern("B001");
+        registry.intern("B002");
+        assertTrue(registry.release("B001"));
+        assertFalse(registry.release("B001"));
+        assertFalse(registry.release(null));
+        assertEquals(-1, registry.find("B001"));
+        assertThrows(IndexOutOfBoundsException.class, () -> registry.idOf(0));
+        assertEquals(1, registry.size());
+        assertEquals(0, registry.intern("B003"), "The freed handle goes to the next new ID");
+        assertEquals(2, registry.intern("B004"));
+        assertEquals(3, registry.limit());
+    }
+
+    @Test
+    public void testLibraryReclaimsHandlesOfRemovedBooks() {
+        Library library = new Library();
+        Member member = new Member("Alice", "alice@example.com", "M001");
+        library.addMember(member);
+        for (int round = 0; round < 5; round++) {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String id = "R" + round + "-" + i;
+                library.addBook(new Book("Title", "Author", 2000, "ISBN", id, "Genre"));
+                ids.add(id);
+            }
+            library.checkoutBook(member, library.getBookById(ids.get(0)));
+            library.placeHold(member, library.getBookById(ids.get(1)));
+            library.removeBooks(ids, Library.DeletionPolicy.ORPHAN);
+        }
+        assertEquals(0, library.bookHandleUsage()[0]);
+        assertEquals(100, library.bookHandleUsage()[1], "Five rounds of churn reuse the same 100 handles");
+
+        // A book that was never catalogued holds a handle only while it is lent
+        Book stray = new Book("Stray", "Author", 2000, "ISBN", "S1", "Genre");
+        library.checkoutBook(member, stray);
+        assertEquals(1, library.bookHandleUsage()[0]);
+        assertEquals("Alice", library.whoHasBook("S1"));
+        library.returnBook(member, stray);
+        assertEquals(0, library.bookHandleUsage()[0]);
+        assertNull(library.getLoan("S1"));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testConcurrentInternAssignsOneHandlePerId() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    int[] handles = new int[2000];
+                    for (int i = 0; i < handles.length; i++) {
+                        handles[i] = registry.intern("ID" + i);
+                    }
+                    return handles;
+                }));
+            }
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertArrayEquals(first, result.get());
+            }
+            assertEquals(2000, registry.size());
+            for (int i = 0; i < 2000; i++) {
+                assertEquals("ID" + i, registry.idOf(first[i]));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyIdOfInvertsIntern(
+            @ForAll @Size(max = 50) List<@AlphaChars @StringLength(min = 1, max = 8) String> ids
+    ) {
+        IdRegistry fresh = new IdRegistry();
+        for (String id : ids) {
+            assertEquals(id, fresh.idOf(fresh.intern(id)));
+        }
+        assertEquals(new HashSet<>(ids).size(), fresh.size());
+    }
+}
@@ -1,3 +1,8 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -13,6 +18,16 @@ public class Interface {
     private boolean isFullTime          = false;
     private String  currentLibrarianCode = null;
 
+    // Creates a CLI over a fresh, in-memory library
+    public Interface() {
+    }
+
+    // Creates a CLI over existing (e.g. journal-recovered) library state
+    public Interface(Library library, LibraryAccounts accounts) {
+        this.library = library;
+        this.accounts = accounts;
+    }
+
     public void start() {
         scanner = new Scanner(System.in);
         // Print group names on startup
@@ -26,6 +41,7 @@ public class Interface {
         authenticateUser();
 
         while (true) {
+            reportOverdue();
             System.out.println("\nLIBRARY MANAGEMENT SYSTEM:");
             System.out.println("1. Add Book");
             System.out.println("2. Remove Book");
@@ -38,6 +54,8 @@ public class Interface {
             System.out.println("9. Add Donation");
             System.out.println("10. Withdraw Salary");
             System.out.println("11. Exit");
+            System.out.println("12. Import Books from CSV/TSV File");
+            System.out.println("13. Find Duplicate Book Records");
             System.out.print("Choose an option: ");
 
             String input = scanner.nextLine();
@@ -66,6 +84,8 @@ public class Interface {
                     System.out.println("Exiting...");
                     return;
                 }
+                case 12 -> importBooks();
+                case 13 -> findDuplicates();
                 default -> System.out.println("Invalid choice.");
             }
         }
@@ -115,12 +135,48 @@ public class Interface {
         if (library.addBook(book)) System.out.println("Added book: " + book.getBookInfo());
     }
 
+    private void importBooks() {
+        // Bulk-load books from a CSV/TSV file (title, author, year, isbn, bookId, genre)
+        System.out.print("Enter file path: ");
+        Path file = Path.of(scanner.nextLine().trim());
+        System.out.print("Does the file have a header row? (y/n): ");
+        boolean header = scanner.nextLine().equalsIgnoreCase("y");
+        try {
+            CatalogImporter.ImportReport report = CatalogImporter.forFile(library, file).importFile(file, header);
+            System.out.println(report.summary());
+            for (String reject : report.getRejectSamples()) {
+                System.out.println("Rejected " + reject);
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
+    private void findDuplicates() {
+        // List groups of records that look like one book entered twice (similar title and
+        // author, or the same ISBN written differently)
+        DuplicateDetector detector = new DuplicateDetector(library);
+        detector.addAll(library.getAllBooks());
+        List<DuplicateDetector.Cluster> clusters = detector.clusters();
+        if (clusters.isEmpty()) {
+            System.out.println("No duplicate records found.");
+            return;
+        }
+        for (DuplicateDetector.Cluster cluster : clusters) {
+            System.out.println("Possible duplicates:");
+            for (Book book : cluster.getBooks()) {
+                System.out.println("  " + book.getBookInfo());
+            }
+        }
+    }
+
     private void removeBook() {
         // Remove a book by its ID if it exists
         System.out.print("Enter book ID to remove: ");
         String id = scanner.nextLine();
-        library.removeBook(id);
+        RemovalReport report = library.removeBook(id, Library.DeletionPolicy.ORPHAN);
         System.out.println("Removed book ID " + id + " (if it existed).");
+        printOrphanedLoans(report);
     }
 
     private void addMember() {
@@ -143,8 +199,16 @@ public class Interface {
         }
         System.out.print("Enter member ID to remove: ");
         String id = scanner.nextLine();
-        library.revokeMembership(id);
+        RemovalReport report = library.revokeMembership(id, Library.DeletionPolicy.ORPHAN);
         System.out.println("Revoked membership for ID " + id + " (if it existed).");
+        printOrphanedLoans(report);
+    }
+
+    private void printOrphanedLoans(RemovalReport report) {
+        // Copies that were still out when their record was removed need chasing up by hand
+        for (Loan loan : report.getOrphanedLoans()) {
+            System.out.println("Still out: book " + loan.getBookId() + " with member " + loan.getMemberId());
+        }
     }
 
     private void checkoutBook() {
@@ -165,19 +229,9 @@ public class Interface {
             if (isFullTime) {
                 System.out.print("Book not found. Purchase and add it? (y/n): ");
                 if (scanner.nextLine().equalsIgnoreCase("y")) {
-                    // Attempt book purchase and handle insufficient funds
-                    try {
-                        double cost = accounts.orderNewBook();
-                        accounts.getLibrarians().recordBookPurchase(currentLibrarianCode, cost);
-                        System.out.println("Purchased for $" + cost);
-                        System.out.println("Now enter its details:");
-                        Book newBook = promptBookDetails();
-                        library.addBook(newBook);
-                        book = newBook;
-                    } catch (IllegalArgumentException e) {
-                        System.out.println("Purchase failed: " + e.getMessage());
-                        return;
-                    }
+                    System.out.println("Enter its details:");
+                    purchaseAndCheckout(member, promptBookDetails());
+                    return;
                 } else {
                     System.out.println("Purchase cancelled; checkout aborted.");
                     return;
@@ -188,8 +242,59 @@ public class Interface {
             }
         }
 
-        library.checkoutBook(member, book);
-        System.out.println("Checked out \"" + book.getName() + "\" to " + member.getName());
+        if (library.checkoutBook(member, book)) {
+            Loan loan = library.getLoan(book.getBookId());
+            System.out.println("Checked out \"" + book.getName() + "\" to " + member.getName()
+                    + (loan == null ? "" : " (due " + formatDate(loan.getDueAt()) + ")"));
+        } else {
+            System.out.println("\"" + book.getName() + "\" is already checked out.");
+            if (!member.getBorrowedBookList().contains(book)) {
+                int position = library.placeHold(member, book);
+                System.out.println("Placed a hold for " + member.getName() + " (position " + position + " in line).");
+            }
+        }
+    }
+
+    private void purchaseAndCheckout(Member member, Book book) {
+        // Buy, catalogue and lend the new copy in one transaction, so no other desk can check
+        // it out between the purchase and this member's checkout
+        try {
+            Double cost = library.transact(member.getMemberId(), Collections.singletonList(book.getBookId()), () -> {
+                if (library.getBookById(book.getBookId()) != null) return null;
+                double paid = accounts.orderNewBook();
+                accounts.getLibrarians().recordBookPurchase(currentLibrarianCode, paid);
+                library.addBook(book);
+                library.checkoutBook(member, book);
+                return paid;
+            });
+            if (cost == null) {
+                System.out.println("Book ID already exists! Nothing was purchased.");
+                return;
+            }
+            System.out.println("Purchased for $" + cost);
+        } catch (IllegalArgumentException e) {
+            // Insufficient funds: nothing was bought, added or lent
+            System.out.println("Purchase failed: " + e.getMessage());
+            return;
+        }
+        Loan loan = library.getLoan(book.getBookId());
+        System.out.println("Checked out \"" + book.getName() + "\" to " + member.getName()
+                + (loan == null ? "" : " (due " + formatDate(loan.getDueAt()) + ")"));
+    }
+
+    private void reportOverdue() {
+        // Print a notice for each loan that has fallen due since the menu was last shown
+        for (Loan loan : library.checkOverdue()) {
+            Book book = library.getBookById(loan.getBookId());
+            Member member = library.getMemberById(loan.getMemberId());
+            if (book == null || member == null) continue;
+            System.out.println("OVERDUE: \"" + book.getName() + "\" held by " + member.getName()
+                    + " was due " + formatDate(loan.getDueAt()));
+        }
+    }
+
+    private String formatDate(Instant instant) {
+        return LocalDate.ofInstant(instant, library.getClock().getZone()).toString();
     }
 
     private void returnBook() {
@@ -209,19 +314,39 @@ public class Interface {
     }
 
     private void viewBooks() {
-        // Display all books currently in the library
-        for (Book book : library.getAllBooks()) {
-            System.out.println(book.getBookInfo());
+        // Display all books currently in the library, from one consistent catalog version,
+        // through one large buffer rather than a formatted println per book
+        Collection<Book> books = library.snapshot().getBooks();
+        if (books.isEmpty()) {
+            System.out.println("No books currently in System!");
+            return;
         }
-        if (library.getAllBooks().isEmpty()) System.out.println("No books currently in System!");
+        list(writer -> writer.writeBooks(books, RecordFormat.TEXT));
     }
 
     private void viewMembers() {
-        // Display all registered library members
-        for (Member member : library.getAllMembers()) {
-            System.out.println(member.getMemberInfo());
+        // Display all registered library members, from one consistent catalog version
+        Collection<Member> members = library.snapshot().getMembers();
+        if (members.isEmpty()) {
+            System.out.println("No members currently in System!");
+            return;
+        }
+        list(writer -> writer.writeMembers(members, RecordFormat.TEXT));
+    }
+
+    private interface Listing {
+        void writeTo(RecordWriter writer) throws IOException;
+    }
+
+    // Writes a listing to the console through a RecordWriter, flushing it once at the end
+    private static void list(Listing listing) {
+        RecordWriter writer = new RecordWriter(System.out);
+        try {
+            listing.writeTo(writer);
+            writer.flush();
+        } catch (IOException e) {
+            System.out.println("Could not write the listing: " + e.getMessage());
         }
-        if (library.getAllMembers().isEmpty()) System.out.println("No members currently in System!");
     }
 
     private void addDonation() {
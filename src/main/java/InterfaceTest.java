@@ -97,6 +97,26 @@ public class InterfaceTest {
         assertDoesNotThrow(() -> cli.start(), "Invalid return should not crash.");
     }
 
+    @Test
+    // Importing a catalog file, then a missing file, does not crash the system
+    public void testImportBooks() throws Exception {
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("catalog", ".csv");
+        java.nio.file.Files.writeString(file, "title,author,year,isbn,bookId,genre\nDune,Frank Herbert,1965,isbn,B1,SF\n");
+        String input = "\n12\n" + file + "\ny\n12\n" + file + ".missing\nn\n7\n11\n";
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        assertDoesNotThrow(() -> cli.start(), "Importing books should not crash.");
+        java.nio.file.Files.deleteIfExists(file);
+    }
+
+    @Test
+    // Looking for duplicates with none, then with a re-entered book, does not crash the system
+    public void testFindDuplicates() {
+        String input = "\n13\n1\nDune\nFrank Herbert\n1965\n978-0441013593\nB1\nSF\n"
+                + "1\nDune.\nFrank Herbert\n1965\n9780441013593\nB2\nSF\n13\n11\n";
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        assertDoesNotThrow(() -> cli.start(), "Finding duplicates should not crash.");
+    }
+
     @Test
     // Viewing the list of books should display entries without errors
     public void testViewBooks() {
@@ -250,6 +270,30 @@ public class InterfaceTest {
         assertDoesNotThrow(() -> cli.start(), "Purchase and checkout should not crash.");
     }
 
+    @Test
+    // The purchased copy is lent to the member in the same step, and a failed purchase adds nothing
+    public void testCheckoutPurchaseLendsTheNewCopy() {
+        Library library = new Library(true);
+        LibraryAccounts accounts = new LibraryAccounts();
+        String input =
+                "123456\n" +
+                        "3\nBob\nbob@example.com\nMEM1\n" +
+                        "5\nMEM1\nB1\ny\n" +
+                        "Title\nAuth\n2021\nISBNX\nB1\nGenre\n" +
+                        "11\n";
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        new Interface(library, accounts).start();
+        assertEquals("Bob", library.whoHasBook("B1"), "The purchased copy should go to the member.");
+
+        accounts.withdrawSalary(accounts.getOperatingCashBalance() - 1);
+        double balance = accounts.getOperatingCashBalance();
+        input = "123456\n5\nMEM1\nB2\ny\nOther\nAuth\n2021\nISBNY\nB2\nGenre\n11\n";
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        new Interface(library, accounts).start();
+        assertEquals(balance, accounts.getOperatingCashBalance(), 0.0);
+        assertNull(library.getBookById("B2"), "A purchase that failed should add no book.");
+    }
+
     @Test
     // Insufficient funds on salary withdrawal are caught and handled gracefully
     public void testWithdrawSalaryInsufficientFunds() {
@@ -268,6 +312,7 @@ public class InterfaceTest {
                         "10\n38999\n" +                       // withdraw almost all money (leave $1)
                         "3\nBob\nbob@x.com\nMEM99\n" +        // add member
                         "5\nMEM99\nNOBOOK\ny\n" +             // try to checkout non-existent book, agree to purchase
+                        "Title\nAuth\n2021\nISBNX\nNOBOOK\nGenre\n" + // its details, before it is paid for
                         "11\n";                               // exit after error
 
         System.setIn(new ByteArrayInputStream(input.getBytes()));
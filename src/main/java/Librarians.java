@@ -6,6 +6,8 @@ import java.util.*;
  */
 public class Librarians {
     private Map<String, Librarian> librarians;
+    // Journal that records salary and purchase history, or null when running in memory only
+    private LibraryJournal journal;
 
     // Constructor to set up three predefined librarians with 6digit codes
     public Librarians() {
@@ -15,6 +17,11 @@ public class Librarians {
         librarians.put("000000", new Librarian("Ghost", "000000"));
     }
 
+    // Attach a journal that logs every later salary and purchase record (null to detach)
+    public void setJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
     // Check if given authCode belongs to a fulltime librarian
     public boolean authenticate(String authCode) {
         return librarians.containsKey(authCode);
@@ -35,25 +42,36 @@ public class Librarians {
     }
 
     // Log a salary withdrawal for the given librarian code
+    // (the journal record is appended under the monitor, then committed outside it)
     public void recordSalaryWithdrawal(String authCode, double amount) {
-        Librarian lib = librarians.get(authCode);
-        if (lib == null) {
-            throw new IllegalArgumentException("Invalid librarian code");
+        long record;
+        synchronized (this) {
+            Librarian lib = librarians.get(authCode);
+            if (lib == null) {
+                throw new IllegalArgumentException("Invalid librarian code");
+            }
+            lib.addSalary(amount);
+            record = journal == null ? 0 : journal.appendLibrarianSalary(authCode, amount);
         }
-        lib.addSalary(amount);
+        if (record > 0) journal.commit(record);
     }
 
     // Log a book purchase cost for the given librarian code
     public void recordBookPurchase(String authCode, double cost) {
-        Librarian lib = librarians.get(authCode);
-        if (lib == null) {
-            throw new IllegalArgumentException("Invalid librarian code");
+        long record;
+        synchronized (this) {
+            Librarian lib = librarians.get(authCode);
+            if (lib == null) {
+                throw new IllegalArgumentException("Invalid librarian code");
+            }
+            lib.addPurchasedBook(cost);
+            record = journal == null ? 0 : journal.appendLibrarianPurchase(authCode, cost);
         }
-        lib.addPurchasedBook(cost);
+        if (record > 0) journal.commit(record);
     }
 
     // Get total salary withdrawn by a specific librarian
-    public double getTotalSalaryWithdrawn(String authCode) {
+    public synchronized double getTotalSalaryWithdrawn(String authCode) {
         Librarian lib = librarians.get(authCode);
         if (lib == null) {
             throw new IllegalArgumentException("Invalid librarian code");
@@ -62,7 +80,7 @@ public class Librarians {
     }
 
     // Get list of book purchase costs for a specific librarian
-    public List<Double> getPurchasedBooks(String authCode) {
+    public synchronized List<Double> getPurchasedBooks(String authCode) {
         Librarian lib = librarians.get(authCode);
         if (lib == null) {
             throw new IllegalArgumentException("Invalid librarian code");
@@ -70,6 +88,16 @@ public class Librarians {
         return lib.getPurchasedBooks();
     }
 
+    // Replace a librarian's history with values loaded from a snapshot
+    synchronized void restoreHistory(String authCode, double totalSalary, List<Double> purchases) {
+        Librarian lib = librarians.get(authCode);
+        if (lib == null) {
+            throw new IllegalArgumentException("Invalid librarian code");
+        }
+        lib.totalSalary = totalSalary;
+        lib.purchasedBooks = new ArrayList<>(purchases);
+    }
+
     // Internal class representing an individual librarian record
     private static class Librarian {
         private final String name;
@@ -1,99 +1,1060 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.lang.ref.WeakReference;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * Manages the collections of books and members in the library system.
  * Provides methods for CRUD operations and book checkout/return processes.
+ * A concurrent library may be shared by many threads: it uses concurrent maps and
+ * claims books with an atomic compare-and-set, so no global lock is taken.
+ * Multi-step operations lock only the stripes of the member and books involved.
  */
 
 public class Library {
-    private Map<String, Book> allBooks = new HashMap<>();
-    private Map<String, Member> allMembers = new HashMap<>();
+    private final boolean concurrent;
+    // Current books and members as an immutable version, swapped atomically on every change,
+    // so readers can iterate a consistent catalog without locks while writers carry on
+    private final AtomicReference<CatalogVersion> catalog = new AtomicReference<>(CatalogVersion.EMPTY);
+    // Dense int handles for book IDs; the loan and hold tables are indexed by them
+    private final IdRegistry bookHandles = new IdRegistry();
+    // Loan index: book handle -> the current loan of that book (who has it and when it is due)
+    private HandleTable<Loan> loanIndex;
+    // Title/author/genre search index, kept in step with the catalog
+    private BookSearchIndex searchIndex;
+    // Typo-tolerant title/author index, for searchBooksFuzzy
+    private FuzzySearchIndex fuzzyIndex;
+    // Year, genre and availability indexes by book handle, for query()
+    private BookIndexes indexes;
+    // ISBN -> copies, with an available-copy counter per ISBN
+    private Holdings holdings;
+    // book handle -> members waiting for that book, served first-come first-served on return
+    private HandleTable<HoldQueue> holds;
+    // Per-member/per-book lock stripes for compound operations (concurrent mode only)
+    private LockStripes stripes;
+    // Journal that records every mutation, or null when running in memory only
+    private LibraryJournal journal;
+    // Bus that circulation events are published to, or null when nobody is listening
+    private CirculationEventBus events;
+    // Resolves member IDs held in loans and hold queues; null means this library's own members.
+    // A shard of a ShardedLibrary points this at the shard that owns each member.
+    private volatile Function<String, Member> memberDirectory;
+    // Source of checkout times; replaceable so due dates can be tested deterministically
+    private final Clock clock;
+    private volatile Duration loanPeriod = DEFAULT_LOAN_PERIOD;
+    // Timing wheel that raises each loan once it passes its due date
+    private final OverdueTracker overdue;
+    // Most borrowed books, fed by every checkout this library makes
+    private final PopularityTracker popularity;
+
+    private static final int LOCK_STRIPES = 1024;
+    private static final Duration OVERDUE_TICK = Duration.ofMinutes(1);
+    // One daemon thread sweeps the overdue trackers of every library, once a tick each
+    private static final ScheduledExecutorService OVERDUE_SWEEPER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "overdue-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    public static final Duration DEFAULT_LOAN_PERIOD = Duration.ofDays(14);
+
+    // What removing a book or revoking a member does about loans that are still open
+    public enum DeletionPolicy {
+        // Keep anything that is on loan and report the loans in the way
+        REJECT,
+        // Return each loan first (a returned book goes to its next holder), then remove
+        FORCE_RETURN,
+        // Remove anyway and report the loans cut off; the copies stay out with the borrowers
+        ORPHAN
+    }
+
+    //Creates a library for single-threaded use.
+    public Library() {
+        this(false);
+    }
+
+    //Creates a library, safe for concurrent use if requested.
+    public Library(boolean concurrent) {
+        this(concurrent, Clock.systemUTC());
+    }
+
+    //Creates a library that dates its loans by the given clock.
+    public Library(boolean concurrent, Clock clock) {
+        this.concurrent = concurrent;
+        this.clock = clock;
+        this.loanIndex = new HandleTable<>();
+        this.searchIndex = new BookSearchIndex(concurrent);
+        this.fuzzyIndex = new FuzzySearchIndex();
+        this.indexes = new BookIndexes();
+        this.holdings = new Holdings();
+        this.holds = new HandleTable<>();
+        this.stripes = concurrent ? new LockStripes(LOCK_STRIPES) : null;
+        this.overdue = new OverdueTracker(OVERDUE_TICK, clock.instant(),
+                loan -> loanIndex.get(bookHandles.find(loan.getBookId())) == loan);
+        scheduleSweeps(overdue, clock);
+        this.popularity = new PopularityTracker(clock);
+    }
+
+    //Sweeps the overdue tracker once a tick, so returned loans are let go even if nobody
+    //calls checkOverdue. The task holds the tracker weakly and cancels itself once the
+    //library is gone.
+    private static void scheduleSweeps(OverdueTracker tracker, Clock clock) {
+        WeakReference<OverdueTracker> owner = new WeakReference<>(tracker);
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        long tick = OVERDUE_TICK.toMillis();
+        task.set(OVERDUE_SWEEPER.scheduleWithFixedDelay(() -> {
+            OverdueTracker swept = owner.get();
+            if (swept == null) {
+                task.get().cancel(false);
+                return;
+            }
+            try {
+                swept.sweep(clock.instant());
+            } catch (RuntimeException e) {
+                // Keep sweeping at the next tick; an exception would cancel the task
+                System.err.println("Overdue sweep failed: " + e);
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS));
+    }
+
+    //Returns the current catalog version: a consistent, unchanging view of every book and
+    //member that costs O(1) to take and never blocks checkouts or returns.
+    public CatalogVersion snapshot() {
+        return catalog.get();
+    }
+
+    //Applies a change to the catalog, retrying if another thread swapped in a version first.
+    //returns the version that was replaced
+    private CatalogVersion updateCatalog(UnaryOperator<CatalogVersion> change) {
+        while (true) {
+            CatalogVersion current = catalog.get();
+            CatalogVersion next = change.apply(current);
+            if (next == current || catalog.compareAndSet(current, next)) return current;
+        }
+    }
+
+    //Attaches a journal that logs every later mutation (null to detach).
+    public void setJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
+    //Attaches an event bus that receives every later catalog and circulation change (null to detach).
+    public void setEventBus(CirculationEventBus events) {
+        this.events = events;
+    }
+
+    private void publish(CirculationEvent.Type type, String bookId, String memberId) {
+        if (events != null) events.publish(type, bookId, memberId, 0);
+    }
+
+    //Returns true if this library may be shared between threads.
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    //Sets how long new loans last (existing loans keep their due dates).
+    public void setLoanPeriod(Duration loanPeriod) {
+        if (loanPeriod.isNegative() || loanPeriod.isZero()) {
+            throw new IllegalArgumentException("Loan period must be positive");
+        }
+        this.loanPeriod = loanPeriod;
+    }
+
+    public Duration getLoanPeriod() {
+        return loanPeriod;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    //Returns the most-borrowed rankings, which count every checkout made since the library
+    //was created (loans restored from a journal or snapshot are not counted again).
+    public PopularityTracker getPopularity() {
+        return popularity;
+    }
 
     //Adds a new book to the library.
     //returns boolean based on add success
     public boolean addBook(Book book) {
-        if (allBooks.containsKey(book.getBookId())) {
+        if (!transact(null, Collections.singletonList(book.getBookId()), () -> addBookLocked(book))) {
             System.out.println("Book ID already exists!");
             return false;
         }
-        allBooks.put(book.getBookId(), book);
         return true;
     }
 
+    //Adds many books at once, silently skipping IDs that already exist (or repeat in the batch).
+    //All the additions share one catalog version and one journal record, e.g. per import chunk.
+    //returns the number of books added
+    public int addBooks(Collection<Book> books) {
+        Map<String, Book> byId = new LinkedHashMap<>();
+        for (Book book : books) {
+            byId.putIfAbsent(book.getBookId(), book);
+        }
+        if (byId.isEmpty()) return 0;
+        return withStripes(Collections.emptyList(), byId.keySet(), () -> addBooksLocked(byId.values()));
+    }
+
+    private boolean addBookLocked(Book book) {
+        String bookId = book.getBookId();
+        CatalogVersion before = updateCatalog(c -> c.getBook(bookId) != null ? c
+                : c.withBooks(c.books().put(bookId, book)));
+        if (before.getBook(bookId) != null) {
+            return false;
+        }
+        attachBook(book);
+        if (journal != null) journal.logAddBook(book);
+        publish(CirculationEvent.Type.BOOK_ADDED, bookId, null);
+        return true;
+    }
+
+    private int addBooksLocked(Collection<Book> books) {
+        CatalogVersion before = updateCatalog(c -> {
+            PersistentHashMap<String, Book> catalog = c.books();
+            for (Book book : books) {
+                if (catalog.get(book.getBookId()) == null) catalog = catalog.put(book.getBookId(), book);
+            }
+            return catalog == c.books() ? c : c.withBooks(catalog);
+        });
+        List<Book> added = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (before.getBook(book.getBookId()) == null) added.add(book);
+        }
+        attachBooks(added);
+        for (Book book : added) {
+            publish(CirculationEvent.Type.BOOK_ADDED, book.getBookId(), null);
+        }
+        if (journal != null && !added.isEmpty()) journal.logAddBooks(added);
+        return added.size();
+    }
+
+    //Enters a book that was just put in the catalog into the search indexes and holdings.
+    private void attachBook(Book book) {
+        searchIndex.add(book);
+        fuzzyIndex.add(book);
+        holdings.add(book);
+        int handle = bookHandles.intern(book.getBookId());
+        indexes.add(handle, book);
+        book.setLibrary(this, handle);
+    }
+
+    //Like attachBook for many books, filling each index in one pass.
+    private void attachBooks(List<Book> books) {
+        searchIndex.addAll(books);
+        fuzzyIndex.addAll(books);
+        int[] handles = new int[books.size()];
+        for (int i = 0; i < handles.length; i++) {
+            holdings.add(books.get(i));
+            handles[i] = bookHandles.intern(books.get(i).getBookId());
+        }
+        indexes.addAll(handles, books);
+        for (int i = 0; i < handles.length; i++) {
+            books.get(i).setLibrary(this, handles[i]);
+        }
+    }
+
     //Removes a book from the library by its ID.
+    //If the book is on loan it is also dropped from the borrower's list.
     public void removeBook(String bookId) {
-        allBooks.remove(bookId);
+        removeBook(bookId, DeletionPolicy.ORPHAN);
+    }
+
+    //Removes a book, dealing with an open loan as the policy says.
+    //The loan is found through the loan index, so no member is scanned.
+    //returns what was removed, kept, returned or orphaned
+    public RemovalReport removeBook(String bookId, DeletionPolicy policy) {
+        while (true) {
+            // Lock the borrower too, since settling the loan changes their list. A checkout or
+            // return can slip in before the locks are taken; if it did, try again.
+            String holder = holderOf(bookId);
+            RemovalReport report = transact(holder, Collections.singletonList(bookId), () ->
+                    Objects.equals(holderOf(bookId), holder) ? removeBookLocked(bookId, policy) : null);
+            if (report != null) return report;
+        }
+    }
+
+    private RemovalReport removeBookLocked(String bookId, DeletionPolicy policy) {
+        RemovalReport report = new RemovalReport(policy);
+        if (!settleLoanForRemoval(bookId, policy, report)) return report;
+        Book book = updateCatalog(c -> c.getBook(bookId) == null ? c
+                : c.withBooks(c.books().remove(bookId))).getBook(bookId);
+        String memberId = detachBook(bookId, book, report);
+        if (book != null || memberId != null) {
+            if (journal != null) journal.logRemoveBook(bookId);
+            publish(CirculationEvent.Type.BOOK_REMOVED, bookId, memberId);
+        }
+        return report;
+    }
+
+    //Removes many books in one call, e.g. when weeding the collection.
+    //All the removals share one catalog version and one journal record. Under REJECT the
+    //books on loan are kept and the rest removed, so the call never fails as a whole.
+    //returns what was removed, kept, returned or orphaned
+    public RemovalReport removeBooks(Collection<String> bookIds, DeletionPolicy policy) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(bookIds));
+        while (true) {
+            // As in removeBook, lock every borrower and retry if a loan changed hands meanwhile
+            Set<String> holders = holdersOf(ids);
+            RemovalReport report = withStripes(holders, ids, () ->
+                    holders.equals(holdersOf(ids)) ? removeBooksLocked(ids, policy) : null);
+            if (report != null) return report;
+        }
+    }
+
+    private RemovalReport removeBooksLocked(List<String> ids, DeletionPolicy policy) {
+        RemovalReport report = new RemovalReport(policy);
+        List<String> removable = new ArrayList<>(ids.size());
+        for (String bookId : ids) {
+            if (settleLoanForRemoval(bookId, policy, report)) removable.add(bookId);
+        }
+        CatalogVersion before = updateCatalog(c -> {
+            PersistentHashMap<String, Book> books = c.books();
+            for (String bookId : removable) {
+                books = books.remove(bookId);
+            }
+            return books == c.books() ? c : c.withBooks(books);
+        });
+        List<String> removed = new ArrayList<>(removable.size());
+        for (String bookId : removable) {
+            Book book = before.getBook(bookId);
+            String memberId = detachBook(bookId, book, report);
+            if (book != null || memberId != null) {
+                removed.add(bookId);
+                publish(CirculationEvent.Type.BOOK_REMOVED, bookId, memberId);
+            }
+        }
+        if (journal != null && !removed.isEmpty()) journal.logRemoveBooks(removed);
+        return report;
+    }
+
+    //Returns the ID of the member a book is lent to, or null.
+    private String holderOf(String bookId) {
+        Loan loan = loanOf(bookId);
+        return loan == null ? null : loan.getMemberId();
+    }
+
+    private Set<String> holdersOf(Collection<String> bookIds) {
+        Set<String> holders = new HashSet<>();
+        for (String bookId : bookIds) {
+            String holder = holderOf(bookId);
+            if (holder != null) holders.add(holder);
+        }
+        return holders;
+    }
+
+    //Applies the deletion policy to a book's open loan, if any.
+    //returns false if the book must be kept
+    private boolean settleLoanForRemoval(String bookId, DeletionPolicy policy, RemovalReport report) {
+        Loan loan = loanIndex.get(bookHandles.find(bookId));
+        if (loan == null) return true;
+        if (policy == DeletionPolicy.REJECT) {
+            report.rejected(bookId, loan);
+            return false;
+        }
+        if (policy == DeletionPolicy.FORCE_RETURN) {
+            Member member = lookupMember(loan.getMemberId());
+            Book book = catalog.get().getBook(bookId);
+            if (member != null && book != null) {
+                // Returned straight to the shelf: the book is leaving, so nobody waiting gets it
+                member.removeBorrowedBook(bookId);
+                removeLoan(book, member.getMemberId());
+                if (journal != null) journal.logReturn(member.getMemberId(), bookId);
+                publish(CirculationEvent.Type.RETURN, bookId, member.getMemberId());
+                book.setAvailable(true);
+                report.returned(loan);
+            }
+        }
+        return true;
+    }
+
+    //Clears everything kept about a book that has left the catalog: indexes, holds, and any
+    //loan still open, which is reported as orphaned.
+    //returns the ID of the member whose loan was cut off, or null
+    private String detachBook(String bookId, Book book, RemovalReport report) {
+        int handle = bookHandles.find(bookId);
+        if (book != null) {
+            book.setLibrary(null, -1);
+            searchIndex.remove(book);
+            fuzzyIndex.remove(book);
+            holdings.remove(book);
+            indexes.remove(handle);
+            report.removed(bookId);
+        }
+        Loan loan = loanIndex.remove(handle);
+        String memberId = loan == null ? null : loan.getMemberId();
+        if (memberId != null) {
+            Member member = lookupMember(memberId);
+            if (member != null) member.removeBorrowedBook(bookId);
+            report.orphaned(loan);
+        }
+        holds.remove(handle);
+        // Nothing is stored under the handle any more, so the next new book may have it
+        if (handle >= 0) bookHandles.release(bookId);
+        return memberId;
     }
 
     //Adds a new member to the library.
     //returns boolean based on add success
     public boolean addMember(Member member) {
-        if (allMembers.containsKey(member.getMemberId())) {
+        return transact(member.getMemberId(), Collections.emptyList(), () -> addMemberLocked(member));
+    }
+
+    private boolean addMemberLocked(Member member) {
+        String memberId = member.getMemberId();
+        CatalogVersion before = updateCatalog(c -> c.getMember(memberId) != null ? c
+                : c.withMembers(c.members().put(memberId, member)));
+        if (before.getMember(memberId) != null) {
             System.out.println("Member ID already exists!");
             return false;
         }
-        allMembers.put(member.getMemberId(), member);
+        if (journal != null) journal.logAddMember(member);
+        publish(CirculationEvent.Type.MEMBER_ADDED, null, memberId);
         return true;
     }
 
     //Revokes a member's membership by their ID.
+    //Their loans are dropped but the books stay unavailable, since the copies are still out.
     public void revokeMembership(String memberId) {
-        allMembers.remove(memberId);
+        revokeMembership(memberId, DeletionPolicy.ORPHAN);
+    }
+
+    //Revokes a membership, dealing with the member's open loans as the policy says.
+    //Only that member's own loans are visited.
+    //returns what was removed, kept, returned or orphaned
+    public RemovalReport revokeMembership(String memberId, DeletionPolicy policy) {
+        while (true) {
+            // Lock the books too, so forced returns can hand them on. A checkout can slip in
+            // before the locks are taken; if it did, try again with the new list.
+            Member member = getMemberById(memberId);
+            List<String> bookIds = new ArrayList<>();
+            if (member != null) {
+                for (Book book : member.getBorrowedBookList()) bookIds.add(book.getBookId());
+            }
+            RemovalReport report = transact(memberId, bookIds, () -> {
+                Member current = catalog.get().getMember(memberId);
+                if (current != member) return null;
+                Set<String> held = new HashSet<>(bookIds);
+                for (Book book : current == null ? Collections.<Book>emptyList() : current.getBorrowedBookList()) {
+                    if (!held.contains(book.getBookId())) return null;
+                }
+                return revokeMembershipLocked(memberId, policy);
+            });
+            if (report != null) return report;
+        }
+    }
+
+    private RemovalReport revokeMembershipLocked(String memberId, DeletionPolicy policy) {
+        RemovalReport report = new RemovalReport(policy);
+        Member member = catalog.get().getMember(memberId);
+        if (member == null) return report;
+        List<Book> borrowed = new ArrayList<>(member.getBorrowedBookList());
+        if (policy == DeletionPolicy.REJECT && !borrowed.isEmpty()) {
+            for (Book book : borrowed) {
+                Loan loan = loanIndex.get(findHandle(book));
+                if (loan != null) report.rejected(memberId, loan);
+            }
+            return report;
+        }
+        if (policy == DeletionPolicy.FORCE_RETURN) {
+            for (Book book : borrowed) {
+                Loan loan = loanIndex.get(findHandle(book));
+                returnBookLocked(member, book);
+                if (loan != null && loan.getMemberId().equals(memberId)) report.returned(loan);
+            }
+        }
+        updateCatalog(c -> c.getMember(memberId) == null ? c : c.withMembers(c.members().remove(memberId)));
+        report.removed(memberId);
+        for (Book book : member.getBorrowedBookList()) {
+            Loan loan = removeLoan(book, memberId);
+            if (loan != null) report.orphaned(loan);
+        }
+        if (journal != null) journal.logRevokeMembership(memberId);
+        publish(CirculationEvent.Type.MEMBERSHIP_REVOKED, null, memberId);
+        return report;
     }
 
     //Returns the name of the member who has a book checked out, if any.
     public String whoHasBook(String bookId) {
-        for (Member member : allMembers.values()) {
+        Loan loan = loanOf(bookId);
+        Member member = loan == null ? null : lookupMember(loan.getMemberId());
+        return member == null ? "Not checked out." : member.getName();
+    }
+
+    //Returns the current loan of a book, or null if it is not lent out.
+    public Loan getLoan(String bookId) {
+        return loanOf(bookId);
+    }
+
+    //Registers a listener that is told once about each loan as it becomes overdue.
+    //Listeners run on the thread that calls checkOverdue.
+    public void addOverdueListener(Consumer<Loan> listener) {
+        overdue.addListener(listener);
+    }
+
+    //Raises every loan that has fallen due since the last call, including those the
+    //background sweep has already found.
+    //Cost is proportional to the loans that came due, not to the loans outstanding.
+    //returns the loans that became overdue
+    public List<Loan> checkOverdue() {
+        return overdue.advance(clock.instant());
+    }
+
+    //Verifies that the loan index matches every member's borrowed list.
+    //returns true when each loan appears exactly once in both places
+    //(only meaningful while no checkouts or returns are in flight)
+    public boolean isLoanIndexConsistent() {
+        int loans = 0;
+        for (Member member : catalog.get().getMembers()) {
             for (Book book : member.getBorrowedBookList()) {
-                if (book.getBookId().equals(bookId)) {
-                    return member.getName();
+                Loan loan = loanIndex.get(findHandle(book));
+                if (loan == null || !member.getMemberId().equals(loan.getMemberId())) {
+                    return false;
                 }
+                loans++;
             }
         }
-        return "Not checked out.";
+        return loans == loanIndex.size();
     }
 
-    //Returns a collection of all members in the system.
+    //Returns a collection of all members in the system, as of the current catalog version.
     public Collection<Member> getAllMembers() {
-        return allMembers.values();
+        return catalog.get().getMembers();
     }
 
-    //Returns a collection of all books in the library.
+    //Returns a collection of all books in the library, as of the current catalog version.
     public Collection<Book> getAllBooks() {
-        return allBooks.values();
+        return catalog.get().getBooks();
     }
 
     //Finds a book by its name, ignoring case.
     public Book findBookByName(String name) {
-        for (Book book : allBooks.values()) {
-            if (book.getName().equalsIgnoreCase(name)) {
-                return book;
+        List<Book> matches = searchIndex.findByTitle(name);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    //Finds every book whose name matches, ignoring case.
+    public List<Book> findBooksByName(String name) {
+        return searchIndex.findByTitle(name);
+    }
+
+    //Starts a query over the year, genre and availability indexes, e.g.
+    //query().genre("Fantasy").yearBetween(1990, 2000).available(true).list().
+    //The most selective condition drives the query, so only its books are visited.
+    public BookQuery query() {
+        return new BookQuery(indexes);
+    }
+
+    //Returns books whose name, author or genre contain every term of the query.
+    public List<Book> searchBooks(String query) {
+        return searchIndex.search(query);
+    }
+
+    //Returns up to 'limit' books whose name or author resemble the query, best match first.
+    //Tolerates typos ("Hobit" finds "The Hobbit"); available books rank a little higher.
+    public List<Book> searchBooksFuzzy(String query, int limit) {
+        return fuzzyIndex.search(query, limit);
+    }
+
+    //Returns books whose name, author or genre contain words starting with every query term.
+    public List<Book> searchBooksByPrefix(String prefix) {
+        return searchIndex.searchByPrefix(prefix);
+    }
+
+    //Changes a catalogued book's details while holding its lock stripe, so no checkout or
+    //return flips its availability while it is out of the indexes and holdings.
+    void updateBookInfo(Book book, Runnable update) {
+        transact(null, Collections.singletonList(book.getBookId()), () -> {
+            if (book.handleIn(this) < 0) {
+                update.run(); // removed meanwhile: nothing left to re-index
+                return null;
             }
-        }
-        return null;
+            bookInfoChanging(book);
+            update.run();
+            bookInfoChanged(book);
+            return null;
+        });
+    }
+
+    //Called just before a catalogued book's details change.
+    private void bookInfoChanging(Book book) {
+        searchIndex.remove(book);
+        fuzzyIndex.remove(book);
+        holdings.remove(book);
+        indexes.remove(book.handleIn(this));
+    }
+
+    //Called right after a catalogued book's details change.
+    private void bookInfoChanged(Book book) {
+        searchIndex.add(book);
+        fuzzyIndex.add(book);
+        holdings.add(book);
+        indexes.add(book.handleIn(this), book);
+        if (journal != null) journal.logUpdateBook(book);
+    }
+
+    //Called by a catalogued book whenever its availability flag flips.
+    void availabilityChanged(Book book, boolean available) {
+        holdings.availabilityChanged(book, available);
+        indexes.availabilityChanged(book.handleIn(this), available);
+    }
+
+    //Returns how many copies with the given ISBN are currently available.
+    public int availableCopies(String isbn) {
+        return holdings.availableCopies(isbn);
+    }
+
+    //Returns how many copies with the given ISBN are catalogued.
+    public int totalCopies(String isbn) {
+        return holdings.totalCopies(isbn);
+    }
+
+    //Returns true if any copy with the given ISBN is on the shelf.
+    public boolean isAnyCopyAvailable(String isbn) {
+        return holdings.availableCopies(isbn) > 0;
     }
 
     //Retrieves a book by its ID.
     public Book getBookById(String bookId) {
-        return allBooks.get(bookId);
+        return catalog.get().getBook(bookId);
     }
 
     //Retrieves a member by their ID.
     public Member getMemberById(String memberId) {
-        return allMembers.get(memberId);
+        return catalog.get().getMember(memberId);
     }
 
     //Checks out a book to a member if the book is available.
-    public void checkoutBook(Member member, Book book) {
-        if (book.isAvailable()) {
-            member.addBorrowedBook(book);
-            book.setAvailable(false);
+    //The availability flag is claimed atomically, so only one caller can win a copy.
+    //returns boolean based on checkout success
+    public boolean checkoutBook(Member member, Book book) {
+        return transact(member.getMemberId(), Collections.singletonList(book.getBookId()),
+                () -> checkoutBookLocked(member, book));
+    }
+
+    private boolean checkoutBookLocked(Member member, Book book) {
+        if (!book.compareAndSetAvailable(true, false)) {
+            return false;
         }
+        member.addBorrowedBook(book);
+        int handle = handleOf(book);
+        Loan loan = newLoan(member.getMemberId(), handle);
+        loanIndex.put(handle, loan);
+        overdue.schedule(loan);
+        popularity.record(book.getBookId(), book.getGenre(), loan.getCheckedOutAt());
+        if (journal != null) journal.logCheckout(loan);
+        publish(CirculationEvent.Type.CHECKOUT, book.getBookId(), member.getMemberId());
+        return true;
+    }
+
+    //Starts a loan of the book with the given handle now, due one loan period from now.
+    private Loan newLoan(String memberId, int handle) {
+        Instant now = clock.instant();
+        return new Loan(bookHandles.idOf(handle), memberId, now, now.plus(loanPeriod));
+    }
+
+    //Removes a book's loan if it is held by the given member.
+    //returns the removed loan, or null if the member did not hold the book
+    private Loan removeLoan(Book book, String memberId) {
+        int handle = findHandle(book);
+        Loan loan = loanIndex.get(handle);
+        if (loan == null || !loan.getMemberId().equals(memberId)) return null;
+        if (!loanIndex.remove(handle, loan)) return null;
+        releaseIfUnused(book.getBookId(), handle);
+        return loan;
+    }
+
+    //Drops a member's loan of a book without making the book available, as revocation does.
+    //Used when the loan is kept by a different shard from the member.
+    void dropLoan(Book book, String memberId) {
+        transact(memberId, Collections.singletonList(book.getBookId()), () -> removeLoan(book, memberId));
+    }
+
+    //Returns the number of loans currently recorded.
+    int loanCount() {
+        return loanIndex.size();
+    }
+
+    //Returns the number of book IDs holding a handle, and the bound below which all handles lie.
+    int[] bookHandleUsage() {
+        return new int[] {bookHandles.size(), bookHandles.limit()};
+    }
+
+    //Points member lookups for loans and holds at another directory (null for this library's own).
+    void setMemberDirectory(Function<String, Member> memberDirectory) {
+        this.memberDirectory = memberDirectory;
+    }
+
+    private Member lookupMember(String memberId) {
+        Function<String, Member> directory = memberDirectory;
+        return directory == null ? catalog.get().getMember(memberId) : directory.apply(memberId);
+    }
+
+    //Returns a book's handle, registering its ID if this library has not seen it.
+    //Only for storing a loan or hold: lookups use findHandle, so asking about a book that is
+    //not catalogued here (e.g. another shard's) registers nothing.
+    //Catalogued books carry their handle, so this normally costs no hashing at all.
+    private int handleOf(Book book) {
+        int handle = book.handleIn(this);
+        return handle >= 0 ? handle : bookHandles.intern(book.getBookId());
+    }
+
+    //Returns a book's handle, or -1 if nothing is stored under its ID here.
+    private int findHandle(Book book) {
+        int handle = book.handleIn(this);
+        return handle >= 0 ? handle : bookHandles.find(book.getBookId());
+    }
+
+    //Returns the loan stored for a book ID, or null. Lock-free readers check the loan's book,
+    //since a handle released by a removal may already have been handed to another book.
+    //Loans carry the registered instance of their book ID, so the check is normally a
+    //reference comparison rather than a comparison of characters.
+    private Loan loanOf(String bookId) {
+        IdRegistry.Registration registration = bookHandles.lookup(bookId);
+        Loan loan = registration == null ? null : loanIndex.get(registration.getHandle());
+        if (loan == null) return null;
+        return loan.getBookId() == registration.getId() || loan.getBookId().equals(bookId) ? loan : null;
+    }
+
+    //Frees the handle of a book that is not catalogued here once no loan or hold is stored
+    //under it. Called under the book's stripe, like everything that stores under a handle.
+    private void releaseIfUnused(String bookId, int handle) {
+        if (handle >= 0 && catalog.get().getBook(bookId) == null
+                && loanIndex.get(handle) == null && holds.get(handle) == null) {
+            bookHandles.release(bookId);
+        }
+    }
+
+    //Re-creates a loan with its original dates when restoring from a snapshot or journal.
+    //If the member already holds the book only the dates are replaced.
+    //returns true if the member holds the book afterwards
+    boolean restoreLoan(Member member, Book book, Instant checkedOutAt, Instant dueAt) {
+        return transact(member.getMemberId(), Collections.singletonList(book.getBookId()), () -> {
+            int handle = handleOf(book);
+            Loan current = loanIndex.get(handle);
+            boolean held = current != null && current.getMemberId().equals(member.getMemberId());
+            if (!held) {
+                if (!book.compareAndSetAvailable(true, false)) return false;
+                member.addBorrowedBook(book);
+            }
+            Loan loan = new Loan(bookHandles.idOf(handle), member.getMemberId(), checkedOutAt, dueAt);
+            loanIndex.put(handle, loan);
+            overdue.schedule(loan);
+            return true;
+        });
+    }
+
+    //Checks out any available copy with the given ISBN to the member.
+    //returns the copy lent, or null if every copy is out
+    public Book checkoutByIsbn(Member member, String isbn) {
+        Book book;
+        while ((book = holdings.nextAvailable(isbn)) != null) {
+            if (checkoutBook(member, book)) return book;
+        }
+        return null;
+    }
+
+    //Returns a copy with the given ISBN that looked available, or null; the caller must still claim it.
+    Book nextAvailableCopy(String isbn) {
+        return holdings.nextAvailable(isbn);
+    }
+
+    //Places a hold for the member on a book, to be handed over when it is returned.
+    //returns the member's 1-based position in the book's hold queue
+    public int placeHold(Member member, Book book) {
+        return transact(member.getMemberId(), Collections.singletonList(book.getBookId()), () -> {
+            int position = holds.computeIfAbsent(handleOf(book), handle -> new HoldQueue())
+                    .enqueue(member.getMemberId());
+            if (journal != null) journal.logPlaceHold(member.getMemberId(), book.getBookId());
+            publish(CirculationEvent.Type.HOLD_PLACED, book.getBookId(), member.getMemberId());
+            return position;
+        });
+    }
+
+    //Cancels a member's hold on a book.
+    //returns true if the member was waiting
+    public boolean cancelHold(String memberId, String bookId) {
+        return transact(memberId, Collections.singletonList(bookId), () -> {
+            int handle = bookHandles.find(bookId);
+            HoldQueue queue = holds.get(handle);
+            if (queue == null || !queue.cancel(memberId)) return false;
+            if (queue.size() == 0) {
+                holds.remove(handle, queue);
+                releaseIfUnused(bookId, handle);
+            }
+            if (journal != null) journal.logCancelHold(memberId, bookId);
+            publish(CirculationEvent.Type.HOLD_CANCELLED, bookId, memberId);
+            return true;
+        });
+    }
+
+    //Returns the member's 1-based position in a book's hold queue, or 0 if not waiting.
+    public int getHoldPosition(String memberId, String bookId) {
+        HoldQueue queue = holds.get(bookHandles.find(bookId));
+        return queue == null ? 0 : queue.position(memberId);
+    }
+
+    //Returns the number of members waiting for a book.
+    public int getHoldCount(String bookId) {
+        HoldQueue queue = holds.get(bookHandles.find(bookId));
+        return queue == null ? 0 : queue.size();
+    }
+
+    //Returns the IDs of the members waiting for a book, front of the queue first.
+    public List<String> getHoldQueue(String bookId) {
+        HoldQueue queue = holds.get(bookHandles.find(bookId));
+        return queue == null ? new ArrayList<>() : queue.waitingMembers();
     }
 
     //Returns a book from a member and updates its availability.
+    //If members are waiting, the book goes straight to the first of them without ever
+    //showing as available; otherwise it goes back on the shelf.
+    //The loan is cleared before the book is released so a new checkout is never overwritten.
+    //A copy with no open loan, e.g. one orphaned by revoking its borrower, is taken back from
+    //whoever returns it; only a copy lent to another member stays out.
     public void returnBook(Member member, Book book) {
+        transact(member.getMemberId(), Collections.singletonList(book.getBookId()), () -> {
+            returnBookLocked(member, book);
+            return null;
+        });
+    }
+
+    private void returnBookLocked(Member member, Book book) {
+        // The returned loan stays in the overdue wheel until its slot comes up, then is skipped
+        Loan returned = removeLoan(book, member.getMemberId());
+        if (returned == null && loanIndex.get(findHandle(book)) != null) {
+            return; // lent to another member: the real borrower keeps the loan and the book stays out
+        }
         member.removeBorrowedBook(book.getBookId());
-        book.setAvailable(true);
+        if (journal != null) journal.logReturn(member.getMemberId(), book.getBookId());
+        publish(CirculationEvent.Type.RETURN, book.getBookId(), member.getMemberId());
+        if (book.isAvailable() || !handOverToNextHold(book)) book.setAvailable(true);
+    }
+
+    //Checks out several books to a member in one step, e.g. a patron's basket at a kiosk.
+    //The IDs are resolved against one catalog version and the locks are taken once for the
+    //whole batch. All-or-nothing: if any item fails, nothing is lent. The batch is written
+    //as one journal record and published as one event.
+    //returns the outcome of every item
+    public BatchResult checkoutAll(String memberId, List<String> bookIds) {
+        List<String> ids = new ArrayList<>(bookIds);
+        return transact(memberId, ids, () -> checkoutAllLocked(memberId, ids));
+    }
+
+    private BatchResult checkoutAllLocked(String memberId, List<String> bookIds) {
+        CatalogVersion version = catalog.get();
+        Member member = version.getMember(memberId);
+        Book[] books = new Book[bookIds.size()];
+        List<BatchResult.Outcome> outcomes = new ArrayList<>(books.length);
+        boolean ok = resolveBatch(version, member, bookIds, books, outcomes);
+        for (int i = 0; i < books.length; i++) {
+            if (outcomes.get(i) == BatchResult.Outcome.OK && !books[i].isAvailable()) {
+                outcomes.set(i, BatchResult.Outcome.UNAVAILABLE);
+                ok = false;
+            }
+        }
+        if (ok) {
+            // Claim every copy before lending any, so a lost race only has flags to undo
+            for (int i = 0; i < books.length; i++) {
+                if (!books[i].compareAndSetAvailable(true, false)) {
+                    outcomes.set(i, BatchResult.Outcome.UNAVAILABLE);
+                    ok = false;
+                }
+            }
+            if (!ok) {
+                for (int i = 0; i < books.length; i++) {
+                    if (outcomes.get(i) == BatchResult.Outcome.OK) books[i].setAvailable(true);
+                }
+            }
+        }
+        if (!ok) return new BatchResult(false, bookIds, outcomes, Collections.emptyList());
+        Instant now = clock.instant();
+        Instant due = now.plus(loanPeriod);
+        List<Loan> loans = new ArrayList<>(books.length);
+        for (Book book : books) {
+            member.addBorrowedBook(book);
+            int handle = handleOf(book);
+            Loan loan = new Loan(bookHandles.idOf(handle), memberId, now, due);
+            loanIndex.put(handle, loan);
+            overdue.schedule(loan);
+            popularity.record(book.getBookId(), book.getGenre(), now);
+            loans.add(loan);
+        }
+        BatchResult result = new BatchResult(true, bookIds, outcomes, loans);
+        if (!loans.isEmpty()) {
+            if (journal != null) journal.logCheckoutBatch(memberId, loans);
+            if (events != null) events.publishBatch(CirculationEvent.Type.CHECKOUT_BATCH, result.getBookIds(), memberId);
+        }
+        return result;
+    }
+
+    //Returns several books from a member in one step, all-or-nothing like checkoutAll.
+    //Each book goes to its first holder if anyone is waiting, otherwise back on the shelf.
+    //returns the outcome of every item
+    public BatchResult returnAll(String memberId, List<String> bookIds) {
+        List<String> ids = new ArrayList<>(bookIds);
+        return transact(memberId, ids, () -> returnAllLocked(memberId, ids));
+    }
+
+    private BatchResult returnAllLocked(String memberId, List<String> bookIds) {
+        CatalogVersion version = catalog.get();
+        Member member = version.getMember(memberId);
+        Book[] books = new Book[bookIds.size()];
+        List<BatchResult.Outcome> outcomes = new ArrayList<>(books.length);
+        boolean ok = resolveBatch(version, member, bookIds, books, outcomes);
+        for (int i = 0; i < books.length; i++) {
+            if (outcomes.get(i) != BatchResult.Outcome.OK) continue;
+            Loan loan = loanIndex.get(findHandle(books[i]));
+            if (loan == null || !loan.getMemberId().equals(memberId)) {
+                outcomes.set(i, BatchResult.Outcome.NOT_BORROWED);
+                ok = false;
+            }
+        }
+        if (!ok) return new BatchResult(false, bookIds, outcomes, Collections.emptyList());
+        for (Book book : books) {
+            member.removeBorrowedBook(book.getBookId());
+            removeLoan(book, memberId);
+        }
+        BatchResult result = new BatchResult(true, bookIds, outcomes, Collections.emptyList());
+        if (books.length > 0) {
+            if (journal != null) journal.logReturnBatch(memberId, bookIds);
+            if (events != null) events.publishBatch(CirculationEvent.Type.RETURN_BATCH, result.getBookIds(), memberId);
+        }
+        for (Book book : books) {
+            if (!handOverToNextHold(book)) book.setAvailable(true);
+        }
+        return result;
+    }
+
+    //Looks up every book of a batch in one catalog version and records whether each item
+    //can proceed so far.
+    //returns true if every item is OK
+    private boolean resolveBatch(CatalogVersion version, Member member, List<String> bookIds,
+                                 Book[] books, List<BatchResult.Outcome> outcomes) {
+        Set<String> seen = new HashSet<>();
+        boolean ok = true;
+        for (int i = 0; i < books.length; i++) {
+            String bookId = bookIds.get(i);
+            books[i] = version.getBook(bookId);
+            BatchResult.Outcome outcome = member == null ? BatchResult.Outcome.UNKNOWN_MEMBER
+                    : books[i] == null ? BatchResult.Outcome.UNKNOWN_BOOK
+                    : !seen.add(bookId) ? BatchResult.Outcome.DUPLICATE
+                    : BatchResult.Outcome.OK;
+            outcomes.add(outcome);
+            ok &= outcome == BatchResult.Outcome.OK;
+        }
+        return ok;
+    }
+
+    //Lends a just-returned book to the first waiting member who is still registered.
+    //returns true if the book was handed over
+    private boolean handOverToNextHold(Book book) {
+        int handle = findHandle(book);
+        HoldQueue queue = holds.get(handle);
+        if (queue == null) return false;
+        String nextId;
+        while ((nextId = queue.poll()) != null) {
+            Member next = lookupMember(nextId);
+            if (next == null) continue;
+            next.addBorrowedBook(book);
+            Loan loan = newLoan(nextId, handle);
+            loanIndex.put(handle, loan);
+            if (lookupMember(nextId) == next) {
+                overdue.schedule(loan);
+                popularity.record(book.getBookId(), book.getGenre(), loan.getCheckedOutAt());
+                if (journal != null) journal.logCheckout(loan);
+                publish(CirculationEvent.Type.CHECKOUT, book.getBookId(), nextId);
+                return true;
+            }
+            // Revoked while we were handing over: undo and try the next member
+            loanIndex.remove(handle, loan);
+            next.removeBorrowedBook(book.getBookId());
+        }
+        return false;
+    }
+
+    //Runs a compound operation atomically with respect to every other operation on the
+    //given member and books, e.g. look up, purchase, add and check out in one step.
+    //In a concurrent library this holds their lock stripes, taken in a fixed order;
+    //the action must only touch the listed ids. memberId may be null.
+    public <T> T transact(String memberId, Collection<String> bookIds, Supplier<T> action) {
+        return withStripes(memberId == null ? Collections.emptyList() : Collections.singletonList(memberId),
+                bookIds, action);
+    }
+
+    //Everything a snapshot records about circulation, as of one moment, with the catalog
+    //version of that moment.
+    static final class Circulation {
+        final CatalogVersion catalog;
+        // IDs of the catalogued books that are not on the shelf, lent or not
+        final Set<String> unavailable = new HashSet<>();
+        // member ID -> that member's open loans, in borrowing order
+        final Map<String, List<Loan>> loans = new HashMap<>();
+        // book ID -> IDs of the members waiting for it, front of the queue first
+        final Map<String, List<String>> holds = new LinkedHashMap<>();
+
+        private Circulation(CatalogVersion catalog) {
+            this.catalog = catalog;
+        }
+    }
+
+    //Copies the books off the shelf, the open loans and the hold queues, with the catalog
+    //version they go with. Call it while no operation is in progress (see quiesce). It costs
+    //O(books off the shelf + handles), not O(catalog): the books and members themselves are
+    //read later from the unchanging catalog version, so that pause stays short.
+    Circulation captureCirculation() {
+        Circulation circulation = new Circulation(catalog.get());
+        for (Book book : indexes.unavailableBooks()) {
+            circulation.unavailable.add(book.getBookId());
+        }
+        Map<String, Map<String, Loan>> byMember = new LinkedHashMap<>();
+        loanIndex.forEach((loan, handle) -> byMember.computeIfAbsent(loan.getMemberId(), m -> new HashMap<>())
+                .put(loan.getBookId(), loan));
+        byMember.forEach((memberId, loans) -> {
+            List<Loan> ordered = new ArrayList<>(loans.size());
+            Member member = circulation.catalog.getMember(memberId);
+            if (member != null) {
+                for (Book book : member.getBorrowedBookList()) {
+                    Loan loan = loans.remove(book.getBookId());
+                    if (loan != null) ordered.add(loan);
+                }
+            }
+            ordered.addAll(loans.values());
+            circulation.loans.put(memberId, ordered);
+        });
+        holds.forEach((queue, handle) -> {
+            List<String> waiting = queue.waitingMembers();
+            Book book = waiting.isEmpty() ? null : circulation.catalog.getBook(bookHandles.idOf(handle));
+            if (book != null) circulation.holds.put(book.getBookId(), waiting);
+        });
+        return circulation;
+    }
+
+    //Runs the action while no other operation on the library is in progress, e.g. to capture
+    //a snapshot that matches the journal. In a concurrent library this holds every lock stripe.
+    public <T> T quiesce(Supplier<T> action) {
+        return stripes == null ? action.get() : stripes.withAllLocks(action);
+    }
+
+    //Like transact, for several members at once.
+    //Journal records are appended under the stripes, in the order the changes were made, but
+    //waited for once the stripes are released, so nobody queued on them waits for the disk.
+    private <T> T withStripes(Collection<String> memberIds, Collection<String> bookIds, Supplier<T> action) {
+        if (stripes == null) return action.get();
+        List<String> keys = new ArrayList<>(bookIds.size() + memberIds.size());
+        for (String memberId : memberIds) keys.add("member:" + memberId);
+        for (String bookId : bookIds) keys.add("book:" + bookId);
+        LibraryJournal journal = this.journal;
+        if (journal == null) return stripes.withLocks(keys, action);
+        return journal.deferCommits(() -> stripes.withLocks(keys, action));
     }
-}
\ No newline at end of file
+}
@@ -3,11 +3,19 @@ import java.util.Objects;
 /**
  * Manages the library's operating cash balance, including donations, salary withdrawals,
  * and ordering new books through Purchasing and provides access to the Librarians' list.
+ * Balance updates are synchronized so concurrent front desks see a consistent balance.
+ * Only the in-memory change and appending its journal record happen under the monitor; the
+ * wait for the record to become durable happens after it is released, so concurrent
+ * updates share fsyncs through the journal's group commit instead of queueing for them.
  */
 public class LibraryAccounts {
     private double operatingCashBalance;
     private Purchasing purchasing;
     private Librarians librarians;
+    // Journal that records every balance change, or null when running in memory only
+    private LibraryJournal journal;
+    // Bus that cash movements are published to, or null when nobody is listening
+    private CirculationEventBus events;
 
     // Initialize balance to $39000 and set up Purchasing and Librarians
     public LibraryAccounts() {
@@ -16,11 +24,31 @@ public class LibraryAccounts {
         this.librarians = new Librarians();
     }
 
+    // Attach a journal that logs every later balance and librarian change (null to detach)
+    public void setJournal(LibraryJournal journal) {
+        this.journal = journal;
+        librarians.setJournal(journal);
+    }
+
+    // Attach an event bus that receives every later donation, withdrawal and purchase (null to detach)
+    public void setEventBus(CirculationEventBus events) {
+        this.events = events;
+    }
+
+    private void publish(CirculationEvent.Type type, double amount) {
+        if (events != null) events.publish(type, null, null, amount);
+    }
+
     // Return the current operating cash balance
-    public double getOperatingCashBalance() {
+    public synchronized double getOperatingCashBalance() {
         return operatingCashBalance;
     }
 
+    // Reset the balance to a value loaded from a snapshot
+    synchronized void restoreBalance(double balance) {
+        operatingCashBalance = balance;
+    }
+
     // Provide access to the librarian records
     public Librarians getLibrarians() {
         return librarians;
@@ -31,7 +59,13 @@ public class LibraryAccounts {
         if (amount < 0) {
             throw new IllegalArgumentException("Donation amount must be non-negative");
         }
-        operatingCashBalance += amount;
+        long record;
+        synchronized (this) {
+            operatingCashBalance += amount;
+            record = journal == null ? 0 : journal.appendDonation(amount);
+        }
+        commit(record);
+        publish(CirculationEvent.Type.DONATION, amount);
     }
 
     // Withdraw a salary amount from balance (non-negative, must have enough funds)
@@ -39,10 +73,16 @@ public class LibraryAccounts {
         if (amount < 0) {
             throw new IllegalArgumentException("Salary withdrawal amount must be non-negative");
         }
-        if (amount > operatingCashBalance) {
-            throw new IllegalArgumentException("Insufficient funds");
+        long record;
+        synchronized (this) {
+            if (amount > operatingCashBalance) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+            operatingCashBalance -= amount;
+            record = journal == null ? 0 : journal.appendSalaryWithdrawal(amount);
         }
-        operatingCashBalance -= amount;
+        commit(record);
+        publish(CirculationEvent.Type.SALARY_WITHDRAWAL, amount);
     }
 
     // Withdraw salary for a specific librarian and record it
@@ -54,10 +94,7 @@ public class LibraryAccounts {
     // Order a new book by generating a cost, deducting from balance, and returning cost
     public double orderNewBook() {
         double cost = purchasing.generateBookCost();
-        if (cost > operatingCashBalance) {
-            throw new IllegalArgumentException("Insufficient funds to order book");
-        }
-        operatingCashBalance -= cost;
+        deduct(cost);
         return cost;
     }
 
@@ -66,10 +103,25 @@ public class LibraryAccounts {
         if (cost < 0) {
             throw new IllegalArgumentException("Book cost must be non-negative");
         }
-        if (cost > operatingCashBalance) {
-            throw new IllegalArgumentException("Insufficient funds to order book");
+        deduct(cost);
+    }
+
+    private void deduct(double cost) {
+        long record;
+        synchronized (this) {
+            if (cost > operatingCashBalance) {
+                throw new IllegalArgumentException("Insufficient funds to order book");
+            }
+            operatingCashBalance -= cost;
+            record = journal == null ? 0 : journal.appendBookPurchase(cost);
         }
-        operatingCashBalance -= cost;
+        commit(record);
+        publish(CirculationEvent.Type.BOOK_PURCHASE, cost);
+    }
+
+    // Waits for a record appended under the monitor to become durable (0 means none was logged)
+    private void commit(long record) {
+        if (record > 0) journal.commit(record);
     }
 }
 
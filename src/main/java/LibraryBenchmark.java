@@ -0,0 +1,420 @@
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark harness for the library's concurrency, durability and lookup paths:
+ *
+ *   java LibraryBenchmark [scenario ...]
+ *
+ * Scenarios (all of them when none is named):
+ *   circulation  checkout/return pairs per second as threads are added, concurrent mode
+ *   transact     Library.transact with a member per thread, then every thread on one member
+ *   journal      circulation with a journal attached, for each SyncPolicy
+ *   snapshot     startup from a snapshot against replaying the whole journal
+ *   handles      lookups and memory of handle-keyed loans against String-keyed maps
+ *   events       circulation with and without an event bus, and bytes allocated per publish
+ *   http         HttpLoadDriver against an embedded server
+ *
+ * Every throughput figure comes from threads running the operation for a fixed time, after a
+ * warm-up run of the same length. -Dbenchmark.seconds sets that time (default 2),
+ * -Dbenchmark.threads the thread counts tried (default 1,4,16) and -Dbenchmark.books the
+ * catalog size of the snapshot and handles scenarios (default 200000), and
+ * -Dbenchmark.history the checkouts and returns per book journaled before the snapshot is
+ * taken (default 5), which replaying pays for and loading the snapshot does not. Journals and
+ * snapshots go to a temporary directory under java.io.tmpdir, so fsync costs are those of its
+ * file system. Results depend on the machine; the number of cores is printed first.
+ */
+public final class LibraryBenchmark {
+    private static final long NANOS = Long.getLong("benchmark.seconds", 2) * 1_000_000_000L;
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 200_000);
+    private static final int HISTORY = Integer.getInteger("benchmark.history", 5);
+    private static final int[] THREADS = Stream.of(System.getProperty("benchmark.threads", "1,4,16").split(","))
+            .mapToInt(count -> Integer.parseInt(count.trim())).toArray();
+    // Books each circulation thread cycles through; threads never share books
+    private static final int BOOKS_PER_THREAD = 64;
+
+    private LibraryBenchmark() {
+    }
+
+    // One operation of a measurement, run by the thread numbered 'thread' (from 0)
+    @FunctionalInterface
+    interface Operation {
+        void run(int thread, Random random) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> scenarios = args.length > 0 ? List.of(args)
+                : List.of("circulation", "transact", "journal", "snapshot", "handles", "events", "http");
+        System.out.println(Runtime.getRuntime().availableProcessors() + " cores, "
+                + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB heap, " + NANOS / 1_000_000_000L
+                + " s per measurement");
+        Path dir = Files.createTempDirectory("library-benchmark");
+        try {
+            for (String scenario : scenarios) {
+                System.out.println();
+                System.out.println("== " + scenario);
+                switch (scenario) {
+                    case "circulation": circulation(); break;
+                    case "transact": transact(); break;
+                    case "journal": journal(dir); break;
+                    case "snapshot": snapshot(dir); break;
+                    case "handles": handles(); break;
+                    case "events": events(); break;
+                    case "http": http(); break;
+                    default: throw new IllegalArgumentException("Unknown scenario " + scenario);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Runs the operation on the given number of threads for the measurement time, after a
+    // warm-up of the same length, and returns the operations completed per second
+    static double throughput(int threads, Operation operation) throws Exception {
+        run(threads, operation);
+        return run(threads, operation);
+    }
+
+    private static double run(int threads, Operation operation) throws Exception {
+        LongAdder done = new LongAdder();
+        AtomicLong end = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(thread);
+                ready.countDown();
+                try {
+                    start.await();
+                    long deadline = end.get();
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        operation.run(thread, random);
+                        count++;
+                    }
+                    done.add(count);
+                } catch (Exception e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "benchmark-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long began = System.nanoTime();
+        end.set(began + NANOS);
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - began;
+        synchronized (failure) {
+            if (failure[0] != null) throw failure[0];
+        }
+        return done.sum() * 1e9 / elapsed;
+    }
+
+    private static void report(String label, double perSecond, String unit) {
+        System.out.println(String.format(Locale.ROOT, "  %-44s %,14.0f %s", label, perSecond, unit));
+    }
+
+    // A library with one member per thread (T0, T1, ...) and BOOKS_PER_THREAD books each
+    private static Library circulationLibrary(boolean concurrent, int threads) {
+        Library library = new Library(concurrent);
+        List<Book> books = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            library.addMember(new Member("Thread " + t, "t" + t + "@example.com", "T" + t));
+            for (int i = 0; i < BOOKS_PER_THREAD; i++) {
+                books.add(new Book("Title " + i, "Author " + t, 2000, "I" + t + "-" + i, bookId(t, i), "Genre"));
+            }
+        }
+        library.addBooks(books);
+        return library;
+    }
+
+    private static String bookId(int thread, int i) {
+        return "C" + thread + "-" + i;
+    }
+
+    // Checks one of the thread's own books out to the thread's member and returns it
+    private static Operation cycle(Library library) {
+        return (thread, random) -> {
+            Member member = library.getMemberById("T" + thread);
+            Book book = library.getBookById(bookId(thread, random.nextInt(BOOKS_PER_THREAD)));
+            if (!library.checkoutBook(member, book)) throw new IllegalStateException("Checkout failed");
+            library.returnBook(member, book);
+        };
+    }
+
+    // Concurrent checkout and return, one member and set of books per thread
+    private static void circulation() throws Exception {
+        report("plain library, 1 thread", throughput(1, cycle(circulationLibrary(false, 1))), "pairs/s");
+        for (int threads : THREADS) {
+            report("concurrent library, " + threads + " threads",
+                    throughput(threads, cycle(circulationLibrary(true, threads))), "pairs/s");
+        }
+    }
+
+    // Compound transactions on distinct members, then all threads on one member
+    private static void transact() throws Exception {
+        for (int threads : THREADS) {
+            Library library = circulationLibrary(true, threads);
+            report("transact, member per thread, " + threads + " threads", throughput(threads, (thread, random) -> {
+                String bookId = bookId(thread, random.nextInt(BOOKS_PER_THREAD));
+                library.transact("T" + thread, Collections.singletonList(bookId), () -> {
+                    Member member = library.getMemberById("T" + thread);
+                    Book book = library.getBookById(bookId);
+                    library.checkoutBook(member, book);
+                    library.returnBook(member, book);
+                    return null;
+                });
+            }), "tx/s");
+        }
+        for (int threads : THREADS) {
+            Library library = circulationLibrary(true, threads);
+            report("transact, one member, " + threads + " threads", throughput(threads, (thread, random) -> {
+                String bookId = bookId(thread, random.nextInt(BOOKS_PER_THREAD));
+                library.transact("T0", Collections.singletonList(bookId), () -> {
+                    Member member = library.getMemberById("T0");
+                    Book book = library.getBookById(bookId);
+                    library.checkoutBook(member, book);
+                    library.returnBook(member, book);
+                    return null;
+                });
+            }), "tx/s");
+        }
+    }
+
+    // Circulation with every change journaled, per sync policy
+    private static void journal(Path dir) throws Exception {
+        for (LibraryJournal.SyncPolicy policy : LibraryJournal.SyncPolicy.values()) {
+            for (int threads : THREADS) {
+                Path path = dir.resolve("journal-" + policy + "-" + threads);
+                Library library = circulationLibrary(true, threads);
+                try (LibraryJournal journal = LibraryJournal.open(path, policy)) {
+                    library.setJournal(journal);
+                    // Each pair logs a checkout and a return record
+                    report(policy + ", " + threads + " threads", throughput(threads, cycle(library)) * 2, "records/s");
+                }
+                Files.delete(path);
+            }
+        }
+    }
+
+    // Restoring a catalog from its snapshot against replaying its whole journal
+    private static void snapshot(Path dir) throws Exception {
+        Path journalPath = dir.resolve("snapshot.journal");
+        Path snapshotPath = dir.resolve("library.snapshot");
+        long offset;
+        try (LibraryJournal journal = LibraryJournal.open(journalPath, LibraryJournal.SyncPolicy.BUFFERED)) {
+            Library library = new Library(true);
+            LibraryAccounts accounts = new LibraryAccounts();
+            library.setJournal(journal);
+            accounts.setJournal(journal);
+            fillCatalog(library, BOOKS);
+            circulate(library, BOOKS, HISTORY);
+            journal.flush();
+            long began = System.nanoTime();
+            offset = LibrarySnapshot.write(snapshotPath, library, accounts, journal);
+            report("write snapshot of " + BOOKS + " books", elapsedMillis(began), "ms");
+        }
+        System.out.println(String.format(Locale.ROOT, "  journal %,d bytes with %d loans per book, snapshot %,d bytes",
+                Files.size(journalPath), HISTORY, Files.size(snapshotPath)));
+        for (int round = 0; round < 2; round++) {
+            System.gc();
+            long began = System.nanoTime();
+            Library library = new Library(true);
+            try (LibraryJournal journal = LibraryJournal.open(journalPath, LibraryJournal.SyncPolicy.BUFFERED)) {
+                journal.replay(library, new LibraryAccounts());
+            }
+            report("replay the whole journal", elapsedMillis(began), "ms");
+            System.gc();
+            began = System.nanoTime();
+            library = new Library(true);
+            LibraryAccounts accounts = new LibraryAccounts();
+            if (LibrarySnapshot.load(snapshotPath, library, accounts) != offset) {
+                throw new IllegalStateException("Snapshot offset mismatch");
+            }
+            report("load the snapshot", elapsedMillis(began), "ms");
+        }
+    }
+
+    // Adds the books in import-sized batches, a member per ten books, and lends half the books
+    private static void fillCatalog(Library library, int books) {
+        List<Book> batch = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            batch.add(new Book("Title " + i, "Author " + i % 5000, 1900 + i % 120, "ISBN" + i, "B" + i,
+                    "Genre " + i % 40));
+            if (batch.size() == 1000 || i == books - 1) {
+                library.addBooks(batch);
+                batch.clear();
+            }
+        }
+        for (int i = 0; i < books / 10; i++) {
+            library.addMember(new Member("Member " + i, "m" + i + "@example.com", "M" + i));
+        }
+        for (int i = 0; i < books; i += 2) {
+            library.checkoutBook(library.getMemberById("M" + i % (books / 10)), library.getBookById("B" + i));
+        }
+    }
+
+    // Lends every available book to a member and takes it back, 'rounds' times over
+    private static void circulate(Library library, int books, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 1; i < books; i += 2) {
+                Member member = library.getMemberById("M" + (i + round) % (books / 10));
+                Book book = library.getBookById("B" + i);
+                if (library.checkoutBook(member, book)) library.returnBook(member, book);
+            }
+        }
+    }
+
+    private static double elapsedMillis(long began) {
+        return (System.nanoTime() - began) / 1e6;
+    }
+
+    // Who has a book, through the handle-keyed loan table against a String-keyed map
+    private static void handles() throws Exception {
+        int books = BOOKS;
+        String[] ids = new String[books];
+        for (int i = 0; i < books; i++) ids[i] = "B" + i;
+
+        // Memory of a loan table alone, keyed both ways; the registry is shared by every table.
+        // Measured first, while nothing else can be collected between the readings.
+        Loan loan = new Loan("B0", "M0", Instant.EPOCH, Instant.EPOCH);
+        long before = usedHeap();
+        Map<String, Loan> stringKeyed = new HashMap<>();
+        for (int i = 0; i < books; i++) stringKeyed.put(ids[i], loan);
+        long stringBytes = usedHeap() - before;
+        before = usedHeap();
+        HandleTable<Loan> handleKeyed = new HandleTable<>();
+        for (int i = 0; i < books; i++) handleKeyed.put(i, loan);
+        long handleBytes = usedHeap() - before;
+        report("HashMap<String, Loan> entries", (double) stringBytes / books, "bytes/entry");
+        report("HandleTable<Loan> entries", (double) handleBytes / books, "bytes/entry");
+        if (stringKeyed.size() + handleKeyed.size() == 0) throw new IllegalStateException();
+        stringKeyed = null;
+        handleKeyed = null;
+
+        Library library = new Library(true);
+        fillCatalog(library, books);
+        // The String-keyed layout the handles replaced: loans and members in hash maps, keyed by
+        // the catalog's own ID instances, so a lookup compares characters as a request's IDs do
+        Map<String, Loan> loansById = new ConcurrentHashMap<>();
+        Map<String, Member> membersById = new ConcurrentHashMap<>();
+        for (Member member : library.getAllMembers()) membersById.put(member.getMemberId(), member);
+        Book[] catalogued = new Book[books];
+        HandleTable<Loan> loansByHandle = new HandleTable<>();
+        for (int i = 0; i < books; i++) {
+            catalogued[i] = library.getBookById(ids[i]);
+            Loan lent = library.getLoan(ids[i]);
+            if (lent == null) continue;
+            loansById.put(catalogued[i].getBookId(), lent);
+            loansByHandle.put(catalogued[i].handleIn(library), lent);
+        }
+        report("Library.whoHasBook, " + books + " books", throughput(1, (thread, random) -> {
+            if (library.whoHasBook(ids[random.nextInt(books)]) == null && random.nextInt() == 0) {
+                throw new IllegalStateException();
+            }
+        }), "lookups/s");
+        report("String-keyed maps, loan then member", throughput(1, (thread, random) -> {
+            Loan lent = loansById.get(ids[random.nextInt(books)]);
+            Member member = lent == null ? null : membersById.get(lent.getMemberId());
+            if ((member == null ? "Not checked out." : member.getName()) == null && random.nextInt() == 0) {
+                throw new IllegalStateException();
+            }
+        }), "lookups/s");
+        // Checkout, return and hold handoff start from a Book, which carries its handle
+        report("loan of a Book in hand, by its handle", throughput(1, (thread, random) -> {
+            Loan lent = loansByHandle.get(catalogued[random.nextInt(books)].handleIn(library));
+            if (lent != null && lent.getDueAt() == null) throw new IllegalStateException();
+        }), "lookups/s");
+        report("loan of a Book in hand, by its ID", throughput(1, (thread, random) -> {
+            Loan lent = loansById.get(catalogued[random.nextInt(books)].getBookId());
+            if (lent != null && lent.getDueAt() == null) throw new IllegalStateException();
+        }), "lookups/s");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Circulation with and without a bus, and what publishing allocates
+    private static void events() throws Exception {
+        for (int threads : THREADS) {
+            report("no bus, " + threads + " threads", throughput(threads, cycle(circulationLibrary(true, threads))),
+                    "pairs/s");
+            for (CirculationEventBus.WaitStrategy strategy : List.of(CirculationEventBus.WaitStrategy.BLOCKING,
+                    CirculationEventBus.WaitStrategy.YIELDING)) {
+                Library library = circulationLibrary(true, threads);
+                LongAdder received = new LongAdder();
+                try (CirculationEventBus bus = new CirculationEventBus(CirculationEventBus.DEFAULT_CAPACITY,
+                        strategy, CirculationEventBus.Backpressure.DROP)) {
+                    bus.subscribe("count", (event, endOfBatch) -> received.increment());
+                    bus.start();
+                    library.setEventBus(bus);
+                    double pairs = throughput(threads, cycle(library));
+                    report(strategy + " bus, " + threads + " threads", pairs, String.format(Locale.ROOT,
+                            "pairs/s, %.1f%% of events dropped", 100.0 * bus.getDroppedCount()
+                                    / (bus.getPublishedCount() + bus.getDroppedCount())));
+                }
+            }
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        try (CirculationEventBus bus = new CirculationEventBus(CirculationEventBus.DEFAULT_CAPACITY,
+                CirculationEventBus.WaitStrategy.YIELDING, CirculationEventBus.Backpressure.BLOCK)) {
+            bus.subscribe("discard", (event, endOfBatch) -> { });
+            bus.start();
+            int events = 1_000_000;
+            for (int i = 0; i < events; i++) bus.publish(CirculationEvent.Type.CHECKOUT, "B1", "M1", 0);
+            long id = Thread.currentThread().getId();
+            long bytes = threads.getThreadAllocatedBytes(id);
+            long began = System.nanoTime();
+            for (int i = 0; i < events; i++) bus.publish(CirculationEvent.Type.CHECKOUT, "B1", "M1", 0);
+            long elapsed = System.nanoTime() - began;
+            bytes = threads.getThreadAllocatedBytes(id) - bytes;
+            report("publish, BLOCK backpressure", events * 1e9 / elapsed, "events/s");
+            report("publish, bytes allocated by the publisher", (double) bytes / events, "bytes/event");
+        }
+    }
+
+    // The HTTP front end under the load driver
+    private static void http() throws Exception {
+        for (int desks : THREADS) {
+            try (LibraryHttpServer server = new LibraryHttpServer(new Library(true), new LibraryAccounts())) {
+                server.start(0);
+                HttpLoadDriver.Result result = HttpLoadDriver.run(
+                        URI.create("http://localhost:" + server.getPort()), desks,
+                        Duration.ofNanos(NANOS), 50);
+                report(desks + " desks", result.getThroughput(), String.format(Locale.ROOT,
+                        "req/s, checkout p50 %.0f us, p99 %.0f us, %d errors", result.percentileMicros("checkout", 50),
+                        result.percentileMicros("checkout", 99), result.getErrors()));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test suite for the LibraryBenchmark harness.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class LibraryBenchmarkTest {
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testEveryScenarioRunsOnATinyCatalog() throws Exception {
+        // Read once, when the harness class is first used
+        System.setProperty("benchmark.seconds", "0");
+        System.setProperty("benchmark.books", "200");
+        System.setProperty("benchmark.history", "1");
+        System.setProperty("benchmark.threads", "1, 2");
+        PrintStream out = System.out;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(report, true, StandardCharsets.UTF_8));
+            LibraryBenchmark.main(new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        String text = report.toString(StandardCharsets.UTF_8);
+        for (String scenario : new String[] {"circulation", "transact", "journal", "snapshot", "handles", "events", "http"}) {
+            assertTrue(text.contains("== " + scenario), text);
+        }
+        assertTrue(text.contains("FSYNC, 2 threads"), text);
+        assertTrue(text.contains("write snapshot of 200 books"), text);
+        assertThrows(IllegalArgumentException.class, () -> LibraryBenchmark.main(new String[] {"nothing"}));
+        assertEquals(0, LibraryBenchmark.throughput(1, (thread, random) -> {
+            throw new AssertionError("No time to run");
+        }), 0);
+    }
+}
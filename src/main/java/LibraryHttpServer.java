@@ -0,0 +1,645 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/JSON front end for desks and self-service kiosks, serving the same actions as the CLI.
+ * It runs on the JDK's built-in HttpServer. Each request gets its own virtual thread when
+ * the JDK has them (21+); older JDKs fall back to a cached pool of platform threads.
+ *
+ * Callers identify themselves the way authenticateUser does in the CLI. A request carrying
+ * a valid full-time code in the X-Librarian-Code header acts as that librarian. A request
+ * without the header acts as a volunteer, and an unknown code is rejected with 401.
+ * Volunteers get 403 from the full-time-only actions: revoking memberships, donations,
+ * salary, the balance, and purchasing a missing book at checkout.
+ *
+ * Request bodies are flat JSON objects. Errors come back as {"error": "..."} with 400
+ * (bad input), 404 (unknown book, member or path), 405 (wrong method) or 409 (conflict).
+ * Lists of books and members are streamed into the response as they are written, so a large
+ * catalog is never built up as one string.
+ *
+ *   GET    /session                       role and name of the caller
+ *   GET    /books[?q=text]                all books, or a title/author/genre search
+ *   GET    /books/{id}
+ *   POST   /books                         {title, author, year, isbn, bookId, genre}
+ *   DELETE /books/{id}
+ *   GET    /members
+ *   GET    /members/{id}                  including the IDs of borrowed books
+ *   POST   /members                       {name, email, memberId}
+ *   DELETE /members/{id}[?policy=orphan]  full-time only; policy orphan (the default),
+ *                                          force_return or reject says what happens to open
+ *                                          loans, and the reply lists the loans returned or
+ *                                          orphaned (409 with the blocking loans on reject)
+ *   POST   /checkout                      {memberId, bookId}; a lent book places a hold (202).
+ *                                          Full-time callers may add purchase=true and the
+ *                                          book details to buy a book that is not catalogued.
+ *   POST   /return                        {memberId, bookId}
+ *   GET    /balance                       full-time only
+ *   POST   /donations                     {amount}, full-time only
+ *   POST   /salary                        {amount}, full-time only
+ *   GET    /popular[?days=7&genre=g&limit=10]
+ *                                          most borrowed books in the last days, with the
+ *                                          checkouts counted and each count's error bound
+ */
+public class LibraryHttpServer implements AutoCloseable {
+    public static final String AUTH_HEADER = "X-Librarian-Code";
+    private static final int BACKLOG = 1024;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's algorithm on, each
+        // response then stalls ~40ms waiting for the client's delayed ACK. This must be set
+        // before the first HttpServer is created; an explicit setting by the operator wins.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Library library;
+    private final LibraryAccounts accounts;
+    private HttpServer server;
+    private ExecutorService executor;
+    private boolean virtualThreads;
+
+    // Creates a server over a library that must be safe for concurrent use
+    public LibraryHttpServer(Library library, LibraryAccounts accounts) {
+        if (!library.isConcurrent()) {
+            throw new IllegalArgumentException("The HTTP API needs a concurrent Library");
+        }
+        this.library = library;
+        this.accounts = accounts;
+    }
+
+    // Starts listening on the given port (0 picks a free one)
+    public void start(int port) throws IOException {
+        start(new InetSocketAddress(port));
+    }
+
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) throw new IllegalStateException("Server already started");
+        server = HttpServer.create(address, BACKLOG);
+        executor = newVirtualThreadExecutor();
+        virtualThreads = executor != null;
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "http-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    // Returns the virtual-thread-per-task executor, or null on a JDK without virtual threads
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // Returns the port the server is bound to
+    public synchronized int getPort() {
+        if (server == null) throw new IllegalStateException("Server not started");
+        return server.getAddress().getPort();
+    }
+
+    // Returns true if requests run on virtual threads
+    public synchronized boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Stops accepting requests and shuts the request threads down
+    @Override
+    public synchronized void close() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdown();
+        server = null;
+    }
+
+    // Writes a response body straight into the response
+    private interface BodyWriter {
+        void writeTo(RecordWriter out) throws IOException;
+    }
+
+    // Appends one record of a list to a response body
+    private interface RecordAppender<T> {
+        void append(Appendable out, T record) throws IOException;
+    }
+
+    // A status code and the JSON body to send with it, either whole or written as it streams
+    private static final class Reply {
+        private final int status;
+        private final String body;
+        private final BodyWriter stream;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+            this.stream = null;
+        }
+
+        private Reply(int status, BodyWriter stream) {
+            this.status = status;
+            this.body = null;
+            this.stream = stream;
+        }
+    }
+
+    // A request that cannot be served, carrying the status to report
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Reply reply;
+        try {
+            reply = route(exchange);
+        } catch (ApiException e) {
+            reply = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            reply = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            // A bug rather than a bad request: the client learns nothing more, the log says where
+            logInternalError(exchange, e);
+            reply = error(500, "Internal error");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (reply.stream != null) {
+            // Length 0 means chunked: the body goes out as it is written
+            exchange.sendResponseHeaders(reply.status, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                RecordWriter writer = new RecordWriter(out);
+                reply.stream.writeTo(writer);
+                writer.flush();
+            } catch (RuntimeException e) {
+                // The status is already sent; the client sees the body cut short
+                logInternalError(exchange, e);
+            }
+            return;
+        }
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(reply.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void logInternalError(HttpExchange exchange, RuntimeException e) {
+        StackTraceElement[] trace = e.getStackTrace();
+        System.err.println("Internal error serving " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                + ": " + e + (trace.length > 0 ? " at " + trace[0] : ""));
+    }
+
+    private Reply route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = segments(exchange.getRequestURI().getRawPath());
+        String code = exchange.getRequestHeaders().getFirst(AUTH_HEADER);
+        if (code != null && !accounts.getLibrarians().authenticate(code)) {
+            throw new ApiException(401, "Unknown librarian code");
+        }
+        if (path.length == 0) throw new ApiException(404, "Unknown path");
+        String id = path.length == 2 ? path[1] : null;
+        if (path.length > 2) throw new ApiException(404, "Unknown path");
+        switch (path[0]) {
+            case "session":
+                expect(method, "GET", id == null);
+                return ok(code == null ? "{\"role\":\"volunteer\"}"
+                        : "{\"role\":\"full-time\",\"name\":" + quote(accounts.getLibrarians().getName(code)) + "}");
+            case "books":
+                return books(method, id, exchange);
+            case "members":
+                return members(method, id, code, exchange);
+            case "checkout":
+                expect(method, "POST", id == null);
+                return checkout(readBody(exchange), code);
+            case "return":
+                expect(method, "POST", id == null);
+                return returnBook(readBody(exchange));
+            case "balance":
+                expect(method, "GET", id == null);
+                requireFullTime(code, "view the balance");
+                return balance();
+            case "donations":
+                expect(method, "POST", id == null);
+                requireFullTime(code, "add donations");
+                accounts.addDonation(number(readBody(exchange), "amount"));
+                return balance();
+            case "salary":
+                expect(method, "POST", id == null);
+                requireFullTime(code, "withdraw salary");
+                accounts.withdrawSalary(code, number(readBody(exchange), "amount"));
+                return balance();
+            case "popular":
+                expect(method, "GET", id == null);
+                return popular(queryParameters(exchange));
+            default:
+                throw new ApiException(404, "Unknown path");
+        }
+    }
+
+    private Reply books(String method, String id, HttpExchange exchange) throws IOException {
+        switch (method) {
+            case "GET":
+                if (id != null) return ok(bookJson(findBook(id)));
+                Map<String, String> parameters = queryParameters(exchange);
+                String query = parameters.get("q");
+                Collection<Book> books;
+                if (parameters.containsKey("fuzzy")) {
+                    books = library.searchBooksFuzzy(parameters.get("fuzzy"), limit(parameters));
+                } else {
+                    books = query == null ? library.snapshot().getBooks() : library.searchBooks(query);
+                }
+                return okList(books, RecordFormat.JSON_LINES::appendBook);
+            case "POST":
+                if (id != null) throw new ApiException(405, "Use POST /books");
+                Book book = newBook(readBody(exchange), null);
+                if (!library.addBook(book)) throw new ApiException(409, "Book ID already exists!");
+                return new Reply(201, bookJson(book));
+            case "DELETE":
+                if (id == null) throw new ApiException(405, "Use DELETE /books/{id}");
+                findBook(id);
+                library.removeBook(id);
+                return ok("{\"removed\":" + quote(id) + "}");
+            default:
+                throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private Reply members(String method, String id, String code, HttpExchange exchange) throws IOException {
+        switch (method) {
+            case "GET":
+                if (id != null) return ok(memberJson(findMember(id)));
+                return okList(library.snapshot().getMembers(), RecordFormat.JSON_LINES::appendMember);
+            case "POST":
+                if (id != null) throw new ApiException(405, "Use POST /members");
+                Map<String, String> body = readBody(exchange);
+                Member member = new Member(text(body, "name"), text(body, "email"), text(body, "memberId"));
+                if (!library.addMember(member)) throw new ApiException(409, "Member ID already exists!");
+                return new Reply(201, memberJson(member));
+            case "DELETE":
+                if (id == null) throw new ApiException(405, "Use DELETE /members/{id}");
+                requireFullTime(code, "revoke memberships");
+                findMember(id);
+                Library.DeletionPolicy policy = deletionPolicy(queryParameters(exchange));
+                RemovalReport report = library.revokeMembership(id, policy);
+                if (!report.getRejected().isEmpty()) {
+                    return new Reply(409, "{\"error\":" + quote("Member " + id + " still has books on loan")
+                            + ",\"blockingLoans\":" + loansJson(report.getBlockingLoans()) + "}");
+                }
+                return ok("{\"revoked\":" + quote(id) + ",\"policy\":" + quote(policy.name().toLowerCase(Locale.ROOT))
+                        + ",\"returned\":" + loansJson(report.getReturnedLoans())
+                        + ",\"orphaned\":" + loansJson(report.getOrphanedLoans()) + "}");
+            default:
+                throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    // Checks a book out, buying it first if asked and allowed, or places a hold if it is lent
+    private Reply checkout(Map<String, String> body, String code) {
+        Member member = findMember(text(body, "memberId"));
+        String bookId = text(body, "bookId");
+        boolean purchase = "true".equals(body.get("purchase"));
+        if (purchase) requireFullTime(code, "purchase books");
+        return library.transact(member.getMemberId(), Collections.singletonList(bookId), () -> {
+            Book book = library.getBookById(bookId);
+            double cost = 0;
+            if (book == null) {
+                if (!purchase) {
+                    throw new ApiException(404, code == null
+                            ? "Book not found. Please call a full-time librarian for assistance."
+                            : "Book not found. Set purchase=true to buy and add it.");
+                }
+                book = newBook(body, bookId);
+                cost = accounts.orderNewBook();
+                accounts.getLibrarians().recordBookPurchase(code, cost);
+                library.addBook(book);
+            }
+            if (library.checkoutBook(member, book)) {
+                Loan loan = library.getLoan(bookId);
+                return ok("{\"status\":\"checked_out\",\"bookId\":" + quote(bookId)
+                        + ",\"memberId\":" + quote(member.getMemberId())
+                        + (loan == null ? "" : ",\"dueAt\":" + quote(loan.getDueAt().toString()))
+                        + (cost > 0 ? ",\"cost\":" + cost : "") + "}");
+            }
+            if (member.getBorrowedBookList().contains(book)) {
+                throw new ApiException(409, "Member already has this book");
+            }
+            int position = library.placeHold(member, book);
+            return new Reply(202, "{\"status\":\"on_hold\",\"bookId\":" + quote(bookId)
+                    + ",\"memberId\":" + quote(member.getMemberId()) + ",\"position\":" + position + "}");
+        });
+    }
+
+    private Reply returnBook(Map<String, String> body) {
+        Member member = findMember(text(body, "memberId"));
+        Book book = findBook(text(body, "bookId"));
+        library.transact(member.getMemberId(), Collections.singletonList(book.getBookId()), () -> {
+            if (!member.getBorrowedBookList().contains(book)) {
+                throw new ApiException(409, "Member does not have this book");
+            }
+            library.returnBook(member, book);
+            return null;
+        });
+        return ok("{\"status\":\"returned\",\"bookId\":" + quote(book.getBookId())
+                + ",\"memberId\":" + quote(member.getMemberId()) + "}");
+    }
+
+    // Reads the policy parameter (orphan, force_return or reject), ORPHAN when absent
+    private static Library.DeletionPolicy deletionPolicy(Map<String, String> query) {
+        String policy = query.get("policy");
+        if (policy == null) return Library.DeletionPolicy.ORPHAN;
+        try {
+            return Library.DeletionPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid policy " + policy);
+        }
+    }
+
+    private static int limit(Map<String, String> query) {
+        try {
+            int limit = Integer.parseInt(query.getOrDefault("limit", "10"));
+            if (limit >= 1) return limit;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid limit");
+    }
+
+    private Reply popular(Map<String, String> query) {
+        int days;
+        int limit;
+        try {
+            days = Integer.parseInt(query.getOrDefault("days", "7"));
+            limit = Integer.parseInt(query.getOrDefault("limit", "10"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid days or limit");
+        }
+        if (days < 1 || limit < 1) throw new IllegalArgumentException("Invalid days or limit");
+        String genre = query.get("genre");
+        Duration window = Duration.ofDays(days);
+        PopularityTracker popularity = library.getPopularity();
+        StringBuilder json = new StringBuilder("{\"days\":").append(days)
+                .append(",\"checkouts\":").append(popularity.getCheckoutCount(genre, window))
+                .append(",\"errorBound\":").append(popularity.getErrorBound(genre, window))
+                .append(",\"books\":[");
+        boolean first = true;
+        for (PopularityTracker.Entry entry : popularity.topBooks(genre, limit, window)) {
+            if (!first) json.append(',');
+            json.append("{\"bookId\":").append(quote(entry.getBookId()))
+                    .append(",\"count\":").append(entry.getCount())
+                    .append(",\"error\":").append(entry.getError()).append('}');
+            first = false;
+        }
+        return ok(json.append("]}").toString());
+    }
+
+    private Reply balance() {
+        return ok("{\"balance\":" + accounts.getOperatingCashBalance() + "}");
+    }
+
+    private Book findBook(String bookId) {
+        Book book = library.getBookById(bookId);
+        if (book == null) throw new ApiException(404, "Unknown book " + bookId);
+        return book;
+    }
+
+    private Member findMember(String memberId) {
+        Member member = library.getMemberById(memberId);
+        if (member == null) throw new ApiException(404, "Unknown member " + memberId);
+        return member;
+    }
+
+    // Builds a book from request fields; bookId overrides the body's bookId when given
+    private static Book newBook(Map<String, String> body, String bookId) {
+        int year;
+        try {
+            year = Integer.parseInt(text(body, "year"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid year");
+        }
+        return new Book(text(body, "title"), text(body, "author"), year, text(body, "isbn"),
+                bookId != null ? bookId : text(body, "bookId"), text(body, "genre"));
+    }
+
+    private static void requireFullTime(String code, String action) {
+        if (code == null) throw new ApiException(403, "Only full-time librarians may " + action + ".");
+    }
+
+    private static void expect(String method, String expected, boolean pathOk) {
+        if (!pathOk) throw new ApiException(404, "Unknown path");
+        if (!method.equals(expected)) throw new ApiException(405, "Use " + expected);
+    }
+
+    private static Reply ok(String body) {
+        return new Reply(200, body);
+    }
+
+    // A 200 reply whose body is a JSON array of the records, written as the response streams
+    private static <T> Reply okList(Collection<T> records, RecordAppender<T> format) {
+        return new Reply(200, out -> {
+            out.append('[');
+            boolean first = true;
+            for (T record : records) {
+                if (!first) out.append(',');
+                format.append(out, record);
+                first = false;
+            }
+            out.append(']');
+        });
+    }
+
+    private static Reply error(int status, String message) {
+        return new Reply(status, "{\"error\":" + quote(message == null ? "" : message) + "}");
+    }
+
+    private static String bookJson(Book book) {
+        return RecordFormat.JSON_LINES.formatBook(book);
+    }
+
+    private static String memberJson(Member member) {
+        return RecordFormat.JSON_LINES.formatMember(member);
+    }
+
+    private static String loansJson(List<Loan> loans) {
+        StringBuilder json = new StringBuilder("[");
+        for (Loan loan : loans) {
+            if (json.length() > 1) json.append(',');
+            json.append("{\"bookId\":").append(quote(loan.getBookId()))
+                    .append(",\"memberId\":").append(quote(loan.getMemberId()))
+                    .append(",\"dueAt\":").append(quote(loan.getDueAt().toString())).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    // Returns a JSON string literal
+    static String quote(String value) {
+        if (value == null) return "null";
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String[] segments(String rawPath) {
+        List<String> parts = new ArrayList<>();
+        for (String part : rawPath.split("/")) {
+            if (!part.isEmpty()) parts.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+        }
+        return parts.toArray(new String[0]);
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String text(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) throw new IllegalArgumentException("Missing field " + field);
+        return value;
+    }
+
+    private static double number(Map<String, String> body, String field) {
+        try {
+            return Double.parseDouble(text(body, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field);
+        }
+    }
+
+    // Parses a flat JSON object whose values are strings, numbers, booleans or null.
+    // Every value is returned as text; null values are left out.
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expectChar(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = parseString(json, pos);
+                expectChar(json, pos, ':');
+                String value = peek(json, pos) == '"' ? parseString(json, pos) : parseLiteral(json, pos);
+                if (value != null) fields.put(key, value);
+                if (peek(json, pos) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expectChar(json, pos, '}');
+                break;
+            }
+        }
+        if (skipSpace(json, pos[0]) != json.length()) throw new IllegalArgumentException("Invalid JSON");
+        return fields;
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        if (pos[0] >= json.length()) throw new IllegalArgumentException("Invalid JSON");
+        return json.charAt(pos[0]);
+    }
+
+    private static void expectChar(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) throw new IllegalArgumentException("Invalid JSON");
+        pos[0]++;
+    }
+
+    private static String parseString(String json, int[] pos) {
+        expectChar(json, pos, '"');
+        StringBuilder value = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= json.length()) throw new IllegalArgumentException("Invalid JSON");
+            char c = json.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= json.length()) throw new IllegalArgumentException("Invalid JSON");
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (i + 4 > json.length()) throw new IllegalArgumentException("Invalid JSON");
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid JSON");
+                    }
+                    i += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        pos[0] = i;
+        return value.toString();
+    }
+
+    // Reads a number, true, false or null; returns null for null
+    private static String parseLiteral(String json, int[] pos) {
+        int start = pos[0];
+        int i = start;
+        while (i < json.length() && ",}".indexOf(json.charAt(i)) < 0 && !Character.isWhitespace(json.charAt(i))) i++;
+        String literal = json.substring(start, i);
+        if (literal.isEmpty()) throw new IllegalArgumentException("Invalid JSON");
+        pos[0] = i;
+        return literal.equals("null") ? null : literal;
+    }
+}
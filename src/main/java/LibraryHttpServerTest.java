@@ -0,0 +1,303 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.StringLength;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test suite for the LibraryHttpServer class (HTTP/JSON API).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class LibraryHttpServerTest {
+
+    private static final String FULL_TIME = "123456";
+
+    private Library library;
+    private LibraryAccounts accounts;
+    private LibraryHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        library = new Library(true);
+        accounts = new LibraryAccounts();
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "ISBN1", "B1", "Science Fiction"));
+        library.addMember(new Member("Alice", "alice@example.com", "M1"));
+        library.addMember(new Member("Bob", "bob@example.com", "M2"));
+        server = new LibraryHttpServer(library, accounts);
+        server.start(0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String code) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        if (code != null) request.header(LibraryHttpServer.AUTH_HEADER, code);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testSessionReportsRole() throws Exception {
+        assertEquals("{\"role\":\"volunteer\"}", send("GET", "/session", null, null).body());
+        HttpResponse<String> fullTime = send("GET", "/session", null, FULL_TIME);
+        assertEquals(200, fullTime.statusCode());
+        assertTrue(fullTime.body().contains("\"role\":\"full-time\""));
+        assertEquals(401, send("GET", "/session", null, "999999").statusCode());
+    }
+
+    @Test
+    public void testBookAndMemberManagement() throws Exception {
+        HttpResponse<String> added = send("POST", "/books", "{\"title\":\"Emma\",\"author\":\"Jane Austen\","
+                + "\"year\":1815,\"isbn\":\"ISBN2\",\"bookId\":\"B2\",\"genre\":\"Romance\"}", null);
+        assertEquals(201, added.statusCode());
+        assertEquals("Emma", library.getBookById("B2").getName());
+        assertEquals(409, send("POST", "/books", "{\"title\":\"Emma\",\"author\":\"A\",\"year\":1,"
+                + "\"isbn\":\"I\",\"bookId\":\"B2\",\"genre\":\"G\"}", null).statusCode());
+        assertTrue(send("GET", "/books?q=austen", null, null).body().contains("\"bookId\":\"B2\""));
+        assertTrue(send("GET", "/books?fuzzy=austin", null, null).body().contains("\"bookId\":\"B2\""));
+        assertEquals(400, send("GET", "/books?fuzzy=dune&limit=0", null, null).statusCode());
+        assertTrue(send("GET", "/books/B1", null, null).body().contains("\"available\":true"));
+        assertEquals(200, send("DELETE", "/books/B2", null, null).statusCode());
+        assertNull(library.getBookById("B2"));
+        assertEquals(404, send("GET", "/books/B2", null, null).statusCode());
+
+        assertEquals(201, send("POST", "/members",
+                "{\"name\":\"Carol\",\"email\":\"carol@example.com\",\"memberId\":\"M3\"}", null).statusCode());
+        assertTrue(send("GET", "/members", null, null).body().contains("\"memberId\":\"M3\""));
+        assertEquals(403, send("DELETE", "/members/M3", null, null).statusCode());
+        assertEquals(200, send("DELETE", "/members/M3", null, FULL_TIME).statusCode());
+        assertNull(library.getMemberById("M3"));
+    }
+
+    @Test
+    public void testCheckoutHoldAndReturn() throws Exception {
+        HttpResponse<String> checkout = send("POST", "/checkout", "{\"memberId\":\"M1\",\"bookId\":\"B1\"}", null);
+        assertEquals(200, checkout.statusCode());
+        assertTrue(checkout.body().contains("\"dueAt\""));
+        assertTrue(send("GET", "/members/M1", null, null).body().contains("\"borrowed\":[\"B1\"]"));
+        assertEquals(409, send("POST", "/checkout", "{\"memberId\":\"M1\",\"bookId\":\"B1\"}", null).statusCode());
+
+        HttpResponse<String> hold = send("POST", "/checkout", "{\"memberId\":\"M2\",\"bookId\":\"B1\"}", null);
+        assertEquals(202, hold.statusCode());
+        assertTrue(hold.body().contains("\"position\":1"));
+
+        assertEquals(409, send("POST", "/return", "{\"memberId\":\"M2\",\"bookId\":\"B1\"}", null).statusCode());
+        assertEquals(200, send("POST", "/return", "{\"memberId\":\"M1\",\"bookId\":\"B1\"}", null).statusCode());
+        assertEquals("Bob", library.whoHasBook("B1"));
+    }
+
+    @Test
+    public void testRevokeReportsWhatHappenedToLoans() throws Exception {
+        library.addBook(new Book("Emma", "Jane Austen", 1815, "ISBN2", "B2", "Romance"));
+        assertEquals(200, send("POST", "/checkout", "{\"memberId\":\"M1\",\"bookId\":\"B1\"}", null).statusCode());
+        assertEquals(200, send("POST", "/checkout", "{\"memberId\":\"M2\",\"bookId\":\"B2\"}", null).statusCode());
+
+        HttpResponse<String> rejected = send("DELETE", "/members/M1?policy=reject", null, FULL_TIME);
+        assertEquals(409, rejected.statusCode());
+        assertTrue(rejected.body().contains("\"blockingLoans\":[{\"bookId\":\"B1\",\"memberId\":\"M1\""),
+                rejected.body());
+        assertNotNull(library.getMemberById("M1"));
+        assertEquals(400, send("DELETE", "/members/M1?policy=shred", null, FULL_TIME).statusCode());
+
+        HttpResponse<String> orphaned = send("DELETE", "/members/M1", null, FULL_TIME);
+        assertEquals(200, orphaned.statusCode());
+        assertTrue(orphaned.body().startsWith("{\"revoked\":\"M1\",\"policy\":\"orphan\",\"returned\":[],"
+                + "\"orphaned\":[{\"bookId\":\"B1\""), orphaned.body());
+
+        HttpResponse<String> returned = send("DELETE", "/members/M2?policy=force_return", null, FULL_TIME);
+        assertEquals(200, returned.statusCode());
+        assertTrue(returned.body().contains("\"returned\":[{\"bookId\":\"B2\""), returned.body());
+        assertTrue(returned.body().endsWith("\"orphaned\":[]}"), returned.body());
+        assertTrue(library.getBookById("B2").isAvailable());
+    }
+
+    @Test
+    public void testLargeListsStreamWholeArrays() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            books.add(new Book("Title " + i, "Author", 2000, "ISBN", "L" + i, "Genre"));
+        }
+        library.addBooks(books);
+        HttpResponse<String> listed = send("GET", "/books", null, null);
+        assertEquals(200, listed.statusCode());
+        String body = listed.body();
+        assertTrue(body.startsWith("[{") && body.endsWith("}]"));
+        assertEquals(5001, body.split("\"bookId\":").length - 1);
+        assertEquals("[" + RecordFormat.JSON_LINES.formatBook(library.getBookById("B1")) + "]",
+                send("GET", "/books?q=dune", null, null).body());
+        assertEquals("[]", send("GET", "/books?q=nothing", null, null).body());
+        assertEquals(2, send("GET", "/members", null, null).body().split("\"memberId\":").length - 1);
+    }
+
+    @Test
+    public void testPurchaseAndCashNeedFullTime() throws Exception {
+        String purchase = "{\"memberId\":\"M1\",\"bookId\":\"B9\",\"purchase\":true,\"title\":\"Ulysses\","
+                + "\"author\":\"James Joyce\",\"year\":\"1922\",\"isbn\":\"ISBN9\",\"genre\":\"Modernist\"}";
+        assertEquals(403, send("POST", "/checkout", purchase, null).statusCode());
+        assertEquals(404, send("POST", "/checkout", "{\"memberId\":\"M1\",\"bookId\":\"B9\"}", null).statusCode());
+        HttpResponse<String> bought = send("POST", "/checkout", purchase, FULL_TIME);
+        assertEquals(200, bought.statusCode());
+        assertTrue(bought.body().contains("\"cost\":"));
+        assertEquals("Alice", library.whoHasBook("B9"));
+        assertEquals(1, accounts.getLibrarians().getPurchasedBooks(FULL_TIME).size());
+
+        assertEquals(403, send("POST", "/donations", "{\"amount\":100}", null).statusCode());
+        assertEquals(403, send("GET", "/balance", null, null).statusCode());
+        double before = accounts.getOperatingCashBalance();
+        assertEquals(200, send("POST", "/donations", "{\"amount\":100}", FULL_TIME).statusCode());
+        assertEquals(200, send("POST", "/salary", "{\"amount\":50}", FULL_TIME).statusCode());
+        assertEquals(before + 50, accounts.getOperatingCashBalance(), 1e-9);
+        assertEquals(50.0, accounts.getLibrarians().getTotalSalaryWithdrawn(FULL_TIME), 1e-9);
+        assertEquals(400, send("POST", "/salary", "{\"amount\":1e12}", FULL_TIME).statusCode());
+    }
+
+    @Test
+    public void testPopularListsMostBorrowedBooks() throws Exception {
+        String loan = "{\"memberId\":\"M1\",\"bookId\":\"B1\"}";
+        for (int i = 0; i < 2; i++) {
+            assertEquals(200, send("POST", "/checkout", loan, null).statusCode());
+            assertEquals(200, send("POST", "/return", loan, null).statusCode());
+        }
+        library.getPopularity().record("B9", null);
+        assertEquals("{\"days\":30,\"checkouts\":3,\"errorBound\":0,"
+                + "\"books\":[{\"bookId\":\"B1\",\"count\":2,\"error\":0}]}",
+                send("GET", "/popular?days=30&limit=1", null, null).body());
+        assertTrue(send("GET", "/popular?genre=science%20fiction", null, null).body().contains("\"checkouts\":2"));
+        assertEquals(400, send("GET", "/popular?days=0", null, null).statusCode());
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testBadRequests() throws Exception {
+        assertEquals(404, send("GET", "/", null, null).statusCode());
+        assertEquals(404, send("GET", "/nowhere", null, null).statusCode());
+        assertEquals(404, send("GET", "/books/B1/extra", null, null).statusCode());
+        assertEquals(405, send("PUT", "/books", "{}", null).statusCode());
+        assertEquals(405, send("GET", "/checkout", null, null).statusCode());
+        assertEquals(400, send("POST", "/members", "{\"name\":\"X\"}", null).statusCode());
+        assertEquals(400, send("POST", "/checkout", "not json", null).statusCode());
+        assertEquals(400, send("POST", "/donations", "{\"amount\":\"lots\"}", FULL_TIME).statusCode());
+        assertEquals(404, send("POST", "/return", "{\"memberId\":\"M1\",\"bookId\":\"B404\"}", null).statusCode());
+    }
+
+    @Test
+    public void testRequiresConcurrentLibraryAndStartsOnce() {
+        assertThrows(IllegalArgumentException.class, () -> new LibraryHttpServer(new Library(), accounts));
+        assertThrows(IllegalStateException.class, () -> server.start(0));
+        assertEquals(Runtime.version().feature() >= 21, server.usesVirtualThreads());
+    }
+
+    @Test
+    public void testParseObject() {
+        Map<String, String> fields = LibraryHttpServer.parseObject(
+                " { \"a\" : \"x\\\"y\\u0041\" , \"n\" : -1.5e3, \"t\": true, \"z\": null } ");
+        assertEquals("x\"yA", fields.get("a"));
+        assertEquals("-1.5e3", fields.get("n"));
+        assertEquals("true", fields.get("t"));
+        assertFalse(fields.containsKey("z"));
+        assertTrue(LibraryHttpServer.parseObject("{}").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> LibraryHttpServer.parseObject("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> LibraryHttpServer.parseObject("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> LibraryHttpServer.parseObject(""));
+    }
+
+    @Test
+    public void testConcurrentDesksKeepLoansConsistent() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            library.addBook(new Book("Book " + i, "Author", 2000, "ISBN-L" + i, "L" + i, "Genre"));
+        }
+        ExecutorService desks = Executors.newFixedThreadPool(8);
+        AtomicInteger served = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int desk = t;
+                futures.add(desks.submit(() -> {
+                    Random random = new Random(desk);
+                    String member = desk % 2 == 0 ? "M1" : "M2";
+                    for (int i = 0; i < 100; i++) {
+                        String body = "{\"memberId\":\"" + member + "\",\"bookId\":\"L" + random.nextInt(20) + "\"}";
+                        int status = send("POST", "/checkout", body, null).statusCode();
+                        if (status == 200) send("POST", "/return", body, null);
+                        served.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            desks.shutdownNow();
+        }
+        assertEquals(800, served.get());
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testInternalErrorsAreLogged() throws Exception {
+        LibraryHttpServer broken = new LibraryHttpServer(library, null);
+        PrintStream err = System.err;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try {
+            broken.start(0);
+            System.setErr(new PrintStream(log, true));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + broken.getPort() + "/session"))
+                    .header(LibraryHttpServer.AUTH_HEADER, FULL_TIME).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, response.statusCode());
+            assertEquals("{\"error\":\"Internal error\"}", response.body());
+        } finally {
+            System.setErr(err);
+            broken.close();
+        }
+        assertTrue(log.toString().contains("Internal error serving GET /session"), log.toString());
+        assertTrue(log.toString().contains("NullPointerException"), log.toString());
+    }
+
+    @Test
+    public void testLoadDriverReportsEveryRequest() throws Exception {
+        HttpLoadDriver.Result result = HttpLoadDriver.run(URI.create("http://localhost:" + server.getPort()), 2,
+                Duration.ofMillis(300), 3);
+        assertEquals(0, result.getErrors());
+        assertTrue(result.getRequests() >= 3, result.toString());
+        assertTrue(result.getThroughput() > 0);
+        assertTrue(result.percentileMicros("checkout", 50) <= result.percentileMicros("checkout", 99));
+        assertTrue(result.toString().contains("return"));
+        assertNotNull(library.getMemberById("LOAD-M1"));
+        assertEquals(6, library.snapshot().getBooks().stream().filter(b -> b.getBookId().startsWith("LOAD-")).count());
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyQuotedStringsParseBack(@ForAll @StringLength(max = 40) String value) {
+        String json = "{\"v\":" + LibraryHttpServer.quote(value) + "}";
+        assertEquals(value, LibraryHttpServer.parseObject(json).get("v"));
+    }
+}
@@ -0,0 +1,564 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every mutation made to a Library, its LibraryAccounts and Librarians.
+ * Each record is written as [int length][byte type][payload][int crc32] so a torn write at the
+ * end of the file is detected and discarded on recovery.
+ *
+ * Mutations are applied in memory first and then logged before the call returns, so a caller
+ * that got an answer knows the change is in the journal (subject to the sync policy).
+ * Concurrent writers share fsyncs: whichever thread finds the buffer unflushed writes and
+ * forces everything appended so far, and the others simply wait for it (group commit).
+ * A concurrent Library appends while it holds its lock stripes, so records follow the order
+ * of the changes, but waits for them only after releasing the stripes (see deferCommits).
+ */
+public class LibraryJournal implements Closeable {
+
+    // How much durability a logged mutation has when the logging call returns
+    public enum SyncPolicy {
+        // written and fsynced before returning; concurrent writers share one fsync
+        FSYNC,
+        // handed to the operating system before returning; survives a process crash, not a power loss
+        WRITE,
+        // kept in memory until the buffer fills or flush()/close() is called
+        BUFFERED
+    }
+
+    // Record type tags; never renumber, old journals depend on them
+    static final byte ADD_BOOK = 1;
+    static final byte UPDATE_BOOK = 2;
+    static final byte REMOVE_BOOK = 3;
+    static final byte ADD_MEMBER = 4;
+    static final byte REVOKE_MEMBERSHIP = 5;
+    static final byte CHECKOUT = 6;
+    static final byte RETURN = 7;
+    static final byte DONATION = 8;
+    static final byte SALARY_WITHDRAWAL = 9;
+    static final byte LIBRARIAN_SALARY = 10;
+    static final byte BOOK_PURCHASE = 11;
+    static final byte LIBRARIAN_PURCHASE = 12;
+    static final byte PLACE_HOLD = 13;
+    static final byte CANCEL_HOLD = 14;
+    static final byte CHECKOUT_BATCH = 15;
+    static final byte RETURN_BATCH = 16;
+    static final byte REMOVE_BOOKS = 17;
+    static final byte ADD_BOOKS = 18;
+
+    private static final int BUFFER_LIMIT = 64 * 1024;
+    // Longest stretch after a damaged record that is searched for intact ones when opening
+    private static final int MAX_RESYNC_SCAN = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+
+    // Group-commit state, guarded by 'this'
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    private long endOffset;
+    private boolean flushing;
+    private IOException failure;
+    // Per thread: how deeply deferCommits calls are nested, and the last sequence they must wait for
+    private final ThreadLocal<long[]> deferred = ThreadLocal.withInitial(() -> new long[2]);
+
+    // Opens (or creates) a journal, discarding any torn record left at its end.
+    // A damaged record followed by intact ones is not a torn write but corruption: rather than
+    // truncate the intact records away, opening fails and the file is left untouched.
+    public static LibraryJournal open(Path path, SyncPolicy policy) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end;
+        try {
+            end = scan(channel, 0, null);
+            if (intactRecordsFollow(channel, end)) {
+                throw new IOException("Journal " + path + " is damaged at offset " + end
+                        + " and intact records follow; refusing to truncate it");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.truncate(end);
+        channel.position(end);
+        return new LibraryJournal(channel, policy, end);
+    }
+
+    private LibraryJournal(FileChannel channel, SyncPolicy policy, long endOffset) {
+        this.channel = channel;
+        this.policy = policy;
+        this.endOffset = endOffset;
+    }
+
+    // Returns the sync policy in force
+    public SyncPolicy getPolicy() {
+        return policy;
+    }
+
+    // Returns the journal offset just after the last logged record
+    public synchronized long position() {
+        return endOffset;
+    }
+
+    // Replays every record into the given library and accounts, which must not have a
+    // journal attached yet. Returns the number of records applied.
+    public long replay(Library library, LibraryAccounts accounts) throws IOException {
+        return replay(0, library, accounts);
+    }
+
+    // Replays the records starting at the given offset (e.g. where a snapshot left off)
+    public long replay(long fromOffset, Library library, LibraryAccounts accounts) throws IOException {
+        flush();
+        long[] applied = new long[1];
+        scan(channel, fromOffset, in -> {
+            apply(in, library, accounts);
+            applied[0]++;
+        });
+        return applied[0];
+    }
+
+    // Replays the journal into fresh state and then attaches it so new mutations are logged
+    public void recover(Library library, LibraryAccounts accounts) throws IOException {
+        recover(0, library, accounts);
+    }
+
+    // Replays the tail after a snapshot's offset and then attaches the journal
+    public void recover(long fromOffset, Library library, LibraryAccounts accounts) throws IOException {
+        replay(fromOffset, library, accounts);
+        library.setJournal(this);
+        accounts.setJournal(this);
+    }
+
+    // Reads records from an offset, handing each payload to the visitor (if any).
+    // Returns the offset where the last intact record ends.
+    private static long scan(FileChannel channel, long offset, RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        CRC32 crc = new CRC32();
+        while (offset + 4 <= size) {
+            header.clear();
+            channel.read(header, offset);
+            int length = header.getInt(0);
+            if (length <= 0 || offset + 4 + length + 4 > size) break;
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            while (body.hasRemaining() && channel.read(body, offset + 4 + body.position()) > 0) {
+                // keep reading until the record and its checksum are in
+            }
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != body.getInt(length)) break;
+            if (visitor != null) {
+                visitor.visit(new DataInputStream(new ByteArrayInputStream(body.array(), 0, length)));
+            }
+            offset += 4 + length + 4;
+        }
+        return offset;
+    }
+
+    // Looks for an intact record anywhere after a damaged one, by trying every offset.
+    // A torn write only ever leaves a prefix of the last records, so nothing intact can follow it;
+    // more than MAX_RESYNC_SCAN bytes after the damage cannot be a torn write either.
+    private static boolean intactRecordsFollow(FileChannel channel, long damaged) throws IOException {
+        long size = channel.size();
+        if (size - damaged > MAX_RESYNC_SCAN) return true;
+        ByteBuffer rest = ByteBuffer.allocate((int) (size - damaged));
+        while (rest.hasRemaining() && channel.read(rest, damaged + rest.position()) > 0) {
+            // read the whole tail
+        }
+        byte[] bytes = rest.array();
+        CRC32 crc = new CRC32();
+        for (int at = 1; at + 9 <= bytes.length; at++) {
+            int length = ByteBuffer.wrap(bytes, at, 4).getInt();
+            if (length <= 0 || at + 4L + length + 4 > bytes.length) continue;
+            crc.reset();
+            crc.update(bytes, at + 4, length);
+            if ((int) crc.getValue() == ByteBuffer.wrap(bytes, at + 4 + length, 4).getInt()) return true;
+        }
+        return false;
+    }
+
+    // Receives one record payload during a scan
+    private interface RecordVisitor {
+        void visit(DataInputStream in) throws IOException;
+    }
+
+    // Re-applies one record through the normal public operations
+    private static void apply(DataInputStream in, Library library, LibraryAccounts accounts) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_BOOK -> {
+                String bookId = in.readUTF();
+                library.addBook(new Book(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), bookId, in.readUTF()));
+            }
+            case ADD_BOOKS -> {
+                int count = in.readInt();
+                List<Book> books = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String bookId = in.readUTF();
+                    books.add(new Book(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), bookId, in.readUTF()));
+                }
+                library.addBooks(books);
+            }
+            case UPDATE_BOOK -> {
+                Book book = library.getBookById(in.readUTF());
+                String name = in.readUTF();
+                String author = in.readUTF();
+                int year = in.readInt();
+                String isbn = in.readUTF();
+                String genre = in.readUTF();
+                if (book != null) book.updateBookInfo(name, author, year, isbn, genre);
+            }
+            case REMOVE_BOOK -> library.removeBook(in.readUTF());
+            case REMOVE_BOOKS -> {
+                int count = in.readInt();
+                List<String> bookIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    bookIds.add(in.readUTF());
+                }
+                library.removeBooks(bookIds, Library.DeletionPolicy.ORPHAN);
+            }
+            case ADD_MEMBER -> {
+                String memberId = in.readUTF();
+                library.addMember(new Member(in.readUTF(), in.readUTF(), memberId));
+            }
+            case REVOKE_MEMBERSHIP -> library.revokeMembership(in.readUTF());
+            case CHECKOUT -> {
+                Member member = library.getMemberById(in.readUTF());
+                Book book = library.getBookById(in.readUTF());
+                Instant checkedOutAt = Instant.ofEpochMilli(in.readLong());
+                Instant dueAt = Instant.ofEpochMilli(in.readLong());
+                if (member != null && book != null) library.restoreLoan(member, book, checkedOutAt, dueAt);
+            }
+            case RETURN -> {
+                Member member = library.getMemberById(in.readUTF());
+                replayReturn(library, member, library.getBookById(in.readUTF()));
+            }
+            case CHECKOUT_BATCH -> {
+                Member member = library.getMemberById(in.readUTF());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Book book = library.getBookById(in.readUTF());
+                    Instant checkedOutAt = Instant.ofEpochMilli(in.readLong());
+                    Instant dueAt = Instant.ofEpochMilli(in.readLong());
+                    if (member != null && book != null) library.restoreLoan(member, book, checkedOutAt, dueAt);
+                }
+            }
+            case RETURN_BATCH -> {
+                Member member = library.getMemberById(in.readUTF());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    replayReturn(library, member, library.getBookById(in.readUTF()));
+                }
+            }
+            case DONATION -> accounts.addDonation(in.readDouble());
+            case SALARY_WITHDRAWAL -> accounts.withdrawSalary(in.readDouble());
+            case LIBRARIAN_SALARY -> {
+                String authCode = in.readUTF();
+                accounts.getLibrarians().recordSalaryWithdrawal(authCode, in.readDouble());
+            }
+            case BOOK_PURCHASE -> accounts.orderBook(in.readDouble());
+            case LIBRARIAN_PURCHASE -> {
+                String authCode = in.readUTF();
+                accounts.getLibrarians().recordBookPurchase(authCode, in.readDouble());
+            }
+            case PLACE_HOLD -> {
+                Member member = library.getMemberById(in.readUTF());
+                Book book = library.getBookById(in.readUTF());
+                if (member != null && book != null) library.placeHold(member, book);
+            }
+            case CANCEL_HOLD -> {
+                String memberId = in.readUTF();
+                library.cancelHold(memberId, in.readUTF());
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void replayReturn(Library library, Member member, Book book) {
+        if (book != null && member != null) library.returnBook(member, book);
+        else if (book != null) book.setAvailable(true);
+    }
+
+    // Record writers, one per mutation
+
+    public void logAddBook(Book book) {
+        log(record(ADD_BOOK, book.getBookId(), book.getName(), book.getAuthor(), book.getYear(),
+                book.getIsbn(), book.getGenre()));
+    }
+
+    // One record for a whole addBooks call: count, then each book as in ADD_BOOK
+    public void logAddBooks(List<Book> books) {
+        Object[] fields = new Object[1 + 6 * books.size()];
+        fields[0] = books.size();
+        int i = 1;
+        for (Book book : books) {
+            fields[i++] = book.getBookId();
+            fields[i++] = book.getName();
+            fields[i++] = book.getAuthor();
+            fields[i++] = book.getYear();
+            fields[i++] = book.getIsbn();
+            fields[i++] = book.getGenre();
+        }
+        log(record(ADD_BOOKS, fields));
+    }
+
+    public void logUpdateBook(Book book) {
+        log(record(UPDATE_BOOK, book.getBookId(), book.getName(), book.getAuthor(), book.getYear(),
+                book.getIsbn(), book.getGenre()));
+    }
+
+    public void logRemoveBook(String bookId) {
+        log(record(REMOVE_BOOK, bookId));
+    }
+
+    // One record for a whole removeBooks call: count, then each book ID
+    public void logRemoveBooks(List<String> bookIds) {
+        Object[] fields = new Object[1 + bookIds.size()];
+        fields[0] = bookIds.size();
+        for (int i = 0; i < bookIds.size(); i++) {
+            fields[1 + i] = bookIds.get(i);
+        }
+        log(record(REMOVE_BOOKS, fields));
+    }
+
+    public void logAddMember(Member member) {
+        log(record(ADD_MEMBER, member.getMemberId(), member.getName(), member.getEmail()));
+    }
+
+    public void logRevokeMembership(String memberId) {
+        log(record(REVOKE_MEMBERSHIP, memberId));
+    }
+
+    public void logCheckout(Loan loan) {
+        log(record(CHECKOUT, loan.getMemberId(), loan.getBookId(),
+                loan.getCheckedOutAt().toEpochMilli(), loan.getDueAt().toEpochMilli()));
+    }
+
+    public void logReturn(String memberId, String bookId) {
+        log(record(RETURN, memberId, bookId));
+    }
+
+    // One record for a whole checkoutAll: member, count, then each book with its loan dates
+    public void logCheckoutBatch(String memberId, List<Loan> loans) {
+        Object[] fields = new Object[2 + 3 * loans.size()];
+        fields[0] = memberId;
+        fields[1] = loans.size();
+        int i = 2;
+        for (Loan loan : loans) {
+            fields[i++] = loan.getBookId();
+            fields[i++] = loan.getCheckedOutAt().toEpochMilli();
+            fields[i++] = loan.getDueAt().toEpochMilli();
+        }
+        log(record(CHECKOUT_BATCH, fields));
+    }
+
+    // One record for a whole returnAll: member, count, then each book
+    public void logReturnBatch(String memberId, List<String> bookIds) {
+        Object[] fields = new Object[2 + bookIds.size()];
+        fields[0] = memberId;
+        fields[1] = bookIds.size();
+        for (int i = 0; i < bookIds.size(); i++) {
+            fields[2 + i] = bookIds.get(i);
+        }
+        log(record(RETURN_BATCH, fields));
+    }
+
+    public void logPlaceHold(String memberId, String bookId) {
+        log(record(PLACE_HOLD, memberId, bookId));
+    }
+
+    public void logCancelHold(String memberId, String bookId) {
+        log(record(CANCEL_HOLD, memberId, bookId));
+    }
+
+    public void logDonation(double amount) {
+        commit(appendDonation(amount));
+    }
+
+    public void logSalaryWithdrawal(double amount) {
+        commit(appendSalaryWithdrawal(amount));
+    }
+
+    public void logLibrarianSalary(String authCode, double amount) {
+        commit(appendLibrarianSalary(authCode, amount));
+    }
+
+    public void logBookPurchase(double cost) {
+        commit(appendBookPurchase(cost));
+    }
+
+    public void logLibrarianPurchase(String authCode, double cost) {
+        commit(appendLibrarianPurchase(authCode, cost));
+    }
+
+    // The same records, appended without waiting; pass the returned sequence to commit.
+    // LibraryAccounts and Librarians append while holding their own monitor, so the journal
+    // order matches the order the balance changed in, and commit after releasing it.
+
+    long appendDonation(double amount) {
+        return append(record(DONATION, amount));
+    }
+
+    long appendSalaryWithdrawal(double amount) {
+        return append(record(SALARY_WITHDRAWAL, amount));
+    }
+
+    long appendLibrarianSalary(String authCode, double amount) {
+        return append(record(LIBRARIAN_SALARY, authCode, amount));
+    }
+
+    long appendBookPurchase(double cost) {
+        return append(record(BOOK_PURCHASE, cost));
+    }
+
+    long appendLibrarianPurchase(String authCode, double cost) {
+        return append(record(LIBRARIAN_PURCHASE, authCode, cost));
+    }
+
+    // Encodes a record: strings as UTF, ints as 4 bytes, longs and doubles as 8 bytes
+    private static byte[] record(byte type, Object... fields) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeByte(type);
+            for (Object field : fields) {
+                if (field instanceof Integer i) out.writeInt(i);
+                else if (field instanceof Long l) out.writeLong(l);
+                else if (field instanceof Double d) out.writeDouble(d);
+                else out.writeUTF(field == null ? "" : (String) field);
+            }
+            out.writeInt(0);
+            byte[] record = bytes.toByteArray();
+            int length = record.length - 8;
+            ByteBuffer.wrap(record).putInt(0, length);
+            CRC32 crc = new CRC32();
+            crc.update(record, 4, length);
+            ByteBuffer.wrap(record).putInt(record.length - 4, (int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Appends a record and waits as long as the sync policy requires
+    private void log(byte[] record) {
+        commit(append(record));
+    }
+
+    // Adds a record to the group-commit buffer without waiting.
+    // returns its sequence number
+    private synchronized long append(byte[] record) {
+        if (failure != null) throw new UncheckedIOException("Journal unusable", failure);
+        pending.write(record, 0, record.length);
+        endOffset += record.length;
+        return ++appended;
+    }
+
+    // Runs an action that logs records, appending them as it goes but waiting for them only once
+    // it returns, e.g. after the locks it took are released, so the writers queued on those locks
+    // are not held up by the disk. Nested calls wait at the outermost one.
+    <T> T deferCommits(Supplier<T> action) {
+        long[] scope = deferred.get();
+        long sequence = 0;
+        scope[0]++;
+        T result;
+        try {
+            result = action.get();
+        } finally {
+            if (--scope[0] == 0) {
+                sequence = scope[1];
+                scope[1] = 0;
+            }
+        }
+        if (sequence > 0) commit(sequence);
+        return result;
+    }
+
+    // Waits until the record with the given sequence number is as durable as the sync policy
+    // requires, or leaves that to the enclosing deferCommits call
+    void commit(long sequence) {
+        long[] scope = deferred.get();
+        if (scope[0] > 0) {
+            scope[1] = Math.max(scope[1], sequence);
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            full = pending.size() >= BUFFER_LIMIT;
+        }
+        if (policy != SyncPolicy.BUFFERED || full) {
+            try {
+                awaitDurable(sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Group commit: blocks until the given record is written (and fsynced under FSYNC).
+    // One waiter becomes the leader and flushes everything appended so far for the whole group.
+    private void awaitDurable(long sequence) throws IOException {
+        byte[] batch;
+        long batchEnd;
+        synchronized (this) {
+            while (durable < sequence && flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal commit");
+                }
+            }
+            if (durable >= sequence) return;
+            if (failure != null) throw failure;
+            flushing = true;
+            batch = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            batchEnd = appended;
+        }
+        IOException error = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            if (policy == SyncPolicy.FSYNC) channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            flushing = false;
+            if (error == null) durable = batchEnd;
+            else failure = error;
+            notifyAll();
+        }
+        if (error != null) throw error;
+    }
+
+    // Writes and fsyncs everything logged so far
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+        channel.force(false);
+    }
+
+    // Flushes outstanding records and closes the file
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
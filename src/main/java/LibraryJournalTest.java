@@ -0,0 +1,370 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.DoubleRange;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for the LibraryJournal class (write-ahead log and crash recovery).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class LibraryJournalTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile("library", ".journal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Opens the journal, recovers fresh state from it and returns the three pieces
+    private Object[] recover(LibraryJournal.SyncPolicy policy) throws IOException {
+        Library library = new Library();
+        LibraryAccounts accounts = new LibraryAccounts();
+        LibraryJournal journal = LibraryJournal.open(file, policy);
+        journal.recover(library, accounts);
+        return new Object[]{journal, library, accounts};
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testEveryMutationSurvivesRestart() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.FSYNC);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        Library library = (Library) first[1];
+        LibraryAccounts accounts = (LibraryAccounts) first[2];
+
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy");
+        Book dune = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction");
+        Book weeded = new Book("Old Atlas", "Unknown", 1901, "N/A", "B003", "Reference");
+        Member alice = new Member("Alice", "alice@example.com", "M001");
+        Member bob = new Member("Bob", "bob@example.com", "M002");
+        library.addBook(hobbit);
+        library.addBook(dune);
+        library.addBook(weeded);
+        library.addMember(alice);
+        library.addMember(bob);
+        library.checkoutBook(alice, hobbit);
+        library.checkoutBook(bob, dune);
+        library.returnBook(bob, dune);
+        library.removeBook("B003");
+        dune.updateBookInfo("Dune Messiah", "Frank Herbert", 1969, "978-0593098233", "Science Fiction");
+        library.revokeMembership("M002");
+        accounts.addDonation(1000);
+        accounts.withdrawSalary("123456", 2500);
+        double cost = accounts.orderNewBook();
+        accounts.getLibrarians().recordBookPurchase("123456", cost);
+        journal.close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.FSYNC);
+        Library restored = (Library) second[1];
+        LibraryAccounts restoredAccounts = (LibraryAccounts) second[2];
+        ((LibraryJournal) second[0]).close();
+
+        assertEquals(2, restored.getAllBooks().size(), "Removed book should stay removed");
+        assertNull(restored.getBookById("B003"));
+        assertNull(restored.getMemberById("M002"), "Revoked member should stay revoked");
+        assertEquals("Alice", restored.whoHasBook("B001"), "Open loan should be restored");
+        assertFalse(restored.getBookById("B001").isAvailable());
+        assertTrue(restored.getBookById("B002").isAvailable(), "Returned book should be available");
+        assertEquals("Dune Messiah", restored.getBookById("B002").getName(), "Update should be replayed");
+        assertEquals(accounts.getOperatingCashBalance(), restoredAccounts.getOperatingCashBalance());
+        assertEquals(2500.0, restoredAccounts.getLibrarians().getTotalSalaryWithdrawn("123456"));
+        assertEquals(List.of(cost), restoredAccounts.getLibrarians().getPurchasedBooks("123456"));
+        assertTrue(restored.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testBatchesAreOneRecordAndReplay() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.FSYNC);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        Library library = (Library) first[1];
+        for (int i = 0; i < 5; i++) {
+            library.addBook(new Book("Title" + i, "Author", 2000, "ISBN" + i, "B" + i, "Genre"));
+        }
+        library.addMember(new Member("Alice", "alice@example.com", "M001"));
+        long before = journal.position();
+        BatchResult checkout = library.checkoutAll("M001", List.of("B0", "B1", "B2", "B3"));
+        long afterCheckout = journal.position();
+        library.returnAll("M001", List.of("B1", "B3"));
+        long afterReturn = journal.position();
+        journal.close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.FSYNC);
+        Library restored = (Library) second[1];
+        LibraryJournal reopened = (LibraryJournal) second[0];
+        long replayed = reopened.replay(before, new Library(), new LibraryAccounts());
+        reopened.close();
+        assertEquals(2, replayed, "Each batch should be a single record");
+        assertTrue(afterCheckout > before && afterReturn > afterCheckout);
+        assertEquals("Alice", restored.whoHasBook("B0"));
+        assertEquals("Alice", restored.whoHasBook("B2"));
+        assertTrue(restored.getBookById("B1").isAvailable());
+        assertTrue(restored.getBookById("B3").isAvailable());
+        assertEquals(checkout.getLoans().get(0).getDueAt().toEpochMilli(), restored.getLoan("B0").getDueAt().toEpochMilli());
+        assertTrue(restored.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testBulkRemovalIsOneRecordAndReplays() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        Library library = (Library) first[1];
+        for (int i = 0; i < 5; i++) {
+            library.addBook(new Book("Title" + i, "Author", 2000, "ISBN" + i, "B" + i, "Genre"));
+        }
+        library.addMember(new Member("Alice", "alice@example.com", "M001"));
+        library.checkoutBook(library.getMemberById("M001"), library.getBookById("B4"));
+        long before = journal.position();
+        library.removeBooks(List.of("B0", "B1", "B2", "B4"), Library.DeletionPolicy.REJECT);
+        journal.close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.WRITE);
+        Library restored = (Library) second[1];
+        LibraryJournal reopened = (LibraryJournal) second[0];
+        assertEquals(1, reopened.replay(before, new Library(), new LibraryAccounts()));
+        reopened.close();
+        assertEquals(2, restored.getAllBooks().size());
+        assertNull(restored.getBookById("B1"));
+        assertEquals("Alice", restored.whoHasBook("B4"));
+        assertTrue(restored.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testBulkAdditionIsOneRecordAndReplays() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        Library library = (Library) first[1];
+        library.addBook(new Book("Existing", "Author", 1999, "ISBN", "B0", "Genre"));
+        long before = journal.position();
+        long version = library.snapshot().getVersion();
+        List<Book> books = new java.util.ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            books.add(new Book("Title" + i, "Author", 2000 + i, "ISBN" + i, "B" + i, "Genre"));
+        }
+        assertEquals(99, library.addBooks(books), "B0 already exists");
+        assertEquals(version + 1, library.snapshot().getVersion(), "One catalog version for the whole batch");
+        journal.close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.WRITE);
+        Library restored = (Library) second[1];
+        LibraryJournal reopened = (LibraryJournal) second[0];
+        assertEquals(1, reopened.replay(before, new Library(), new LibraryAccounts()));
+        reopened.close();
+        assertEquals(100, restored.getAllBooks().size());
+        assertEquals("Existing", restored.getBookById("B0").getName());
+        assertEquals(2099, restored.getBookById("B99").getYear());
+        assertEquals(List.of(restored.getBookById("B42")), restored.searchBooksByPrefix("Title42"));
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        ((Library) first[1]).addMember(new Member("Alice", "alice@example.com", "M001"));
+        long intact = journal.position();
+        ((Library) first[1]).addMember(new Member("Bob", "bob@example.com", "M002"));
+        journal.close();
+
+        // Simulate a crash half way through writing Bob's record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(intact + 6);
+        }
+        Object[] second = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal reopened = (LibraryJournal) second[0];
+        Library restored = (Library) second[1];
+        assertNotNull(restored.getMemberById("M001"), "Intact record should be replayed");
+        assertNull(restored.getMemberById("M002"), "Torn record should be dropped");
+        assertEquals(intact, reopened.position(), "New records should follow the last intact one");
+        reopened.close();
+        assertEquals(intact, Files.size(file));
+    }
+
+    @Test
+    public void testCorruptRecordStopsReplay() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        ((LibraryAccounts) first[2]).addDonation(10);
+        long intact = journal.position();
+        ((LibraryAccounts) first[2]).addDonation(20);
+        journal.close();
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) intact + 6] ^= 0x7F;
+        Files.write(file, bytes);
+        Object[] second = recover(LibraryJournal.SyncPolicy.WRITE);
+        ((LibraryJournal) second[0]).close();
+        assertEquals(39_010.0, ((LibraryAccounts) second[2]).getOperatingCashBalance(),
+                "Only the record before the checksum failure should apply");
+    }
+
+    @Test
+    public void testDamageBeforeIntactRecordsIsNotTruncated() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        ((LibraryAccounts) first[2]).addDonation(10);
+        long damaged = journal.position();
+        ((LibraryAccounts) first[2]).addDonation(20);
+        ((LibraryAccounts) first[2]).addDonation(30);
+        journal.close();
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) damaged + 6] ^= 0x7F;
+        Files.write(file, bytes);
+        IOException error = assertThrows(IOException.class, () -> LibraryJournal.open(file, LibraryJournal.SyncPolicy.WRITE));
+        assertTrue(error.getMessage().contains("offset " + damaged), error.getMessage());
+        assertEquals(bytes.length, Files.size(file), "The records after the damage must not be cut off");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testBufferedRecordsReachDiskOnClose() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.BUFFERED);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        assertEquals(LibraryJournal.SyncPolicy.BUFFERED, journal.getPolicy());
+        ((Library) first[1]).addMember(new Member("Alice", "alice@example.com", "M001"));
+        assertEquals(0, Files.size(file), "Buffered record should not be written yet");
+        journal.close();
+        assertEquals(journal.position(), Files.size(file), "Close should write the buffered record");
+    }
+
+    @Test
+    public void testGroupCommitFromConcurrentWriters() throws IOException, InterruptedException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.FSYNC);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        Library library = new Library(true);
+        library.setJournal(journal);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    library.addMember(new Member("Member", "m@example.com", "T" + thread + "M" + i));
+                }
+            }));
+        }
+        for (Thread writer : writers) writer.start();
+        for (Thread writer : writers) writer.join();
+        journal.close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.FSYNC);
+        ((LibraryJournal) second[0]).close();
+        assertEquals(400, ((Library) second[1]).getAllMembers().size(), "Every concurrent write should be durable");
+    }
+
+    @Test
+    public void testConcurrentAccountUpdatesReplayInTheirOwnOrder() throws IOException, InterruptedException {
+        // Withdrawals only succeed against earlier donations, so replay fails unless the
+        // journal order is the order the balance actually changed in.
+        Object[] first = recover(LibraryJournal.SyncPolicy.FSYNC);
+        LibraryAccounts accounts = (LibraryAccounts) first[2];
+        accounts.withdrawSalary(39_000);
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            desks.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    accounts.addDonation(5);
+                    while (true) {
+                        try {
+                            accounts.withdrawSalary("123456", 5);
+                            break;
+                        } catch (IllegalArgumentException e) {
+                            Thread.yield(); // another desk took the money first
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread desk : desks) desk.start();
+        for (Thread desk : desks) desk.join();
+        ((LibraryJournal) first[0]).close();
+
+        Object[] second = recover(LibraryJournal.SyncPolicy.FSYNC);
+        ((LibraryJournal) second[0]).close();
+        assertEquals(0.0, ((LibraryAccounts) second[2]).getOperatingCashBalance());
+        assertEquals(1000.0, ((LibraryAccounts) second[2]).getLibrarians().getTotalSalaryWithdrawn("123456"));
+    }
+
+    @Test
+    public void testCommitsWaitUntilOutsideTheLocks() throws IOException {
+        // The record is appended under the member's stripe but written only once the stripe is
+        // released, so other desks never wait for the disk; the call still returns with it written
+        LibraryJournal journal = LibraryJournal.open(file, LibraryJournal.SyncPolicy.WRITE);
+        Library library = new Library(true);
+        library.setJournal(journal);
+        long[] underLock = new long[1];
+        library.transact("M001", List.of(), () -> {
+            library.addMember(new Member("Alice", "alice@example.com", "M001"));
+            underLock[0] = file.toFile().length();
+            return null;
+        });
+        assertEquals(0, underLock[0], "Nothing should be written while the stripe is held");
+        assertTrue(file.toFile().length() > 0, "The record should be written before the call returns");
+        journal.close();
+
+        Library restored = new Library();
+        LibraryJournal reopened = LibraryJournal.open(file, LibraryJournal.SyncPolicy.WRITE);
+        reopened.replay(restored, new LibraryAccounts());
+        reopened.close();
+        assertNotNull(restored.getMemberById("M001"));
+    }
+
+    @Test
+    public void testReplayFromOffsetSkipsEarlierRecords() throws IOException {
+        Object[] first = recover(LibraryJournal.SyncPolicy.WRITE);
+        LibraryJournal journal = (LibraryJournal) first[0];
+        ((Library) first[1]).addMember(new Member("Alice", "alice@example.com", "M001"));
+        long offset = journal.position();
+        ((Library) first[1]).addMember(new Member("Bob", "bob@example.com", "M002"));
+
+        Library tail = new Library();
+        assertEquals(1, journal.replay(offset, tail, new LibraryAccounts()));
+        assertNull(tail.getMemberById("M001"));
+        assertNotNull(tail.getMemberById("M002"));
+        journal.close();
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyDonationsReplayToSameBalance(
+            @ForAll @DoubleRange(min = 0.0, max = 10_000.0) double first,
+            @ForAll @DoubleRange(min = 0.0, max = 10_000.0) double second
+    ) throws IOException {
+        Path path = Files.createTempFile("library", ".journal");
+        try {
+            LibraryAccounts accounts = new LibraryAccounts();
+            try (LibraryJournal journal = LibraryJournal.open(path, LibraryJournal.SyncPolicy.WRITE)) {
+                accounts.setJournal(journal);
+                accounts.addDonation(first);
+                accounts.addDonation(second);
+            }
+            LibraryAccounts restored = new LibraryAccounts();
+            try (LibraryJournal journal = LibraryJournal.open(path, LibraryJournal.SyncPolicy.WRITE)) {
+                journal.replay(new Library(), restored);
+            }
+            assertEquals(accounts.getOperatingCashBalance(), restored.getOperatingCashBalance());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -1,6 +1,63 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
 public class LibraryManagementSystem {
-    public static void main(String[] args) {
-        Interface cli = new Interface();
-        cli.start();
+    // Snapshot after this much journal growth, or this long with any growth, unless overridden
+    // with -Dlibrary.snapshot.bytes and -Dlibrary.snapshot.seconds
+    private static final long SNAPSHOT_BYTES = 16L * 1024 * 1024;
+    private static final long SNAPSHOT_SECONDS = 600;
+
+    public static void main(String[] args) throws IOException {
+        // Optional HTTP API served alongside the CLI, e.g. -Dlibrary.http.port=8080
+        Integer httpPort = Integer.getInteger("library.http.port");
+        if (args.length == 0 && httpPort == null) {
+            Interface cli = new Interface();
+            cli.start();
+            return;
+        }
+        // The HTTP API serves many desks at once, and snapshots are taken in the background,
+        // so both need a concurrent library
+        Path snapshot = args.length > 1 ? Path.of(args[1]) : null;
+        Library library = new Library(httpPort != null || snapshot != null);
+        LibraryAccounts accounts = new LibraryAccounts();
+        if (args.length == 0) {
+            run(library, accounts, httpPort);
+            return;
+        }
+        // Optional journal file (and snapshot file): load the snapshot, replay the journal
+        // records written after it (or all of them if the snapshot is unusable), then log every
+        // change to the journal and snapshot again whenever the journal has grown enough
+        try (LibraryJournal journal = LibraryJournal.open(Path.of(args[0]), LibraryJournal.SyncPolicy.FSYNC)) {
+            long offset = LibrarySnapshot.recover(snapshot, journal, library, accounts);
+            if (snapshot == null) {
+                run(library, accounts, httpPort);
+                return;
+            }
+            SnapshotScheduler snapshots = new SnapshotScheduler(snapshot, library, accounts, journal,
+                    Long.getLong("library.snapshot.bytes", SNAPSHOT_BYTES),
+                    Duration.ofSeconds(Long.getLong("library.snapshot.seconds", SNAPSHOT_SECONDS)), offset);
+            snapshots.start();
+            try {
+                run(library, accounts, httpPort);
+            } finally {
+                snapshots.close();
+            }
+            snapshots.snapshotNow();
+        }
     }
-}
\ No newline at end of file
+
+    // Runs the CLI, with the HTTP API listening until it exits if a port was given
+    private static void run(Library library, LibraryAccounts accounts, Integer httpPort) throws IOException {
+        Interface cli = new Interface(library, accounts);
+        if (httpPort == null) {
+            cli.start();
+            return;
+        }
+        try (LibraryHttpServer server = new LibraryHttpServer(library, accounts)) {
+            server.start(httpPort);
+            System.out.println("HTTP API listening on port " + server.getPort());
+            cli.start();
+        }
+    }
+}
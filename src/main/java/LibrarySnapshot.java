@@ -0,0 +1,429 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of a Library and its LibraryAccounts, used for fast startup:
+ * load the latest snapshot, then replay only the journal records written after it.
+ *
+ * Layout (version 2, big-endian):
+ *   magic "LMSS", int version, long journal offset, double balance,
+ *   string dictionary: int count, then [int byteLength][UTF-8 bytes] per string,
+ *   books:      int count, then [int length][name, author, int year, isbn, bookId, genre, byte available],
+ *   members:    int count, then [int length][name, email, memberId, int loans, bookId...,
+ *               then per loan long checkedOutAt, long dueAt in epoch millis],
+ *   librarians: int count, then [int length][authCode, double salary, int purchases, double...],
+ *   holds:      int count, then [int length][bookId, int waiting, memberId...],
+ *   int CRC32 of everything before it.
+ * Strings inside records are int ids into the dictionary, so repeated authors and genres
+ * are stored once. Records carry their length so later versions can append fields.
+ */
+public class LibrarySnapshot {
+    private static final int MAGIC = 0x4C4D5353; // "LMSS"
+    private static final int VERSION = 2;
+
+    private LibrarySnapshot() {
+    }
+
+    // Writes a snapshot of the current state, tagged with the journal offset it covers.
+    // Take it while no mutations are in flight; the file is replaced atomically.
+    public static void write(Path path, Library library, LibraryAccounts accounts, long journalOffset)
+            throws IOException {
+        writeFile(path, serialize(new State(library, accounts), journalOffset));
+    }
+
+    // Writes a snapshot covering everything logged to the journal so far, while mutations go on.
+    // Circulation pauses only while the loans, holds and books off the shelf are copied and the
+    // accounts are read, so that they match the journal offset exactly; the books and members
+    // are then serialized from the unchanging catalog version of that moment, and the file
+    // written, with everything released. Returns that offset.
+    public static long write(Path path, Library library, LibraryAccounts accounts, LibraryJournal journal)
+            throws IOException {
+        long[] offset = new long[1];
+        State state = library.quiesce(() -> {
+            synchronized (accounts) {
+                synchronized (accounts.getLibrarians()) {
+                    offset[0] = journal.position();
+                    return new State(library, accounts);
+                }
+            }
+        });
+        writeFile(path, serialize(state, offset[0]));
+        return offset[0];
+    }
+
+    // What a snapshot holds, copied at one moment: circulation with its catalog version, and the accounts
+    private static final class State {
+        final Library.Circulation circulation;
+        final double balance;
+        final List<LibrarianRecord> librarians = new ArrayList<>();
+
+        State(Library library, LibraryAccounts accounts) {
+            circulation = library.captureCirculation();
+            balance = accounts.getOperatingCashBalance();
+            Librarians all = accounts.getLibrarians();
+            for (String code : all.getAuthCodes()) {
+                librarians.add(new LibrarianRecord(code, all.getTotalSalaryWithdrawn(code),
+                        new ArrayList<>(all.getPurchasedBooks(code))));
+            }
+        }
+    }
+
+    // Restores from the snapshot and the journal records written after it, then attaches the journal.
+    // A missing or unreadable snapshot only costs startup time: the whole journal is replayed instead.
+    // Returns the journal offset replay started from.
+    public static long recover(Path path, LibraryJournal journal, Library library, LibraryAccounts accounts)
+            throws IOException {
+        long offset = 0;
+        if (path != null && Files.exists(path)) {
+            try {
+                offset = load(path, library, accounts);
+            } catch (IOException e) {
+                // load checks the whole file before touching the library, so it is still empty
+                System.err.println(e.getMessage() + "; replaying the whole journal instead");
+            }
+        }
+        journal.recover(offset, library, accounts);
+        return offset;
+    }
+
+    // Serializes a captured state, checksum included
+    private static byte[] serialize(State state, long journalOffset) {
+        CatalogVersion catalog = state.circulation.catalog;
+        Map<String, List<Loan>> loans = state.circulation.loans;
+        Map<String, List<String>> holds = state.circulation.holds;
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Book book : catalog.getBooks()) {
+            intern(ids, book.getName());
+            intern(ids, book.getAuthor());
+            intern(ids, book.getIsbn());
+            intern(ids, book.getBookId());
+            intern(ids, book.getGenre());
+        }
+        for (Member member : catalog.getMembers()) {
+            intern(ids, member.getName());
+            intern(ids, member.getEmail());
+            intern(ids, member.getMemberId());
+            for (Loan loan : loans.getOrDefault(member.getMemberId(), Collections.emptyList())) {
+                intern(ids, loan.getBookId());
+            }
+        }
+        for (LibrarianRecord librarian : state.librarians) {
+            intern(ids, librarian.code);
+        }
+        for (Map.Entry<String, List<String>> entry : holds.entrySet()) {
+            intern(ids, entry.getKey());
+            for (String memberId : entry.getValue()) {
+                intern(ids, memberId);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        CRC32 crc = new CRC32();
+        try (CheckedOutputStream checked = new CheckedOutputStream(bytes, crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalOffset);
+            out.writeDouble(state.balance);
+
+            out.writeInt(ids.size());
+            for (String value : ids.keySet()) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+            DataOutputStream record = new DataOutputStream(recordBytes);
+
+            Collection<Book> books = catalog.getBooks();
+            out.writeInt(books.size());
+            for (Book book : books) {
+                recordBytes.reset();
+                record.writeInt(id(ids, book.getName()));
+                record.writeInt(id(ids, book.getAuthor()));
+                record.writeInt(book.getYear());
+                record.writeInt(id(ids, book.getIsbn()));
+                record.writeInt(id(ids, book.getBookId()));
+                record.writeInt(id(ids, book.getGenre()));
+                record.writeByte(state.circulation.unavailable.contains(book.getBookId()) ? 0 : 1);
+                writeRecord(out, recordBytes);
+            }
+
+            Collection<Member> members = catalog.getMembers();
+            out.writeInt(members.size());
+            for (Member member : members) {
+                recordBytes.reset();
+                record.writeInt(id(ids, member.getName()));
+                record.writeInt(id(ids, member.getEmail()));
+                record.writeInt(id(ids, member.getMemberId()));
+                List<Loan> held = loans.getOrDefault(member.getMemberId(), Collections.emptyList());
+                record.writeInt(held.size());
+                for (Loan loan : held) {
+                    record.writeInt(id(ids, loan.getBookId()));
+                }
+                for (Loan loan : held) {
+                    record.writeLong(loan.getCheckedOutAt().toEpochMilli());
+                    record.writeLong(loan.getDueAt().toEpochMilli());
+                }
+                writeRecord(out, recordBytes);
+            }
+
+            out.writeInt(state.librarians.size());
+            for (LibrarianRecord librarian : state.librarians) {
+                recordBytes.reset();
+                record.writeInt(id(ids, librarian.code));
+                record.writeDouble(librarian.salary);
+                record.writeInt(librarian.purchases.size());
+                for (double cost : librarian.purchases) {
+                    record.writeDouble(cost);
+                }
+                writeRecord(out, recordBytes);
+            }
+
+            out.writeInt(holds.size());
+            for (Map.Entry<String, List<String>> entry : holds.entrySet()) {
+                recordBytes.reset();
+                record.writeInt(id(ids, entry.getKey()));
+                record.writeInt(entry.getValue().size());
+                for (String memberId : entry.getValue()) {
+                    record.writeInt(id(ids, memberId));
+                }
+                writeRecord(out, recordBytes);
+            }
+
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream never throws
+        }
+        return bytes.toByteArray();
+    }
+
+    // Replaces the snapshot file atomically and durably: the data reaches the disk before the
+    // rename publishes it, and the rename reaches the disk before this returns
+    private static void writeFile(Path path, byte[] bytes) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // Some platforms (Windows) cannot open a directory; the rename is still atomic there
+            }
+        }
+    }
+
+    // Loads a snapshot into an empty library and fresh accounts (no journal attached).
+    // Returns the journal offset from which the remaining records must be replayed.
+    // The whole file is checked and decoded first: if it is damaged, this throws before
+    // anything is added to the library or accounts.
+    public static long load(Path path, Library library, LibraryAccounts accounts) throws IOException {
+        Contents contents;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28) throw new IOException("Snapshot too short: " + path);
+            if (size > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2 GiB: " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) size - 4);
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a library snapshot: " + path);
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            buffer.limit((int) size - 4);
+            try {
+                contents = decode(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed snapshot: " + path, e);
+            }
+        }
+        contents.applyTo(library, accounts);
+        return contents.journalOffset;
+    }
+
+    // Reads everything after the version number
+    private static Contents decode(ByteBuffer buffer) {
+        Contents contents = new Contents();
+        contents.journalOffset = buffer.getLong();
+        contents.balance = buffer.getDouble();
+
+        String[] strings = new String[buffer.getInt()];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getInt();
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int bookCount = buffer.getInt();
+        for (int i = 0; i < bookCount; i++) {
+            int end = buffer.getInt() + buffer.position();
+            String name = strings[buffer.getInt()];
+            String author = strings[buffer.getInt()];
+            int year = buffer.getInt();
+            String isbn = strings[buffer.getInt()];
+            String bookId = strings[buffer.getInt()];
+            String genre = strings[buffer.getInt()];
+            boolean available = buffer.get() != 0;
+            Book book = new Book(name, author, year, isbn, bookId, genre);
+            contents.books.add(book);
+            if (!available) contents.checkedOut.add(book);
+            buffer.position(end);
+        }
+
+        int memberCount = buffer.getInt();
+        for (int i = 0; i < memberCount; i++) {
+            int end = buffer.getInt() + buffer.position();
+            MemberRecord member = new MemberRecord(new Member(strings[buffer.getInt()], strings[buffer.getInt()],
+                    strings[buffer.getInt()]), buffer.getInt());
+            for (int j = 0; j < member.loans.length; j++) {
+                member.loans[j] = strings[buffer.getInt()];
+            }
+            for (int j = 0; j < member.dates.length; j++) {
+                member.dates[j] = buffer.getLong();
+            }
+            contents.members.add(member);
+            buffer.position(end);
+        }
+
+        int librarianCount = buffer.getInt();
+        for (int i = 0; i < librarianCount; i++) {
+            int end = buffer.getInt() + buffer.position();
+            String code = strings[buffer.getInt()];
+            double salary = buffer.getDouble();
+            List<Double> purchases = new ArrayList<>();
+            int count = buffer.getInt();
+            for (int j = 0; j < count; j++) {
+                purchases.add(buffer.getDouble());
+            }
+            contents.librarians.add(new LibrarianRecord(code, salary, purchases));
+            buffer.position(end);
+        }
+
+        int holdCount = buffer.getInt();
+        for (int i = 0; i < holdCount; i++) {
+            int end = buffer.getInt() + buffer.position();
+            String bookId = strings[buffer.getInt()];
+            String[] waiting = new String[buffer.getInt()];
+            for (int j = 0; j < waiting.length; j++) {
+                waiting[j] = strings[buffer.getInt()];
+            }
+            contents.holds.put(bookId, waiting);
+            buffer.position(end);
+        }
+        return contents;
+    }
+
+    // A decoded snapshot, not yet applied
+    private static final class Contents {
+        long journalOffset;
+        double balance;
+        final List<Book> books = new ArrayList<>();
+        final List<Book> checkedOut = new ArrayList<>();
+        final List<MemberRecord> members = new ArrayList<>();
+        final List<LibrarianRecord> librarians = new ArrayList<>();
+        final Map<String, String[]> holds = new LinkedHashMap<>();
+
+        void applyTo(Library library, LibraryAccounts accounts) {
+            accounts.restoreBalance(balance);
+            library.addBooks(books); // one catalog version and one pass over each index
+            for (MemberRecord record : members) {
+                library.addMember(record.member);
+                for (int j = 0; j < record.loans.length; j++) {
+                    Book book = library.getBookById(record.loans[j]);
+                    if (book == null) continue;
+                    library.restoreLoan(record.member, book, Instant.ofEpochMilli(record.dates[2 * j]),
+                            Instant.ofEpochMilli(record.dates[2 * j + 1]));
+                }
+            }
+            // Books that were unavailable without a current holder stay unavailable
+            for (Book book : checkedOut) {
+                book.setAvailable(false);
+            }
+            Librarians restored = accounts.getLibrarians();
+            for (LibrarianRecord record : librarians) {
+                if (restored.authenticate(record.code)) {
+                    restored.restoreHistory(record.code, record.salary, record.purchases);
+                }
+            }
+            for (Map.Entry<String, String[]> entry : holds.entrySet()) {
+                Book book = library.getBookById(entry.getKey());
+                for (String memberId : entry.getValue()) {
+                    Member member = library.getMemberById(memberId);
+                    if (book != null && member != null) library.placeHold(member, book);
+                }
+            }
+        }
+    }
+
+    // A member, the IDs of the books they hold, and per loan its checkout and due time
+    private static final class MemberRecord {
+        final Member member;
+        final String[] loans;
+        final long[] dates;
+
+        MemberRecord(Member member, int loans) {
+            this.member = member;
+            this.loans = new String[loans];
+            this.dates = new long[loans * 2];
+        }
+    }
+
+    private static final class LibrarianRecord {
+        final String code;
+        final double salary;
+        final List<Double> purchases;
+
+        LibrarianRecord(String code, double salary, List<Double> purchases) {
+            this.code = code;
+            this.salary = salary;
+            this.purchases = purchases;
+        }
+    }
+
+    // Adds a string to the dictionary if new and returns its id
+    private static int intern(Map<String, Integer> ids, String value) {
+        return ids.computeIfAbsent(nonNull(value), v -> ids.size());
+    }
+
+    // Returns the id of a string already in the dictionary
+    private static int id(Map<String, Integer> ids, String value) {
+        return ids.get(nonNull(value));
+    }
+
+    // Stores missing fields as empty strings
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    // Writes one length-prefixed record
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream record) throws IOException {
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+}
@@ -0,0 +1,280 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.StringLength;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Test suite for the LibrarySnapshot class (binary snapshots for fast startup).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class LibrarySnapshotTest {
+
+    private Path snapshot;
+    private Path journalFile;
+    private Library library;
+    private LibraryAccounts accounts;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        snapshot = dir.resolve("library.snapshot");
+        journalFile = dir.resolve("library.journal");
+        library = new Library();
+        accounts = new LibraryAccounts();
+        library.addBook(new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy"));
+        library.addBook(new Book("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0618640157", "B002", "Fantasy"));
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B003", "Science Fiction"));
+        library.addMember(new Member("Alice", "alice@example.com", "M001"));
+        library.addMember(new Member("Bob", "bob@example.com", "M002"));
+        library.checkoutBook(library.getMemberById("M001"), library.getBookById("B001"));
+        library.getBookById("B003").setAvailable(false);
+        accounts.addDonation(250);
+        accounts.withdrawSalary("654321", 1000);
+        accounts.getLibrarians().recordBookPurchase("654321", 42);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshot.getParent());
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testRoundTripRestoresCatalogLoansAndAccounts() throws IOException {
+        LibrarySnapshot.write(snapshot, library, accounts, 1234);
+        Library restored = new Library();
+        LibraryAccounts restoredAccounts = new LibraryAccounts();
+        assertEquals(1234, LibrarySnapshot.load(snapshot, restored, restoredAccounts));
+
+        assertEquals(3, restored.getAllBooks().size());
+        assertEquals(2, restored.getAllMembers().size());
+        Book hobbit = restored.getBookById("B001");
+        assertEquals("J.R.R. Tolkien", hobbit.getAuthor());
+        assertEquals(1937, hobbit.getYear());
+        assertEquals("978-0547928227", hobbit.getIsbn());
+        assertEquals("Fantasy", hobbit.getGenre());
+        assertEquals("Alice", restored.whoHasBook("B001"), "Loan should be restored");
+        assertFalse(hobbit.isAvailable());
+        assertFalse(restored.getBookById("B003").isAvailable(), "Unavailable book should stay unavailable");
+        assertTrue(restored.getBookById("B002").isAvailable());
+        assertEquals("alice@example.com", restored.getMemberById("M001").getEmail());
+        assertEquals(accounts.getOperatingCashBalance(), restoredAccounts.getOperatingCashBalance());
+        assertEquals(1000.0, restoredAccounts.getLibrarians().getTotalSalaryWithdrawn("654321"));
+        assertEquals(List.of(42.0), restoredAccounts.getLibrarians().getPurchasedBooks("654321"));
+        assertTrue(restored.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException {
+        LibrarySnapshot.write(snapshot, library, accounts, 0);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(snapshot, bytes);
+        assertThrows(IOException.class, () -> LibrarySnapshot.load(snapshot, new Library(), new LibraryAccounts()));
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsRejected() throws IOException {
+        Files.write(snapshot, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> LibrarySnapshot.load(snapshot, new Library(), new LibraryAccounts()));
+    }
+
+    @Test
+    public void testDamagedSnapshotFallsBackToWholeJournal() throws IOException {
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            Library logged = new Library();
+            LibraryAccounts loggedAccounts = new LibraryAccounts();
+            logged.setJournal(journal);
+            loggedAccounts.setJournal(journal);
+            logged.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B003", "Science Fiction"));
+            logged.addMember(new Member("Alice", "alice@example.com", "M001"));
+            loggedAccounts.addDonation(100);
+            LibrarySnapshot.write(snapshot, logged, loggedAccounts, journal);
+            logged.checkoutBook(logged.getMemberById("M001"), logged.getBookById("B003"));
+        }
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(snapshot, bytes);
+
+        Library restored = new Library();
+        LibraryAccounts restoredAccounts = new LibraryAccounts();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            assertEquals(0, LibrarySnapshot.recover(snapshot, journal, restored, restoredAccounts));
+        }
+        assertEquals("Alice", restored.whoHasBook("B003"));
+        assertEquals(1, restored.getAllBooks().size());
+        assertEquals(new LibraryAccounts().getOperatingCashBalance() + 100, restoredAccounts.getOperatingCashBalance(),
+                "The donation should be applied exactly once");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testSnapshotsTakenDuringCirculationMatchTheJournal() throws Exception {
+        Library live = new Library(true);
+        LibraryAccounts liveAccounts = new LibraryAccounts();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.BUFFERED)) {
+            live.setJournal(journal);
+            liveAccounts.setJournal(journal);
+            for (int i = 0; i < 20; i++) {
+                live.addBook(new Book("Title " + i, "Author", 2000, "ISBN" + i, "B" + i, "Genre"));
+                live.addMember(new Member("Member " + i, "m" + i + "@example.com", "M" + i));
+            }
+            Thread[] desks = new Thread[4];
+            for (int t = 0; t < desks.length; t++) {
+                int desk = t;
+                desks[t] = new Thread(() -> {
+                    java.util.Random random = new java.util.Random(desk);
+                    for (int i = 0; i < 2000; i++) {
+                        Member member = live.getMemberById("M" + random.nextInt(20));
+                        Book book = live.getBookById("B" + random.nextInt(20));
+                        if (random.nextBoolean()) live.checkoutBook(member, book);
+                        else live.returnBook(member, book);
+                        if (i % 100 == 0) liveAccounts.addDonation(1);
+                    }
+                });
+                desks[t].start();
+            }
+            SnapshotScheduler snapshots = new SnapshotScheduler(snapshot, live, liveAccounts, journal, 1,
+                    java.time.Duration.ofHours(1), 0);
+            // At least one check runs even if the desks are done before the first one
+            for (Thread desk : desks) {
+                do {
+                    snapshots.check();
+                } while (desk.isAlive());
+            }
+            assertTrue(snapshots.getSnapshotsTaken() > 0);
+            snapshots.close();
+        }
+
+        // Whichever snapshot was last, it plus the journal after it rebuilds the same state
+        Library restored = new Library();
+        LibraryAccounts restoredAccounts = new LibraryAccounts();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            assertTrue(LibrarySnapshot.recover(snapshot, journal, restored, restoredAccounts) > 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(live.whoHasBook("B" + i), restored.whoHasBook("B" + i));
+        }
+        assertEquals(liveAccounts.getOperatingCashBalance(), restoredAccounts.getOperatingCashBalance());
+        assertTrue(restored.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testSchedulerSnapshotsOnlyAfterEnoughGrowth() throws IOException {
+        Library live = new Library(true);
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            live.setJournal(journal);
+            try (SnapshotScheduler snapshots = new SnapshotScheduler(snapshot, live, accounts, journal, 200,
+                    java.time.Duration.ofHours(1), journal.position())) {
+                assertFalse(snapshots.check(), "Nothing logged yet");
+                live.addMember(new Member("Carol", "carol@example.com", "M003"));
+                assertFalse(snapshots.check(), "One small record is not enough growth");
+                for (int i = 0; i < 10; i++) {
+                    live.addBook(new Book("Title " + i, "Author", 2000, "ISBN", "B" + i, "Genre"));
+                }
+                assertTrue(snapshots.check());
+                assertEquals(journal.position(), snapshots.snapshotNow());
+                assertFalse(snapshots.check());
+                assertEquals(1 + 1, snapshots.getSnapshotsTaken());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new SnapshotScheduler(snapshot, library, accounts, null,
+                1, java.time.Duration.ofHours(1), 0), "Background snapshots need a concurrent library");
+        assertFalse(Files.exists(snapshot.resolveSibling(snapshot.getFileName() + ".tmp")));
+    }
+
+    @Test
+    public void testSchedulerReportsUnexpectedFailures() throws IOException {
+        Library live = new Library(true);
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            live.setJournal(journal);
+            // No accounts to capture: the snapshot fails with a runtime exception, which check reports
+            try (SnapshotScheduler snapshots = new SnapshotScheduler(snapshot, live, null, journal, 1,
+                    java.time.Duration.ofHours(1), journal.position())) {
+                live.addMember(new Member("Carol", "carol@example.com", "M003"));
+                assertFalse(snapshots.check());
+                assertEquals(0, snapshots.getSnapshotsTaken());
+            }
+        }
+        assertFalse(Files.exists(snapshot));
+    }
+
+    @Test
+    public void testSnapshotPlusJournalTail() throws IOException {
+        // Changes made after the snapshot come back from the journal tail
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            library.setJournal(journal);
+            accounts.setJournal(journal);
+            library.addBook(new Book("Ignored", "Author", 2000, "ISBN", "B900", "Genre"));
+            LibrarySnapshot.write(snapshot, library, accounts, journal.position());
+            library.returnBook(library.getMemberById("M001"), library.getBookById("B001"));
+            library.addMember(new Member("Carol", "carol@example.com", "M003"));
+            accounts.addDonation(5);
+        }
+
+        Library restored = new Library();
+        LibraryAccounts restoredAccounts = new LibraryAccounts();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+            long offset = LibrarySnapshot.load(snapshot, restored, restoredAccounts);
+            journal.recover(offset, restored, restoredAccounts);
+        }
+        assertNotNull(restored.getBookById("B900"), "Book from before the snapshot comes from the snapshot");
+        assertNotNull(restored.getMemberById("M003"), "Member added after the snapshot comes from the journal");
+        assertTrue(restored.getBookById("B001").isAvailable(), "Return after the snapshot should be replayed");
+        assertEquals(accounts.getOperatingCashBalance(), restoredAccounts.getOperatingCashBalance(),
+                "Donation after the snapshot should be applied exactly once");
+    }
+
+    @Test
+    public void testSharedStringsAreStoredOnce() throws IOException {
+        LibrarySnapshot.write(snapshot, library, accounts, 0);
+        long oneAuthor = Files.size(snapshot);
+        library.addBook(new Book("The Silmarillion", "J.R.R. Tolkien", 1977, "978-0618391110", "B004", "Fantasy"));
+        LibrarySnapshot.write(snapshot, library, accounts, 0);
+        long growth = Files.size(snapshot) - oneAuthor;
+        // New title, ISBN and id strings plus a fixed-size record; author and genre are reused
+        int newStrings = "The Silmarillion".length() + "978-0618391110".length() + "B004".length() + 3 * 4;
+        assertEquals(newStrings + 4 + 25, growth);
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyBookDetailsRoundTrip(
+            @ForAll @AlphaChars @StringLength(min = 1, max = 20) String name,
+            @ForAll @AlphaChars @StringLength(min = 1, max = 20) String author,
+            @ForAll @IntRange(min = 0, max = 2100) int year,
+            @ForAll @AlphaChars @StringLength(min = 1, max = 10) String bookId
+    ) throws IOException {
+        Path path = Files.createTempFile("library", ".snapshot");
+        try {
+            Library source = new Library();
+            source.addBook(new Book(name, author, year, "ISBN", bookId, "Genre"));
+            LibrarySnapshot.write(path, source, new LibraryAccounts(), 0);
+            Library restored = new Library();
+            LibrarySnapshot.load(path, restored, new LibraryAccounts());
+            Book book = restored.getBookById(bookId);
+            assertEquals(name, book.getName());
+            assertEquals(author, book.getAuthor());
+            assertEquals(year, book.getYear());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -8,7 +8,11 @@ import net.jqwik.api.constraints.AlphaChars;
 import net.jqwik.api.constraints.StringLength;
 import net.jqwik.api.constraints.IntRange;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test suite for the Library Management System.
@@ -134,6 +138,381 @@ public class LibraryTest {
                 "findBookByName should return null for a non-existent book name");
     }
 
+    @Test
+    public void testLoanIndexAfterRemoveBook() {
+        // Removing a loaned book clears the loan and the borrower's list.
+        library.checkoutBook(testMember, testBook);
+        library.removeBook("B001");
+        assertEquals("Not checked out.", library.whoHasBook("B001"),
+                "whoHasBook should not report a removed book.");
+        assertFalse(testMember.getBorrowedBookList().contains(testBook),
+                "Removed book should be dropped from the borrower's list.");
+        assertTrue(library.isLoanIndexConsistent(), "Loan index should match borrowed lists.");
+    }
+
+    @Test
+    public void testLoanIndexAfterRevokeMembership() {
+        // Revoking a member clears their loans from the index.
+        library.checkoutBook(testMember, testBook);
+        library.revokeMembership("M001");
+        assertEquals("Not checked out.", library.whoHasBook("B001"),
+                "whoHasBook should not report a revoked member.");
+        assertTrue(library.isLoanIndexConsistent(), "Loan index should match borrowed lists.");
+    }
+
+    @Test
+    public void testLoanIndexDetectsOutOfBandChange() {
+        // Editing a borrowed list behind the library's back breaks consistency.
+        library.checkoutBook(testMember, testBook);
+        assertTrue(library.isLoanIndexConsistent(), "Loan index should match after checkout.");
+        testMember.removeBorrowedBook("B001");
+        assertFalse(library.isLoanIndexConsistent(), "Checker should detect a stale index entry.");
+    }
+
+    @Test
+    public void testReturnByNonHolderKeepsLoan() {
+        // A return recorded against the wrong member does not clear the real holder's loan.
+        Member secondMember = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(secondMember);
+        library.checkoutBook(testMember, testBook);
+        library.returnBook(secondMember, testBook);
+        assertEquals("Alice", library.whoHasBook("B001"),
+                "whoHasBook should still report the real holder.");
+        assertFalse(testBook.isAvailable(), "The book is still out with the real holder.");
+        assertTrue(testMember.getBorrowedBookList().contains(testBook));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testReturnWithoutLoanPutsCopyBack() {
+        // A copy no one holds a loan for goes back on the shelf, whoever brings it in.
+        Member secondMember = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(secondMember);
+        testBook.setAvailable(false);
+        library.returnBook(secondMember, testBook);
+        assertTrue(testBook.isAvailable(), "A copy with no open loan should be taken back.");
+
+        library.checkoutBook(testMember, testBook);
+        library.revokeMembership("M001", Library.DeletionPolicy.ORPHAN);
+        assertFalse(testBook.isAvailable(), "An orphaned copy is still out.");
+        library.returnBook(secondMember, testBook);
+        assertTrue(testBook.isAvailable(), "An orphaned copy should come back when it is returned.");
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testCheckoutReportsSuccess() {
+        Member secondMember = new Member("Bob", "bob@example.com", "M002");
+        assertTrue(library.checkoutBook(testMember, testBook), "First checkout should succeed.");
+        assertFalse(library.checkoutBook(secondMember, testBook), "Second checkout should be refused.");
+    }
+
+    @Test
+    public void testConcurrentCheckoutLendsCopyOnce() throws InterruptedException {
+        // Many kiosks race for the same copy; exactly one may win it.
+        Library shared = new Library(true);
+        assertTrue(shared.isConcurrent());
+        Book book = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B100", "Science Fiction");
+        shared.addBook(book);
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Member member = new Member("Kiosk" + i, "k" + i + "@example.com", "K" + i);
+            shared.addMember(member);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (shared.checkoutBook(member, book)) winners.incrementAndGet();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        assertEquals(1, winners.get(), "Only one kiosk should lend the copy.");
+        assertFalse(book.isAvailable());
+        assertTrue(shared.isLoanIndexConsistent(), "Loan index should match borrowed lists.");
+    }
+
+    @Test
+    public void testConcurrentMixedCirculation() throws InterruptedException {
+        // Each thread repeatedly checks out and returns its own books.
+        Library shared = new Library(true);
+        int threads = 8;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Member member = new Member("Member" + t, "m" + t + "@example.com", "M" + t);
+            shared.addMember(member);
+            List<Book> books = new ArrayList<>();
+            for (int b = 0; b < 5; b++) {
+                Book book = new Book("Title" + b, "Author", 2000, "ISBN", "T" + t + "B" + b, "Genre");
+                shared.addBook(book);
+                books.add(book);
+            }
+            workers.add(new Thread(() -> {
+                for (int round = 0; round < 200; round++) {
+                    for (Book book : books) shared.checkoutBook(member, book);
+                    for (Book book : books) shared.returnBook(member, book);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        for (Book book : shared.getAllBooks()) {
+            assertTrue(book.isAvailable(), "Every book should be back on the shelf.");
+        }
+        assertTrue(shared.isLoanIndexConsistent(), "Loan index should be empty and consistent.");
+    }
+
+    @Test
+    public void testForcedRemovalRacingCirculationKeepsLoansConsistent() throws InterruptedException {
+        // Forced returns lock the borrower, so they never interleave with the borrower's own returns.
+        Library shared = new Library(true);
+        Member member = new Member("Reader", "reader@example.com", "M1");
+        shared.addMember(member);
+        List<Book> books = new ArrayList<>();
+        for (int b = 0; b < 300; b++) {
+            Book book = new Book("Title" + b, "Author", 2000, "ISBN" + b, "F" + b, "Genre");
+            shared.addBook(book);
+            books.add(book);
+        }
+        Thread borrower = new Thread(() -> {
+            for (int round = 0; round < 20; round++) {
+                for (Book book : books) shared.checkoutBook(member, book);
+                for (Book book : books) shared.returnBook(member, book);
+            }
+        });
+        borrower.start();
+        for (int b = 0; b < books.size(); b += 2) {
+            shared.removeBook(books.get(b).getBookId(), Library.DeletionPolicy.FORCE_RETURN);
+        }
+        borrower.join();
+        assertTrue(shared.isLoanIndexConsistent(), "No loan survives its book or loses its borrower.");
+        for (Book book : shared.getAllBooks()) {
+            assertEquals(shared.getLoan(book.getBookId()) == null, book.isAvailable());
+        }
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterChanges() {
+        CatalogVersion before = library.snapshot();
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction"));
+        library.revokeMembership("M001");
+        CatalogVersion after = library.snapshot();
+        assertEquals(1, before.bookCount(), "An old snapshot should keep its books.");
+        assertSame(testMember, before.getMember("M001"), "An old snapshot should keep its members.");
+        assertEquals(2, after.bookCount());
+        assertNull(after.getMember("M001"));
+        assertTrue(after.getVersion() > before.getVersion());
+        assertSame(after, library.snapshot(), "Taking a snapshot should not create a new version.");
+    }
+
+    @Test
+    public void testSnapshotIterationDuringConcurrentWrites() throws InterruptedException {
+        // Reports read a fixed version while other threads keep adding and removing books.
+        Library shared = new Library(true);
+        for (int i = 0; i < 1000; i++) {
+            shared.addBook(new Book("Title" + i, "Author", 2000, "ISBN", "S" + i, "Genre"));
+        }
+        AtomicInteger failures = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 5000; i++) {
+                shared.addBook(new Book("New" + i, "Author", 2000, "ISBN", "N" + i, "Genre"));
+                shared.removeBook("S" + (i % 1000));
+            }
+        });
+        writer.start();
+        for (int report = 0; report < 50; report++) {
+            CatalogVersion version = shared.snapshot();
+            int counted = 0;
+            try {
+                for (Book book : version.getBooks()) counted++;
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+            }
+            if (counted != version.bookCount()) failures.incrementAndGet();
+        }
+        writer.join();
+        assertEquals(0, failures.get(), "Every report should see a complete, consistent version.");
+        assertEquals(5000, shared.getAllBooks().size());
+    }
+
+    @Test
+    public void testCheckoutAllLendsEveryBookOrNone() {
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction"));
+        library.addBook(new Book("Emma", "Jane Austen", 1815, "978-0141439587", "B003", "Romance"));
+        Member bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(bob);
+        library.checkoutBook(bob, library.getBookById("B003"));
+
+        BatchResult rejected = library.checkoutAll("M001", List.of("B001", "B002", "B003", "B404", "B001"));
+        assertFalse(rejected.isApplied());
+        assertEquals(List.of(BatchResult.Outcome.OK, BatchResult.Outcome.OK, BatchResult.Outcome.UNAVAILABLE,
+                BatchResult.Outcome.UNKNOWN_BOOK, BatchResult.Outcome.DUPLICATE), rejected.getOutcomes());
+        assertEquals(List.of("B003", "B404", "B001"), rejected.getFailedBookIds());
+        assertTrue(testBook.isAvailable(), "A rejected batch should lend nothing.");
+        assertTrue(library.getBookById("B002").isAvailable());
+        assertTrue(testMember.getBorrowedBookList().isEmpty());
+
+        BatchResult applied = library.checkoutAll("M001", List.of("B001", "B002"));
+        assertTrue(applied.isApplied(), applied.toString());
+        assertEquals(2, applied.getLoans().size());
+        assertEquals("Alice", library.whoHasBook("B001"));
+        assertEquals("Alice", library.whoHasBook("B002"));
+        assertEquals(applied.getLoans().get(1), library.getLoan("B002"));
+        assertTrue(library.isLoanIndexConsistent());
+
+        BatchResult unknownMember = library.checkoutAll("M404", List.of("B003"));
+        assertEquals(BatchResult.Outcome.UNKNOWN_MEMBER, unknownMember.getOutcome(0));
+    }
+
+    @Test
+    public void testReturnAllHandsBooksToHolders() {
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction"));
+        Member bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(bob);
+        assertTrue(library.checkoutAll("M001", List.of("B001", "B002")).isApplied());
+        library.placeHold(bob, testBook);
+
+        BatchResult rejected = library.returnAll("M001", List.of("B002", "B003"));
+        assertFalse(rejected.isApplied());
+        assertEquals(BatchResult.Outcome.UNKNOWN_BOOK, rejected.getOutcome(1));
+        assertEquals(BatchResult.Outcome.NOT_BORROWED, library.returnAll("M002", List.of("B002")).getOutcome(0));
+        assertEquals("Alice", library.whoHasBook("B002"), "A rejected return should change nothing.");
+
+        assertTrue(library.returnAll("M001", List.of("B001", "B002")).isApplied());
+        assertEquals("Bob", library.whoHasBook("B001"), "The held book should go to the holder.");
+        assertTrue(library.getBookById("B002").isAvailable());
+        assertTrue(testMember.getBorrowedBookList().isEmpty());
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testConcurrentBatchesNeverSplitABasket() throws Exception {
+        Library shared = new Library(true);
+        for (int i = 0; i < 10; i++) {
+            shared.addBook(new Book("Title" + i, "Author", 2000, "ISBN" + i, "C" + i, "Genre"));
+        }
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger applied = new AtomicInteger();
+        for (int t = 0; t < 4; t++) {
+            String memberId = "P" + t;
+            shared.addMember(new Member("Patron " + t, memberId + "@example.com", memberId));
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    List<String> basket = List.of("C" + ((i + offset) % 10), "C" + ((i + offset + 3) % 10));
+                    if (shared.checkoutAll(memberId, basket).isApplied()) {
+                        applied.incrementAndGet();
+                        assertTrue(shared.returnAll(memberId, basket).isApplied());
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        assertTrue(applied.get() > 0);
+        for (Book book : shared.getAllBooks()) {
+            assertTrue(book.isAvailable(), "Every basket should have been returned whole.");
+        }
+        assertTrue(shared.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testRemoveBookPolicies() {
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction"));
+        library.addBook(new Book("Emma", "Jane Austen", 1815, "978-0141439587", "B003", "Romance"));
+        Member bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(bob);
+        library.checkoutBook(testMember, testBook);
+        library.checkoutBook(testMember, library.getBookById("B002"));
+        library.placeHold(bob, testBook);
+
+        RemovalReport rejected = library.removeBook("B001", Library.DeletionPolicy.REJECT);
+        assertEquals(List.of("B001"), rejected.getRejected());
+        assertEquals("M001", rejected.getBlockingLoans().get(0).getMemberId());
+        assertTrue(rejected.getRemoved().isEmpty());
+        assertEquals("Alice", library.whoHasBook("B001"), "A rejected removal should change nothing.");
+
+        RemovalReport returned = library.removeBook("B001", Library.DeletionPolicy.FORCE_RETURN);
+        assertEquals(List.of("B001"), returned.getRemoved());
+        assertEquals(1, returned.getReturnedLoans().size());
+        assertTrue(returned.getOrphanedLoans().isEmpty());
+        assertNull(library.getBookById("B001"));
+        assertFalse(testMember.hasBorrowed("B001"));
+        assertTrue(bob.getBorrowedBookList().isEmpty(), "A removed book should not go to its holder.");
+        assertEquals(0, library.getHoldCount("B001"));
+
+        RemovalReport orphaned = library.removeBook("B002", Library.DeletionPolicy.ORPHAN);
+        assertEquals(List.of("B002"), orphaned.getRemoved());
+        assertEquals("B002", orphaned.getOrphanedLoans().get(0).getBookId());
+        assertTrue(testMember.getBorrowedBookList().isEmpty());
+
+        RemovalReport free = library.removeBook("B003", Library.DeletionPolicy.REJECT);
+        assertEquals(List.of("B003"), free.getRemoved());
+        assertTrue(library.removeBook("B404", Library.DeletionPolicy.REJECT).getRemoved().isEmpty());
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testRevokeMembershipPolicies() {
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction"));
+        Member bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(bob);
+        library.checkoutBook(testMember, testBook);
+        library.checkoutBook(testMember, library.getBookById("B002"));
+        library.placeHold(bob, testBook);
+
+        RemovalReport rejected = library.revokeMembership("M001", Library.DeletionPolicy.REJECT);
+        assertEquals(List.of("M001"), rejected.getRejected());
+        assertEquals(2, rejected.getBlockingLoans().size());
+        assertNotNull(library.getMemberById("M001"));
+
+        RemovalReport returned = library.revokeMembership("M001", Library.DeletionPolicy.FORCE_RETURN);
+        assertEquals(List.of("M001"), returned.getRemoved());
+        assertEquals(2, returned.getReturnedLoans().size());
+        assertNull(library.getMemberById("M001"));
+        assertEquals("Bob", library.whoHasBook("B001"), "A forced return should go to the next holder.");
+        assertTrue(library.getBookById("B002").isAvailable());
+
+        RemovalReport orphaned = library.revokeMembership("M002", Library.DeletionPolicy.ORPHAN);
+        assertEquals("B001", orphaned.getOrphanedLoans().get(0).getBookId());
+        assertFalse(testBook.isAvailable(), "An orphaned copy is still out with its borrower.");
+        assertNull(library.getLoan("B001"));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testRemoveBooksWeedsInOnePass() {
+        List<String> weeded = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            library.addBook(new Book("Old " + i, "Author", 1950, "ISBN" + i, "W" + i, "Genre"));
+            weeded.add("W" + i);
+        }
+        library.checkoutBook(testMember, library.getBookById("W7"));
+        weeded.add("W7");
+        weeded.add("W404");
+
+        RemovalReport report = library.removeBooks(weeded, Library.DeletionPolicy.REJECT);
+        assertEquals(1999, report.getRemoved().size());
+        assertEquals(List.of("W7"), report.getRejected());
+        assertEquals(2, library.getAllBooks().size(), "Only the untouched book and the loaned one should remain.");
+        assertEquals("Alice", library.whoHasBook("W7"));
+        assertTrue(library.searchBooks("Old").size() == 1);
+        assertEquals("Removed: 1999 | Rejected (on loan): 1 | Returned: 0 | Orphaned: 0", report.summary());
+
+        RemovalReport rest = library.removeBooks(List.of("W7", "B001"), Library.DeletionPolicy.ORPHAN);
+        assertEquals(List.of("W7", "B001"), rest.getRemoved());
+        assertEquals(1, rest.getOrphanedLoans().size());
+        assertTrue(library.getAllBooks().isEmpty());
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
     // Property-based tests using jqwik
 
     @Property
@@ -0,0 +1,48 @@
+import java.time.Instant;
+
+/**
+ * One book lent to one member: who has it, since when, and when it is due back.
+ * Loans are immutable; extending or re-recording a loan creates a new one.
+ */
+public final class Loan {
+    private final String bookId;
+    private final String memberId;
+    private final Instant checkedOutAt;
+    private final Instant dueAt;
+
+    public Loan(String bookId, String memberId, Instant checkedOutAt, Instant dueAt) {
+        if (bookId == null || memberId == null || checkedOutAt == null || dueAt == null) {
+            throw new IllegalArgumentException("null field!");
+        }
+        this.bookId = bookId;
+        this.memberId = memberId;
+        this.checkedOutAt = checkedOutAt;
+        this.dueAt = dueAt;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public Instant getCheckedOutAt() {
+        return checkedOutAt;
+    }
+
+    public Instant getDueAt() {
+        return dueAt;
+    }
+
+    // Returns true if the loan is past its due date at the given time
+    public boolean isOverdue(Instant now) {
+        return now.isAfter(dueAt);
+    }
+
+    @Override
+    public String toString() {
+        return "Book " + bookId + " lent to " + memberId + ", due " + dueAt;
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed pool of reentrant locks shared out by key hash (lock striping).
+ * Locks for several keys are always taken in ascending stripe order, so two
+ * multi-key operations can never deadlock; unrelated keys only contend when
+ * their hashes land on the same stripe.
+ */
+public class LockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+    // Highest stripe held by the current thread, or -1 when it holds none
+    private final ThreadLocal<int[]> highestHeld = ThreadLocal.withInitial(() -> new int[]{-1});
+
+    // Creates at least the requested number of stripes, rounded up to a power of two
+    public LockStripes(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) size <<= 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    // Returns the number of stripes
+    public int size() {
+        return locks.length;
+    }
+
+    // Maps a key to its stripe, spreading the hash so similar ids separate
+    public int stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    // Runs the action while holding the stripes of every key.
+    // A nested call may only take stripes above those already held (or re-enter held ones).
+    public <T> T withLocks(Collection<String> keys, Supplier<T> action) {
+        int[] stripes = new int[keys.size()];
+        int count = 0;
+        for (String key : keys) {
+            stripes[count++] = stripeFor(key);
+        }
+        Arrays.sort(stripes);
+
+        int[] held = highestHeld.get();
+        int previousHighest = held[0];
+        int locked = 0;
+        int[] acquired = new int[stripes.length];
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                int stripe = stripes[i];
+                if (i > 0 && stripe == stripes[i - 1]) continue;
+                ReentrantLock lock = locks[stripe];
+                if (stripe < held[0] && !lock.isHeldByCurrentThread()) {
+                    throw new IllegalStateException("Lock order violation: stripe " + stripe
+                            + " requested while holding stripe " + held[0]);
+                }
+                lock.lock();
+                acquired[locked++] = stripe;
+                held[0] = Math.max(held[0], stripe);
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[acquired[i]].unlock();
+            }
+            held[0] = previousHighest;
+        }
+    }
+
+    // Runs the action while holding every stripe, so no other keyed action is in progress.
+    // Must not be called while holding a stripe.
+    public <T> T withAllLocks(Supplier<T> action) {
+        int[] held = highestHeld.get();
+        if (held[0] >= 0) {
+            throw new IllegalStateException("Lock order violation: every stripe requested while holding stripe "
+                    + held[0]);
+        }
+        int locked = 0;
+        try {
+            for (; locked < locks.length; locked++) {
+                locks[locked].lock();
+            }
+            held[0] = locks.length - 1;
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                locks[--locked].unlock();
+            }
+            held[0] = -1;
+        }
+    }
+
+    // Runs the action while holding the stripe of a single key
+    public <T> T withLock(String key, Supplier<T> action) {
+        return withLocks(Collections.singletonList(key), action);
+    }
+}
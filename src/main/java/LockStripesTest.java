@@ -0,0 +1,198 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.StringLength;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test suite for the LockStripes class and Library.transact.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class LockStripesTest {
+
+    private LockStripes stripes;
+
+    @BeforeEach
+    public void setUp() {
+        stripes = new LockStripes(64);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testStripeCountRoundsUpToPowerOfTwo() {
+        assertEquals(64, stripes.size());
+        assertEquals(128, new LockStripes(100).size());
+        assertEquals(1, new LockStripes(1).size());
+        assertThrows(IllegalArgumentException.class, () -> new LockStripes(0));
+    }
+
+    @Test
+    public void testWithLocksReturnsActionResult() {
+        assertEquals("done", stripes.withLocks(List.of("a", "b", "c"), () -> "done"));
+        assertEquals(Integer.valueOf(42), stripes.withLock("a", () -> 42));
+    }
+
+    @Test
+    public void testNestedCallMayReenterHeldStripes() {
+        String result = stripes.withLocks(List.of("member:M1", "book:B1"),
+                () -> stripes.withLock("book:B1", () -> "nested"));
+        assertEquals("nested", result, "Re-entering a held stripe should be allowed");
+    }
+
+    @Test
+    public void testNestedCallOutOfOrderIsRejected() {
+        // Find two keys on different stripes and order them by stripe
+        String first = "K0";
+        String second = null;
+        for (int i = 1; second == null; i++) {
+            if (stripes.stripeFor("K" + i) != stripes.stripeFor(first)) second = "K" + i;
+        }
+        boolean firstIsHigher = stripes.stripeFor(first) > stripes.stripeFor(second);
+        String high = firstIsHigher ? first : second;
+        String low = firstIsHigher ? second : first;
+        assertThrows(IllegalStateException.class,
+                () -> stripes.withLock(high, () -> stripes.withLock(low, () -> null)),
+                "Taking a lower stripe while holding a higher one could deadlock");
+        // The failed attempt must leave nothing locked
+        assertEquals("free", stripes.withLock(low, () -> "free"));
+    }
+
+    @Test
+    public void testWithAllLocksExcludesEveryKey() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> stripes.withAllLocks(() -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CountDownLatch done = new CountDownLatch(1);
+        Thread other = new Thread(() -> stripes.withLock("any key", () -> {
+            done.countDown();
+            return null;
+        }));
+        other.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "No key can be locked meanwhile");
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        holder.join();
+        other.join();
+
+        assertEquals("nested", stripes.withAllLocks(() -> stripes.withLock("K1", () -> "nested")));
+        assertThrows(IllegalStateException.class, () -> stripes.withLock("K1", () -> stripes.withAllLocks(() -> null)),
+                "Taking every stripe while holding one could deadlock");
+        assertEquals("free", stripes.withLock("K2", () -> "free"));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testOpposingOrderTransactionsDoNotDeadlock() throws InterruptedException {
+        // Two threads ask for the same keys in opposite orders, many times over
+        List<Thread> workers = new ArrayList<>();
+        int[] counter = new int[1];
+        for (int t = 0; t < 2; t++) {
+            List<String> keys = t == 0 ? List.of("x", "y", "z") : List.of("z", "y", "x");
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    stripes.withLocks(keys, () -> counter[0]++);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join(TimeUnit.SECONDS.toMillis(30));
+        assertEquals(20_000, counter[0], "Every increment should run under the shared locks");
+    }
+
+    @Test
+    public void testTransactBlocksOnlyTheSameMember() throws InterruptedException {
+        Library library = new Library(true);
+        Member alice = new Member("Alice", "alice@example.com", "M1");
+        Member bob = new Member("Bob", "bob@example.com", "M2");
+        library.addMember(alice);
+        library.addMember(bob);
+        Book book = new Book("Dune", "Frank Herbert", 1965, "ISBN", "B1", "Science Fiction");
+        library.addBook(book);
+
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> library.transact("M1", List.of(), () -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        inside.await();
+        // Bob's checkout proceeds while Alice's transaction is open, unless the stripes collide
+        Thread other = new Thread(() -> library.checkoutBook(bob, book));
+        other.start();
+        other.join(TimeUnit.SECONDS.toMillis(5));
+        boolean collided = other.isAlive();
+        release.countDown();
+        holder.join();
+        other.join();
+        assertTrue(collided || !book.isAvailable(), "Bob's checkout should not wait on Alice");
+        assertEquals("Bob", library.whoHasBook("B1"));
+    }
+
+    @Test
+    public void testTransactRunsCompoundOperationAtomically() throws InterruptedException {
+        // Purchase-and-checkout: add the book and lend it in one step
+        Library library = new Library(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Member member = new Member("M" + t, "m" + t + "@example.com", "M" + t);
+            library.addMember(member);
+            workers.add(new Thread(() -> library.transact(member.getMemberId(), List.of("NEW"), () -> {
+                Book book = library.getBookById("NEW");
+                if (book == null) {
+                    book = new Book("New", "Author", 2024, "ISBN", "NEW", "Genre");
+                    library.addBook(book);
+                }
+                return library.checkoutBook(member, book);
+            })));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        assertEquals(1, library.getAllBooks().size(), "Exactly one copy should have been bought");
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testTransactWithoutConcurrencyRunsDirectly() {
+        Library library = new Library();
+        assertEquals("ran", library.transact("M1", List.of("B1"), () -> "ran"));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyStripeIsStableAndInRange(
+            @ForAll @AlphaChars @StringLength(min = 1, max = 20) String key
+    ) {
+        LockStripes lockStripes = new LockStripes(16);
+        int stripe = lockStripes.stripeFor(key);
+        assertTrue(stripe >= 0 && stripe < 16, "Stripe must be a valid index");
+        assertEquals(stripe, lockStripes.stripeFor(new String(key)), "Equal keys share a stripe");
+    }
+}
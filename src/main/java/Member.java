@@ -1,15 +1,20 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a member of the library.
- * Tracks identifying details and a list of borrowed books.
+ * Tracks identifying details and the books the member has borrowed.
+ * Borrowed books are kept in a set keyed by book ID that remembers borrowing order, so
+ * adding, checking and removing a loan cost O(1) even for accounts with hundreds of loans.
+ * Changes are synchronized; readers iterate without locking and never see an exception.
  */
 
 public class Member {
     private String name;
     private String email;
     private String memberId;
-    private List<Book> borrowedBooks;
+    private final BorrowedBooks borrowedBooks = new BorrowedBooks();
+    private final List<Book> borrowedView = Collections.unmodifiableList(borrowedBooks);
 
     //Constructs a new member with the given name, email, and ID.
     public Member(String name, String email, String memberId) {
@@ -19,27 +24,32 @@ public class Member {
         this.name = name;
         this.email = email;
         this.memberId = memberId;
-        this.borrowedBooks = new ArrayList<>();
     }
 
     //Returns a formatted string with member details.
     public String getMemberInfo() {
-        return String.format("ID: %s | Name: %s | Email: %s\n", memberId, name, email);
+        return RecordFormat.TEXT.formatMember(this);
     }
 
-    //Returns the list of books currently borrowed by the member.
+    //Returns a read-only live view of the books currently borrowed, in borrowing order.
+    //contains matches by book ID in O(1); get(i) walks the list.
     public List<Book> getBorrowedBookList() {
-        return borrowedBooks;
+        return borrowedView;
     }
 
-    //Adds a book to the list of borrowed books if not already present.
+    //Returns true if the member has borrowed the book with the given ID.
+    public boolean hasBorrowed(String bookId) {
+        return borrowedBooks.index.containsKey(bookId);
+    }
+
+    //Adds a book to the borrowed books if no book with its ID is already there.
     public void addBorrowedBook(Book book) {
-        if (!borrowedBooks.contains(book)) borrowedBooks.add(book);
+        borrowedBooks.put(book);
     }
-    //Removes a book from the borrowed list by its ID.
+    //Removes a book from the borrowed books by its ID.
     public void removeBorrowedBook(String bookId) {
         if (bookId == null) throw new IllegalArgumentException("null field!");
-        borrowedBooks.removeIf(book -> book.getBookId().equals(bookId));
+        borrowedBooks.delete(bookId);
     }
 
     //Updates the member's name and email.
@@ -62,4 +72,113 @@ public class Member {
     public String getMemberId() {
         return memberId;
     }
-}
\ No newline at end of file
+
+    // Insertion-ordered set of books keyed by book ID: a hash index over a linked list.
+    // Writers lock the set; readers walk the links without locking. A removed node keeps its
+    // next link, so an iterator standing on it carries on to the live nodes after it. Nodes
+    // are numbered as they are added and an iterator stops after the last one that existed
+    // when it started, so a book returned and borrowed again mid-pass is not seen twice.
+    private static final class BorrowedBooks extends AbstractList<Book> {
+        private final Map<String, Node> index = new ConcurrentHashMap<>();
+        private final Node head = new Node(null, 0);
+        private Node tail = head;
+        private volatile long lastSequence;
+
+        private static final class Node {
+            private final Book book;
+            private final long sequence;
+            private volatile Node next;
+            private Node prev;
+            private volatile boolean removed;
+
+            private Node(Book book, long sequence) {
+                this.book = book;
+                this.sequence = sequence;
+            }
+        }
+
+        private synchronized void put(Book book) {
+            String bookId = book.getBookId();
+            if (index.containsKey(bookId)) return;
+            Node node = new Node(book, lastSequence + 1);
+            lastSequence = node.sequence;
+            node.prev = tail;
+            tail.next = node;
+            tail = node;
+            index.put(bookId, node);
+        }
+
+        private synchronized void delete(String bookId) {
+            Node node = index.remove(bookId);
+            if (node == null) return;
+            node.removed = true;
+            Node next = node.next;
+            node.prev.next = next;
+            if (next != null) next.prev = node.prev;
+            else tail = node.prev;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Book book && index.containsKey(book.getBookId());
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public Book get(int i) {
+            if (i < 0) throw new IndexOutOfBoundsException("Index: " + i);
+            for (Book book : this) {
+                if (i-- == 0) return book;
+            }
+            throw new IndexOutOfBoundsException("Index: " + i);
+        }
+
+        @Override
+        public Iterator<Book> iterator() {
+            return new Iterator<Book>() {
+                private final long limit = lastSequence;
+                private Node next = advance(head);
+
+                private Node advance(Node node) {
+                    Node candidate = node.next;
+                    while (candidate != null && candidate.removed) candidate = candidate.next;
+                    return candidate == null || candidate.sequence > limit ? null : candidate;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Book next() {
+                    if (next == null) throw new NoSuchElementException();
+                    Node current = next;
+                    next = advance(current);
+                    return current.book;
+                }
+            };
+        }
+
+        // Compares element by element with any list, walking the links once
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof List<?> other)) return false;
+            Iterator<?> them = other.iterator();
+            for (Book book : this) {
+                if (!them.hasNext() || !Objects.equals(book, them.next())) return false;
+            }
+            return !them.hasNext();
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+}
@@ -49,6 +49,72 @@ public class MemberTest {
         assertEquals(member.getBorrowedBookList().size(), 1);
     }
 
+    // borrowed books keep their order and the view cannot be modified
+    @Test
+    public void borrowedBooksKeepOrderAndAreReadOnly() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Book book = new Book("Title" + i, "Author", 2000, "ISBN" + i, "B" + i, "Genre");
+            books.add(book);
+            member.addBorrowedBook(book);
+        }
+        member.removeBorrowedBook("B0");
+        member.removeBorrowedBook("B150");
+        member.removeBorrowedBook("B299");
+        member.removeBorrowedBook("missing");
+        List<Book> expected = new ArrayList<>(books);
+        expected.remove(299);
+        expected.remove(150);
+        expected.remove(0);
+        List<Book> view = member.getBorrowedBookList();
+        assertEquals(expected, view);
+        assertEquals(expected.hashCode(), view.hashCode());
+        assertEquals(books.get(1), view.get(0));
+        assertEquals(books.get(298), view.get(296));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(297));
+        assertTrue(member.hasBorrowed("B151"));
+        assertFalse(member.hasBorrowed("B150"));
+        assertFalse(view.contains("B151"), "contains matches books, not bare IDs");
+        assertThrows(UnsupportedOperationException.class, () -> view.add(books.get(0)));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+
+        // A book borrowed again goes to the end of the list
+        member.addBorrowedBook(books.get(0));
+        assertSame(books.get(0), view.get(view.size() - 1));
+    }
+
+    // iterating while other threads borrow and return never fails
+    @Test
+    public void iterationDuringConcurrentChanges() throws InterruptedException {
+        Book[] books = new Book[100];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("Title" + i, "Author", 2000, "ISBN" + i, "B" + i, "Genre");
+            member.addBorrowedBook(books[i]);
+        }
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            for (int i = 0; i < 100_000; i++) {
+                Book book = books[random.nextInt(books.length)];
+                if (member.hasBorrowed(book.getBookId())) member.removeBorrowedBook(book.getBookId());
+                else member.addBorrowedBook(book);
+            }
+        });
+        writer.start();
+        int reads = 0;
+        while (writer.isAlive()) {
+            Set<String> seen = new HashSet<>();
+            for (Book book : member.getBorrowedBookList()) {
+                assertTrue(seen.add(book.getBookId()), "No book should be seen twice in one pass");
+            }
+            reads++;
+        }
+        writer.join();
+        assertTrue(reads > 0);
+        int count = 0;
+        for (Book ignored : member.getBorrowedBookList()) count++;
+        assertEquals(member.getBorrowedBookList().size(), count);
+    }
+
     // Property-based tests using jqwik
 
     // Member is properly intialized
@@ -103,7 +169,10 @@ public class MemberTest {
             member.addBorrowedBook(book);
         }
 
-        assertEquals(member.getBorrowedBookList().size(), books.size());
+        // Loans are keyed by book ID, so copies generated with the same ID count once
+        Set<String> ids = new HashSet<>();
+        for (Book book : books) ids.add(book.getBookId());
+        assertEquals(member.getBorrowedBookList().size(), ids.size());
         for (Book book : books) {
             assertEquals(true, member.getBorrowedBookList().contains(book));
         }
@@ -0,0 +1,172 @@
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Fires an event once for every loan that passes its due date, without scanning loans.
+ * Loans sit in a hierarchical timing wheel: level 0 has one slot per tick, and each higher
+ * level has slots 64 times as wide. A loan is filed at the lowest level whose span still
+ * reaches its due tick and moves down a level each time the wheel turns past it, so each
+ * loan is touched at most once per level no matter how many loans are active.
+ * Cancellation is lazy: a returned loan stays in its slot and is dropped when the slot
+ * comes due, because the owner's liveness check no longer accepts it.
+ * Scheduling takes no lock: a new loan is handed over through a lock-free queue, which
+ * advance or sweep drains into the wheel, so checkouts on different lock stripes never wait
+ * for each other or for a sweep in progress. The owner sweeps periodically, so the queue and
+ * the returned loans in the wheel stay bounded even if nobody asks for overdue loans; a sweep
+ * keeps the loans it finds overdue for the next advance to report.
+ */
+public class OverdueTracker {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    // 64^6 one-minute ticks is more than 100,000 years
+    private static final int LEVELS = 6;
+
+    private final long tickMillis;
+    private final Predicate<Loan> isActive;
+    private final List<Consumer<Loan>> listeners = new CopyOnWriteArrayList<>();
+    // wheels[level][slot] holds the loans filed there; slots are created on first use
+    private final List<Loan>[][] wheels;
+    // Loans scheduled since the last advance, not yet filed in the wheel
+    private final Queue<Loan> incoming = new ConcurrentLinkedQueue<>();
+    // Last tick that has been processed; loans due at or before it fire on the next advance
+    private long currentTick;
+    private final List<Loan> due = new ArrayList<>();
+    // Loans found overdue by a sweep, in the order they came due, not yet reported by advance
+    private final List<Loan> raised = new ArrayList<>();
+    private int size;
+
+    // Creates a tracker with the given tick resolution, starting at 'now'.
+    // isActive tells whether a loan is still outstanding when it comes due.
+    @SuppressWarnings({"unchecked", "rawtypes"}) // arrays of a generic type can only be created raw
+    public OverdueTracker(Duration tick, Instant now, Predicate<Loan> isActive) {
+        if (tick.toMillis() < 1) throw new IllegalArgumentException("Tick must be at least 1 ms");
+        this.tickMillis = tick.toMillis();
+        this.isActive = isActive;
+        this.wheels = new List[LEVELS][SLOTS];
+        this.currentTick = Math.floorDiv(now.toEpochMilli(), tickMillis);
+    }
+
+    // Registers a listener that is told about each loan as it becomes overdue
+    public void addListener(Consumer<Loan> listener) {
+        listeners.add(listener);
+    }
+
+    // Starts watching a loan; it is filed in the wheel by the next advance
+    public void schedule(Loan loan) {
+        incoming.offer(loan);
+    }
+
+    // Returns how many loans are being watched, including returned ones not yet dropped
+    public synchronized int size() {
+        fileIncoming();
+        return size;
+    }
+
+    // Moves the wheel forward to 'now' and notifies listeners of every active loan that
+    // fell due on the way, or was found overdue by an earlier sweep. Listeners run on the
+    // caller's thread, outside the lock.
+    // returns the loans that became overdue, in the order their ticks came due
+    public List<Loan> advance(Instant now) {
+        List<Loan> fired = new ArrayList<>();
+        synchronized (this) {
+            for (Loan loan : raised) {
+                if (isActive.test(loan)) fired.add(loan);
+            }
+            raised.clear();
+            moveTo(now, fired);
+        }
+        for (Loan loan : fired) {
+            for (Consumer<Loan> listener : listeners) {
+                listener.accept(loan);
+            }
+        }
+        return fired;
+    }
+
+    // Files the loans scheduled so far and moves the wheel forward to 'now' without notifying
+    // anyone: the loans that fell due are kept for the next advance, and those returned since
+    // an earlier sweep are dropped, so memory is bounded by the loans still outstanding.
+    public synchronized void sweep(Instant now) {
+        raised.removeIf(loan -> !isActive.test(loan));
+        moveTo(now, raised);
+    }
+
+    private void moveTo(Instant now, List<Loan> fired) {
+        long target = Math.floorDiv(now.toEpochMilli(), tickMillis);
+        fileIncoming();
+        collect(due, fired);
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target;
+                break;
+            }
+            currentTick++;
+            cascade();
+            List<Loan> slot = wheels[0][(int) (currentTick & MASK)];
+            if (slot != null) collect(slot, fired);
+            // A loan cascaded down exactly on its due tick lands in 'due'
+            collect(due, fired);
+        }
+    }
+
+    // Files the loans handed over by schedule since the last call
+    private void fileIncoming() {
+        Loan loan;
+        while ((loan = incoming.poll()) != null) {
+            size++;
+            file(loan);
+        }
+    }
+
+    // Moves loans from the higher-level slots that start at the current tick down a level
+    private void cascade() {
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            int shift = SLOT_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) continue;
+            int index = (int) ((currentTick >>> shift) & MASK);
+            List<Loan> slot = wheels[level][index];
+            if (slot == null || slot.isEmpty()) continue;
+            wheels[level][index] = null;
+            for (Loan loan : slot) {
+                file(loan);
+            }
+        }
+    }
+
+    // Files a loan at the lowest level whose current span contains its due tick
+    private void file(Loan loan) {
+        // A loan is overdue only once the clock is past its due instant: the first tick after it
+        long dueTick = Math.floorDiv(loan.getDueAt().toEpochMilli(), tickMillis) + 1;
+        if (dueTick <= currentTick) {
+            due.add(loan);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1
+                && (dueTick >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((dueTick >>> (SLOT_BITS * level)) & MASK);
+        List<Loan> slot = wheels[level][index];
+        if (slot == null) {
+            slot = new ArrayList<>();
+            wheels[level][index] = slot;
+        }
+        slot.add(loan);
+    }
+
+    // Empties a slot into the fired list, keeping only loans that are still outstanding
+    private void collect(List<Loan> slot, List<Loan> fired) {
+        for (Loan loan : slot) {
+            if (isActive.test(loan)) fired.add(loan);
+        }
+        size -= slot.size();
+        slot.clear();
+    }
+}
@@ -0,0 +1,295 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Test suite for the OverdueTracker class and the Library due-date operations built on it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class OverdueTrackerTest {
+
+    private static final Instant START = Instant.parse("2026-01-05T09:30:00Z");
+
+    private MutableClock clock;
+    private Library library;
+    private Member alice;
+    private Member bob;
+    private Book hobbit;
+    private Book dune;
+
+    // Clock that only moves when the test says so
+    static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(START);
+        library = new Library(false, clock);
+        alice = new Member("Alice", "alice@example.com", "M001");
+        bob = new Member("Bob", "bob@example.com", "M002");
+        library.addMember(alice);
+        library.addMember(bob);
+        hobbit = new Book("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227", "B001", "Fantasy");
+        dune = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B002", "Science Fiction");
+        library.addBook(hobbit);
+        library.addBook(dune);
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testCheckoutRecordsDates() {
+        library.checkoutBook(alice, hobbit);
+        Loan loan = library.getLoan("B001");
+        assertEquals("M001", loan.getMemberId());
+        assertEquals(START, loan.getCheckedOutAt());
+        assertEquals(START.plus(Library.DEFAULT_LOAN_PERIOD), loan.getDueAt());
+        assertNull(library.getLoan("B002"));
+    }
+
+    @Test
+    public void testLoanFiresOnlyAfterDueDate() {
+        library.checkoutBook(alice, hobbit);
+        clock.advance(Duration.ofDays(14));
+        assertTrue(library.checkOverdue().isEmpty(), "A loan is not overdue on its due instant");
+        clock.advance(Duration.ofMinutes(1));
+        List<Loan> overdue = library.checkOverdue();
+        assertEquals(1, overdue.size());
+        assertEquals("B001", overdue.get(0).getBookId());
+        assertTrue(overdue.get(0).isOverdue(clock.instant()));
+        assertTrue(library.checkOverdue().isEmpty(), "Each loan is raised only once");
+    }
+
+    @Test
+    public void testReturnedLoanNeverFires() {
+        library.checkoutBook(alice, hobbit);
+        library.checkoutBook(bob, dune);
+        library.returnBook(alice, hobbit);
+        clock.advance(Duration.ofDays(30));
+        List<Loan> overdue = library.checkOverdue();
+        assertEquals(1, overdue.size());
+        assertEquals("M002", overdue.get(0).getMemberId());
+    }
+
+    @Test
+    public void testListenersAreNotified() {
+        List<Loan> heard = new ArrayList<>();
+        library.addOverdueListener(heard::add);
+        library.setLoanPeriod(Duration.ofDays(7));
+        library.checkoutBook(alice, hobbit);
+        clock.advance(Duration.ofDays(8));
+        library.checkOverdue();
+        assertEquals(1, heard.size());
+        assertEquals(START.plus(Duration.ofDays(7)), heard.get(0).getDueAt());
+    }
+
+    @Test
+    public void testNonPositiveLoanPeriodIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> library.setLoanPeriod(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> library.setLoanPeriod(Duration.ofDays(-1)));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testLoansAcrossWheelLevelsFireInDueOrder() {
+        List<Duration> offsets = List.of(Duration.ofMinutes(3), Duration.ofHours(2), Duration.ofDays(3),
+                Duration.ofDays(100), Duration.ofDays(5 * 365), Duration.ofMinutes(64));
+        List<Loan> fired = new ArrayList<>();
+        OverdueTracker tracker = new OverdueTracker(Duration.ofMinutes(1), START, loan -> true);
+        tracker.addListener(fired::add);
+        for (int i = 0; i < offsets.size(); i++) {
+            tracker.schedule(new Loan("B" + i, "M001", START, START.plus(offsets.get(i))));
+        }
+        assertEquals(offsets.size(), tracker.size());
+        Instant now = START;
+        while (fired.size() < offsets.size()) {
+            now = now.plus(Duration.ofHours(7));
+            tracker.advance(now);
+            for (Loan loan : fired) {
+                assertTrue(loan.isOverdue(now));
+            }
+        }
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1).getDueAt().isBefore(fired.get(i).getDueAt()));
+        }
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testLoanAlreadyPastDueFiresOnNextAdvance() {
+        OverdueTracker tracker = new OverdueTracker(Duration.ofMinutes(1), START, loan -> true);
+        tracker.schedule(new Loan("B001", "M001", START.minus(Duration.ofDays(20)), START.minus(Duration.ofDays(6))));
+        assertEquals(1, tracker.advance(START).size());
+    }
+
+    @Test
+    public void testSweepDrainsQueueAndKeepsOverdueLoansForAdvance() {
+        Set<Loan> active = new HashSet<>();
+        OverdueTracker tracker = new OverdueTracker(Duration.ofMinutes(1), START, active::contains);
+        List<Loan> heard = new ArrayList<>();
+        tracker.addListener(heard::add);
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Loan loan = new Loan("B" + i, "M001", START, START.plus(Duration.ofMinutes(10 + i % 3)));
+            loans.add(loan);
+            if (i < 3) active.add(loan); // the rest are returned before they fall due
+            tracker.schedule(loan);
+        }
+        tracker.sweep(START.plus(Duration.ofMinutes(30)));
+        assertEquals(0, tracker.size(), "Returned loans are dropped once their slot is swept");
+        assertTrue(heard.isEmpty(), "A sweep reports to nobody");
+        active.remove(loans.get(1)); // returned after the sweep found it overdue
+        tracker.sweep(START.plus(Duration.ofMinutes(31)));
+        assertEquals(List.of(loans.get(0), loans.get(2)), tracker.advance(START.plus(Duration.ofMinutes(31))));
+        assertEquals(heard, List.of(loans.get(0), loans.get(2)));
+        assertTrue(tracker.advance(START.plus(Duration.ofMinutes(40))).isEmpty(), "Each loan is raised only once");
+    }
+
+    @Test
+    public void testLoansScheduledDuringSweepsAllFireOnce() throws InterruptedException {
+        OverdueTracker tracker = new OverdueTracker(Duration.ofMinutes(1), START, loan -> true);
+        Set<Loan> fired = Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>());
+        tracker.addListener(loan -> assertTrue(fired.add(loan), "A loan fired twice"));
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int desk = t;
+            desks.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    tracker.schedule(new Loan("B" + desk + "-" + i, "M001", START, START.plus(Duration.ofMinutes(i % 300))));
+                }
+            }));
+        }
+        for (Thread desk : desks) desk.start();
+        Instant now = START;
+        while (desks.stream().anyMatch(Thread::isAlive)) {
+            tracker.advance(now);
+            now = now.plus(Duration.ofSeconds(30));
+        }
+        for (Thread desk : desks) desk.join();
+        tracker.advance(START.plus(Duration.ofDays(1)));
+        assertEquals(20000, fired.size());
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testHoldHandoffStartsNewLoan() {
+        library.checkoutBook(alice, hobbit);
+        library.placeHold(bob, hobbit);
+        clock.advance(Duration.ofDays(10));
+        library.returnBook(alice, hobbit);
+        Loan loan = library.getLoan("B001");
+        assertEquals("M002", loan.getMemberId());
+        assertEquals(clock.instant(), loan.getCheckedOutAt());
+        clock.advance(Duration.ofDays(5));
+        assertTrue(library.checkOverdue().isEmpty(), "Alice's old due date should not count against Bob");
+        clock.advance(Duration.ofDays(10));
+        assertEquals(List.of("M002"), library.checkOverdue().stream().map(Loan::getMemberId).toList());
+    }
+
+    @Test
+    public void testDatesSurviveJournalAndSnapshot() throws IOException {
+        Path dir = Files.createTempDirectory("loans");
+        Path journalFile = dir.resolve("library.journal");
+        Path snapshot = dir.resolve("library.snapshot");
+        try {
+            try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+                library.setJournal(journal);
+                library.checkoutBook(alice, hobbit);
+                LibrarySnapshot.write(snapshot, library, new LibraryAccounts(), journal.position());
+                clock.advance(Duration.ofDays(2));
+                library.checkoutBook(bob, dune);
+            }
+
+            clock.advance(Duration.ofDays(1));
+            Library restored = new Library(false, clock);
+            try (LibraryJournal journal = LibraryJournal.open(journalFile, LibraryJournal.SyncPolicy.WRITE)) {
+                long offset = LibrarySnapshot.load(snapshot, restored, new LibraryAccounts());
+                journal.recover(offset, restored, new LibraryAccounts());
+            }
+            assertEquals(START, restored.getLoan("B001").getCheckedOutAt(), "Snapshot should keep the date");
+            assertEquals(START.plus(Duration.ofDays(2)), restored.getLoan("B002").getCheckedOutAt(),
+                    "Journal replay should keep the date");
+            clock.advance(Duration.ofDays(12));
+            assertEquals(List.of("B001"), restored.checkOverdue().stream().map(Loan::getBookId).toList());
+        } finally {
+            Files.deleteIfExists(journalFile);
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyEveryActiveLoanFiresOnceAfterItsDueDate(
+            @ForAll @IntRange(min = 1, max = 300) int loans,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        Set<String> returned = new HashSet<>();
+        OverdueTracker tracker = new OverdueTracker(Duration.ofMinutes(1), START,
+                loan -> !returned.contains(loan.getBookId()));
+        Map<String, Loan> active = new HashMap<>();
+        for (int i = 0; i < loans; i++) {
+            Instant due = START.plus(Duration.ofMinutes(random.nextInt(200_000)));
+            Loan loan = new Loan("B" + i, "M001", START, due);
+            tracker.schedule(loan);
+            if (random.nextInt(4) == 0) returned.add(loan.getBookId());
+            else active.put(loan.getBookId(), loan);
+        }
+        Set<String> fired = new HashSet<>();
+        Instant now = START;
+        Instant end = START.plus(Duration.ofMinutes(200_001));
+        while (now.isBefore(end)) {
+            now = now.plus(Duration.ofMinutes(1 + random.nextInt(5_000)));
+            for (Loan loan : tracker.advance(now)) {
+                assertTrue(loan.isOverdue(now));
+                assertTrue(fired.add(loan.getBookId()), "Loan fired twice");
+            }
+            for (Loan loan : active.values()) {
+                if (!fired.contains(loan.getBookId())) assertFalse(loan.isOverdue(now));
+            }
+        }
+        assertEquals(active.keySet(), fired);
+    }
+}
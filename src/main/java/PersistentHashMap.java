@@ -0,0 +1,316 @@
+import java.util.*;
+
+/**
+ * Immutable hash map with structural sharing (a hash array mapped trie).
+ * put and remove return a new map that shares every untouched branch with the old one, so an
+ * update copies only the O(log32 n) nodes on the path to the key, and a reader holding an
+ * older map keeps seeing exactly that version. Null keys and values are not allowed.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns the value for a key, or null if absent
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null || root == null) return null;
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    // Returns a map with the key set to the value (this map if nothing changes)
+    public PersistentHashMap<K, V> put(K key, V value) {
+        if (key == null || value == null) throw new IllegalArgumentException("null field!");
+        boolean[] added = new boolean[1];
+        Node start = root == null ? BitmapNode.EMPTY : root;
+        Node updated = start.put(key, hash(key), 0, value, added);
+        if (updated == root) return this;
+        return new PersistentHashMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    // Returns a map without the key (this map if it was absent)
+    public PersistentHashMap<K, V> remove(Object key) {
+        if (key == null || root == null) return this;
+        Node updated = root.remove(key, hash(key), 0);
+        if (updated == root) return this;
+        return new PersistentHashMap<>(updated, size - 1);
+    }
+
+    // Returns a read-only collection of the values, fixed to this version
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Map.Entry<K, V>> entries = PersistentHashMap.this.iterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Iterates the entries depth-first; the order is fixed by the key hashes
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            // Arrays being walked and the next pair index in each
+            private final Deque<Object[]> arrays = new ArrayDeque<>();
+            private final Deque<Integer> positions = new ArrayDeque<>();
+            private Map.Entry<K, V> next;
+
+            {
+                if (root != null) {
+                    arrays.push(root.array());
+                    positions.push(0);
+                }
+                advance();
+            }
+
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                next = null;
+                while (!arrays.isEmpty()) {
+                    Object[] array = arrays.peek();
+                    int position = positions.pop();
+                    if (position >= array.length) {
+                        arrays.pop();
+                        continue;
+                    }
+                    positions.push(position + 2);
+                    Object key = array[position];
+                    Object value = array[position + 1];
+                    if (key == null) {
+                        arrays.push(((Node) value).array());
+                        positions.push(0);
+                    } else {
+                        next = new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value);
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (next == null) throw new NoSuchElementException();
+                Map.Entry<K, V> entry = next;
+                advance();
+                return entry;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // A trie node; its array holds key/value pairs, where a null key means the value is a child node
+    private abstract static class Node {
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract Node put(Object key, int hash, int shift, Object value, boolean[] added);
+
+        // Returns the node without the key, this node if absent, or null if it becomes empty
+        abstract Node remove(Object key, int hash, int shift);
+
+        abstract Object[] array();
+    }
+
+    // Up to 32 slots, present ones flagged in the bitmap and packed in order
+    private static final class BitmapNode extends Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).get(key, hash, shift + BITS);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(Object key, int hash, int shift, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(array, i, copy, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(key, hash, shift + BITS, value, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i, k, value);
+            }
+            added[0] = true;
+            return with(i, null, pair(shift + BITS, k, v, key, hash, value));
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node updated = child.remove(key, hash, shift + BITS);
+                if (updated == child) return this;
+                if (updated != null) return with(i, null, updated);
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+    }
+
+    // Keys whose full 32-bit hashes are equal
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Object key, int hash, int shift, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down, then insert beside it
+                int bit = 1 << ((this.hash >>> shift) & MASK);
+                return new BitmapNode(bit, new Object[]{null, this}).put(key, hash, shift, value, added);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) return this;
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] copy = Arrays.copyOf(array, array.length + 2);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int i = find(key);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+    }
+
+    // Builds the smallest subtree holding two keys that shared a slot at the previous level
+    private static Node pair(int shift, Object key1, Object value1, Object key2, int hash2, Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY.put(key1, hash1, shift, value1, added).put(key2, hash2, shift, value2, added);
+    }
+}
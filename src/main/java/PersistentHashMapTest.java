@@ -0,0 +1,132 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+
+/**
+ * Test suite for the PersistentHashMap class (immutable hash trie with structural sharing).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class PersistentHashMapTest {
+
+    // Key whose hash is chosen by the test, to force collisions
+    private record FixedHashKey(String name, int hash) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testPutGetRemove() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(1), map.get("a"));
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertNull(map.get("c"));
+        PersistentHashMap<String, Integer> smaller = map.remove("a");
+        assertEquals(1, smaller.size());
+        assertNull(smaller.get("a"));
+        assertTrue(smaller.containsKey("b"));
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        PersistentHashMap<String, Integer> v1 = PersistentHashMap.<String, Integer>empty().put("a", 1);
+        PersistentHashMap<String, Integer> v2 = v1.put("a", 10).put("b", 2);
+        PersistentHashMap<String, Integer> v3 = v2.remove("a");
+        assertEquals(Integer.valueOf(1), v1.get("a"));
+        assertEquals(1, v1.size());
+        assertEquals(Integer.valueOf(10), v2.get("a"));
+        assertNull(v3.get("a"));
+        assertEquals(List.of(1), new ArrayList<>(v1.values()));
+    }
+
+    @Test
+    public void testNoOpUpdatesReturnSameMap() {
+        Integer one = 1;
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", one);
+        assertSame(map, map.put("a", one));
+        assertSame(map, map.remove("missing"));
+    }
+
+    @Test
+    public void testNullsAreRejected() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        assertThrows(IllegalArgumentException.class, () -> map.put(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.put("a", null));
+        assertNull(map.get(null));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testFullHashCollisions() {
+        PersistentHashMap<FixedHashKey, String> map = PersistentHashMap.empty();
+        for (int i = 0; i < 5; i++) {
+            map = map.put(new FixedHashKey("k" + i, 42), "v" + i);
+        }
+        map = map.put(new FixedHashKey("other", 43), "x");
+        assertEquals(6, map.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("v" + i, map.get(new FixedHashKey("k" + i, 42)));
+        }
+        for (int i = 0; i < 5; i++) {
+            map = map.remove(new FixedHashKey("k" + i, 42));
+        }
+        assertEquals(1, map.size());
+        assertEquals("x", map.get(new FixedHashKey("other", 43)));
+    }
+
+    @Test
+    public void testDeepTriesIterateEveryEntry() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 100_000; i++) {
+            map = map.put(i, i * 2);
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : map) {
+            assertEquals(Integer.valueOf(entry.getKey() * 2), entry.getValue());
+            assertTrue(seen.add(entry.getKey()));
+        }
+        assertEquals(100_000, seen.size());
+        assertThrows(NoSuchElementException.class, () -> PersistentHashMap.empty().iterator().next());
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyMatchesHashMap(
+            @ForAll @IntRange(min = 1, max = 2000) int operations,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        Map<FixedHashKey, Integer> expected = new HashMap<>();
+        PersistentHashMap<FixedHashKey, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < operations; i++) {
+            // Few distinct hashes so collision nodes and deep paths are exercised too
+            FixedHashKey key = new FixedHashKey("k" + random.nextInt(300), random.nextInt(64) << random.nextInt(27));
+            if (random.nextInt(3) > 0) {
+                expected.put(key, i);
+                map = map.put(key, i);
+            } else {
+                expected.remove(key);
+                map = map.remove(key);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<FixedHashKey, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Map<FixedHashKey, Integer> iterated = new HashMap<>();
+        for (Map.Entry<FixedHashKey, Integer> entry : map) iterated.put(entry.getKey(), entry.getValue());
+        assertEquals(expected, iterated);
+    }
+}
@@ -0,0 +1,440 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps "most borrowed" rankings, overall and per genre, over a sliding window of recent
+ * checkouts. Memory and query time stay bounded however many checkouts there are.
+ *
+ * Time is cut into fixed buckets (a day by default) kept in a ring. Each bucket holds one
+ * Space-Saving summary for all books and one per genre, each tracking at most 'capacity'
+ * books. When a summary is full, a book it has not seen takes over the slot of the least
+ * counted book and inherits that count as its error. A window query merges the summaries of
+ * the buckets it covers and ranks the candidates. A window always covers whole buckets,
+ * including the current, partly filled one.
+ *
+ * Error bounds: a reported count never underestimates. It overestimates by at most
+ * Entry.getError, and that error is at most N / capacity, where N is the number of checkouts
+ * the window counted. Any book borrowed more than N / capacity times in the window is
+ * guaranteed to be reported.
+ *
+ * Every Library has one (see Library.getPopularity) and records each checkout it makes, single,
+ * batched or handed over from a hold, so no checkout goes uncounted. Recording takes no lock:
+ * a checkout is handed over through a lock-free queue, which every query drains, and which
+ * a recorder drains itself once DRAIN_AT checkouts are waiting, so the queue stays bounded.
+ */
+public class PopularityTracker {
+    public static final Duration DEFAULT_BUCKET = Duration.ofDays(1);
+    // Five weeks of days, so a month-long window always fits
+    public static final int DEFAULT_BUCKETS = 35;
+    public static final int DEFAULT_CAPACITY = 128;
+    static final int DRAIN_AT = 1024;
+
+    private final long bucketMillis;
+    private final int capacity;
+    private final Clock clock;
+    private final Bucket[] ring;
+    // Checkouts recorded but not yet counted, and how many there are
+    private final Queue<Checkout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    // Merged past buckets per window and genre, valid while the current bucket is sealedAt
+    private final Map<String, Merged> sealedCache = new HashMap<>();
+    private long sealedAt = Long.MIN_VALUE;
+
+    // Creates a tracker with day buckets covering five weeks
+    public PopularityTracker(Clock clock) {
+        this(DEFAULT_BUCKET, DEFAULT_BUCKETS, DEFAULT_CAPACITY, clock);
+    }
+
+    // Creates a tracker of the given number of buckets, each tracking up to 'capacity' books
+    public PopularityTracker(Duration bucket, int buckets, int capacity, Clock clock) {
+        if (bucket.toMillis() < 1) throw new IllegalArgumentException("Bucket must be at least 1 ms");
+        if (buckets < 1 || capacity < 1) throw new IllegalArgumentException("Buckets and capacity must be positive");
+        this.bucketMillis = bucket.toMillis();
+        this.capacity = capacity;
+        this.clock = clock;
+        this.ring = new Bucket[buckets];
+    }
+
+    // A checkout waiting to be counted
+    private static final class Checkout {
+        private final String bookId;
+        private final String genre;
+        private final Instant at;
+
+        private Checkout(String bookId, String genre, Instant at) {
+            this.bookId = bookId;
+            this.genre = genre;
+            this.at = at;
+        }
+    }
+
+    // Counts one checkout of a book now
+    public void record(String bookId, String genre) {
+        record(bookId, genre, clock.instant());
+    }
+
+    // Counts one checkout at the given time; times older than the tracked history are ignored
+    public void record(String bookId, String genre, Instant at) {
+        incoming.offer(new Checkout(bookId, genre, at));
+        if (waiting.incrementAndGet() >= DRAIN_AT) drain();
+    }
+
+    // Counts every checkout handed over so far
+    private synchronized void drain() {
+        Checkout checkout;
+        while ((checkout = incoming.poll()) != null) {
+            waiting.decrementAndGet();
+            count(checkout.bookId, checkout.genre, checkout.at);
+        }
+    }
+
+    private void count(String bookId, String genre, Instant at) {
+        long index = Math.floorDiv(at.toEpochMilli(), bucketMillis);
+        long newest = currentIndex();
+        if (index <= newest - ring.length) return;
+        // A late checkout changes a bucket that cached merges may include
+        if (index != newest) sealedCache.clear();
+        int slot = slotOf(index);
+        Bucket bucket = ring[slot];
+        if (bucket == null || bucket.index != index) {
+            if (bucket != null && bucket.index > index) return;
+            bucket = new Bucket(index);
+            ring[slot] = bucket;
+        }
+        bucket.overall.add(bookId);
+        if (genre != null) {
+            bucket.byGenre.computeIfAbsent(foldGenre(genre), g -> new Summary(capacity)).add(bookId);
+        }
+    }
+
+    // Returns up to k of the most borrowed books in the window, most borrowed first
+    public List<Entry> topBooks(int k, Duration window) {
+        return topBooks(null, k, window);
+    }
+
+    // Returns up to k of the most borrowed books of a genre (null for all) in the window
+    public synchronized List<Entry> topBooks(String genre, int k, Duration window) {
+        drain();
+        int buckets = bucketsIn(window);
+        long newest = currentIndex();
+        Merged sealed = sealed(genre, buckets, newest);
+        Bucket bucket = ring[slotOf(newest)];
+        Summary current = bucket == null || bucket.index != newest ? null : bucket.summary(genre);
+        long floor = current == null ? 0 : current.floor();
+        long most = current == null ? 0 : current.most();
+        PriorityQueue<Entry> best = new PriorityQueue<>(RANKING);
+        // Past candidates come most counted first, so stop once even the current bucket's
+        // largest count could not lift the next one into the top k
+        for (int i = 0; i < sealed.keys.length; i++) {
+            if (best.size() >= k && sealed.counts[i] + most < best.peek().count) break;
+            Slot slot = current == null ? null : current.slots.get(sealed.keys[i]);
+            long count = sealed.counts[i] + (slot == null ? floor : slot.count());
+            long error = sealed.errors[i] + (slot == null ? floor : slot.error);
+            offer(best, k, sealed.keys[i], count, error);
+        }
+        for (Slot slot : current == null ? Collections.<Slot>emptyList() : current.slots.values()) {
+            if (!sealed.positions.containsKey(slot.key)) {
+                offer(best, k, slot.key, sealed.floors + slot.count(), sealed.floors + slot.error);
+            }
+        }
+        List<Entry> top = new ArrayList<>(best);
+        top.sort(RANKING.reversed());
+        return top;
+    }
+
+    private static void offer(PriorityQueue<Entry> best, int k, String bookId, long count, long error) {
+        if (best.size() >= k) {
+            if (k == 0 || count < best.peek().count) return;
+            best.add(new Entry(bookId, count, error));
+            best.poll();
+        } else {
+            best.add(new Entry(bookId, count, error));
+        }
+    }
+
+    // Returns the merged summaries of the window's buckets before the current one.
+    // Those no longer change, so the merge is kept until the current bucket moves on.
+    private Merged sealed(String genre, int buckets, long newest) {
+        if (sealedAt != newest) {
+            sealedCache.clear();
+            sealedAt = newest;
+        }
+        String key = buckets + ":" + (genre == null ? "" : "#" + foldGenre(genre));
+        Merged merged = sealedCache.get(key);
+        if (merged == null) {
+            merged = new Merged(summaries(genre, newest - buckets, newest - 1));
+            sealedCache.put(key, merged);
+        }
+        return merged;
+    }
+
+    // Returns the number of checkouts counted in the window, overall or for a genre
+    public synchronized long getCheckoutCount(String genre, Duration window) {
+        drain();
+        long total = 0;
+        for (Summary summary : summaries(genre, window)) {
+            total += summary.total;
+        }
+        return total;
+    }
+
+    // Returns the most any count reported for this window can overestimate by
+    public synchronized long getErrorBound(String genre, Duration window) {
+        drain();
+        long bound = 0;
+        for (Summary summary : summaries(genre, window)) {
+            bound += summary.floor();
+        }
+        return bound;
+    }
+
+    // Collects the summaries of the buckets a window covers
+    private List<Summary> summaries(String genre, Duration window) {
+        long newest = currentIndex();
+        return summaries(genre, newest - bucketsIn(window), newest);
+    }
+
+    // Collects the summaries of the buckets after 'from' up to and including 'to'
+    private List<Summary> summaries(String genre, long from, long to) {
+        List<Summary> summaries = new ArrayList<>();
+        for (Bucket bucket : ring) {
+            if (bucket == null || bucket.index <= from || bucket.index > to) continue;
+            Summary summary = bucket.summary(genre);
+            if (summary != null) summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    // Returns how many buckets a window covers, counting the current one
+    private int bucketsIn(Duration window) {
+        long buckets = Math.max(1, (window.toMillis() + bucketMillis - 1) / bucketMillis);
+        if (buckets > ring.length) {
+            throw new IllegalArgumentException("Window is longer than the tracked history");
+        }
+        return (int) buckets;
+    }
+
+    private int slotOf(long index) {
+        return (int) Math.floorMod(index, (long) ring.length);
+    }
+
+    private long currentIndex() {
+        return Math.floorDiv(clock.millis(), bucketMillis);
+    }
+
+    // Most borrowed last, so a min-heap of the best k evicts the least borrowed first
+    private static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::getCount)
+            .thenComparing(Entry::getBookId, Comparator.reverseOrder());
+
+    private static String foldGenre(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+
+    // A book's estimated checkouts in a window
+    public static final class Entry {
+        private final String bookId;
+        private final long count;
+        private final long error;
+
+        private Entry(String bookId, long count, long error) {
+            this.bookId = bookId;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        // Returns the estimated checkouts; never below the true number
+        public long getCount() {
+            return count;
+        }
+
+        // Returns how far the count may be above the true number
+        public long getError() {
+            return error;
+        }
+
+        // Returns the number of checkouts the book certainly had
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+
+        @Override
+        public String toString() {
+            return bookId + "=" + count + (error > 0 ? "±" + error : "");
+        }
+    }
+
+    // One time bucket: a summary over all books and one per genre
+    private final class Bucket {
+        private final long index;
+        private final Summary overall = new Summary(capacity);
+        private final Map<String, Summary> byGenre = new HashMap<>();
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+
+        private Summary summary(String genre) {
+            return genre == null ? overall : byGenre.get(foldGenre(genre));
+        }
+    }
+
+    // Several summaries added together. A book a summary does not list may still have had up to
+    // that summary's floor, so the floor counts toward both its estimate and its error.
+    // Candidates are kept sorted by estimate, most counted first.
+    private static final class Merged {
+        private final String[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final long floors;
+
+        private Merged(List<Summary> summaries) {
+            long total = 0;
+            for (Summary summary : summaries) {
+                total += summary.floor();
+            }
+            floors = total;
+            Map<String, long[]> estimates = new HashMap<>();
+            for (Summary summary : summaries) {
+                long floor = summary.floor();
+                for (Slot slot : summary.slots.values()) {
+                    long[] estimate = estimates.computeIfAbsent(slot.key, key -> new long[]{floors, floors});
+                    // Replace the floor assumed for this summary with what it actually recorded
+                    estimate[0] += slot.count() - floor;
+                    estimate[1] += slot.error - floor;
+                }
+            }
+            List<Map.Entry<String, long[]>> sorted = new ArrayList<>(estimates.entrySet());
+            sorted.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            keys = new String[sorted.size()];
+            counts = new long[sorted.size()];
+            errors = new long[sorted.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = sorted.get(i).getKey();
+                counts[i] = sorted.get(i).getValue()[0];
+                errors[i] = sorted.get(i).getValue()[1];
+                positions.put(keys[i], i);
+            }
+        }
+    }
+
+    // A counted book in a summary; its count is that of the group it belongs to
+    private static final class Slot {
+        private String key;
+        private long error;
+        private Group group;
+        // Neighbours in the group
+        private Slot previous;
+        private Slot next;
+
+        private long count() {
+            return group.count;
+        }
+    }
+
+    // The slots that share one count. Groups form a list in increasing order of count.
+    private static final class Group {
+        private final long count;
+        private Slot first;
+        private Group previous;
+        private Group next;
+
+        private Group(long count) {
+            this.count = count;
+        }
+    }
+
+    // Space-Saving summary, kept as a Stream-Summary: books with equal counts share a group, and
+    // the groups are listed from least to most counted. Counting a book moves it to the next
+    // group up, and the book to evict is in the first group, so every update costs O(1).
+    private static final class Summary {
+        private final int capacity;
+        private final Map<String, Slot> slots;
+        private Group lowest;
+        private Group highest;
+        private long total;
+
+        private Summary(int capacity) {
+            this.capacity = capacity;
+            slots = new HashMap<>(capacity * 2);
+        }
+
+        private void add(String key) {
+            total++;
+            Slot slot = slots.get(key);
+            if (slot == null && slots.size() < capacity) {
+                slot = new Slot();
+                slot.key = key;
+                slots.put(key, slot);
+                // A new book starts at a count of one, below or in the lowest group
+                Group group = lowest != null && lowest.count == 1 ? lowest : insertAfter(null, 1);
+                join(slot, group);
+                return;
+            }
+            if (slot == null) {
+                // Take over a least counted slot; its count becomes the newcomer's error
+                slot = lowest.first;
+                slots.remove(slot.key);
+                slot.key = key;
+                slot.error = lowest.count;
+                slots.put(key, slot);
+            }
+            Group from = slot.group;
+            Group to = from.next != null && from.next.count == from.count + 1 ? from.next
+                    : insertAfter(from, from.count + 1);
+            leave(slot);
+            join(slot, to);
+        }
+
+        // Returns the most an uncounted book may have had here: the smallest count once full
+        private long floor() {
+            return slots.size() < capacity ? 0 : lowest.count;
+        }
+
+        // Returns the largest count
+        private long most() {
+            return highest == null ? 0 : highest.count;
+        }
+
+        // Adds an empty group after the given one (null for first place)
+        private Group insertAfter(Group before, long count) {
+            Group group = new Group(count);
+            group.previous = before;
+            group.next = before == null ? lowest : before.next;
+            if (group.next != null) group.next.previous = group;
+            else highest = group;
+            if (before != null) before.next = group;
+            else lowest = group;
+            return group;
+        }
+
+        private void join(Slot slot, Group group) {
+            slot.group = group;
+            slot.previous = null;
+            slot.next = group.first;
+            if (group.first != null) group.first.previous = slot;
+            group.first = slot;
+        }
+
+        // Takes a slot out of its group, dropping the group if that leaves it empty
+        private void leave(Slot slot) {
+            Group group = slot.group;
+            if (slot.previous != null) slot.previous.next = slot.next;
+            else group.first = slot.next;
+            if (slot.next != null) slot.next.previous = slot.previous;
+            if (group.first != null) return;
+            if (group.previous != null) group.previous.next = group.next;
+            else lowest = group.next;
+            if (group.next != null) group.next.previous = group.previous;
+            else highest = group.previous;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Test suite for the PopularityTracker class and the checkout events that feed it.
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class PopularityTrackerTest {
+
+    private static final Instant START = Instant.parse("2026-03-02T10:00:00Z");
+    private static final Duration WEEK = Duration.ofDays(7);
+
+    private OverdueTrackerTest.MutableClock clock;
+    private PopularityTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new OverdueTrackerTest.MutableClock(START);
+        tracker = new PopularityTracker(Duration.ofDays(1), 35, 4, clock);
+    }
+
+    private void borrow(String bookId, String genre, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(bookId, genre);
+        }
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testRanksMostBorrowedFirst() {
+        borrow("B1", "Fantasy", 5);
+        borrow("B2", "Science Fiction", 9);
+        borrow("B3", "Fantasy", 2);
+
+        List<PopularityTracker.Entry> top = tracker.topBooks(2, WEEK);
+        assertEquals(2, top.size());
+        assertEquals("B2", top.get(0).getBookId());
+        assertEquals(9, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError(), "Counts are exact while the summary has room.");
+        assertEquals("B1", top.get(1).getBookId());
+        assertEquals(16, tracker.getCheckoutCount(null, WEEK));
+    }
+
+    @Test
+    public void testGenresAreRankedSeparately() {
+        borrow("B1", "Fantasy", 5);
+        borrow("B2", "Science Fiction", 9);
+        borrow("B3", "fantasy", 7);
+
+        List<PopularityTracker.Entry> fantasy = tracker.topBooks("Fantasy", 10, WEEK);
+        assertEquals(2, fantasy.size());
+        assertEquals("B3", fantasy.get(0).getBookId(), "Genres should match ignoring case.");
+        assertEquals(12, tracker.getCheckoutCount("FANTASY", WEEK));
+        assertTrue(tracker.topBooks("Romance", 10, WEEK).isEmpty());
+    }
+
+    @Test
+    public void testOldCheckoutsLeaveTheWindow() {
+        borrow("B1", null, 10);
+        clock.advance(Duration.ofDays(8));
+        borrow("B2", null, 3);
+
+        assertEquals("B2", tracker.topBooks(1, WEEK).get(0).getBookId());
+        assertEquals(3, tracker.getCheckoutCount(null, WEEK));
+        List<PopularityTracker.Entry> month = tracker.topBooks(1, Duration.ofDays(30));
+        assertEquals("B1", month.get(0).getBookId());
+        assertEquals(13, tracker.getCheckoutCount(null, Duration.ofDays(30)));
+
+        clock.advance(Duration.ofDays(40));
+        assertTrue(tracker.topBooks(5, Duration.ofDays(30)).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> tracker.topBooks(5, Duration.ofDays(36)));
+    }
+
+    @Test
+    public void testEveryLibraryCheckoutIsCounted() {
+        Library library = new Library(false, clock);
+        library.addBook(new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B1", "Science Fiction"));
+        library.addBook(new Book("Emma", "Jane Austen", 1815, "978-0141439587", "B2", "Romance"));
+        Member alice = new Member("Alice", "alice@example.com", "M1");
+        Member bob = new Member("Bob", "bob@example.com", "M2");
+        library.addMember(alice);
+        library.addMember(bob);
+        // A bus that drops everything it is given does not affect the counts
+        CirculationEventBus events = new CirculationEventBus(2, CirculationEventBus.WaitStrategy.BLOCKING,
+                CirculationEventBus.Backpressure.DROP);
+        library.setEventBus(events);
+
+        library.checkoutBook(alice, library.getBookById("B1"));
+        library.placeHold(bob, library.getBookById("B1"));
+        library.returnBook(alice, library.getBookById("B1")); // handed over to Bob
+        library.returnBook(bob, library.getBookById("B1"));
+        assertTrue(library.checkoutAll("M1", List.of("B1", "B2")).isApplied());
+        events.close();
+
+        PopularityTracker fed = library.getPopularity();
+        assertEquals("B1", fed.topBooks(1, WEEK).get(0).getBookId());
+        assertEquals(3, fed.topBooks(1, WEEK).get(0).getCount());
+        assertEquals(1, fed.getCheckoutCount("Romance", WEEK));
+        assertEquals(4, fed.getCheckoutCount(null, WEEK));
+    }
+
+    @Test
+    public void testConcurrentRecordsAreAllCounted() throws InterruptedException {
+        PopularityTracker shared = new PopularityTracker(Duration.ofDays(1), 35, 64, clock);
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int desk = t;
+            desks.add(new Thread(() -> {
+                for (int i = 0; i < 5 * PopularityTracker.DRAIN_AT; i++) {
+                    shared.record("B" + (desk * 10 + i % 10), i % 2 == 0 ? "Even" : null);
+                }
+            }));
+        }
+        for (Thread desk : desks) desk.start();
+        for (Thread desk : desks) desk.join();
+        assertEquals(20L * PopularityTracker.DRAIN_AT, shared.getCheckoutCount(null, WEEK));
+        assertEquals(10L * PopularityTracker.DRAIN_AT, shared.getCheckoutCount("even", WEEK));
+        assertEquals(0, shared.getErrorBound(null, WEEK), "Forty books fit in the summary");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testEvictionReportsErrorBounds() {
+        borrow("B1", null, 10);
+        borrow("B2", null, 8);
+        borrow("B3", null, 6);
+        borrow("B4", null, 4);
+        // The summary is full, so the newcomer takes over B4's slot and inherits its count
+        borrow("B5", null, 1);
+
+        List<PopularityTracker.Entry> top = tracker.topBooks(5, WEEK);
+        PopularityTracker.Entry newcomer = top.stream().filter(e -> e.getBookId().equals("B5")).findFirst().get();
+        assertEquals(5, newcomer.getCount());
+        assertEquals(4, newcomer.getError());
+        assertEquals(1, newcomer.getGuaranteedCount());
+        assertEquals("B1", top.get(0).getBookId());
+        assertTrue(tracker.getErrorBound(null, WEEK) <= tracker.getCheckoutCount(null, WEEK) / 4);
+        assertEquals("B5=5±4", newcomer.toString());
+    }
+
+    @Test
+    public void testMergedBucketsAccountForEvictedBooks() {
+        borrow("B1", null, 6);
+        borrow("B2", null, 5);
+        borrow("B3", null, 4);
+        borrow("B4", null, 3);
+        borrow("B9", null, 1);
+        clock.advance(Duration.ofDays(1));
+        borrow("B4", null, 2);
+
+        PopularityTracker.Entry b4 = tracker.topBooks(10, WEEK).stream()
+                .filter(e -> e.getBookId().equals("B4")).findFirst().get();
+        // B4 was evicted from the first day, so that day can only say it had at most 4
+        assertTrue(b4.getCount() >= 5);
+        assertTrue(b4.getGuaranteedCount() <= 5);
+    }
+
+    @Test
+    public void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PopularityTracker(Duration.ZERO, 1, 1, clock));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PopularityTracker(Duration.ofDays(1), 0, 1, clock));
+        tracker.record("B1", null, START.minus(Duration.ofDays(100)));
+        assertEquals(0, tracker.getCheckoutCount(null, Duration.ofDays(35)), "History older than the ring is ignored.");
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyCountsBoundTheTruth(
+            @ForAll @IntRange(min = 1, max = 8) int capacity,
+            @ForAll @IntRange(min = 1, max = 400) int checkouts,
+            @ForAll @IntRange(min = 1, max = 20) int books,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        OverdueTrackerTest.MutableClock local = new OverdueTrackerTest.MutableClock(START);
+        PopularityTracker sketch = new PopularityTracker(Duration.ofHours(1), 10, capacity, local);
+        Map<String, Long> truth = new HashMap<>();
+        Random random = new Random(seed);
+        int hours = 0;
+        for (int i = 0; i < checkouts; i++) {
+            // Skewed draws so some books are clearly popular
+            String bookId = "B" + (int) (books * Math.pow(random.nextDouble(), 3));
+            sketch.record(bookId, null);
+            truth.merge(bookId, 1L, Long::sum);
+            // Stay within the ten hours the window covers
+            if (random.nextInt(50) == 0 && hours++ < 9) local.advance(Duration.ofHours(1));
+        }
+        Duration window = Duration.ofHours(10);
+        long total = truth.values().stream().mapToLong(Long::longValue).sum();
+        List<PopularityTracker.Entry> top = sketch.topBooks(books, window);
+        for (PopularityTracker.Entry entry : top) {
+            long actual = truth.getOrDefault(entry.getBookId(), 0L);
+            assertTrue(entry.getCount() >= actual, entry + " undercounts " + actual);
+            assertTrue(entry.getGuaranteedCount() <= actual, entry + " overcounts " + actual);
+            assertTrue(entry.getError() <= sketch.getErrorBound(null, window));
+        }
+        assertEquals(total, sketch.getCheckoutCount(null, window));
+        assertTrue(sketch.getErrorBound(null, window) <= total / capacity);
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * An output format for book and member records.
+ * A format appends one record at a time to any Appendable, without a trailing line break, so
+ * the same code fills a StringBuilder for a single record or a RecordWriter for a whole catalog.
+ * Records are written field by field rather than through String.format, so rendering parses no
+ * format strings, and rendering into a RecordWriter allocates nothing per record.
+ * Three formats are built in: TEXT (the console layout of Book.getBookInfo and
+ * Member.getMemberInfo), CSV (RFC 4180 with a header row) and JSON_LINES (one object per line).
+ */
+
+public interface RecordFormat {
+    RecordFormat TEXT = new Text();
+    RecordFormat CSV = new Csv();
+    RecordFormat JSON_LINES = new JsonLines();
+
+    //Appends the book as one record.
+    void appendBook(Appendable out, Book book) throws IOException;
+
+    //Appends the member as one record.
+    void appendMember(Appendable out, Member member) throws IOException;
+
+    //Appends the line that precedes a list of books, returning false if the format has none.
+    default boolean appendBookHeader(Appendable out) throws IOException {
+        return false;
+    }
+
+    //Appends the line that precedes a list of members, returning false if the format has none.
+    default boolean appendMemberHeader(Appendable out) throws IOException {
+        return false;
+    }
+
+    //Returns the book rendered as a string.
+    default String formatBook(Book book) {
+        StringBuilder record = new StringBuilder(128);
+        try {
+            appendBook(record, book);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
+        }
+        return record.toString();
+    }
+
+    //Returns the member rendered as a string.
+    default String formatMember(Member member) {
+        StringBuilder record = new StringBuilder(96);
+        try {
+            appendMember(record, member);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
+        }
+        return record.toString();
+    }
+
+    //Returns the built-in format with the given name (text, csv, json or jsonl), or null if there is none.
+    static RecordFormat forName(String name) {
+        if (name == null) return null;
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "text": case "txt": return TEXT;
+            case "csv": return CSV;
+            case "json": case "jsonl": case "json-lines": return JSON_LINES;
+            default: return null;
+        }
+    }
+
+    //Appends a decimal int, digit by digit when the target is a RecordWriter.
+    static void appendInt(Appendable out, int value) throws IOException {
+        if (out instanceof RecordWriter) ((RecordWriter) out).appendInt(value);
+        else if (out instanceof StringBuilder) ((StringBuilder) out).append(value);
+        else out.append(Integer.toString(value));
+    }
+
+    //"ID: B1 | Name: Dune | Author: ... | Available: true"; members keep their trailing line break.
+    final class Text implements RecordFormat {
+        private Text() {
+        }
+
+        @Override
+        public void appendBook(Appendable out, Book book) throws IOException {
+            out.append("ID: ").append(book.getBookId())
+                    .append(" | Name: ").append(book.getName())
+                    .append(" | Author: ").append(book.getAuthor())
+                    .append(" | Year: ");
+            appendInt(out, book.getYear());
+            out.append(" | ISBN: ").append(book.getIsbn())
+                    .append(" | Genre: ").append(book.getGenre())
+                    .append(" | Available: ").append(book.isAvailable() ? "true" : "false");
+        }
+
+        @Override
+        public void appendMember(Appendable out, Member member) throws IOException {
+            out.append("ID: ").append(member.getMemberId())
+                    .append(" | Name: ").append(member.getName())
+                    .append(" | Email: ").append(member.getEmail())
+                    .append('\n');
+        }
+    }
+
+    //Comma-separated values; fields holding a comma, quote or line break are quoted, nulls are empty.
+    final class Csv implements RecordFormat {
+        private Csv() {
+        }
+
+        @Override
+        public boolean appendBookHeader(Appendable out) throws IOException {
+            out.append("bookId,title,author,year,isbn,genre,available");
+            return true;
+        }
+
+        @Override
+        public boolean appendMemberHeader(Appendable out) throws IOException {
+            out.append("memberId,name,email,borrowed");
+            return true;
+        }
+
+        @Override
+        public void appendBook(Appendable out, Book book) throws IOException {
+            field(out, book.getBookId());
+            field(out.append(','), book.getName());
+            field(out.append(','), book.getAuthor());
+            appendInt(out.append(','), book.getYear());
+            field(out.append(','), book.getIsbn());
+            field(out.append(','), book.getGenre());
+            out.append(',').append(book.isAvailable() ? "true" : "false");
+        }
+
+        //The borrowed column lists the borrowed book IDs separated by semicolons.
+        @Override
+        public void appendMember(Appendable out, Member member) throws IOException {
+            field(out, member.getMemberId());
+            field(out.append(','), member.getName());
+            field(out.append(','), member.getEmail());
+            field(out.append(','), joinBorrowed(member));
+        }
+
+        private static String joinBorrowed(Member member) {
+            StringBuilder ids = new StringBuilder();
+            for (Book book : member.getBorrowedBookList()) {
+                if (ids.length() > 0) ids.append(';');
+                ids.append(book.getBookId());
+            }
+            return ids.toString();
+        }
+
+        private static boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+            }
+            return false;
+        }
+
+        private static void field(Appendable out, String value) throws IOException {
+            if (value == null) return;
+            if (!needsQuotes(value)) {
+                out.append(value);
+                return;
+            }
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') out.append('"');
+                out.append(c);
+            }
+            out.append('"');
+        }
+    }
+
+    //One JSON object per line, with the same field names as the HTTP API.
+    final class JsonLines implements RecordFormat {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        private JsonLines() {
+        }
+
+        @Override
+        public void appendBook(Appendable out, Book book) throws IOException {
+            string(out.append("{\"bookId\":"), book.getBookId());
+            string(out.append(",\"title\":"), book.getName());
+            string(out.append(",\"author\":"), book.getAuthor());
+            appendInt(out.append(",\"year\":"), book.getYear());
+            string(out.append(",\"isbn\":"), book.getIsbn());
+            string(out.append(",\"genre\":"), book.getGenre());
+            out.append(",\"available\":").append(book.isAvailable() ? "true" : "false").append('}');
+        }
+
+        @Override
+        public void appendMember(Appendable out, Member member) throws IOException {
+            string(out.append("{\"memberId\":"), member.getMemberId());
+            string(out.append(",\"name\":"), member.getName());
+            string(out.append(",\"email\":"), member.getEmail());
+            out.append(",\"borrowed\":[");
+            boolean first = true;
+            for (Book book : member.getBorrowedBookList()) {
+                if (!first) out.append(',');
+                string(out, book.getBookId());
+                first = false;
+            }
+            out.append("]}");
+        }
+
+        //Appends a JSON string literal, or null.
+        static void string(Appendable out, String value) throws IOException {
+            if (value == null) {
+                out.append("null");
+                return;
+            }
+            out.append('"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') continue;
+                out.append(value, start, i);
+                start = i + 1;
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                }
+            }
+            out.append(value, start, value.length()).append('"');
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.io.StringWriter;
+import java.util.*;
+
+/**
+ * Test suite for the RecordFormat interface (text, CSV and JSON lines rendering).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class RecordFormatTest {
+
+    private Book dune;
+    private Member reader;
+
+    @BeforeEach
+    public void setUp() {
+        dune = new Book("Dune", "Frank Herbert", 1965, "978-0441013593", "B1", "Science Fiction");
+        reader = new Member("Reader", "reader@example.com", "M1");
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testTextMatchesTheConsoleLayout() {
+        assertEquals("ID: B1 | Name: Dune | Author: Frank Herbert | Year: 1965 | ISBN: 978-0441013593 | Genre: Science Fiction | Available: true",
+                RecordFormat.TEXT.formatBook(dune));
+        assertEquals(dune.getBookInfo(), RecordFormat.TEXT.formatBook(dune));
+        assertEquals("ID: M1 | Name: Reader | Email: reader@example.com\n", RecordFormat.TEXT.formatMember(reader));
+        assertEquals(reader.getMemberInfo(), RecordFormat.TEXT.formatMember(reader));
+    }
+
+    @Test
+    public void testCsvQuotesOnlyWhenNeeded() throws Exception {
+        Book odd = new Book("Dune, \"Deluxe\"", "Frank Herbert", -5, "I1", "B2", null);
+        odd.setAvailable(false);
+        assertEquals("B1,Dune,Frank Herbert,1965,978-0441013593,Science Fiction,true", RecordFormat.CSV.formatBook(dune));
+        assertEquals("B2,\"Dune, \"\"Deluxe\"\"\",Frank Herbert,-5,I1,,false", RecordFormat.CSV.formatBook(odd));
+        StringBuilder header = new StringBuilder();
+        assertTrue(RecordFormat.CSV.appendBookHeader(header));
+        assertEquals("bookId,title,author,year,isbn,genre,available", header.toString());
+
+        reader.addBorrowedBook(dune);
+        reader.addBorrowedBook(odd);
+        assertEquals("M1,Reader,reader@example.com,B1;B2", RecordFormat.CSV.formatMember(reader));
+    }
+
+    @Test
+    public void testJsonLinesMatchTheHttpFields() {
+        Book odd = new Book("Say \"hi\"\\\n\t\u0001", "Ann", 2000, null, "B2", "Misc");
+        assertEquals("{\"bookId\":\"B1\",\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"year\":1965,"
+                + "\"isbn\":\"978-0441013593\",\"genre\":\"Science Fiction\",\"available\":true}",
+                RecordFormat.JSON_LINES.formatBook(dune));
+        assertEquals("{\"bookId\":\"B2\",\"title\":\"Say \\\"hi\\\"\\\\\\n\\t\\u0001\",\"author\":\"Ann\",\"year\":2000,"
+                + "\"isbn\":null,\"genre\":\"Misc\",\"available\":true}",
+                RecordFormat.JSON_LINES.formatBook(odd));
+        reader.addBorrowedBook(dune);
+        reader.addBorrowedBook(odd);
+        assertEquals("{\"memberId\":\"M1\",\"name\":\"Reader\",\"email\":\"reader@example.com\",\"borrowed\":[\"B1\",\"B2\"]}",
+                RecordFormat.JSON_LINES.formatMember(reader));
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testForNameAndHeaders() throws Exception {
+        assertSame(RecordFormat.TEXT, RecordFormat.forName("text"));
+        assertSame(RecordFormat.CSV, RecordFormat.forName(" CSV "));
+        assertSame(RecordFormat.JSON_LINES, RecordFormat.forName("jsonl"));
+        assertNull(RecordFormat.forName("xml"));
+        assertNull(RecordFormat.forName(null));
+
+        StringBuilder out = new StringBuilder();
+        assertFalse(RecordFormat.TEXT.appendBookHeader(out));
+        assertFalse(RecordFormat.JSON_LINES.appendMemberHeader(out));
+        assertTrue(RecordFormat.CSV.appendMemberHeader(out));
+        assertEquals("memberId,name,email,borrowed", out.toString());
+    }
+
+    @Test
+    public void testAppendsToAnyAppendable() throws Exception {
+        StringWriter out = new StringWriter();
+        RecordFormat.TEXT.appendBook(out, dune);
+        assertEquals(dune.getBookInfo(), out.toString(), "Neither a StringBuilder nor a RecordWriter");
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyTextEqualsTheOldStringFormatLayout(
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        Book book = new Book(text(random), text(random), random.nextInt(), text(random), text(random), text(random));
+        book.setAvailable(random.nextBoolean());
+        assertEquals(String.format("ID: %s | Name: %s | Author: %s | Year: %d | ISBN: %s | Genre: %s | Available: %b",
+                book.getBookId(), book.getName(), book.getAuthor(), book.getYear(), book.getIsbn(), book.getGenre(),
+                book.isAvailable()), book.getBookInfo());
+        Member member = new Member(text(random) + "", text(random) + "", text(random) + "");
+        assertEquals(String.format("ID: %s | Name: %s | Email: %s\n", member.getMemberId(), member.getName(),
+                member.getEmail()), member.getMemberInfo());
+    }
+
+    // Short strings mixing plain, special and non-ASCII characters, or null
+    private static String text(Random random) {
+        if (random.nextInt(10) == 0) return null;
+        String alphabet = "abc ,\"\\\n\té€📚";
+        StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(8); i > 0; i--) text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return text.toString();
+    }
+}
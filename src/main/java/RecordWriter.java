@@ -0,0 +1,135 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Buffered UTF-8 writer for listing many records at once.
+ * Records are appended to one reusable StringBuilder, which is encoded in large chunks into one
+ * reusable ByteBuffer that reaches the underlying stream only when it fills or on flush, so
+ * listing a large catalog costs a handful of large writes instead of one formatted string and
+ * one println per record, and allocates nothing per record.
+ * Unpaired surrogates are written as '?', as String.getBytes does.
+ * The writer never closes the stream it wraps (it is usually System.out); call flush when done.
+ * Not thread-safe.
+ */
+
+public final class RecordWriter implements Appendable, Flushable {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final CharBuffer NOTHING = CharBuffer.allocate(0);
+
+    private final OutputStream out;
+    private final ByteBuffer bytes;
+    // Text not yet encoded, and the array it is copied to for encoding
+    private final StringBuilder text;
+    private final char[] chars;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .replaceWith(new byte[] {'?'});
+
+    //Constructs a writer over the given stream with a 64 KB buffer.
+    public RecordWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    //Constructs a writer over the given stream with a buffer of the given size in bytes (at least 16).
+    public RecordWriter(OutputStream out, int bufferSize) {
+        if (bufferSize < 16) throw new IllegalArgumentException("buffer too small");
+        this.out = Objects.requireNonNull(out);
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        // Text is encoded a third of the buffer at a time, at most three bytes per char
+        this.chars = new char[bufferSize / 3];
+        this.text = new StringBuilder(chars.length + 16);
+    }
+
+    //Writes every book in the given format, one per line after the format's header, returning the number written.
+    public int writeBooks(Iterable<? extends Book> books, RecordFormat format) throws IOException {
+        if (format.appendBookHeader(this)) append('\n');
+        int count = 0;
+        for (Book book : books) {
+            format.appendBook(this, book);
+            append('\n');
+            count++;
+        }
+        return count;
+    }
+
+    //Writes every member in the given format, one per line after the format's header, returning the number written.
+    public int writeMembers(Iterable<? extends Member> members, RecordFormat format) throws IOException {
+        if (format.appendMemberHeader(this)) append('\n');
+        int count = 0;
+        for (Member member : members) {
+            format.appendMember(this, member);
+            append('\n');
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public RecordWriter append(CharSequence csq) throws IOException {
+        text.append(csq);
+        if (text.length() >= chars.length) encode(false);
+        return this;
+    }
+
+    @Override
+    public RecordWriter append(CharSequence csq, int start, int end) throws IOException {
+        text.append(csq, start, end);
+        if (text.length() >= chars.length) encode(false);
+        return this;
+    }
+
+    @Override
+    public RecordWriter append(char c) throws IOException {
+        text.append(c);
+        if (text.length() >= chars.length) encode(false);
+        return this;
+    }
+
+    //Appends a decimal int without going through a String.
+    public RecordWriter appendInt(int value) throws IOException {
+        text.append(value);
+        if (text.length() >= chars.length) encode(false);
+        return this;
+    }
+
+    //Writes out everything buffered so far and flushes the underlying stream.
+    @Override
+    public void flush() throws IOException {
+        encode(true);
+        while (encoder.encode(NOTHING, bytes, true).isOverflow()) drain(); // ends the input even if none was pending
+        while (encoder.flush(bytes).isOverflow()) drain();
+        encoder.reset();
+        drain();
+        out.flush();
+    }
+
+    // Encodes the pending text into the byte buffer, chunk by chunk, draining it as it fills.
+    // Unless this is the end of the input, a trailing high surrogate waits for its low half.
+    private void encode(boolean endOfInput) throws IOException {
+        int start = 0;
+        while (start < text.length()) {
+            int length = Math.min(text.length() - start, chars.length);
+            text.getChars(start, start + length, chars, 0);
+            CharBuffer input = CharBuffer.wrap(chars, 0, length);
+            boolean last = endOfInput && start + length == text.length();
+            while (encoder.encode(input, bytes, last).isOverflow()) drain();
+            start += input.position();
+            if (start + input.remaining() == text.length() && input.hasRemaining()) break;
+        }
+        text.delete(0, start);
+    }
+
+    private void drain() throws IOException {
+        if (bytes.position() == 0) return;
+        out.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+    }
+}
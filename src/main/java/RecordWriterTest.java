@@ -0,0 +1,137 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Test suite for the RecordWriter class (buffered UTF-8 record listing).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class RecordWriterTest {
+
+    // Counts the writes reaching the stream
+    private static final class CountingStream extends ByteArrayOutputStream {
+        int writes;
+        boolean flushed;
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            writes++;
+            super.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+
+        String text() {
+            return toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book("Title " + i, "Author " + i, 1900 + i, "ISBN" + i, "B" + i, "Genre"));
+        }
+        return books;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testListingMatchesPrintlnOfEachRecord() throws IOException {
+        List<Book> books = books(3);
+        Member member = new Member("Reader", "reader@example.com", "M1");
+        StringBuilder expected = new StringBuilder();
+        for (Book book : books) expected.append(book.getBookInfo()).append('\n');
+        expected.append(member.getMemberInfo()).append('\n');
+
+        CountingStream out = new CountingStream();
+        RecordWriter writer = new RecordWriter(out);
+        assertEquals(3, writer.writeBooks(books, RecordFormat.TEXT));
+        assertEquals(1, writer.writeMembers(List.of(member), RecordFormat.TEXT));
+        assertEquals(0, out.size(), "Nothing reaches the stream before flush");
+        writer.flush();
+        assertEquals(expected.toString(), out.text());
+        assertEquals(1, out.writes);
+        assertTrue(out.flushed);
+    }
+
+    @Test
+    public void testCsvListingStartsWithItsHeader() throws IOException {
+        CountingStream out = new CountingStream();
+        RecordWriter writer = new RecordWriter(out);
+        writer.writeBooks(books(1), RecordFormat.CSV);
+        writer.writeMembers(List.of(), RecordFormat.CSV);
+        writer.flush();
+        assertEquals("bookId,title,author,year,isbn,genre,available\nB0,Title 0,Author 0,1900,ISBN0,Genre,true\n"
+                + "memberId,name,email,borrowed\n", out.text());
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testEncodesUtf8AndNumbers() throws IOException {
+        CountingStream out = new CountingStream();
+        RecordWriter writer = new RecordWriter(out, 16);
+        String text = "é€📚 \ud800x\udc00";
+        writer.append(text).append((CharSequence) null).append('\n');
+        writer.appendInt(0).append(' ').appendInt(-42).append(' ').appendInt(Integer.MIN_VALUE).append(' ')
+                .appendInt(Integer.MAX_VALUE);
+        writer.append("ab", 1, 2).append('\ud83d');
+        writer.flush();
+        assertEquals(new String((text + "null\n0 -42 -2147483648 2147483647b\ud83d").getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8), out.text());
+        assertTrue(out.writes > 1, "A small buffer drains as it fills");
+        assertThrows(IllegalArgumentException.class, () -> new RecordWriter(out, 8));
+        assertThrows(NullPointerException.class, () -> new RecordWriter(null));
+        assertThrows(IndexOutOfBoundsException.class, () -> writer.append("ab", 1, 3));
+    }
+
+    @Test
+    public void testPendingSurrogateBeforeANumber() throws IOException {
+        CountingStream out = new CountingStream();
+        RecordWriter writer = new RecordWriter(out);
+        writer.append('\ud83d').appendInt(7).append('\ud83d').append('\ud83d').append('\udcda');
+        writer.flush();
+        assertEquals("?7?📚", out.text());
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyMatchesStringGetBytes(
+            @ForAll @IntRange(min = 16, max = 64) int bufferSize,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RecordWriter writer = new RecordWriter(bytes, bufferSize);
+        String alphabet = "az ~é€📚\ud800";
+        for (int i = random.nextInt(200); i > 0; i--) {
+            if (random.nextInt(4) == 0) {
+                int value = random.nextInt();
+                writer.appendInt(value);
+                expected.append(value);
+            } else {
+                char c = alphabet.charAt(random.nextInt(alphabet.length()));
+                writer.append(c);
+                expected.append(c);
+            }
+        }
+        writer.flush();
+        // A lone surrogate followed by a number is settled before the digits, as getBytes does
+        assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a removeBook, removeBooks or revokeMembership call did under its DeletionPolicy.
+ * It lists the IDs removed and the IDs kept because they were still on loan (REJECT), and
+ * the loans ended on the way. Under FORCE_RETURN those loans were returned. Under ORPHAN
+ * they were cut off, so the copies are still out with their borrowers and need chasing up.
+ */
+public final class RemovalReport {
+    private final Library.DeletionPolicy policy;
+    private final List<String> removed = new ArrayList<>();
+    private final List<String> rejected = new ArrayList<>();
+    private final List<Loan> blocking = new ArrayList<>();
+    private final List<Loan> returned = new ArrayList<>();
+    private final List<Loan> orphaned = new ArrayList<>();
+
+    RemovalReport(Library.DeletionPolicy policy) {
+        this.policy = policy;
+    }
+
+    void removed(String id) {
+        removed.add(id);
+    }
+
+    void rejected(String id, Loan loan) {
+        if (rejected.isEmpty() || !rejected.get(rejected.size() - 1).equals(id)) rejected.add(id);
+        blocking.add(loan);
+    }
+
+    void returned(Loan loan) {
+        returned.add(loan);
+    }
+
+    void orphaned(Loan loan) {
+        orphaned.add(loan);
+    }
+
+    public Library.DeletionPolicy getPolicy() {
+        return policy;
+    }
+
+    // Returns the IDs of the books or member removed
+    public List<String> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    // Returns the IDs kept because they still had loans (REJECT only)
+    public List<String> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    // Returns the loans that caused the rejections
+    public List<Loan> getBlockingLoans() {
+        return Collections.unmodifiableList(blocking);
+    }
+
+    // Returns the loans returned before removal (FORCE_RETURN only)
+    public List<Loan> getReturnedLoans() {
+        return Collections.unmodifiableList(returned);
+    }
+
+    // Returns the loans cut off by the removal; their copies are still out (ORPHAN only)
+    public List<Loan> getOrphanedLoans() {
+        return Collections.unmodifiableList(orphaned);
+    }
+
+    // Returns a one-line summary for the CLI or logs
+    public String summary() {
+        return String.format("Removed: %d | Rejected (on loan): %d | Returned: %d | Orphaned: %d",
+                removed.size(), rejected.size(), returned.size(), orphaned.size());
+    }
+}
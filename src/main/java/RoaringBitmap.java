@@ -0,0 +1,526 @@
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of Roaring bitmaps.
+ * Values are split by their high 16 bits into chunks of 65,536. Each chunk is stored in
+ * whichever container is smaller for its contents: a sorted char array while it holds at
+ * most 4,096 values, otherwise a 1,024-word bitmap. A sparse set therefore costs about two
+ * bytes per value and a dense one an eighth of a byte. Intersections work chunk by chunk on
+ * matching keys, with word-wise AND and bit counts between bitmaps, so counting the overlap
+ * of two sets needs neither a scan of every value nor a result set.
+ *
+ * Not thread-safe; the owner must synchronize. The exception is with and without, which leave
+ * the set as it is and return a new one sharing every chunk but the changed one: a set that is
+ * only ever replaced that way, never changed in place, can be read by any number of threads.
+ */
+public final class RoaringBitmap {
+    // Largest chunk kept as a sorted array; above this a bitmap is smaller
+    static final int ARRAY_LIMIT = 4096;
+
+    // Sorted high 16-bit keys, each with the container of its chunk
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    // Adds a value.
+    // returns true if it was not already present
+    public boolean add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Values must not be negative");
+        char key = (char) (value >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        Container container = containers[i];
+        int before = container.cardinality();
+        containers[i] = container.add((char) value);
+        return containers[i].cardinality() > before;
+    }
+
+    // Removes a value.
+    // returns true if it was present
+    public boolean remove(int value) {
+        if (value < 0) return false;
+        int i = find((char) (value >>> 16));
+        if (i < 0) return false;
+        int before = containers[i].cardinality();
+        Container after = containers[i].remove((char) value);
+        if (after.cardinality() == before) return false;
+        if (after.cardinality() == 0) {
+            delete(i);
+        } else {
+            containers[i] = after;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    // Returns the number of values
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns the smallest value at or after 'from', or -1 if there is none
+    public int next(int from) {
+        if (from < 0) from = 0;
+        int i = find((char) (from >>> 16));
+        int low = from & 0xFFFF;
+        if (i < 0) {
+            i = -i - 1;
+            low = 0;
+        }
+        for (; i < size; i++, low = 0) {
+            int next = containers[i].next(low);
+            if (next >= 0) return keys[i] << 16 | next;
+        }
+        return -1;
+    }
+
+    // Returns the values in both sets
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container both = containers[i].and(other.containers[j]);
+                if (both.cardinality() > 0) result.append(keys[i], both);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Returns how many values are in both sets, without building the intersection
+    public int andCardinality(RoaringBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Returns the values in either set
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Returns the values in this set but not in the other
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            Container rest = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j]) : containers[i].copy();
+            if (rest.cardinality() > 0) result.append(keys[i], rest);
+        }
+        return result;
+    }
+
+    // Returns this set with the value added, leaving this set unchanged.
+    // The result shares containers with this set, so neither may then be changed in place.
+    public RoaringBitmap with(int value) {
+        if (contains(value)) return this;
+        RoaringBitmap result = sharing((char) (value >>> 16));
+        result.add(value);
+        return result;
+    }
+
+    // Returns this set with the value removed, leaving this set unchanged.
+    // The result shares containers with this set, so neither may then be changed in place.
+    public RoaringBitmap without(int value) {
+        if (!contains(value)) return this;
+        RoaringBitmap result = sharing((char) (value >>> 16));
+        result.remove(value);
+        return result;
+    }
+
+    // Returns a copy sharing this set's containers, except the one for the given key, which is copied
+    private RoaringBitmap sharing(char key) {
+        RoaringBitmap result = new RoaringBitmap();
+        result.keys = Arrays.copyOf(keys, size + 1);
+        result.containers = Arrays.copyOf(containers, size + 1);
+        result.size = size;
+        int i = find(key);
+        if (i >= 0) result.containers[i] = containers[i].copy();
+        return result;
+    }
+
+    // Returns a copy that does not share containers with this set
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        for (int i = 0; i < size; i++) {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    // Returns roughly how many bytes the containers use
+    public long approximateBytes() {
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += 2 + containers[i].bytes();
+        }
+        return bytes;
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void append(char key, Container container) {
+        insert(size, key, container);
+    }
+
+    private void delete(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    // The low 16 bits of the values in one chunk. Operations return the container to keep,
+    // which may be a new one of the other kind once the cardinality crosses ARRAY_LIMIT.
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        // Returns the smallest value at or after 'from', or -1
+        abstract int next(int from);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        abstract int bytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) return this;
+            if (cardinality == ARRAY_LIMIT) return toBitmap().add(value);
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int next(int from) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (i < 0) i = -i - 1;
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] both = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) both[count++] = values[i];
+            }
+            return new ArrayContainer(both, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof BitmapContainer) {
+                // Test each value's bit directly, without a branch per value
+                long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < cardinality; i++) {
+                    count += (int) (words[values[i] >>> 6] >>> values[i]) & 1;
+                }
+                return count;
+            }
+            // Two sorted arrays: merge
+            ArrayContainer array = (ArrayContainer) other;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) {
+                    i++;
+                } else if (values[i] > array.values[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            Container result = other.copy();
+            for (int i = 0; i < cardinality; i++) {
+                result = result.add(values[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] rest = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) rest[count++] = values[i];
+            }
+            return new ArrayContainer(rest, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        int bytes() {
+            return 2 * values.length;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) return this;
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality > ARRAY_LIMIT ? this : toArray();
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int next(int from) {
+            int i = from >>> 6;
+            if (i >= words.length) return -1;
+            long word = words[i] & -1L << from;
+            while (true) {
+                if (word != 0) return i * 64 + Long.numberOfTrailingZeros(word);
+                if (++i == words.length) return -1;
+                word = words[i];
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            BitmapContainer result = new BitmapContainer();
+            long[] theirs = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & theirs[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality > ARRAY_LIMIT ? result : result.toArray();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            long[] theirs = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                count += Long.bitCount(words[i] & theirs[i]);
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) return other.or(this);
+            BitmapContainer result = new BitmapContainer();
+            long[] theirs = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] | theirs[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    if (result.contains(value)) {
+                        result.words[value >>> 6] &= ~(1L << value);
+                        result.cardinality--;
+                    }
+                }
+                return result.cardinality > ARRAY_LIMIT ? result : result.toArray();
+            }
+            long[] theirs = ((BitmapContainer) other).words;
+            result.cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] &= ~theirs[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality > ARRAY_LIMIT ? result : result.toArray();
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        int bytes() {
+            return 8 * words.length;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
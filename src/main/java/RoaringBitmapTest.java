@@ -0,0 +1,172 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.*;
+
+/**
+ * Test suite for the RoaringBitmap class (compressed int sets).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class RoaringBitmapTest {
+
+    private static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) bitmap.add(value);
+        return bitmap;
+    }
+
+    private static List<Integer> values(RoaringBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        for (int value = bitmap.next(0); value >= 0; value = bitmap.next(value + 1)) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testAddRemoveContains() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(5), "Adding twice should report no change.");
+        assertTrue(bitmap.add(70_000));
+        assertTrue(bitmap.contains(5));
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(6));
+        assertFalse(bitmap.contains(-1));
+        assertEquals(2, bitmap.cardinality());
+        assertTrue(bitmap.remove(5));
+        assertFalse(bitmap.remove(5));
+        assertFalse(bitmap.remove(-3));
+        assertEquals(List.of(70_000), values(bitmap));
+        assertTrue(bitmap.remove(70_000));
+        assertTrue(bitmap.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    public void testSetOperations() {
+        RoaringBitmap evens = new RoaringBitmap();
+        RoaringBitmap threes = new RoaringBitmap();
+        for (int i = 0; i < 200_000; i += 2) evens.add(i);
+        for (int i = 0; i < 200_000; i += 3) threes.add(i);
+
+        RoaringBitmap sixes = evens.and(threes);
+        assertEquals(33_334, sixes.cardinality());
+        assertEquals(33_334, evens.andCardinality(threes));
+        assertEquals(0, sixes.next(0));
+        assertEquals(6, sixes.next(1));
+        assertEquals(100_000 + 66_667 - 33_334, evens.or(threes).cardinality());
+        assertEquals(100_000 - 33_334, evens.andNot(threes).cardinality());
+        assertEquals(100_000, evens.cardinality(), "Operations must not change their inputs.");
+    }
+
+    @Test
+    public void testSparseSetsStaySmall() {
+        RoaringBitmap sparse = new RoaringBitmap();
+        RoaringBitmap dense = new RoaringBitmap();
+        for (int i = 0; i < 1_000_000; i += 1000) sparse.add(i);
+        for (int i = 0; i < 1_000_000; i++) dense.add(i);
+        assertTrue(sparse.approximateBytes() < 4_000, "About two bytes per sparse value");
+        assertTrue(dense.approximateBytes() < 140_000, "About one bit per dense value");
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testChunksSwitchBetweenArrayAndBitmap() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i <= RoaringBitmap.ARRAY_LIMIT; i++) bitmap.add(i * 2);
+        assertEquals(RoaringBitmap.ARRAY_LIMIT + 1, bitmap.cardinality());
+        assertTrue(bitmap.contains(RoaringBitmap.ARRAY_LIMIT * 2));
+        assertTrue(bitmap.remove(0));
+        assertTrue(bitmap.remove(2));
+        assertEquals(RoaringBitmap.ARRAY_LIMIT - 1, bitmap.cardinality());
+        assertEquals(4, bitmap.next(0));
+        assertEquals(-1, bitmap.next(RoaringBitmap.ARRAY_LIMIT * 2 + 1));
+
+        RoaringBitmap copy = bitmap.copy();
+        copy.add(1);
+        assertFalse(bitmap.contains(1), "A copy must not share containers.");
+        assertEquals(1, copy.andNot(bitmap).cardinality());
+        assertEquals(bitmap.cardinality(), copy.and(bitmap).cardinality());
+    }
+
+    @Test
+    public void testWithAndWithoutLeaveTheSetAlone() {
+        RoaringBitmap bitmap = of(1, 70_000);
+        for (int i = 0; i <= RoaringBitmap.ARRAY_LIMIT; i++) bitmap.add(200_000 + i);
+        RoaringBitmap added = bitmap.with(2).with(140_000);
+        RoaringBitmap removed = added.without(200_000).without(1);
+        assertEquals(List.of(1, 70_000), values(bitmap).subList(0, 2));
+        assertEquals(RoaringBitmap.ARRAY_LIMIT + 3, bitmap.cardinality());
+        assertEquals(RoaringBitmap.ARRAY_LIMIT + 5, added.cardinality());
+        assertTrue(added.contains(2) && added.contains(140_000) && added.contains(200_000));
+        assertEquals(List.of(2, 70_000, 140_000, 200_001), values(removed).subList(0, 4));
+        assertSame(bitmap, bitmap.with(1), "Adding a present value changes nothing");
+        assertSame(bitmap, bitmap.without(3), "Removing an absent value changes nothing");
+        assertSame(bitmap, bitmap.without(-1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.with(-1));
+        assertTrue(of().with(0).contains(0));
+        assertTrue(of(5).without(5).isEmpty());
+    }
+
+    @Test
+    public void testNextSkipsEmptyChunks() {
+        RoaringBitmap bitmap = of(3, 200_000, 500_000);
+        assertEquals(200_000, bitmap.next(4));
+        assertEquals(500_000, bitmap.next(200_001));
+        assertEquals(3, bitmap.next(-10));
+        assertEquals(-1, of().next(0));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyBehavesLikeABitSet(
+            @ForAll @IntRange(min = 0, max = 20_000) int count,
+            @ForAll @IntRange(min = 1, max = 300_000) int range,
+            @ForAll @IntRange(min = 0, max = 1000) int seed
+    ) {
+        Random random = new Random(seed);
+        RoaringBitmap left = new RoaringBitmap();
+        RoaringBitmap right = new RoaringBitmap();
+        BitSet leftBits = new BitSet();
+        BitSet rightBits = new BitSet();
+        for (int i = 0; i < count; i++) {
+            int value = random.nextInt(range);
+            boolean toLeft = random.nextBoolean();
+            if (random.nextInt(5) == 0) {
+                assertEquals((toLeft ? leftBits : rightBits).get(value), (toLeft ? left : right).remove(value));
+                (toLeft ? leftBits : rightBits).clear(value);
+            } else {
+                assertEquals(!(toLeft ? leftBits : rightBits).get(value), (toLeft ? left : right).add(value));
+                (toLeft ? leftBits : rightBits).set(value);
+            }
+        }
+        BitSet both = (BitSet) leftBits.clone();
+        both.and(rightBits);
+        BitSet either = (BitSet) leftBits.clone();
+        either.or(rightBits);
+        BitSet rest = (BitSet) leftBits.clone();
+        rest.andNot(rightBits);
+        assertEquals(leftBits.cardinality(), left.cardinality());
+        assertEquals(both.cardinality(), left.andCardinality(right));
+        assertEquals(bits(both), values(left.and(right)));
+        assertEquals(bits(either), values(left.or(right)));
+        assertEquals(bits(rest), values(left.andNot(right)));
+    }
+
+    private static List<Integer> bits(BitSet bits) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) values.add(i);
+        return values;
+    }
+}
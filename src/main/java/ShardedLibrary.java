@@ -0,0 +1,315 @@
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A library split across N concurrent Library shards to lift the single-instance ceiling.
+ * Books are placed by a hash of their book ID and members by a hash of their member ID.
+ * Operations on one book or one member go straight to the owning shard. Scans such as
+ * getAllBooks and searches fan out to every shard in parallel on a ForkJoinPool and merge
+ * the results in shard order.
+ *
+ * A loan is kept by the book's shard, and every shard resolves member IDs through this
+ * library, so holds and whoHasBook work when the borrower lives on another shard.
+ * Checkout and return lock the member and book in both shards, taking the lower-numbered
+ * shard first. That makes a cross-shard checkout atomic, and two of them can never deadlock.
+ */
+public class ShardedLibrary {
+    private final Library[] shards;
+    private final ForkJoinPool pool;
+
+    // Creates a library with the given number of shards, fanning out on the common pool
+    public ShardedLibrary(int shardCount) {
+        this(shardCount, Clock.systemUTC(), ForkJoinPool.commonPool());
+    }
+
+    // Creates a library whose shards date loans by the given clock and fan out on the given pool
+    public ShardedLibrary(int shardCount, Clock clock, ForkJoinPool pool) {
+        if (shardCount < 1) throw new IllegalArgumentException("Shard count must be positive");
+        this.shards = new Library[shardCount];
+        this.pool = pool;
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Library(true, clock);
+            shards[i].setMemberDirectory(this::getMemberById);
+        }
+    }
+
+    // Returns the number of shards
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Returns the shard a book ID belongs to
+    public int shardOfBook(String bookId) {
+        return shardOf("book:" + bookId);
+    }
+
+    // Returns the shard a member ID belongs to
+    public int shardOfMember(String memberId) {
+        return shardOf("member:" + memberId);
+    }
+
+    private int shardOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return Math.floorMod(h, shards.length);
+    }
+
+    private Library bookShard(String bookId) {
+        return shards[shardOfBook(bookId)];
+    }
+
+    private Library memberShard(String memberId) {
+        return shards[shardOfMember(memberId)];
+    }
+
+    // Adds a book to its shard.
+    // returns boolean based on add success
+    public boolean addBook(Book book) {
+        return bookShard(book.getBookId()).addBook(book);
+    }
+
+    // Adds many books, silently skipping IDs that already exist.
+    // The books are grouped by shard, and each shard adds its group in one batch.
+    // returns the number of books added
+    public int addBooks(Collection<Book> books) {
+        List<List<Book>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Book book : books) {
+            byShard.get(shardOfBook(book.getBookId())).add(book);
+        }
+        int added = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (!byShard.get(i).isEmpty()) added += shards[i].addBooks(byShard.get(i));
+        }
+        return added;
+    }
+
+    // Removes a book by its ID, dropping it from its borrower's list if on loan
+    public void removeBook(String bookId) {
+        bookShard(bookId).removeBook(bookId);
+    }
+
+    // Adds a member to its shard.
+    // returns boolean based on add success
+    public boolean addMember(Member member) {
+        return memberShard(member.getMemberId()).addMember(member);
+    }
+
+    // Revokes a membership. Loans kept by other shards are dropped there; as in Library,
+    // the books stay unavailable. The member and their books are locked in every shard
+    // involved first, lower-numbered shard first as in acrossShards, so no checkout or return
+    // on another shard can run between revoking the member and dropping those loans.
+    public void revokeMembership(String memberId) {
+        Library home = memberShard(memberId);
+        while (true) {
+            Member member = home.getMemberById(memberId);
+            if (member == null) return;
+            List<Book> books = new ArrayList<>(member.getBorrowedBookList());
+            List<String> bookIds = new ArrayList<>(books.size());
+            SortedSet<Integer> involved = new TreeSet<>();
+            involved.add(shardOfMember(memberId));
+            for (Book book : books) {
+                bookIds.add(book.getBookId());
+                involved.add(shardOfBook(book.getBookId()));
+            }
+            boolean revoked = inShards(new ArrayList<>(involved), 0, memberId, bookIds, () -> {
+                // A checkout or return can slip in before the locks are taken; if it did, try again
+                if (home.getMemberById(memberId) != member || !member.getBorrowedBookList().equals(books)) {
+                    return false;
+                }
+                home.revokeMembership(memberId);
+                for (Book book : books) {
+                    Library shard = bookShard(book.getBookId());
+                    if (shard != home) shard.dropLoan(book, memberId);
+                }
+                return true;
+            });
+            if (revoked) return;
+        }
+    }
+
+    // Runs the action while holding the member's and books' locks in the given shards, in order
+    private <T> T inShards(List<Integer> indexes, int from, String memberId, List<String> bookIds,
+                           Supplier<T> action) {
+        if (from == indexes.size()) return action.get();
+        return shards[indexes.get(from)].transact(memberId, bookIds,
+                () -> inShards(indexes, from + 1, memberId, bookIds, action));
+    }
+
+    public Book getBookById(String bookId) {
+        return bookShard(bookId).getBookById(bookId);
+    }
+
+    public Member getMemberById(String memberId) {
+        return memberShard(memberId).getMemberById(memberId);
+    }
+
+    // Returns the name of the member who has a book checked out, if any
+    public String whoHasBook(String bookId) {
+        return bookShard(bookId).whoHasBook(bookId);
+    }
+
+    // Returns the current loan of a book, or null
+    public Loan getLoan(String bookId) {
+        return bookShard(bookId).getLoan(bookId);
+    }
+
+    // Checks out a book to a member, atomically even when they live on different shards.
+    // returns boolean based on checkout success
+    public boolean checkoutBook(Member member, Book book) {
+        return acrossShards(member, book, shard -> shard.checkoutBook(member, book));
+    }
+
+    // Returns a book from a member; the book goes to the first holder if anyone is waiting
+    public void returnBook(Member member, Book book) {
+        acrossShards(member, book, shard -> {
+            shard.returnBook(member, book);
+            return null;
+        });
+    }
+
+    // Checks out any available copy with the given ISBN, wherever it is shelved.
+    // returns the copy lent, or null if every copy is out
+    public Book checkoutByIsbn(Member member, String isbn) {
+        for (Library shard : shards) {
+            Book book;
+            while ((book = shard.nextAvailableCopy(isbn)) != null) {
+                if (checkoutBook(member, book)) return book;
+            }
+        }
+        return null;
+    }
+
+    // Places a hold on a book in its shard.
+    // returns the member's 1-based position in the queue
+    public int placeHold(Member member, Book book) {
+        return bookShard(book.getBookId()).placeHold(member, book);
+    }
+
+    // Cancels a member's hold on a book.
+    // returns true if the member was waiting
+    public boolean cancelHold(String memberId, String bookId) {
+        return bookShard(bookId).cancelHold(memberId, bookId);
+    }
+
+    public int getHoldPosition(String memberId, String bookId) {
+        return bookShard(bookId).getHoldPosition(memberId, bookId);
+    }
+
+    // Returns every book, gathered from all shards in parallel
+    public List<Book> getAllBooks() {
+        return fanOut(Library::getAllBooks);
+    }
+
+    // Returns every member, gathered from all shards in parallel
+    public List<Member> getAllMembers() {
+        return fanOut(Library::getAllMembers);
+    }
+
+    // Finds a book by its name, ignoring case; the lowest shard with a match wins
+    public Book findBookByName(String name) {
+        List<Book> matches = fanOut(shard -> {
+            Book book = shard.findBookByName(name);
+            return book == null ? Collections.emptyList() : Collections.singletonList(book);
+        });
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    public List<Book> findBooksByName(String name) {
+        return fanOut(shard -> shard.findBooksByName(name));
+    }
+
+    public List<Book> searchBooks(String query) {
+        return fanOut(shard -> shard.searchBooks(query));
+    }
+
+    public List<Book> searchBooksByPrefix(String prefix) {
+        return fanOut(shard -> shard.searchBooksByPrefix(prefix));
+    }
+
+    // Copies of one ISBN may be spread over several shards, so these sum across all of them
+    public int availableCopies(String isbn) {
+        int copies = 0;
+        for (Library shard : shards) {
+            copies += shard.availableCopies(isbn);
+        }
+        return copies;
+    }
+
+    public int totalCopies(String isbn) {
+        int copies = 0;
+        for (Library shard : shards) {
+            copies += shard.totalCopies(isbn);
+        }
+        return copies;
+    }
+
+    // Raises every loan that has fallen due since the last call, across all shards
+    public List<Loan> checkOverdue() {
+        return fanOut(Library::checkOverdue);
+    }
+
+    // Verifies that every member's borrowed list matches the loans kept by the book shards
+    // (only meaningful while no checkouts or returns are in flight)
+    public boolean isLoanIndexConsistent() {
+        int loans = 0;
+        for (Member member : getAllMembers()) {
+            for (Book book : member.getBorrowedBookList()) {
+                Loan loan = getLoan(book.getBookId());
+                if (loan == null || !loan.getMemberId().equals(member.getMemberId())) return false;
+                loans++;
+            }
+        }
+        int recorded = 0;
+        for (Library shard : shards) {
+            recorded += shard.loanCount();
+        }
+        return loans == recorded;
+    }
+
+    // Returns the number of book IDs registered by all shards together
+    int registeredBookIds() {
+        int registered = 0;
+        for (Library shard : shards) {
+            registered += shard.bookHandleUsage()[0];
+        }
+        return registered;
+    }
+
+    // Runs an operation on the book's shard while holding the member's and book's locks in
+    // both shards, lower-numbered shard first
+    private <T> T acrossShards(Member member, Book book, Function<Library, T> operation) {
+        String memberId = member.getMemberId();
+        String bookId = book.getBookId();
+        int memberIndex = shardOfMember(memberId);
+        int bookIndex = shardOfBook(bookId);
+        Library target = shards[bookIndex];
+        if (memberIndex == bookIndex) return operation.apply(target);
+        List<String> bookIds = Collections.singletonList(bookId);
+        Library first = shards[Math.min(memberIndex, bookIndex)];
+        Library second = shards[Math.max(memberIndex, bookIndex)];
+        return first.transact(memberId, bookIds,
+                () -> second.transact(memberId, bookIds, () -> operation.apply(target)));
+    }
+
+    // Runs a query on every shard in parallel and concatenates the results in shard order
+    private <T> List<T> fanOut(Function<Library, ? extends Collection<? extends T>> query) {
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>(shards.length);
+        for (Library shard : shards) {
+            tasks.add(pool.submit(() -> new ArrayList<T>(query.apply(shard))));
+        }
+        List<T> merged = new ArrayList<>();
+        for (ForkJoinTask<List<T>> task : tasks) {
+            merged.addAll(task.join());
+        }
+        return merged;
+    }
+}
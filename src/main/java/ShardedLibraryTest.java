@@ -0,0 +1,242 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.jqwik.api.Property;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.constraints.AlphaChars;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.StringLength;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test suite for the ShardedLibrary class (hash-partitioned library with parallel fan-out).
+ * This suite combines specification-based testing, structural testing (for JaCoCo code coverage),
+ * and property-based testing using jqwik.
+ */
+public class ShardedLibraryTest {
+
+    private ForkJoinPool pool;
+    private ShardedLibrary library;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+        library = new ShardedLibrary(8, Clock.systemUTC(), pool);
+        for (int i = 0; i < 40; i++) {
+            library.addBook(new Book("Book " + i, "Author " + (i % 4), 1950 + i, "ISBN" + (i % 10), "B" + i,
+                    i % 2 == 0 ? "Fantasy" : "History"));
+            library.addMember(new Member("Member " + i, "m" + i + "@example.com", "M" + i));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    // Finds a member and a book that live on different shards
+    private Member memberOnOtherShard(Book book) {
+        for (int i = 0; i < 40; i++) {
+            if (library.shardOfMember("M" + i) != library.shardOfBook(book.getBookId())) {
+                return library.getMemberById("M" + i);
+            }
+        }
+        throw new AssertionError("No cross-shard member found");
+    }
+
+    // SPECIFICATION-BASED TESTS
+
+    @Test
+    public void testRoutesAndFansOut() {
+        assertEquals(8, library.getShardCount());
+        assertEquals("Book 7", library.getBookById("B7").getName());
+        assertEquals("Member 3", library.getMemberById("M3").getName());
+        assertEquals(40, library.getAllBooks().size());
+        assertEquals(40, library.getAllMembers().size());
+        assertEquals(20, library.searchBooks("fantasy").size());
+        assertEquals("B12", library.findBookByName("book 12").getBookId());
+        assertNull(library.findBookByName("missing"));
+        assertEquals(4, library.totalCopies("ISBN3"));
+    }
+
+    @Test
+    public void testCrossShardCheckoutAndReturn() {
+        Book book = library.getBookById("B5");
+        Member member = memberOnOtherShard(book);
+        assertTrue(library.checkoutBook(member, book));
+        assertEquals(member.getName(), library.whoHasBook("B5"));
+        assertTrue(member.getBorrowedBookList().contains(book));
+        assertTrue(library.isLoanIndexConsistent());
+
+        library.returnBook(member, book);
+        assertTrue(book.isAvailable());
+        assertEquals("Not checked out.", library.whoHasBook("B5"));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testHoldHandsOffAcrossShards() {
+        Book book = library.getBookById("B9");
+        Member holder = library.getMemberById("M0");
+        Member waiter = memberOnOtherShard(book);
+        library.checkoutBook(holder, book);
+        assertEquals(1, library.placeHold(waiter, book));
+        library.returnBook(holder, book);
+        assertEquals(waiter.getName(), library.whoHasBook("B9"));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testCheckoutByIsbnSearchesAllShards() {
+        Member member = library.getMemberById("M1");
+        Set<String> lent = new HashSet<>();
+        Book book;
+        while ((book = library.checkoutByIsbn(member, "ISBN4")) != null) {
+            lent.add(book.getBookId());
+        }
+        assertEquals(Set.of("B4", "B14", "B24", "B34"), lent);
+        assertEquals(0, library.availableCopies("ISBN4"));
+    }
+
+    @Test
+    public void testAddBooksSkipsExistingIdsAcrossShards() {
+        List<Book> batch = new ArrayList<>();
+        for (int i = 30; i < 60; i++) {
+            batch.add(new Book("Batch " + i, "Author", 2000, "ISBN", "B" + i, "Fantasy"));
+        }
+        batch.add(new Book("Repeat", "Author", 2000, "ISBN", "B59", "Fantasy"));
+        assertEquals(20, library.addBooks(batch), "B30-B39 exist already and B59 is in the batch twice");
+        assertEquals(60, library.getAllBooks().size());
+        assertEquals("Book 30", library.getBookById("B30").getName());
+        assertEquals("Batch 59", library.getBookById("B59").getName());
+        for (int i = 40; i < 60; i++) {
+            assertEquals(1, library.searchBooks("Batch " + i).size());
+        }
+    }
+
+    // STRUCTURAL TESTS
+
+    @Test
+    public void testRevokeDropsLoansOnOtherShards() {
+        Member member = library.getMemberById("M2");
+        for (int i = 0; i < 10; i++) {
+            library.checkoutBook(member, library.getBookById("B" + i));
+        }
+        library.revokeMembership("M2");
+        assertNull(library.getMemberById("M2"));
+        for (int i = 0; i < 10; i++) {
+            assertNull(library.getLoan("B" + i));
+        }
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testRevokeRacingReturnsLeavesNoLoanBehind() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            ShardedLibrary sharded = new ShardedLibrary(4, Clock.systemUTC(), pool);
+            Member member = new Member("Reader", "reader@example.com", "R" + round);
+            sharded.addMember(member);
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                Book book = new Book("Book " + i, "Author", 2000, "ISBN", "B" + i, "Genre");
+                sharded.addBook(book);
+                sharded.checkoutBook(member, book);
+                books.add(book);
+            }
+            Thread desk = new Thread(() -> {
+                for (Book book : books) sharded.returnBook(member, book);
+            });
+            desk.start();
+            sharded.revokeMembership(member.getMemberId());
+            desk.join();
+            assertNull(sharded.getMemberById(member.getMemberId()));
+            for (Book book : books) {
+                assertNull(sharded.getLoan(book.getBookId()), "No shard keeps a loan of the revoked member");
+            }
+            assertTrue(sharded.isLoanIndexConsistent());
+        }
+    }
+
+    @Test
+    public void testForeignBookIdsAreNotRegistered() {
+        Member member = library.getMemberById("M2");
+        for (int i = 0; i < 40; i++) {
+            library.checkoutBook(member, library.getBookById("B" + i));
+        }
+        for (int i = 0; i < 40; i += 2) {
+            library.returnBook(member, library.getBookById("B" + i));
+        }
+        library.revokeMembership("M2");
+        assertEquals(40, library.registeredBookIds(), "Only each book's own shard registers its ID");
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testRemoveBookClearsBorrowerOnOtherShard() {
+        Book book = library.getBookById("B11");
+        Member member = memberOnOtherShard(book);
+        library.checkoutBook(member, book);
+        library.removeBook("B11");
+        assertFalse(member.getBorrowedBookList().contains(book));
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testConcurrentCrossShardCheckoutsNeverDoubleLendOrDeadlock() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        AtomicInteger wins = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(threads.submit(() -> {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < 2000; i++) {
+                        Member member = library.getMemberById("M" + random.nextInt(40));
+                        Book book = library.getBookById("B" + random.nextInt(40));
+                        if (library.checkoutBook(member, book)) {
+                            wins.incrementAndGet();
+                            library.returnBook(member, book);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertTrue(wins.get() > 0);
+        for (Book book : library.getAllBooks()) {
+            assertTrue(book.isAvailable(), "Every book should be back on the shelf");
+        }
+        assertTrue(library.isLoanIndexConsistent());
+    }
+
+    @Test
+    public void testShardCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(0));
+    }
+
+    // PROPERTY-BASED TESTS
+
+    @Property
+    public void propertyEveryBookIsFoundOnItsShard(
+            @ForAll @AlphaChars @StringLength(min = 1, max = 12) String bookId,
+            @ForAll @IntRange(min = 1, max = 16) int shardCount
+    ) {
+        ShardedLibrary sharded = new ShardedLibrary(shardCount);
+        sharded.addBook(new Book("Title", "Author", 2000, "ISBN", bookId, "Genre"));
+        int shard = sharded.shardOfBook(bookId);
+        assertTrue(shard >= 0 && shard < shardCount);
+        assertEquals(bookId, sharded.getBookById(bookId).getBookId());
+        assertEquals(1, sharded.getAllBooks().size());
+    }
+}
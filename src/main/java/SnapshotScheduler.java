@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a snapshot in the background whenever the journal has grown by a given number of bytes
+ * since the last one, or a given interval has passed with anything logged at all, so startup
+ * never has to replay more than a bounded journal tail.
+ *
+ * Snapshots are taken with LibrarySnapshot.write(path, library, accounts, journal), which
+ * holds the library still only while the state is serialized in memory. The library must be
+ * concurrent, since its operations then run on other threads than the snapshots.
+ */
+public class SnapshotScheduler implements AutoCloseable {
+    // How often the journal size is checked
+    private static final long CHECK_MILLIS = 1000;
+
+    private final Path path;
+    private final Library library;
+    private final LibraryAccounts accounts;
+    private final LibraryJournal journal;
+    private final long journalBytes;
+    private final long intervalMillis;
+    private final ScheduledExecutorService executor;
+    // Guarded by 'this'
+    private long lastOffset;
+    private long lastMillis = System.currentTimeMillis();
+    private int taken;
+
+    // Snapshots to the given path once the journal grows by journalBytes, or every interval
+    // if anything was logged. lastOffset is the journal offset the existing snapshot covers.
+    public SnapshotScheduler(Path path, Library library, LibraryAccounts accounts, LibraryJournal journal,
+                             long journalBytes, Duration interval, long lastOffset) {
+        if (!library.isConcurrent()) throw new IllegalArgumentException("Background snapshots need a concurrent library");
+        if (journalBytes < 1 || interval.toMillis() < 1) {
+            throw new IllegalArgumentException("Journal growth and interval must be positive");
+        }
+        this.path = path;
+        this.library = library;
+        this.accounts = accounts;
+        this.journal = journal;
+        this.journalBytes = journalBytes;
+        this.intervalMillis = interval.toMillis();
+        this.lastOffset = lastOffset;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Starts checking in the background
+    public void start() {
+        long period = Math.min(CHECK_MILLIS, intervalMillis);
+        executor.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Takes a snapshot if the journal grew enough, or the interval passed with anything logged.
+    // Returns whether one was taken.
+    public synchronized boolean check() {
+        long grown = journal.position() - lastOffset;
+        boolean due = grown >= journalBytes
+                || (grown > 0 && System.currentTimeMillis() - lastMillis >= intervalMillis);
+        if (!due) return false;
+        try {
+            snapshotNow();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The previous snapshot is still in place; try again at the next check.
+            // Nothing may escape, or the executor would silently stop scheduling checks.
+            System.err.println("Snapshot to " + path + " failed: " + e);
+            return false;
+        }
+    }
+
+    // Takes a snapshot now, returning the journal offset it covers
+    public synchronized long snapshotNow() throws IOException {
+        lastOffset = LibrarySnapshot.write(path, library, accounts, journal);
+        lastMillis = System.currentTimeMillis();
+        taken++;
+        return lastOffset;
+    }
+
+    // Returns the number of snapshots taken so far
+    public synchronized int getSnapshotsTaken() {
+        return taken;
+    }
+
+    // Stops checking; a snapshot in progress completes first
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}